@@ -29,6 +29,7 @@ import com.google.android.accessibility.braille.brltty.BrailleDisplayProperties;
 import com.google.android.accessibility.braille.brltty.BrailleInputEvent;
 import com.google.android.accessibility.braille.brltty.Encoder;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Encodes braille dots for rendering, via {@link Encoder} on the remote display and coordinates the
@@ -58,6 +59,10 @@ public class Displayer {
   private boolean isDisplayReady;
   private BrailleDisplayProperties displayProperties;
   private final RemoteDevice remoteDevice;
+  // The newest frame not yet handed to the encoder; a newer frame replaces it before it is written.
+  private final AtomicReference<byte[]> pendingFrame = new AtomicReference<>();
+  // The last frame handed to the encoder. Only accessed on the background thread.
+  private byte[] lastWrittenFrame;
 
   private static final int COMMAND_CODE_MASK = 0xffff;
   private static final int COMMAND_ARGUMENT_MASK = 0x7fff0000;
@@ -141,9 +146,38 @@ public class Displayer {
    *
    * <p>The bytes will be encoded as a new packet in the protocol expected by the remote device, and
    * will be forwarded to the remote device via {@link Callback#onSendPacketToDisplay(byte[])}.
+   *
+   * <p>If a previous frame has not been written yet, it is dropped in favor of this one. A frame
+   * identical to the last written one is not sent again.
    */
   public void writeBrailleDots(byte[] brailleDotBytes) {
-    bgHandler.obtainMessage(MessageBg.WRITE_BRAILLE_DOTS.what(), brailleDotBytes).sendToTarget();
+    // Copy, since the frame is read later on the background thread.
+    if (pendingFrame.getAndSet(brailleDotBytes.clone()) == null) {
+      bgHandler.obtainMessage(MessageBg.WRITE_BRAILLE_DOTS.what()).sendToTarget();
+    }
+  }
+
+  /** Hands {@code frame} to the encoder, along with the range of cells changed since the last. */
+  private void writeFrame(byte[] frame) {
+    byte[] lastFrame = lastWrittenFrame;
+    if (lastFrame != null && lastFrame.length == frame.length) {
+      int changedStart = 0;
+      while (changedStart < frame.length && frame[changedStart] == lastFrame[changedStart]) {
+        changedStart++;
+      }
+      if (changedStart == frame.length) {
+        BrailleDisplayLog.v(TAG, "writeFrame skipped; cells unchanged");
+        return;
+      }
+      int changedEnd = frame.length;
+      while (frame[changedEnd - 1] == lastFrame[changedEnd - 1]) {
+        changedEnd--;
+      }
+      encoder.writeBrailleDots(frame, changedStart, changedEnd);
+    } else {
+      encoder.writeBrailleDots(frame);
+    }
+    lastWrittenFrame = frame;
   }
 
   /**
@@ -217,6 +251,8 @@ public class Displayer {
     START {
       @Override
       public void handle(Displayer displayer, Message message) {
+        // The cells of a newly connected display are unknown, so the next frame is written whole.
+        displayer.lastWrittenFrame = null;
         Optional<BrailleDisplayProperties> brailleDisplayProperties = displayer.encoder.start();
         if (brailleDisplayProperties.isPresent()) {
           displayer
@@ -237,8 +273,10 @@ public class Displayer {
     WRITE_BRAILLE_DOTS {
       @Override
       public void handle(Displayer displayer, Message message) {
-        byte[] brailleDotBytes = (byte[]) message.obj;
-        displayer.encoder.writeBrailleDots(brailleDotBytes);
+        byte[] frame = displayer.pendingFrame.getAndSet(null);
+        if (frame != null) {
+          displayer.writeFrame(frame);
+        }
       }
     },
     READ_COMMAND {
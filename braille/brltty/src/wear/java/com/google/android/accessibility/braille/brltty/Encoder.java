@@ -54,6 +54,17 @@ public interface Encoder {
   /** Delivers an unencoded list of braille dots for encoding and eventual cross-device sending. */
   void writeBrailleDots(byte[] brailleDotBytes);
 
+  /**
+   * Delivers an unencoded list of braille dots of which only the cells in {@code [changedStart,
+   * changedEnd)} differ from the previously delivered list.
+   *
+   * <p>Encoders for displays which support partial updates can override this to send only the
+   * changed cells; by default the whole list is written.
+   */
+  default void writeBrailleDots(byte[] brailleDotBytes, int changedStart, int changedEnd) {
+    writeBrailleDots(brailleDotBytes);
+  }
+
   /** Reads the current command from the remote device, if any; otherwise returns -1. */
   int readCommand();
 }
@@ -38,6 +38,7 @@ import com.google.android.accessibility.braille.translate.BrailleTranslator;
 import com.google.common.base.Strings;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
@@ -64,6 +65,21 @@ public class EditBufferUeb2 implements EditBuffer {
   private final Map<String, String> nonInitialCharacterTranslationMap = new HashMap<>();
 
   private static final int DELETE_WORD_MAX = 50;
+  private static final int TRANSLATION_CACHE_SIZE = 64;
+
+  /**
+   * Back-translations of the words translated while editing the current holdings, such as its
+   * prefixes. Appending or deleting a cell only needs the translation of the one prefix that
+   * wasn't translated yet. Cleared whenever the holdings are.
+   */
+  private final Map<BrailleWord, String> translationCache =
+      new LinkedHashMap<BrailleWord, String>(
+          TRANSLATION_CACHE_SIZE, 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<BrailleWord, String> eldest) {
+          return size() > TRANSLATION_CACHE_SIZE;
+        }
+      };
   private int holdingPosition = NO_CURSOR;
 
   public EditBufferUeb2(
@@ -90,8 +106,7 @@ public class EditBufferUeb2 implements EditBuffer {
       holdingPosition++;
     }
     previousTranslationIndex = holdingPosition - 1;
-    String result =
-        getAnnouncementAt(context.getResources(), translator, holdings, previousTranslationIndex);
+    String result = getAnnouncementAt(context.getResources(), holdings, previousTranslationIndex);
     if (EditBufferUtils.shouldEmitPerCharacterFeedback(imeConnection)) {
       result =
           hideTextForPasswordIfNecessary(imeConnection, result, /* brailleCharacterLength= */ 1);
@@ -125,8 +140,7 @@ public class EditBufferUeb2 implements EditBuffer {
       return;
     }
     holdingPosition--;
-    String result =
-        getAnnouncementAt(context.getResources(), translator, holdings, holdingPosition);
+    String result = getAnnouncementAt(context.getResources(), holdings, holdingPosition);
     holdings.remove(holdingPosition);
     result = hideTextForPasswordIfNecessary(imeConnection, result, /* brailleCharacterLength= */ 1);
     EditBufferUtils.speakDelete(context, talkBack, result);
@@ -144,8 +158,7 @@ public class EditBufferUeb2 implements EditBuffer {
     if (holdingPosition >= holdings.size()) {
       return;
     }
-    String result =
-        getAnnouncementAt(context.getResources(), translator, holdings, holdingPosition);
+    String result = getAnnouncementAt(context.getResources(), holdings, holdingPosition);
     holdings.remove(holdingPosition);
     result = hideTextForPasswordIfNecessary(imeConnection, result, /* brailleCharacterLength= */ 1);
     EditBufferUtils.speakDelete(context, talkBack, result);
@@ -155,11 +168,12 @@ public class EditBufferUeb2 implements EditBuffer {
   public void deleteWord(ImeConnection imeConnection) {
     // If there is any holdings left, clear it out; otherwise delete at the Editor level.
     if (!holdings.isEmpty()) {
-      String deletedWord = translator.translateToPrint(holdings);
+      String deletedWord = translateToPrint(holdings);
       deletedWord = hideTextForPasswordIfNecessary(imeConnection, deletedWord, holdings.size());
       EditBufferUtils.speakDelete(context, talkBack, deletedWord);
       holdingPosition = NO_CURSOR;
       holdings.clear();
+      translationCache.clear();
       imeConnection.inputConnection.setComposingText("", 0);
     } else {
       CharSequence hunkBeforeCursor =
@@ -243,8 +257,7 @@ public class EditBufferUeb2 implements EditBuffer {
         end = holdingPosition;
       }
       holdingPosition = index;
-      String announcement =
-          getAnnouncementRange(context.getResources(), translator, holdings, start, end);
+      String announcement = getAnnouncementRange(context.getResources(), holdings, start, end);
       announcement =
           hideTextForPasswordIfNecessary(
               imeConnection, announcement, /* brailleCharacterLength= */ end - start);
@@ -299,9 +312,9 @@ public class EditBufferUeb2 implements EditBuffer {
     if (ignoreHoldingsPosition) {
       holdingPosition = holdings.size();
     }
-    String holdingsBeforeCursor = translator.translateToPrint(holdings.subword(0, holdingPosition));
+    String holdingsBeforeCursor = translateToPrint(holdings.subword(0, holdingPosition));
     String holdingsAfterCursor =
-        translator.translateToPrint(holdings.subword(holdingPosition, holdings.size()));
+        translateToPrint(holdings.subword(holdingPosition, holdings.size()));
     String currentTranslation = holdingsBeforeCursor + holdingsAfterCursor;
     ExtractedText extractedText =
         imeConnection.inputConnection.getExtractedText(new ExtractedTextRequest(), 0);
@@ -315,33 +328,29 @@ public class EditBufferUeb2 implements EditBuffer {
     imeConnection.inputConnection.commitText(currentTranslation, 1);
 
     holdings.clear();
+    translationCache.clear();
     holdingPosition = NO_CURSOR;
     moveTextFieldCursor(
         imeConnection, holdingsBeforeCursor.length() + textLengthBeforeCursorLength);
   }
 
   private String getAnnouncementRange(
-      Resources resources,
-      BrailleTranslator translator,
-      BrailleWord brailleWord,
-      int startIndex,
-      int endIndex) {
+      Resources resources, BrailleWord brailleWord, int startIndex, int endIndex) {
     StringBuilder sb = new StringBuilder();
     for (int i = startIndex; i < endIndex; i++) {
-      sb.append(getAnnouncementAt(resources, translator, brailleWord, i));
+      sb.append(getAnnouncementAt(resources, brailleWord, i));
     }
     return sb.toString();
   }
 
-  private String getAnnouncementAt(
-      Resources resources, BrailleTranslator translator, BrailleWord brailleWord, int index) {
+  private String getAnnouncementAt(Resources resources, BrailleWord brailleWord, int index) {
     BrailleCharacter brailleCharacter = brailleWord.get(index);
     String result = getNonInitialCharacterTranslation(resources, brailleCharacter);
     if (index == 0) {
       result = getInitialCharacterTranslation(resources, brailleCharacter);
     }
     if (result.isEmpty()) {
-      result = getTranslateDifference(translator, brailleWord, index, index + 1);
+      result = getTranslateDifference(brailleWord, index, index + 1);
       if (result.isEmpty() || isAlphabet(result.charAt(0))) {
         result = getDynamicTranslation(resources, brailleCharacter, brailleWord.size() > 1);
       }
@@ -369,16 +378,26 @@ public class EditBufferUeb2 implements EditBuffer {
         : getNonInitialCharacterTranslation(resources, brailleCharacter);
   }
 
-  private static String getTranslateDifference(
-      BrailleTranslator translator, BrailleWord brailleWord, int firstIndex, int secondIndex) {
-    String longerString = translator.translateToPrint(brailleWord.subword(0, secondIndex));
-    String shorterString = translator.translateToPrint(brailleWord.subword(0, firstIndex));
+  private String getTranslateDifference(BrailleWord brailleWord, int firstIndex, int secondIndex) {
+    String longerString = translateToPrint(brailleWord.subword(0, secondIndex));
+    String shorterString = translateToPrint(brailleWord.subword(0, firstIndex));
     if (longerString.startsWith(shorterString)) {
       return longerString.substring(shorterString.length());
     }
     return "";
   }
 
+  /** Back-translates {@code brailleWord}, reusing the translation of an identical word. */
+  private String translateToPrint(BrailleWord brailleWord) {
+    String translation = translationCache.get(brailleWord);
+    if (translation == null) {
+      translation = translator.translateToPrint(brailleWord);
+      // Copy the key, since the holdings are modified in place.
+      translationCache.put(new BrailleWord(brailleWord), translation);
+    }
+    return translation;
+  }
+
   private static boolean isAlphabet(char character) {
     return ('a' <= character && character <= 'z') || ('A' <= character && character <= 'Z');
   }
@@ -33,10 +33,15 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /** A LibLouis translator based on the {@link LibLouisTranslator#tableName}. */
 public class LibLouisTranslator implements BrailleTranslator {
 
+  // Compiles tables ahead of their first translation.
+  private static final Executor tableCompileExecutor = Executors.newSingleThreadExecutor();
+
   private final String tableName;
   private final Map<BrailleWord, String> bypassMap;
   private final Map<BrailleCharacter, String> commutativityMap;
@@ -55,10 +60,17 @@ public class LibLouisTranslator implements BrailleTranslator {
     if (files != null && files.length != 0) {
       tablesDir = customTablesDir;
     } else {
-      tablesDir = context.getDir("translator", Context.MODE_PRIVATE);
-      TranslateUtils.extractTables(context.getResources(), R.raw.translationtables, tablesDir);
+      File translatorDir = context.getDir("translator", Context.MODE_PRIVATE);
+      tablesDir =
+          TranslateUtils.extractTablesOnce(context, R.raw.translationtables, translatorDir);
+      if (tablesDir == null) {
+        // Fall back to extracting on every construction.
+        tablesDir = translatorDir;
+        TranslateUtils.extractTables(context.getResources(), R.raw.translationtables, tablesDir);
+      }
     }
     LouisTranslation.setTablesDir(tablesDir.getPath());
+    tableCompileExecutor.execute(() -> LouisTranslation.checkTable(tableName));
     bypassMap = new LinkedHashMap<>();
     commutativityMap = new LinkedHashMap<>();
   }
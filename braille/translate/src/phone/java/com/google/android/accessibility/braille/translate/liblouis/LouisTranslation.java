@@ -28,7 +28,8 @@ import java.util.Set;
  * <p>NOTE: Braille translation involves reading tables from disk and can therefore be blocking. In
  * addition, translation by all instances of this class is serialized because of the underlying
  * implementation, which increases the possibility of translations blocking on I/O if multiple
- * translators are used.
+ * translators are used. The native library isn't thread-safe, so all calls into it are
+ * synchronized on this class.
  */
 public class LouisTranslation {
   private static final String LOG_TAG = LouisTranslation.class.getSimpleName();
@@ -62,12 +63,12 @@ public class LouisTranslation {
    * This method should be called before any other method is called. {@code path} should point to a
    * location in the file system under which the liblouis translation tables can be found.
    */
-  public static boolean setTablesDir(String path) {
+  public static synchronized boolean setTablesDir(String path) {
     return setTablesDirNative(path);
   }
 
   /** Compiles the given table and makes sure it is valid. */
-  public static boolean checkTable(String tableName) {
+  public static synchronized boolean checkTable(String tableName) {
     if (!checkTableNative(tableName)) {
       Log.w(LOG_TAG, "Table not found or invalid: " + tableName);
       return false;
@@ -76,13 +77,13 @@ public class LouisTranslation {
   }
 
   /** Translates a string into the corresponding dot patterns. */
-  public static TranslationResult translate(
+  public static synchronized TranslationResult translate(
       CharSequence text, String tableName, int cursorPosition, boolean computerBrailleAtCursor) {
     return translateNative(text, tableName, cursorPosition, computerBrailleAtCursor);
   }
 
   /** Back-translates a byte array of dot patterns into the corresponding String. */
-  public static String backTranslate(byte[] cells, String tableName, int mode) {
+  public static synchronized String backTranslate(byte[] cells, String tableName, int mode) {
     return backTranslateNative(cells, tableName, mode);
   }
 
@@ -16,15 +16,31 @@
 
 package com.google.android.accessibility.braille.translate.liblouis;
 
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.res.Resources;
+import androidx.annotation.Nullable;
+import androidx.core.content.pm.PackageInfoCompat;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
 import java.io.BufferedInputStream;
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
 import java.util.zip.ZipInputStream;
@@ -32,6 +48,176 @@ import java.util.zip.ZipInputStream;
 /** Utils for translation. */
 public class TranslateUtils {
   private static final String TAG = "TranslateUtils";
+  private static final String STAMP_FILE_NAME = "tables.stamp";
+  private static final String TABLES_DIR_PREFIX = "tables_";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  // Directories already extracted by this process, keyed by parent directory and resource.
+  private static final Map<String, File> extractedTablesDirs = new HashMap<>();
+
+  /**
+   * Extracts the zip resource {@code rawResId} into a subdirectory of {@code parent} and returns
+   * the subdirectory, or {@code null} if the extraction failed.
+   *
+   * <p>The extraction only happens once per version of the app: a stamp file in {@code parent}
+   * records the app version and the content hash of the extracted resource. After an app update
+   * the resource is hashed, and only extracted again if its content changed. Tables are extracted
+   * into a temporary directory which is renamed into place once complete, so a partially extracted
+   * directory is never used.
+   */
+  @Nullable
+  public static synchronized File extractTablesOnce(Context context, int rawResId, File parent) {
+    String key = parent.getPath() + ":" + rawResId;
+    File tablesDir = extractedTablesDirs.get(key);
+    if (tablesDir != null) {
+      return tablesDir;
+    }
+
+    String version = getAppVersion(context);
+    File stampFile = new File(parent, STAMP_FILE_NAME);
+    String[] stamp = readStamp(stampFile);
+    Resources resources = context.getResources();
+    try {
+      if (stamp != null && new File(parent, TABLES_DIR_PREFIX + stamp[1]).isDirectory()) {
+        if (stamp[0].equals(version)) {
+          tablesDir = new File(parent, TABLES_DIR_PREFIX + stamp[1]);
+        } else if (stamp[1].equals(hashResource(resources, rawResId))) {
+          // The app was updated, but the tables didn't change.
+          writeStamp(stampFile, version, stamp[1]);
+          tablesDir = new File(parent, TABLES_DIR_PREFIX + stamp[1]);
+        }
+      }
+      if (tablesDir == null) {
+        tablesDir = extractTablesVersioned(resources, rawResId, parent, stampFile, version);
+      }
+    } catch (IOException e) {
+      LogUtils.e(TAG, "Exception during extractTablesOnce()", e);
+      return null;
+    }
+    extractedTablesDirs.put(key, tablesDir);
+    return tablesDir;
+  }
+
+  private static File extractTablesVersioned(
+      Resources resources, int rawResId, File parent, File stampFile, String version)
+      throws IOException {
+    File tempDir = new File(parent, TABLES_DIR_PREFIX + version + TEMP_SUFFIX);
+    deleteRecursively(tempDir);
+    tempDir.mkdirs();
+    MessageDigest digest = newDigest();
+    DigestInputStream digestStream =
+        new DigestInputStream(resources.openRawResource(rawResId), digest);
+    try (ZipInputStream zipStream = new ZipInputStream(new BufferedInputStream(digestStream))) {
+      extractEntries(zipStream, tempDir, new ArrayList<>());
+      // Drain the zip central directory, so that the digest covers the whole resource.
+      byte[] buffer = new byte[10240];
+      while (digestStream.read(buffer) != -1) {}
+    } catch (IOException e) {
+      deleteRecursively(tempDir);
+      throw e;
+    }
+
+    String hash = toHex(digest.digest());
+    File tablesDir = new File(parent, TABLES_DIR_PREFIX + hash);
+    deleteRecursively(tablesDir);
+    if (!tempDir.renameTo(tablesDir)) {
+      deleteRecursively(tempDir);
+      throw new IOException("Unable to rename " + tempDir + " to " + tablesDir);
+    }
+    writeStamp(stampFile, version, hash);
+
+    // Remove the tables of previous versions, including tables extracted directly into parent.
+    File[] children = parent.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        if (!child.equals(tablesDir) && !child.equals(stampFile)) {
+          deleteRecursively(child);
+        }
+      }
+    }
+    return tablesDir;
+  }
+
+  private static String getAppVersion(Context context) {
+    try {
+      PackageInfo packageInfo =
+          context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+      return PackageInfoCompat.getLongVersionCode(packageInfo) + "_" + packageInfo.lastUpdateTime;
+    } catch (NameNotFoundException e) {
+      // Fall back to comparing content hashes every time.
+      return "";
+    }
+  }
+
+  private static String hashResource(Resources resources, int rawResId) throws IOException {
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[10240];
+    try (InputStream stream = resources.openRawResource(rawResId)) {
+      int bytesRead;
+      while ((bytesRead = stream.read(buffer)) != -1) {
+        digest.update(buffer, 0, bytesRead);
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /** Returns the app version and content hash from the stamp file, or {@code null} if invalid. */
+  @Nullable
+  private static String[] readStamp(File stampFile) {
+    if (!stampFile.isFile()) {
+      return null;
+    }
+    try (BufferedReader reader =
+        new BufferedReader(
+            new InputStreamReader(new FileInputStream(stampFile), StandardCharsets.UTF_8))) {
+      String version = reader.readLine();
+      String hash = reader.readLine();
+      return (version == null || hash == null || hash.isEmpty())
+          ? null
+          : new String[] {version, hash};
+    } catch (IOException e) {
+      LogUtils.w(TAG, "Unable to read %s", stampFile);
+      return null;
+    }
+  }
+
+  private static void writeStamp(File stampFile, String version, String hash) throws IOException {
+    File tempFile = new File(stampFile.getPath() + TEMP_SUFFIX);
+    try (Writer writer =
+        new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8)) {
+      writer.write(version + "\n" + hash + "\n");
+    }
+    if (!tempFile.renameTo(stampFile)) {
+      tempFile.delete();
+      throw new IOException("Unable to rename " + tempFile + " to " + stampFile);
+    }
+  }
+
+  private static MessageDigest newDigest() throws IOException {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  private static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        deleteRecursively(child);
+      }
+    }
+    file.delete();
+  }
 
   public static boolean extractTables(Resources resources, int rawResId, File output) {
     List<File> extractedFiles = new ArrayList<>();
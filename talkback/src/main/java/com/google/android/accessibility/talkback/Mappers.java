@@ -33,7 +33,6 @@ import static com.google.android.accessibility.utils.output.SpeechController.QUE
 import static com.google.android.accessibility.utils.traversal.TraversalStrategy.SEARCH_FOCUS_UNKNOWN;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.graphics.Rect;
 import android.text.TextUtils;
 import android.view.accessibility.AccessibilityEvent;
@@ -59,7 +58,6 @@ import com.google.android.accessibility.utils.FeatureSupport;
 import com.google.android.accessibility.utils.FocusFinder;
 import com.google.android.accessibility.utils.LogDepth;
 import com.google.android.accessibility.utils.Performance.EventId;
-import com.google.android.accessibility.utils.SharedPreferencesUtils;
 import com.google.android.accessibility.utils.output.FeedbackItem;
 import com.google.android.accessibility.utils.output.SpeechController;
 import com.google.android.accessibility.utils.output.SpeechController.SpeakOptions;
@@ -346,7 +344,6 @@ public final class Mappers {
    */
   public static final class Variables {
     private final Context context;
-    private SharedPreferences prefs;
     private final @Nullable AccessibilityEvent event;
     private final @Nullable Interpretation interpretation;
     private @Nullable AccessibilityNodeInfoCompat source;
@@ -360,7 +357,6 @@ public final class Mappers {
       this.context = context;
       this.event = event;
       this.interpretation = interpretation;
-      prefs = SharedPreferencesUtils.getSharedPreferences(context);
       this.monitors = monitors;
     }
 
@@ -516,24 +512,13 @@ public final class Mappers {
     }
 
     public boolean liftToType(int depth) {
-      @TypingMethod
-      int typingMethod =
-          SharedPreferencesUtils.getIntFromStringPref(
-              prefs,
-              context.getResources(),
-              R.string.pref_typing_confirmation_key,
-              R.string.pref_typing_confirmation_default);
+      @TypingMethod int typingMethod = TalkBackConfig.get(context).typingMethod;
       LogDepth.logVar(LOG_TAG, ++depth, "liftToType", typingMethod);
       return typingMethod != DOUBLE_TAP;
     }
 
     public boolean singleTap(int depth) {
-      boolean enabled =
-          SharedPreferencesUtils.getBooleanPref(
-              prefs,
-              context.getResources(),
-              R.string.pref_single_tap_key,
-              R.bool.pref_single_tap_default);
+      boolean enabled = TalkBackConfig.get(context).singleTap;
       LogDepth.logVar(LOG_TAG, ++depth, "singleTap", enabled);
       return enabled;
     }
@@ -33,13 +33,11 @@ import com.google.android.accessibility.talkback.TalkBackService.ProximitySensor
 import com.google.android.accessibility.talkback.compositor.Compositor;
 import com.google.android.accessibility.talkback.eventprocessor.AccessibilityEventProcessor.AccessibilityEventIdleListener;
 import com.google.android.accessibility.talkback.utils.DiagnosticOverlayControllerImpl;
-import com.google.android.accessibility.talkback.utils.VerbosityPreferences;
 import com.google.android.accessibility.utils.AccessibilityEventListener;
 import com.google.android.accessibility.utils.Performance;
 import com.google.android.accessibility.utils.Performance.EventId;
 import com.google.android.accessibility.utils.Performance.EventIdAnd;
 import com.google.android.accessibility.utils.ProximitySensor;
-import com.google.android.accessibility.utils.SharedPreferencesUtils;
 import com.google.android.accessibility.utils.WeakReferenceHandler;
 import com.google.android.accessibility.utils.output.SpeechController;
 import com.google.android.accessibility.utils.output.SpeechController.SpeakOptions;
@@ -330,12 +328,7 @@ public class Pipeline implements AccessibilityEventListener, AccessibilityEventI
     for (int p = 0; p < parts.size(); ++p) {
       Feedback.Part part = parts.get(p);
 
-      boolean speakUsageHints =
-          VerbosityPreferences.getPreferenceValueBool(
-              SharedPreferencesUtils.getSharedPreferences(context),
-              context.getResources(),
-              context.getString(R.string.pref_a11y_hints_key),
-              context.getResources().getBoolean(R.bool.pref_a11y_hints_default));
+      boolean speakUsageHints = TalkBackConfig.get(context).speakUsageHints;
 
       // Convert Feedback if this is speak hint
       if ((part.speech() != null)
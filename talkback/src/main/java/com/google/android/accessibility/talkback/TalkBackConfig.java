@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.talkback;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import com.google.android.accessibility.talkback.focusmanagement.FocusProcessorForTapAndTouchExploration.TypingMethod;
+import com.google.android.accessibility.talkback.utils.VerbosityPreferences;
+import com.google.android.accessibility.utils.SharedPreferencesUtils;
+import com.google.android.accessibility.utils.input.TextEventFilter.KeyboardEchoType;
+import com.google.android.accessibility.utils.output.SpeechControllerImpl.CapitalLetterHandlingMethod;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * An immutable snapshot of the TalkBack settings which are read while handling events.
+ *
+ * <p>Reading a setting from {@link SharedPreferences} resolves its key resource and looks it up in
+ * the preference map, and settings which follow the verbosity preset also compare the preset with
+ * several resource strings. The snapshot does this once per preference change, so that event
+ * handlers only read its fields. {@link TalkBackService} rebuilds the snapshot with {@link
+ * #reload} whenever a preference changes, and {@link #get} returns the latest snapshot from any
+ * thread.
+ */
+public final class TalkBackConfig {
+
+  private static volatile @Nullable TalkBackConfig current;
+
+  // Settings which follow the verbosity preset.
+
+  public final boolean speakUsageHints;
+  public final boolean phoneticLetters;
+  public final boolean intonation;
+  public final boolean speakWhenScreenOff;
+  public final boolean verboseScrollAnnouncement;
+  public final boolean speakCollectionInfo;
+  public final boolean speakRoles;
+  public final boolean speakSystemWindowTitles;
+  public final @KeyboardEchoType int onScreenKeyboardEcho;
+  public final @KeyboardEchoType int physicalKeyboardEcho;
+  public final @CapitalLetterHandlingMethod int capitalLetterFeedback;
+
+  // Other settings.
+
+  public final boolean punctuation;
+  public final boolean singleTap;
+  public final @TypingMethod int typingMethod;
+  public final boolean vibration;
+
+  /** Returns the latest snapshot, building it if there is none yet. */
+  public static TalkBackConfig get(Context context) {
+    @Nullable TalkBackConfig config = current;
+    return (config == null) ? reload(context) : config;
+  }
+
+  /** Builds a snapshot of the current preferences, which {@link #get} returns from now on. */
+  public static TalkBackConfig reload(Context context) {
+    TalkBackConfig config =
+        new TalkBackConfig(
+            SharedPreferencesUtils.getSharedPreferences(context), context.getResources());
+    current = config;
+    return config;
+  }
+
+  private TalkBackConfig(SharedPreferences prefs, Resources res) {
+    // Resolves the verbosity preset once, for all the settings which follow it.
+    @Nullable String verbosity =
+        SharedPreferencesUtils.getStringPref(
+            prefs, res, R.string.pref_verbosity_preset_key, 0); // Default to null.
+
+    speakUsageHints =
+        getVerbosityBool(
+            prefs, res, verbosity, R.string.pref_a11y_hints_key, R.bool.pref_a11y_hints_default);
+    phoneticLetters =
+        getVerbosityBool(
+            prefs,
+            res,
+            verbosity,
+            R.string.pref_phonetic_letters_key,
+            R.bool.pref_phonetic_letters_default);
+    intonation =
+        getVerbosityBool(
+            prefs, res, verbosity, R.string.pref_intonation_key, R.bool.pref_intonation_default);
+    speakWhenScreenOff =
+        getVerbosityBool(
+            prefs, res, verbosity, R.string.pref_screenoff_key, R.bool.pref_screenoff_default);
+    verboseScrollAnnouncement =
+        getVerbosityBool(
+            prefs,
+            res,
+            verbosity,
+            R.string.pref_verbose_scroll_announcement_key,
+            R.bool.pref_verbose_scroll_announcement_default);
+    speakCollectionInfo =
+        getVerbosityBool(
+            prefs,
+            res,
+            verbosity,
+            R.string.pref_speak_container_element_positions_key,
+            R.bool.pref_speak_container_element_positions_default);
+    speakRoles =
+        getVerbosityBool(
+            prefs, res, verbosity, R.string.pref_speak_roles_key, R.bool.pref_speak_roles_default);
+    speakSystemWindowTitles =
+        getVerbosityBool(
+            prefs,
+            res,
+            verbosity,
+            R.string.pref_speak_system_window_titles_key,
+            R.bool.pref_speak_system_window_titles_default);
+    onScreenKeyboardEcho =
+        Integer.parseInt(
+            getVerbosityString(
+                prefs,
+                res,
+                verbosity,
+                R.string.pref_keyboard_echo_on_screen_key,
+                R.string.pref_keyboard_echo_default));
+    physicalKeyboardEcho =
+        Integer.parseInt(
+            getVerbosityString(
+                prefs,
+                res,
+                verbosity,
+                R.string.pref_keyboard_echo_physical_key,
+                R.string.pref_keyboard_echo_default));
+    capitalLetterFeedback =
+        Integer.parseInt(
+            getVerbosityString(
+                prefs,
+                res,
+                verbosity,
+                R.string.pref_capital_letters_key,
+                R.string.pref_capital_letters_default));
+
+    punctuation =
+        SharedPreferencesUtils.getBooleanPref(
+            prefs, res, R.string.pref_punctuation_key, R.bool.pref_punctuation_default);
+    singleTap =
+        SharedPreferencesUtils.getBooleanPref(
+            prefs, res, R.string.pref_single_tap_key, R.bool.pref_single_tap_default);
+    typingMethod =
+        SharedPreferencesUtils.getIntFromStringPref(
+            prefs,
+            res,
+            R.string.pref_typing_confirmation_key,
+            R.string.pref_typing_confirmation_default);
+    vibration =
+        SharedPreferencesUtils.getBooleanPref(
+            prefs, res, R.string.pref_vibration_key, R.bool.pref_vibration_default);
+  }
+
+  /** Reads a boolean setting the way {@link VerbosityPreferences#getPreferenceValueBool} does. */
+  private static boolean getVerbosityBool(
+      SharedPreferences prefs,
+      Resources res,
+      @Nullable String verbosity,
+      int keyResId,
+      int defaultResId) {
+    String key = res.getString(keyResId);
+    boolean defaultValue = res.getBoolean(defaultResId);
+    if (verbosity == null) {
+      return prefs.getBoolean(key, defaultValue);
+    }
+    return VerbosityPreferences.getPreferenceVerbosityBool(
+        prefs, res, verbosity, key, defaultValue);
+  }
+
+  /** Reads a string setting the way {@link VerbosityPreferences#getPreferenceValueString} does. */
+  private static String getVerbosityString(
+      SharedPreferences prefs,
+      Resources res,
+      @Nullable String verbosity,
+      int keyResId,
+      int defaultResId) {
+    String key = res.getString(keyResId);
+    String defaultValue = res.getString(defaultResId);
+    if (verbosity == null) {
+      return prefs.getString(key, defaultValue);
+    }
+    return VerbosityPreferences.getPreferenceVerbosityString(
+        prefs, res, verbosity, key, defaultValue);
+  }
+}
@@ -44,6 +44,8 @@ import android.content.res.Resources;
 import android.graphics.Region;
 import android.media.AudioManager;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.Settings;
 import android.text.TextUtils;
 import android.util.Log;
@@ -138,7 +140,6 @@ import com.google.android.accessibility.talkback.utils.DiagnosticOverlayControll
 import com.google.android.accessibility.talkback.utils.ExperimentalUtils;
 import com.google.android.accessibility.talkback.utils.FocusIndicatorUtils;
 import com.google.android.accessibility.talkback.utils.SplitCompatUtils;
-import com.google.android.accessibility.talkback.utils.VerbosityPreferences;
 import com.google.android.accessibility.utils.AccessibilityEventListener;
 import com.google.android.accessibility.utils.AccessibilityEventUtils;
 import com.google.android.accessibility.utils.AccessibilityNodeInfoUtils;
@@ -158,6 +159,7 @@ import com.google.android.accessibility.utils.ServiceStateListener;
 import com.google.android.accessibility.utils.SettingsUtils;
 import com.google.android.accessibility.utils.SharedKeyEvent;
 import com.google.android.accessibility.utils.SharedPreferencesUtils;
+import com.google.android.accessibility.utils.SpeakingNodesCache;
 import com.google.android.accessibility.utils.WindowUtils;
 import com.google.android.accessibility.utils.caption.ImageCaptionStorage;
 import com.google.android.accessibility.utils.input.CursorGranularity;
@@ -181,10 +183,15 @@ import com.google.android.accessibility.utils.output.SpeechController.SpeakOptio
 import com.google.android.accessibility.utils.output.SpeechController.UtteranceCompleteRunnable;
 import com.google.android.accessibility.utils.output.SpeechControllerImpl;
 import com.google.android.accessibility.utils.output.SpeechControllerImpl.CapitalLetterHandlingMethod;
+import com.google.android.accessibility.utils.traversal.DirectionalTraversalIndex;
+import com.google.android.accessibility.utils.traversal.OrderedTraversalIndex;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
 import com.google.common.collect.ImmutableMap;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -253,6 +260,34 @@ public class TalkBackService extends AccessibilityService
 
   private static final String TAG = "TalkBackService";
 
+  /**
+   * Argument of {@code adb shell dumpsys activity service <TalkBackService component>} which dumps
+   * latency percentiles as JSON. Adding {@link #DUMP_ARG_START_LATENCY_WINDOW} also starts a new
+   * latency window after dumping.
+   */
+  private static final String DUMP_ARG_PERFORMANCE = "performance";
+
+  private static final String DUMP_ARG_START_LATENCY_WINDOW = "--start-window";
+
+  /**
+   * Earcons played by sound feedback outside the compositor, which are loaded at startup so that
+   * their first plays are not late. The earcons of the compositor are taken from its parse tree
+   * once the first feedback has been composed.
+   */
+  private static final int[] SOUND_FEEDBACK_EARCONS = {
+    R.raw.chime_down,
+    R.raw.chime_up,
+    R.raw.complete,
+    R.raw.gesture_begin,
+    R.raw.gesture_end,
+    R.raw.scroll_tone,
+    R.raw.typo,
+    R.raw.view_entered,
+    R.raw.volume_beep,
+    com.google.android.accessibility.utils.R.raw.hyperlink,
+    com.google.android.accessibility.utils.R.raw.window_state,
+  };
+
   /**
    * List of key event processors. Processors in the list are sent the event in the order they were
    * added until a processor consumes the event.
@@ -411,9 +446,12 @@ public class TalkBackService extends AccessibilityService
   /** A reference to the active Braille IME if any. */
   private @Nullable BrailleImeForTalkBack brailleImeForTalkBack;
 
-  private BrailleDisplayForTalkBack brailleDisplay;
+  private @Nullable BrailleDisplayForTalkBack brailleDisplay;
   private BrailleDisplayHelper brailleDisplayHelper;
 
+  private final Handler deferredInfrastructureHandler = new Handler(Looper.getMainLooper());
+  private final Runnable deferredInfrastructureInitializer = this::initializeDeferredInfrastructure;
+
   private GestureShortcutMapping gestureShortcutMapping;
   private NodeMenuRuleProcessor nodeMenuRuleProcessor;
   private SpeechLanguage speechLanguage;
@@ -894,10 +932,12 @@ public class TalkBackService extends AccessibilityService
   protected void onServiceConnected() {
     LogUtils.v(TAG, "System bound to service.");
 
+    Performance.getInstance().onStartupBegin();
     SharedPreferencesUtils.migrateSharedPreferences(this);
     prefs = SharedPreferencesUtils.getSharedPreferences(this);
     initializeInfrastructure();
     SharedKeyEvent.register(this);
+    Performance.getInstance().onStartupStageDone(Performance.STARTUP_STAGE_CORE_INFRASTRUCTURE);
 
     // Configure logs.
     LogUtils.setTagPrefix("talkback: ");
@@ -922,11 +962,13 @@ public class TalkBackService extends AccessibilityService
 
     resumeInfrastructure();
 
-    // Handle any update actions.
-    final TalkBackUpdateHelper helper = new TalkBackUpdateHelper(this);
-    helper.checkUpdate();
-
     compositor.handleEvent(Compositor.EVENT_SPOKEN_FEEDBACK_ON, EVENT_ID_UNTRACKED);
+    Performance.getInstance().onStartupStageDone(Performance.STARTUP_STAGE_FIRST_FEEDBACK);
+    // The first feedback has built the parse tree, so its earcons are known without waiting.
+    feedbackController.preloadAuditory(compositor.getEarcons());
+
+    // Subsystems which the first feedback doesn't need start after it is queued.
+    deferredInfrastructureHandler.post(deferredInfrastructureInitializer);
 
     // If the locked-boot-completed intent was fired before onServiceConnected, we queued it,
     // so now we need to run it.
@@ -1035,6 +1077,7 @@ public class TalkBackService extends AccessibilityService
 
     accessibilityEventProcessor = new AccessibilityEventProcessor(this);
     feedbackController = new FeedbackController(this);
+    feedbackController.preloadAuditory(SOUND_FEEDBACK_EARCONS);
     speechController = new SpeechControllerImpl(this, this, feedbackController);
     speechStateMonitor = new SpeechStateMonitor();
     diagnosticOverlayController = new DiagnosticOverlayControllerImpl(this);
@@ -1046,6 +1089,9 @@ public class TalkBackService extends AccessibilityService
         new GlobalVariables(
             this, inputModeTracker, collectionState, keyComboManager, gestureShortcutMapping);
 
+    // Drops stale speaking nodes before any other listener looks at the changed nodes.
+    addEventListener(SpeakingNodesCache.getInstance());
+
     labelManager = new CustomLabelManager(this);
     addEventListener(labelManager);
 
@@ -1122,7 +1168,11 @@ public class TalkBackService extends AccessibilityService
             getSystemService(ClipboardManager.class));
     fullScreenReadActor =
         new FullScreenReadActor(
-            accessibilityFocusMonitor, this, speechController, screenStateMonitor.state);
+            accessibilityFocusMonitor,
+            this,
+            speechController,
+            screenStateMonitor.state,
+            compositor.getNodeDescriptionPrefetcher());
     dimScreenController = new DimScreenActor(this, gestureShortcutMapping);
 
     accessibilityFocusInterpreter =
@@ -1151,6 +1201,7 @@ public class TalkBackService extends AccessibilityService
         new UniversalSearchActor(this, screenStateMonitor.state, focusFinder, labelManager);
 
     autoScrollInterpreter.setUniversalSearchActor(universalSearchActor);
+    addEventListener(universalSearchActor.getNodesCacheUpdater());
 
     voiceCommandProcessor =
         new VoiceCommandProcessor(this, accessibilityFocusMonitor, selectorController, analytics);
@@ -1354,6 +1405,12 @@ public class TalkBackService extends AccessibilityService
 
     addEventListener(processorEventQueue);
     addEventListener(processorPhoneticLetters);
+    addEventListener(OrderedTraversalIndex.getInstance());
+    addEventListener(DirectionalTraversalIndex.getInstance());
+    addEventListener(compositor.getNodeDescriptionPrefetcher());
+    labelManager.setLabelsChangedListener(compositor.getNodeDescriptionPrefetcher()::invalidate);
+    imageCaptioner.setCaptionResultsChangedListener(
+        compositor.getNodeDescriptionPrefetcher()::invalidate);
 
     // Create window event interpreter and announcer.
     windowEventInterpreter = new WindowEventInterpreter(this);
@@ -1415,14 +1472,31 @@ public class TalkBackService extends AccessibilityService
       addEventListener(televisionDPadManager);
     }
 
+    TalkbackServiceStateNotifier.getInstance().notifyTalkBackServiceStateChanged(true);
+  }
+
+  /**
+   * Initializes the subsystems which spoken feedback doesn't depend on. This runs on the main
+   * thread after {@link #onServiceConnected()} has queued the first feedback, so that TalkBack
+   * speaks without waiting for them. Until then, each of them is null, and its callers skip it.
+   */
+  private void initializeDeferredInfrastructure() {
     brailleDisplay = new BrailleDisplay(this, talkBackForBrailleDisplay);
     brailleDisplayHelper = new BrailleDisplayHelper(menuManager, selectorController);
 
     BrailleIme.initialize(
         this, talkBackForBrailleIme, brailleDisplay.getBrailleDisplayForBrailleIme());
+    if (isServiceActive()) {
+      brailleDisplay.start();
+    }
+
+    // Handle any update actions.
+    final TalkBackUpdateHelper helper = new TalkBackUpdateHelper(this);
+    helper.checkUpdate();
+
     analytics.onTalkBackServiceStarted();
 
-    TalkbackServiceStateNotifier.getInstance().notifyTalkBackServiceStateChanged(true);
+    Performance.getInstance().onStartupStageDone(Performance.STARTUP_STAGE_DEFERRED_INFRASTRUCTURE);
   }
 
   @VisibleForTesting
@@ -1618,18 +1692,19 @@ public class TalkBackService extends AccessibilityService
         @Override
         public boolean isVibrationFeedbackEnabled() {
           return FeatureSupport.isVibratorSupported(getApplicationContext())
-              && getBooleanPref(R.string.pref_vibration_key, R.bool.pref_vibration_default);
+              && TalkBackConfig.get(TalkBackService.this).vibration;
         }
 
         @Override
         public boolean shouldAnnounceCharacter() {
+          TalkBackConfig config = TalkBackConfig.get(TalkBackService.this);
           @KeyboardEchoType
           int echoType =
               brailleDisplay
                       .getBrailleDisplayForBrailleIme()
                       .isBrailleDisplayConnectedAndNotSuspended()
-                  ? readPhysicalKeyboardEcho()
-                  : readOnScreenKeyboardEcho();
+                  ? config.physicalKeyboardEcho
+                  : config.onScreenKeyboardEcho;
           return echoType == PREF_ECHO_CHARACTERS || echoType == PREF_ECHO_CHARACTERS_AND_WORDS;
         }
 
@@ -1825,7 +1900,12 @@ public class TalkBackService extends AccessibilityService
     if (brailleImeForTalkBack != null) {
       brailleImeForTalkBack.onTalkBackResumed();
     }
-    brailleDisplay.start();
+    if (brailleDisplay != null) {
+      brailleDisplay.start();
+    }
+    SpeakingNodesCache.getInstance().setEnabled(true);
+    OrderedTraversalIndex.getInstance().setEnabled(true);
+    DirectionalTraversalIndex.getInstance().setEnabled(true);
   }
 
   @Override
@@ -1919,12 +1999,18 @@ public class TalkBackService extends AccessibilityService
     if (brailleImeForTalkBack != null) {
       brailleImeForTalkBack.onTalkBackSuspended();
     }
-    brailleDisplay.stop();
+    if (brailleDisplay != null) {
+      brailleDisplay.stop();
+    }
+    SpeakingNodesCache.getInstance().setEnabled(false);
+    OrderedTraversalIndex.getInstance().setEnabled(false);
+    DirectionalTraversalIndex.getInstance().setEnabled(false);
   }
 
   /** Shuts down the infrastructure in case it has been initialized. */
   private void shutdownInfrastructure() {
     setServiceState(ServiceStateListener.SERVICE_STATE_SHUTTING_DOWN);
+    deferredInfrastructureHandler.removeCallbacks(deferredInfrastructureInitializer);
     // we put it first to be sure that screen dimming would be removed even if code bellow
     // will crash by any reason. Because leaving user with dimmed screen is super bad
     // We check the instance against null to prevent the premature service destroy (aka destroy
@@ -1937,6 +2023,10 @@ public class TalkBackService extends AccessibilityService
       fullScreenReadActor.shutdown();
     }
 
+    SpeakingNodesCache.getInstance().setEnabled(false);
+    OrderedTraversalIndex.getInstance().setEnabled(false);
+    DirectionalTraversalIndex.getInstance().setEnabled(false);
+
     if (labelManager != null) {
       labelManager.shutdown();
     }
@@ -1978,6 +2068,20 @@ public class TalkBackService extends AccessibilityService
     accessibilityEventProcessor.postRemoveAccessibilityEventListener(listener);
   }
 
+  @Override
+  protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+    List<String> argList = Arrays.asList(args);
+    if (argList.contains(DUMP_ARG_PERFORMANCE)) {
+      Performance performance = Performance.getInstance();
+      performance.dumpLatencySnapshots(writer);
+      if (argList.contains(DUMP_ARG_START_LATENCY_WINDOW)) {
+        performance.startLatencyWindow();
+      }
+      return;
+    }
+    super.dump(fd, writer, args);
+  }
+
   /** Returns a boolean preference by resource id. */
   private boolean getBooleanPref(int prefKeyResId, int prefDefaultResId) {
     return SharedPreferencesUtils.getBooleanPref(
@@ -2032,6 +2136,7 @@ public class TalkBackService extends AccessibilityService
   /** Reloads service preferences. */
   private void reloadPreferences() {
     final Resources res = getResources();
+    final TalkBackConfig config = TalkBackConfig.reload(this);
 
     LogUtils.v(
         TAG,
@@ -2062,12 +2167,7 @@ public class TalkBackService extends AccessibilityService
             prefs, res, R.string.pref_log_overlay_key, R.bool.pref_log_overlay_default);
     diagnosticOverlayController.setLogOverlayEnabled(logOverlayEnabled);
 
-    accessibilityEventProcessor.setSpeakWhenScreenOff(
-        VerbosityPreferences.getPreferenceValueBool(
-            prefs,
-            res,
-            res.getString(R.string.pref_screenoff_key),
-            res.getBoolean(R.bool.pref_screenoff_default)));
+    accessibilityEventProcessor.setSpeakWhenScreenOff(config.speakWhenScreenOff);
 
     accessibilityEventProcessor.setDumpEventMask(
         prefs.getInt(res.getString(R.string.pref_dump_event_mask_key), 0));
@@ -2075,16 +2175,10 @@ public class TalkBackService extends AccessibilityService
     reloadSilenceOnProximity();
     reloadPreferenceLogLevel();
 
-    final boolean useSingleTap =
-        getBooleanPref(R.string.pref_single_tap_key, R.bool.pref_single_tap_default);
+    final boolean useSingleTap = config.singleTap;
     globalVariables.setUseSingleTap(useSingleTap);
     accessibilityFocusInterpreter.setSingleTapEnabled(useSingleTap);
-    accessibilityFocusInterpreter.setTypingMethod(
-        SharedPreferencesUtils.getIntFromStringPref(
-            prefs,
-            res,
-            R.string.pref_typing_confirmation_key,
-            R.string.pref_typing_confirmation_default));
+    accessibilityFocusInterpreter.setTypingMethod(config.typingMethod);
     accessibilityFocusInterpreter.setTypingLongPressDurationMs(
         SharedPreferencesUtils.getIntFromStringPref(
             prefs,
@@ -2124,22 +2218,9 @@ public class TalkBackService extends AccessibilityService
     pipeline.setOverlayEnabled(
         PreferencesActivityUtils.getDiagnosticPref(
             this, R.string.pref_tts_overlay_key, R.bool.pref_tts_overlay_default));
-    pipeline.setUseIntonation(
-        VerbosityPreferences.getPreferenceValueBool(
-            prefs,
-            res,
-            res.getString(R.string.pref_intonation_key),
-            res.getBoolean(R.bool.pref_intonation_default)));
-    pipeline.setUsePunctuation(
-        getBooleanPref(R.string.pref_punctuation_key, R.bool.pref_punctuation_default));
-    @CapitalLetterHandlingMethod
-    int capLetterFeedback =
-        Integer.parseInt(
-            VerbosityPreferences.getPreferenceValueString(
-                prefs,
-                res,
-                res.getString(R.string.pref_capital_letters_key),
-                res.getString(R.string.pref_capital_letters_default)));
+    pipeline.setUseIntonation(config.intonation);
+    pipeline.setUsePunctuation(config.punctuation);
+    @CapitalLetterHandlingMethod int capLetterFeedback = config.capitalLetterFeedback;
     speechController.setCapLetterFeedback(capLetterFeedback);
     globalVariables.setGlobalSayCapital(capLetterFeedback == CAPITAL_LETTERS_TYPE_SPEAK_CAP);
     pipeline.setSpeechPitch(
@@ -2150,11 +2231,8 @@ public class TalkBackService extends AccessibilityService
             prefs, res, R.string.pref_speech_rate_key, R.string.pref_speech_rate_default);
     pipeline.setSpeechRate(speechRate);
     globalVariables.setSpeechRate(speechRate);
-    int onScreenKeyboardPref = readOnScreenKeyboardEcho();
-    textEventInterpreter.setOnScreenKeyboardEcho(onScreenKeyboardPref);
-
-    int physicalKeyboardPref = readPhysicalKeyboardEcho();
-    textEventInterpreter.setPhysicalKeyboardEcho(physicalKeyboardPref);
+    textEventInterpreter.setOnScreenKeyboardEcho(config.onScreenKeyboardEcho);
+    textEventInterpreter.setPhysicalKeyboardEcho(config.physicalKeyboardEcho);
 
     boolean useAudioFocus =
         getBooleanPref(R.string.pref_use_audio_focus_key, R.bool.pref_use_audio_focus_default);
@@ -2180,8 +2258,7 @@ public class TalkBackService extends AccessibilityService
     feedbackController.setVolumeAdjustment(adjustment / 100.0f);
 
     boolean hapticEnabled =
-        FeatureSupport.isVibratorSupported(getApplicationContext())
-            && getBooleanPref(R.string.pref_vibration_key, R.bool.pref_vibration_default);
+        FeatureSupport.isVibratorSupported(getApplicationContext()) && config.vibration;
     feedbackController.setHapticEnabled(hapticEnabled);
 
     boolean auditoryEnabled =
@@ -2189,12 +2266,7 @@ public class TalkBackService extends AccessibilityService
     feedbackController.setAuditoryEnabled(auditoryEnabled);
 
     if (scrollPositionInterpreter != null) {
-      scrollPositionInterpreter.setVerboseAnnouncement(
-          VerbosityPreferences.getPreferenceValueBool(
-              prefs,
-              res,
-              res.getString(R.string.pref_verbose_scroll_announcement_key),
-              res.getBoolean(R.bool.pref_verbose_scroll_announcement_default)));
+      scrollPositionInterpreter.setVerboseAnnouncement(config.verboseScrollAnnouncement);
     }
 
     boolean isFingerprintGestureAssigned =
@@ -2213,31 +2285,13 @@ public class TalkBackService extends AccessibilityService
     // Update compositor preferences.
     if (compositor != null) {
       // Update preference: speak collection info.
-      boolean speakCollectionInfo =
-          VerbosityPreferences.getPreferenceValueBool(
-              prefs,
-              res,
-              res.getString(R.string.pref_speak_container_element_positions_key),
-              res.getBoolean(R.bool.pref_speak_container_element_positions_default));
-      globalVariables.setSpeakCollectionInfo(speakCollectionInfo);
+      globalVariables.setSpeakCollectionInfo(config.speakCollectionInfo);
 
       // Update preference: speak roles.
-      boolean speakRoles =
-          VerbosityPreferences.getPreferenceValueBool(
-              prefs,
-              res,
-              res.getString(R.string.pref_speak_roles_key),
-              res.getBoolean(R.bool.pref_speak_roles_default));
-      globalVariables.setSpeakRoles(speakRoles);
+      globalVariables.setSpeakRoles(config.speakRoles);
 
       // Update preference: speak system window titles.
-      boolean speakWindowTitle =
-          VerbosityPreferences.getPreferenceValueBool(
-              prefs,
-              res,
-              res.getString(R.string.pref_speak_system_window_titles_key),
-              res.getBoolean(R.bool.pref_speak_system_window_titles_default));
-      globalVariables.setSpeakSystemWindowTitles(speakWindowTitle);
+      globalVariables.setSpeakSystemWindowTitles(config.speakSystemWindowTitles);
 
       // Update preference: description order.
       String descriptionOrder =
@@ -2252,36 +2306,15 @@ public class TalkBackService extends AccessibilityService
       globalVariables.setSpeakElementIds(speakElementIds);
 
       // Update preference: speak usage hints.
-      boolean speakUsageHints =
-          VerbosityPreferences.getPreferenceValueBool(
-              prefs,
-              res,
-              res.getString(R.string.pref_a11y_hints_key),
-              res.getBoolean(R.bool.pref_a11y_hints_default));
-      globalVariables.setUsageHintEnabled(speakUsageHints);
+      globalVariables.setUsageHintEnabled(config.speakUsageHints);
+
+      // Descriptions composed with the previous preferences are stale.
+      compositor.getNodeDescriptionPrefetcher().invalidate();
     }
 
     FocusIndicatorUtils.applyFocusAppearancePreference(this, prefs, res);
   }
 
-  private int readOnScreenKeyboardEcho() {
-    return Integer.parseInt(
-        VerbosityPreferences.getPreferenceValueString(
-            prefs,
-            getResources(),
-            getResources().getString(R.string.pref_keyboard_echo_on_screen_key),
-            getResources().getString(R.string.pref_keyboard_echo_default)));
-  }
-
-  private int readPhysicalKeyboardEcho() {
-    return Integer.parseInt(
-        VerbosityPreferences.getPreferenceValueString(
-            prefs,
-            getResources(),
-            getResources().getString(R.string.pref_keyboard_echo_physical_key),
-            getResources().getString(R.string.pref_keyboard_echo_default)));
-  }
-
   private void reloadPreferenceLogLevel() {
     LogUtils.setLogLevel(
         SharedPreferencesUtils.getIntFromStringPref(
@@ -33,6 +33,7 @@ import com.google.android.accessibility.talkback.Feedback;
 import com.google.android.accessibility.talkback.Pipeline;
 import com.google.android.accessibility.talkback.R;
 import com.google.android.accessibility.talkback.TalkBackService;
+import com.google.android.accessibility.talkback.compositor.NodeDescriptionPrefetcher;
 import com.google.android.accessibility.talkback.eventprocessor.EventState;
 import com.google.android.accessibility.talkback.focusmanagement.AccessibilityFocusMonitor;
 import com.google.android.accessibility.talkback.focusmanagement.interpreter.ScreenStateMonitor;
@@ -97,6 +98,9 @@ public class FullScreenReadActor {
 
   private final ScreenStateMonitor.State screenState;
 
+  /** Composes the speech of the next nodes while the current node is spoken. */
+  private final NodeDescriptionPrefetcher nodeDescriptionPrefetcher;
+
   ////////////////////////////////////////////////////////////////////////////////////////////////
   // State-reading interface
 
@@ -122,7 +126,8 @@ public class FullScreenReadActor {
       AccessibilityFocusMonitor accessibilityFocusMonitor,
       TalkBackService service,
       SpeechController speechController,
-      ScreenStateMonitor.State screenState) {
+      ScreenStateMonitor.State screenState,
+      NodeDescriptionPrefetcher nodeDescriptionPrefetcher) {
     if (accessibilityFocusMonitor == null) {
       throw new IllegalStateException();
     }
@@ -134,6 +139,7 @@ public class FullScreenReadActor {
         ((PowerManager) service.getSystemService(Context.POWER_SERVICE))
             .newWakeLock(PowerManager.SCREEN_DIM_WAKE_LOCK | PowerManager.ON_AFTER_RELEASE, TAG);
     this.screenState = screenState;
+    this.nodeDescriptionPrefetcher = nodeDescriptionPrefetcher;
   }
 
   public void setPipeline(Pipeline.FeedbackReturner pipeline) {
@@ -267,6 +273,8 @@ public class FullScreenReadActor {
                     .build()))) {
       pipeline.returnFeedback(eventId, Feedback.sound(R.raw.complete));
       interrupt();
+    } else {
+      prefetchAfterFocus();
     }
   }
 
@@ -276,6 +284,17 @@ public class FullScreenReadActor {
         eventId, Feedback.focusDirection(SEARCH_FOCUS_FORWARD).setScroll(true))) {
       pipeline.returnFeedback(eventId, Feedback.sound(R.raw.complete));
       interrupt();
+    } else {
+      prefetchAfterFocus();
+    }
+  }
+
+  /** Composes the speech of the nodes after the new focus, while the focused node is spoken. */
+  private void prefetchAfterFocus() {
+    @Nullable AccessibilityNodeInfoCompat focus =
+        accessibilityFocusMonitor.getAccessibilityFocus(/* useInputFocusIfEmpty= */ false);
+    if (focus != null) {
+      nodeDescriptionPrefetcher.prefetchAfter(focus);
     }
   }
 
@@ -285,6 +304,7 @@ public class FullScreenReadActor {
     currentState = newState;
 
     speechController.setShouldInjectAutoReadingCallbacks(isActive(), nodeSpokenRunnable);
+    nodeDescriptionPrefetcher.setEnabled(isActive());
   }
 
   /**
@@ -65,19 +65,31 @@ import com.google.android.accessibility.talkback.imagecaption.RequestList;
 import com.google.android.accessibility.talkback.imagecaption.ScreenshotCaptureRequest;
 import com.google.android.accessibility.talkback.utils.SplitCompatUtils;
 import com.google.android.accessibility.utils.AccessibilityNode;
+import com.google.android.accessibility.utils.AccessibilityNodeInfoUtils;
+import com.google.android.accessibility.utils.AccessibilityServiceCompatUtils;
 import com.google.android.accessibility.utils.FeatureSupport;
+import com.google.android.accessibility.utils.Filter;
 import com.google.android.accessibility.utils.Performance;
 import com.google.android.accessibility.utils.SharedPreferencesUtils;
 import com.google.android.accessibility.utils.StringBuilderUtils;
+import com.google.android.accessibility.utils.caption.ImageCaptionDatabase;
+import com.google.android.accessibility.utils.caption.ImageCaptionDatabase.CaptionEntry;
 import com.google.android.accessibility.utils.caption.ImageCaptionStorage;
+import com.google.android.accessibility.utils.caption.ImageCaptionUtils;
 import com.google.android.accessibility.utils.caption.ImageNode;
 import com.google.android.accessibility.utils.input.WindowEventInterpreter.EventInterpretation;
 import com.google.android.accessibility.utils.input.WindowEventInterpreter.WindowEventHandler;
+import com.google.android.accessibility.utils.labeling.Label;
 import com.google.android.accessibility.utils.screenunderstanding.IconAnnotationsDetector;
+import com.google.android.libraries.accessibility.utils.bitmap.BitmapUtils;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** Performs image caption and manages related state. */
 public class ImageCaptioner extends Handler
@@ -94,12 +106,21 @@ public class ImageCaptioner extends Handler
   @VisibleForTesting static boolean SUPPORT_ICON_DETECTION = true;
   private static final int MSG_RESULT_TIMEOUT = 0;
   private static final long RESULT_MAX_WAITING_TIME_MS = 5000;
+  private static final int MSG_CAPTION_SCREEN = 1;
+  /** Time without content changes after which the unlabeled images on the screen are captioned. */
+  private static final long CAPTION_SCREEN_DELAY_MS = 1000;
+  /** Maximum number of images captioned from one screenshot. */
+  private static final int MAX_SCREEN_CAPTION_NODES = 50;
+  private static final int LOOKUP_THREADS = 2;
+  /** The ID of the icon detection requests of screen caption batches, which aren't announced. */
+  private static final int SCREEN_CAPTION_REQUEST_ID = -1;
 
   private final AccessibilityService service;
   private Pipeline.FeedbackReturner pipeline;
   private ActorState actorState;
   private final SharedPreferences prefs;
   private final ImageCaptionStorage imageCaptionStorage;
+  private final ImageCaptionDatabase imageCaptionDatabase;
   private final AccessibilityFocusMonitor accessibilityFocusMonitor;
   private final TalkBackAnalytics analytics;
   private final IconDetectionModuleDownloadPrompter iconDetectionModuleDownloadPrompter;
@@ -118,6 +139,16 @@ public class ImageCaptioner extends Handler
   private final RequestList<IconDetectionRequest> iconDetectionRequests =
       new RequestList<>(CAPTION_REQUEST_CAPACITY);
 
+  /** Crops and hashes images, and looks up their persisted results, off the main thread. */
+  private final ExecutorService lookupExecutor = Executors.newFixedThreadPool(LOOKUP_THREADS);
+  /** Incremented whenever the windows or their content change. */
+  private int contentGeneration = 0;
+  /** The content generation which was last captioned in a batch. */
+  private int captionedGeneration = -1;
+  @Nullable private ScreenCaptionBatch screenCaptionBatch;
+  /** Notified when results are added to {@link ImageCaptionStorage}. */
+  @Nullable private Runnable captionResultsChangedListener;
+
   public ImageCaptioner(
       AccessibilityService service,
       ImageCaptionStorage imageCaptionStorage,
@@ -126,6 +157,7 @@ public class ImageCaptioner extends Handler
     this.service = service;
     prefs = SharedPreferencesUtils.getSharedPreferences(service);
     this.imageCaptionStorage = imageCaptionStorage;
+    this.imageCaptionDatabase = new ImageCaptionDatabase(service);
     this.accessibilityFocusMonitor = accessibilityFocusMonitor;
     this.captionResults = new HashMap<>();
     this.analytics = analytics;
@@ -235,7 +267,9 @@ public class ImageCaptioner extends Handler
   @VisibleForTesting
   void shutdownIconDetector() {
     removeMessages(MSG_RESULT_TIMEOUT);
+    removeMessages(MSG_CAPTION_SCREEN);
     captionResults.clear();
+    screenCaptionBatch = null;
 
     if (iconAnnotationsDetector != null) {
       synchronized (this) {
@@ -251,6 +285,8 @@ public class ImageCaptioner extends Handler
   public void shutdown() {
     shutdownIconDetector();
     iconDetectionModuleDownloadPrompter.shutdown();
+    lookupExecutor.shutdownNow();
+    imageCaptionDatabase.shutdown();
     SharedPreferencesUtils.getSharedPreferences(service)
         .unregisterOnSharedPreferenceChangeListener(this);
   }
@@ -264,8 +300,26 @@ public class ImageCaptioner extends Handler
     this.actorState = actorState;
   }
 
+  /**
+   * Sets a listener which is run whenever caption results are added to {@link
+   * ImageCaptionStorage}, so that descriptions composed from the previous results can be dropped.
+   */
+  public void setCaptionResultsChangedListener(@Nullable Runnable listener) {
+    captionResultsChangedListener = listener;
+  }
+
+  private void notifyCaptionResultsChanged() {
+    if (captionResultsChangedListener != null) {
+      captionResultsChangedListener.run();
+    }
+  }
+
   @Override
   public void handle(EventInterpretation interpretation, @Nullable Performance.EventId eventId) {
+    if (interpretation.areWindowsStable()) {
+      onScreenContentChanged();
+    }
+
     // Performs other image captions if there is a node waited for recognition.
     if (interpretation.areWindowsStable() && queuedNode != null) {
       pipeline.returnFeedback(
@@ -334,6 +388,44 @@ public class ImageCaptioner extends Handler
       return true;
     }
 
+    // Results from a previous session don't need a screenshot.
+    AccessibilityNode wrapNode = AccessibilityNode.obtainCopy(node);
+    @Nullable String viewKey = getViewKeyForLookup(wrapNode, getSpeechLocale());
+    if (viewKey == null || lookupExecutor.isShutdown()) {
+      captionWithScreenshot(node, isUserRequested);
+      return true;
+    }
+    lookupExecutor.execute(
+        () -> {
+          @Nullable CaptionEntry persistedResult = imageCaptionDatabase.get(viewKey);
+          post(() -> onViewResultLookedUp(node, wrapNode, persistedResult, isUserRequested));
+        });
+    return true;
+  }
+
+  private void onViewResultLookedUp(
+      AccessibilityNodeInfoCompat node,
+      AccessibilityNode wrapNode,
+      @Nullable CaptionEntry persistedResult,
+      boolean isUserRequested) {
+    if (persistedResult == null) {
+      captionWithScreenshot(node, isUserRequested);
+      return;
+    }
+
+    analytics.onImageCaptionEvent(IMAGE_CAPTION_EVENT_IMAGE_CAPTION_CACHE_HIT);
+    LogUtils.v(TAG, "caption() persisted result exists for %s", wrapNode);
+    restoreCaptionResult(wrapNode, persistedResult);
+    if (isUserRequested) {
+      returnCaptionResult(
+          persistedResult.getOcrText(),
+          persistedResult.getIconLabel(),
+          /* isUserRequested= */ true);
+    }
+  }
+
+  /** Captions {@code node} from a screenshot, unless its icon label is already available. */
+  private void captionWithScreenshot(AccessibilityNodeInfoCompat node, boolean isUserRequested) {
     if (iconAnnotationsDetector != null) {
       if (!iconAnnotationsDetectorStarted) {
         startIconDetector();
@@ -346,14 +438,13 @@ public class ImageCaptioner extends Handler
       if (iconLabel != null) {
         analytics.onImageCaptionEvent(IMAGE_CAPTION_EVENT_IMAGE_CAPTION_CACHE_HIT);
         LogUtils.v(TAG, "perform() icon label exists %s", iconLabel);
-        return true;
+        return;
       }
     }
 
     screenshotRequests.addRequest(
         new ScreenshotCaptureRequest(
             service, node, this::handleScreenshotCaptureResponse, isUserRequested));
-    return true;
   }
 
   /**
@@ -368,6 +459,7 @@ public class ImageCaptioner extends Handler
     }
 
     iconAnnotationsDetector.clearWholeScreenCache();
+    onScreenContentChanged();
     return true;
   }
 
@@ -383,6 +475,7 @@ public class ImageCaptioner extends Handler
     }
 
     iconAnnotationsDetector.clearPartialScreenCache(rect);
+    onScreenContentChanged();
     return true;
   }
 
@@ -408,6 +501,10 @@ public class ImageCaptioner extends Handler
       return true;
     }
     imageCaptionStorage.invalidateCaptionForNode(focusedNode);
+    @Nullable String viewKey = ImageCaptionDatabase.getViewKey(focusedNode, getSpeechLocale());
+    if (viewKey != null) {
+      imageCaptionDatabase.remove(viewKey);
+    }
     return true;
   }
 
@@ -433,10 +530,62 @@ public class ImageCaptioner extends Handler
     }
 
     LogUtils.v(TAG, "onScreenCaptureFinish() taking screenshot is successful.");
+    if (lookupExecutor.isShutdown()) {
+      screenshotRequests.performNextRequest();
+      return;
+    }
+
+    // The same image may have been captioned before, possibly in a node without a resource name.
+    Rect bounds = new Rect();
+    node.getBoundsInScreen(bounds);
+    @Nullable CharSequence packageName = node.getPackageName();
+    Locale locale = getSpeechLocale();
+    lookupExecutor.execute(
+        () -> {
+          @Nullable String imageKey = getImageKey(packageName, bounds, screenCapture, locale);
+          @Nullable
+          CaptionEntry persistedResult =
+              (imageKey == null) ? null : imageCaptionDatabase.get(imageKey);
+          post(
+              () -> {
+                onImageResultLookedUp(
+                    node, screenCapture, isUserRequested, imageKey, persistedResult);
+                screenshotRequests.performNextRequest();
+              });
+        });
+  }
+
+  private void onImageResultLookedUp(
+      AccessibilityNodeInfoCompat node,
+      Bitmap screenCapture,
+      boolean isUserRequested,
+      @Nullable String imageKey,
+      @Nullable CaptionEntry persistedResult) {
+    if (persistedResult != null) {
+      analytics.onImageCaptionEvent(IMAGE_CAPTION_EVENT_IMAGE_CAPTION_CACHE_HIT);
+      LogUtils.v(TAG, "onScreenCaptureFinish() persisted result exists for %s", imageKey);
+      AccessibilityNode wrapNode = AccessibilityNode.obtainCopy(node);
+      restoreCaptionResult(wrapNode, persistedResult);
+      persistCaptionResult(
+          wrapNode,
+          /* imageKey= */ null,
+          persistedResult.getOcrText(),
+          persistedResult.getIconLabel());
+      @Nullable
+      AccessibilityNode focusedNode =
+          AccessibilityNode.takeOwnership(
+              accessibilityFocusMonitor.getAccessibilityFocus(/* useInputFocusIfEmpty= */ false));
+      if (wrapNode.equals(focusedNode)) {
+        returnCaptionResult(
+            persistedResult.getOcrText(), persistedResult.getIconLabel(), isUserRequested);
+      }
+      return;
+    }
+
     requestId++;
 
     CaptionResult captionResult =
-        new CaptionResult(AccessibilityNode.obtainCopy(node), isUserRequested);
+        new CaptionResult(AccessibilityNode.obtainCopy(node), isUserRequested, imageKey);
     captionResults.put(requestId, captionResult);
     sendResultTimeoutMessage();
 
@@ -450,7 +599,6 @@ public class ImageCaptioner extends Handler
 
     analytics.onImageCaptionEvent(IMAGE_CAPTION_EVENT_OCR_PERFORM);
     addCaptionRequest(requestId, node, screenCapture, isUserRequested);
-    screenshotRequests.performNextRequest();
   }
 
   @VisibleForTesting
@@ -466,6 +614,8 @@ public class ImageCaptioner extends Handler
 
     handleResult(id, node, OCR, result, isUserRequested);
     imageCaptionStorage.updateCharacterCaptionResult(node, result);
+    persistCaptionResult(node, getImageKey(id), /* ocrText= */ result, /* iconLabel= */ null);
+    notifyCaptionResultsChanged();
   }
 
   @VisibleForTesting
@@ -482,6 +632,8 @@ public class ImageCaptioner extends Handler
 
     handleResult(id, node, ICON_LABEL, result, isUserRequested);
     imageCaptionStorage.updateDetectedIconLabel(node, result);
+    persistCaptionResult(node, getImageKey(id), /* ocrText= */ null, /* iconLabel= */ result);
+    notifyCaptionResultsChanged();
   }
 
   @VisibleForTesting
@@ -537,6 +689,309 @@ public class ImageCaptioner extends Handler
     return screenshotRequests.getWaitingRequestSize();
   }
 
+  /**
+   * Returns the key for the persisted results of the image inside {@code bounds} of {@code
+   * screenCapture}, or {@code null} if the image isn't on the screenshot. Runs on a worker thread.
+   */
+  @Nullable
+  private static String getImageKey(
+      @Nullable CharSequence packageName, Rect bounds, Bitmap screenCapture, Locale locale) {
+    if (packageName == null) {
+      return null;
+    }
+    @Nullable Bitmap image = BitmapUtils.cropBitmap(screenCapture, bounds);
+    if (image == null) {
+      return null;
+    }
+    return ImageCaptionDatabase.getImageKey(
+        packageName, ImageCaptionUtils.computeImageHash(image), locale);
+  }
+
+  @Nullable
+  private String getImageKey(int id) {
+    @Nullable CaptionResult captionResult = captionResults.get(id);
+    return (captionResult == null) ? null : captionResult.imageKey;
+  }
+
+  /** Copies persisted results into {@link ImageCaptionStorage}, for the compositor to read. */
+  private void restoreCaptionResult(AccessibilityNode node, CaptionEntry persistedResult) {
+    if (!TextUtils.isEmpty(persistedResult.getOcrText())) {
+      imageCaptionStorage.updateCharacterCaptionResult(node, persistedResult.getOcrText());
+    }
+    if (!TextUtils.isEmpty(persistedResult.getIconLabel())) {
+      imageCaptionStorage.updateDetectedIconLabel(node, persistedResult.getIconLabel());
+    }
+    notifyCaptionResultsChanged();
+  }
+
+  /** Persists a result under the view key of {@code node} and under {@code imageKey}. */
+  private void persistCaptionResult(
+      AccessibilityNode node,
+      @Nullable String imageKey,
+      @Nullable CharSequence ocrText,
+      @Nullable CharSequence iconLabel) {
+    persistCaptionResult(node, getSpeechLocale(), ocrText, iconLabel);
+    if (imageKey != null) {
+      imageCaptionDatabase.put(imageKey, ocrText, iconLabel);
+    }
+  }
+
+  /**
+   * Persists a result under the view key of {@code node}. Once different icon labels have been
+   * detected for the view, such as for a play/pause toggle, its persisted results are removed
+   * instead, since the view key can't tell its states apart.
+   */
+  private void persistCaptionResult(
+      AccessibilityNode node,
+      Locale locale,
+      @Nullable CharSequence ocrText,
+      @Nullable CharSequence iconLabel) {
+    @Nullable String viewKey = ImageCaptionDatabase.getViewKey(node, locale);
+    if (viewKey == null) {
+      return;
+    }
+    if (imageCaptionStorage.isIconLabelUnstable(node)) {
+      imageCaptionDatabase.remove(viewKey);
+    } else {
+      imageCaptionDatabase.put(viewKey, ocrText, iconLabel);
+    }
+  }
+
+  /**
+   * Returns the view key under which the results of {@code node} may have been persisted, or {@code
+   * null} if they shouldn't be looked up. Views with an entry in {@link ImageCaptionStorage} are
+   * skipped, since the storage holds back their results when they are invalid or not stable.
+   */
+  @Nullable
+  private String getViewKeyForLookup(AccessibilityNode node, Locale locale) {
+    return imageCaptionStorage.hasCaptionEntry(node)
+        ? null
+        : ImageCaptionDatabase.getViewKey(node, locale);
+  }
+
+  /** Captions the screen in a batch once its content stops changing. */
+  private void onScreenContentChanged() {
+    contentGeneration++;
+    removeMessages(MSG_CAPTION_SCREEN);
+    if (isAutomaticIconDetectionEnabled()) {
+      sendEmptyMessageDelayed(MSG_CAPTION_SCREEN, CAPTION_SCREEN_DELAY_MS);
+    }
+  }
+
+  /**
+   * Detects the icons of all unlabeled images in the active window from a single screenshot, so
+   * that their labels are cached before the images are focused. The results are not announced.
+   */
+  private void captionScreen() {
+    // A batch whose screenshot request was discarded is replaced once the screen changes.
+    if (!isAutomaticIconDetectionEnabled()
+        || (screenCaptionBatch != null && isCurrentBatch(screenCaptionBatch))
+        || captionedGeneration == contentGeneration) {
+      return;
+    }
+    if (!captionResults.isEmpty()
+        || screenshotRequests.getWaitingRequestSize() > 0
+        || iconDetectionRequests.getWaitingRequestSize() > 0) {
+      // Requests for the focused node take precedence.
+      sendEmptyMessageDelayed(MSG_CAPTION_SCREEN, CAPTION_SCREEN_DELAY_MS);
+      return;
+    }
+    captionedGeneration = contentGeneration;
+
+    @Nullable
+    List<AccessibilityNodeInfoCompat> nodes =
+        AccessibilityNodeInfoUtils.getMatchingDescendantsOrRoot(
+            AccessibilityServiceCompatUtils.getRootInActiveWindow(service),
+            new Filter.NodeCompat(this::needsScreenCaption));
+    if (nodes == null || nodes.isEmpty()) {
+      return;
+    }
+    if (nodes.size() > MAX_SCREEN_CAPTION_NODES) {
+      nodes = nodes.subList(0, MAX_SCREEN_CAPTION_NODES);
+    }
+
+    ScreenCaptionBatch batch = new ScreenCaptionBatch(contentGeneration, getSpeechLocale(), nodes);
+    for (ScreenCaptionItem item : batch.items) {
+      item.viewKey = getViewKeyForLookup(item.node, batch.locale);
+    }
+    screenCaptionBatch = batch;
+    LogUtils.v(TAG, "captionScreen() nodes=%d", nodes.size());
+    startIconDetector();
+    // Queues the screenshot behind the requests for the focused node, since screenshots are rate
+    // limited by the framework.
+    screenshotRequests.addRequest(
+        new ScreenshotCaptureRequest(
+            service,
+            nodes.get(0),
+            (node, screenCapture, isUserRequested) -> {
+              onScreenCaptionScreenshot(batch, screenCapture);
+              screenshotRequests.performNextRequest();
+            },
+            /* isUserRequested= */ false));
+  }
+
+  private boolean needsScreenCaption(AccessibilityNodeInfoCompat node) {
+    return node.isVisibleToUser()
+        && ImageCaptionUtils.needImageCaption(service, node)
+        && actorState.getCustomLabel().getLabelIdForViewId(node) == Label.NO_ID
+        && imageCaptionStorage.getCaptionResults(node) == null;
+  }
+
+  private void onScreenCaptionScreenshot(
+      ScreenCaptionBatch batch, @Nullable Bitmap screenCapture) {
+    if (!isCurrentBatch(batch)) {
+      if (screenCapture != null) {
+        screenCapture.recycle();
+      }
+      return;
+    }
+    if (screenCapture == null || lookupExecutor.isShutdown()) {
+      LogUtils.v(TAG, "onScreenCaptionScreenshot() taking screenshot is failed.");
+      if (screenCapture != null) {
+        screenCapture.recycle();
+      }
+      screenCaptionBatch = null;
+      return;
+    }
+
+    batch.screenCapture = screenCapture;
+    for (ScreenCaptionItem item : batch.items) {
+      lookupExecutor.execute(
+          () -> {
+            @Nullable CaptionEntry persistedResult = lookUpScreenCaptionItem(batch, item);
+            post(() -> onScreenCaptionItemLookedUp(batch, item, persistedResult));
+          });
+    }
+  }
+
+  /**
+   * Computes the image key of {@code item} and returns its persisted results, if any. Runs on a
+   * worker thread.
+   */
+  @Nullable
+  private CaptionEntry lookUpScreenCaptionItem(ScreenCaptionBatch batch, ScreenCaptionItem item) {
+    @Nullable
+    CaptionEntry persistedResult =
+        (item.viewKey == null) ? null : imageCaptionDatabase.get(item.viewKey);
+    if (persistedResult != null) {
+      return persistedResult;
+    }
+    item.imageKey = getImageKey(item.packageName, item.bounds, batch.screenCapture, batch.locale);
+    return (item.imageKey == null) ? null : imageCaptionDatabase.get(item.imageKey);
+  }
+
+  private void onScreenCaptionItemLookedUp(
+      ScreenCaptionBatch batch, ScreenCaptionItem item, @Nullable CaptionEntry persistedResult) {
+    boolean isCurrent = isCurrentBatch(batch);
+    if (isCurrent) {
+      if (persistedResult != null) {
+        restoreCaptionResult(item.node, persistedResult);
+        if (item.imageKey != null) {
+          // Found by image, so store it by view too.
+          persistCaptionResult(
+              item.node,
+              batch.locale,
+              persistedResult.getOcrText(),
+              persistedResult.getIconLabel());
+        }
+      } else {
+        batch.uncaptionedItems.add(item);
+      }
+    }
+    if (--batch.pendingLookups > 0) {
+      return;
+    }
+
+    // No worker crops the screenshot any more.
+    if (!isCurrent || batch.uncaptionedItems.isEmpty() || iconAnnotationsDetector == null) {
+      if (isCurrent) {
+        screenCaptionBatch = null;
+      }
+      batch.screenCapture.recycle();
+      return;
+    }
+    analytics.onImageCaptionEvent(IMAGE_CAPTION_EVENT_ICON_DETECT_PERFORM);
+    // Queues the detection behind the requests for the focused node, since the detector processes
+    // one screenshot at a time. The labels are read before the next request replaces the results.
+    iconDetectionRequests.addRequest(
+        new IconDetectionRequest(
+            SCREEN_CAPTION_REQUEST_ID,
+            batch.uncaptionedItems.get(0).compatNode,
+            batch.screenCapture,
+            iconAnnotationsDetector,
+            batch.locale,
+            /* onFinishListener= */ (requestId, node, result, isUserRequested) -> {
+              onScreenCaptionIconDetection(batch, /* success= */ true);
+              iconDetectionRequests.performNextRequest();
+            },
+            /* onErrorListener= */ (requestId, node, errorCode, isUserRequested) -> {
+              LogUtils.v(
+                  TAG,
+                  "onScreenCaptionIconDetection() error=%s",
+                  CaptionRequest.errorName(errorCode));
+              onScreenCaptionIconDetection(batch, /* success= */ false);
+              iconDetectionRequests.performNextRequest();
+            },
+            /* isUserRequested= */ false));
+  }
+
+  private void onScreenCaptionIconDetection(ScreenCaptionBatch batch, boolean success) {
+    if (isCurrentBatch(batch)) {
+      screenCaptionBatch = null;
+      if (success && iconAnnotationsDetector != null) {
+        labelScreenCaptionItems(batch, iconAnnotationsDetector);
+      } else {
+        analytics.onImageCaptionEvent(IMAGE_CAPTION_EVENT_ICON_DETECT_FAIL);
+      }
+    }
+    if (success) {
+      // The detector is done with the screenshot. After a timeout, it may still be processing it.
+      batch.screenCapture.recycle();
+    }
+  }
+
+  /** Stores the labels of the detected icons of the items without persisted results. */
+  private void labelScreenCaptionItems(
+      ScreenCaptionBatch batch, IconAnnotationsDetector iconAnnotationsDetector) {
+    analytics.onImageCaptionEvent(IMAGE_CAPTION_EVENT_ICON_DETECT_SUCCEED);
+    boolean resultsChanged = false;
+    for (ScreenCaptionItem item : batch.uncaptionedItems) {
+      @Nullable
+      CharSequence iconLabel = iconAnnotationsDetector.getIconLabel(batch.locale, item.compatNode);
+      if (!TextUtils.isEmpty(iconLabel)) {
+        resultsChanged = true;
+        imageCaptionStorage.updateDetectedIconLabel(item.node, iconLabel);
+        persistCaptionResult(item.node, batch.locale, /* ocrText= */ null, iconLabel);
+        if (item.imageKey != null) {
+          imageCaptionDatabase.put(item.imageKey, /* ocrText= */ null, iconLabel);
+        }
+      }
+    }
+    if (resultsChanged) {
+      notifyCaptionResultsChanged();
+    }
+  }
+
+  /** Returns whether {@code batch} is still running and the screen hasn't changed since. */
+  private boolean isCurrentBatch(ScreenCaptionBatch batch) {
+    if (screenCaptionBatch != batch) {
+      return false;
+    }
+    if (batch.generation != contentGeneration) {
+      screenCaptionBatch = null;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Checks if icons are described automatically, which is the case while the icon detection module
+   * is installed and the user hasn't uninstalled it.
+   */
+  private boolean isAutomaticIconDetectionEnabled() {
+    return iconAnnotationsDetector != null && !isIconDetectedUninstalled();
+  }
+
   /** Checks if the user has executed uninstallation of the icon detection. */
   private boolean isIconDetectedUninstalled() {
     return prefs.getBoolean(service.getString(R.string.pref_icon_detection_uninstalled), false);
@@ -663,6 +1118,8 @@ public class ImageCaptioner extends Handler
         }
       }
       captionResults.clear();
+    } else if (msg.what == MSG_CAPTION_SCREEN) {
+      captionScreen();
     }
   }
 
@@ -670,14 +1127,18 @@ public class ImageCaptioner extends Handler
   private static class CaptionResult {
     private final AccessibilityNode node;
     private final boolean isUserRequest;
+    /** The key for persisting the results of the captioned image, if the image was found. */
+    @Nullable private final String imageKey;
     private boolean isOcrFinished;
     @Nullable private CharSequence ocrText;
     private boolean isIconDetectionFinished;
     @Nullable private CharSequence iconLabel;
 
-    private CaptionResult(AccessibilityNode node, boolean isUserRequest) {
+    private CaptionResult(
+        AccessibilityNode node, boolean isUserRequest, @Nullable String imageKey) {
       this.node = node;
       this.isUserRequest = isUserRequest;
+      this.imageKey = imageKey;
     }
 
     private void setOcrText(CharSequence ocrText) {
@@ -694,4 +1155,44 @@ public class ImageCaptioner extends Handler
       return isOcrFinished && isIconDetectionFinished;
     }
   }
+
+  /** The images of one screen which are captioned from the same screenshot. */
+  private static class ScreenCaptionBatch {
+    private final int generation;
+    private final Locale locale;
+    private final List<ScreenCaptionItem> items = new ArrayList<>();
+    /** The items without persisted results, which need icon detection. */
+    private final List<ScreenCaptionItem> uncaptionedItems = new ArrayList<>();
+    private int pendingLookups;
+    private Bitmap screenCapture;
+
+    private ScreenCaptionBatch(
+        int generation, Locale locale, List<AccessibilityNodeInfoCompat> nodes) {
+      this.generation = generation;
+      this.locale = locale;
+      for (AccessibilityNodeInfoCompat node : nodes) {
+        items.add(new ScreenCaptionItem(node));
+      }
+      pendingLookups = items.size();
+    }
+  }
+
+  /** An image in a {@link ScreenCaptionBatch}. */
+  private static class ScreenCaptionItem {
+    private final AccessibilityNodeInfoCompat compatNode;
+    private final AccessibilityNode node;
+    @Nullable private final CharSequence packageName;
+    private final Rect bounds = new Rect();
+    /** The key of the persisted results of the view, if they may be looked up. */
+    @Nullable private String viewKey;
+    /** The key of the persisted results of the image, once it has been computed. */
+    @Nullable private volatile String imageKey;
+
+    private ScreenCaptionItem(AccessibilityNodeInfoCompat compatNode) {
+      this.compatNode = compatNode;
+      node = AccessibilityNode.obtainCopy(compatNode);
+      packageName = compatNode.getPackageName();
+      compatNode.getBoundsInScreen(bounds);
+    }
+  }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.talkback.actor.search;
+
+import android.util.SparseArray;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An n-gram index over the texts of cached nodes, which finds the nodes whose text may contain a
+ * keyword without scanning every text.
+ *
+ * <p>Texts are normalized by {@link #normalize(CharSequence)} before indexing, and every n-gram of
+ * up to {@link #MAX_GRAM_LENGTH} characters is indexed. A keyword longer than that is looked up by
+ * intersecting the nodes of all its n-grams, so the result is a superset of the nodes which contain
+ * it. Callers confirm candidates with {@link StringMatcher}.
+ *
+ * <p>Nodes are identified by a slot number chosen by the caller.
+ */
+final class NodeTextIndex {
+  private static final int MAX_GRAM_LENGTH = 3;
+  private static final int CHAR_BITS = 16;
+
+  /** Maps each n-gram to the slots whose text contains it. */
+  private final Map<Long, BitSet> gramToSlots = new HashMap<>();
+  /** The n-grams indexed for each slot, so that the slot can be removed. */
+  private final SparseArray<long[]> slotToGrams = new SparseArray<>();
+
+  /** Indexes {@code text} under {@code slot}, replacing the text previously indexed there. */
+  void put(int slot, CharSequence text) {
+    remove(slot);
+
+    String normalized = normalize(text);
+    Set<Long> grams = new HashSet<>();
+    for (int start = 0; start < normalized.length(); start++) {
+      int maxEnd = Math.min(start + MAX_GRAM_LENGTH, normalized.length());
+      for (int end = start + 1; end <= maxEnd; end++) {
+        grams.add(encodeGram(normalized, start, end));
+      }
+    }
+
+    long[] slotGrams = new long[grams.size()];
+    int i = 0;
+    for (Long gram : grams) {
+      slotGrams[i++] = gram;
+      BitSet slots = gramToSlots.get(gram);
+      if (slots == null) {
+        slots = new BitSet();
+        gramToSlots.put(gram, slots);
+      }
+      slots.set(slot);
+    }
+    slotToGrams.put(slot, slotGrams);
+  }
+
+  /** Removes the text indexed under {@code slot}, if any. */
+  void remove(int slot) {
+    long[] slotGrams = slotToGrams.get(slot);
+    if (slotGrams == null) {
+      return;
+    }
+    slotToGrams.remove(slot);
+    for (long gram : slotGrams) {
+      BitSet slots = gramToSlots.get(gram);
+      slots.clear(slot);
+      if (slots.isEmpty()) {
+        gramToSlots.remove(gram);
+      }
+    }
+  }
+
+  void clear() {
+    gramToSlots.clear();
+    slotToGrams.clear();
+  }
+
+  /**
+   * Returns the slots whose text may contain {@code normalizedKeyword}, which must have been
+   * normalized by {@link #normalize(CharSequence)}. The result may be modified by the caller.
+   */
+  BitSet findCandidates(String normalizedKeyword) {
+    int length = normalizedKeyword.length();
+    if (length == 0) {
+      return new BitSet();
+    }
+    if (length <= MAX_GRAM_LENGTH) {
+      BitSet slots = gramToSlots.get(encodeGram(normalizedKeyword, 0, length));
+      return (slots == null) ? new BitSet() : (BitSet) slots.clone();
+    }
+
+    BitSet candidates = null;
+    for (int start = 0; start + MAX_GRAM_LENGTH <= length; start++) {
+      BitSet slots =
+          gramToSlots.get(encodeGram(normalizedKeyword, start, start + MAX_GRAM_LENGTH));
+      if (slots == null) {
+        return new BitSet();
+      }
+      if (candidates == null) {
+        candidates = (BitSet) slots.clone();
+      } else {
+        candidates.and(slots);
+      }
+      if (candidates.isEmpty()) {
+        break;
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * Case-folds {@code text} and collapses each run of whitespace into a single space, the same way
+   * that {@link StringMatcher} compares texts.
+   */
+  static String normalize(CharSequence text) {
+    StringBuilder normalized = new StringBuilder(text.length());
+    boolean inWhitespace = false;
+    for (int i = 0; i < text.length(); ) {
+      int codePoint = Character.codePointAt(text, i);
+      i += Character.charCount(codePoint);
+      if (Character.isWhitespace(codePoint)) {
+        if (!inWhitespace) {
+          normalized.append(' ');
+          inWhitespace = true;
+        }
+        continue;
+      }
+      inWhitespace = false;
+      normalized.appendCodePoint(Character.toLowerCase(Character.toUpperCase(codePoint)));
+    }
+    return normalized.toString();
+  }
+
+  /** Packs the characters and length of an n-gram into one key. */
+  private static long encodeGram(String text, int start, int end) {
+    long gram = end - start;
+    for (int i = start; i < end; i++) {
+      gram = (gram << CHAR_BITS) | text.charAt(i);
+    }
+    return gram;
+  }
+}
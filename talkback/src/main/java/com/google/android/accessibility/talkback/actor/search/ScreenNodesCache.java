@@ -16,29 +16,89 @@
 
 package com.google.android.accessibility.talkback.actor.search;
 
+import android.text.TextUtils;
+import android.view.accessibility.AccessibilityEvent;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import com.google.android.accessibility.utils.AccessibilityEventListener;
+import com.google.android.accessibility.utils.AccessibilityEventUtils;
 import com.google.android.accessibility.utils.AccessibilityNode;
 import com.google.android.accessibility.utils.AccessibilityWindow;
 import com.google.android.accessibility.utils.Filter;
+import com.google.android.accessibility.utils.Performance.EventId;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-/** Caches every node in current screen */
-final class ScreenNodesCache {
+/**
+ * Caches every node in current screen, along with a {@link NodeTextIndex} of their texts.
+ *
+ * <p>While a window is cached, the cache must receive the events from {@link #getEventTypes()}.
+ * Text changes update single nodes in place; structural changes make the cache reload the window
+ * the next time it is read.
+ */
+final class ScreenNodesCache implements AccessibilityEventListener {
+  private static final int EVENT_MASK =
+      AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+          | AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED
+          | AccessibilityEvent.TYPE_VIEW_SCROLLED;
+
+  private static final int TEXT_CHANGE_TYPES =
+      AccessibilityEvent.CONTENT_CHANGE_TYPE_TEXT
+          | AccessibilityEvent.CONTENT_CHANGE_TYPE_CONTENT_DESCRIPTION;
+
+  /** Cached nodes in traversal order, indexed by slot. Removed nodes leave a {@code null} slot. */
   private final List<AccessibilityNode> cachedNodes = new ArrayList<>();
 
+  private final Map<AccessibilityNode, Integer> nodeToSlot = new HashMap<>();
+  private final NodeTextIndex textIndex = new NodeTextIndex();
+
+  @Nullable private AccessibilityWindow cachedWindow;
+  private int cachedWindowId = AccessibilityWindow.WINDOW_ID_UNKNOWN;
+  @Nullable private Filter<AccessibilityNodeInfoCompat> cachedFilter;
+  private boolean stale;
+
   public ScreenNodesCache() {}
 
   @NonNull
   synchronized List<AccessibilityNode> getCachedNodes() {
-    return cachedNodes.isEmpty() ? Collections.emptyList() : new ArrayList<>(cachedNodes);
+    reloadIfStale();
+    List<AccessibilityNode> nodes = new ArrayList<>(nodeToSlot.size());
+    for (AccessibilityNode node : cachedNodes) {
+      if (node != null) {
+        nodes.add(node);
+      }
+    }
+    return nodes.isEmpty() ? Collections.emptyList() : nodes;
+  }
+
+  /**
+   * Returns the cached nodes, in traversal order, whose text may contain {@code keyword}. The
+   * caller must still match the keyword against the text of each node.
+   */
+  @NonNull
+  synchronized List<AccessibilityNode> findCandidates(String keyword) {
+    reloadIfStale();
+    BitSet slots = textIndex.findCandidates(NodeTextIndex.normalize(keyword));
+    if (slots.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<AccessibilityNode> candidates = new ArrayList<>(slots.cardinality());
+    for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+      candidates.add(cachedNodes.get(slot));
+    }
+    return candidates;
   }
 
   synchronized void clearCachedNodes() {
-    cachedNodes.clear();
+    clearIndex();
+    cachedWindow = null;
+    cachedWindowId = AccessibilityWindow.WINDOW_ID_UNKNOWN;
+    cachedFilter = null;
   }
 
   /** Caches nodes in current window with node filter. */
@@ -51,10 +111,106 @@ final class ScreenNodesCache {
       return;
     }
 
+    cachedWindow = currentWindow;
+    cachedWindowId = currentWindow.getId();
+    cachedFilter = filter;
+    loadWindow();
+  }
+
+  @Override
+  public int getEventTypes() {
+    return EVENT_MASK;
+  }
+
+  @Override
+  public synchronized void onAccessibilityEvent(AccessibilityEvent event, EventId eventId) {
+    if (cachedWindow == null
+        || stale
+        || AccessibilityEventUtils.getWindowId(event) != cachedWindowId) {
+      return;
+    }
+
+    switch (event.getEventType()) {
+      case AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED:
+        {
+          int changeTypes = event.getContentChangeTypes();
+          if (changeTypes != AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED
+              && (changeTypes & AccessibilityEvent.CONTENT_CHANGE_TYPE_SUBTREE) == 0) {
+            if ((changeTypes & TEXT_CHANGE_TYPES) != 0) {
+              updateNode(AccessibilityEventUtils.sourceCompat(event));
+            }
+            break;
+          }
+          stale = true;
+          break;
+        }
+      case AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED:
+        updateNode(AccessibilityEventUtils.sourceCompat(event));
+        break;
+      case AccessibilityEvent.TYPE_VIEW_SCROLLED:
+        // Scrolling changes which nodes are visible.
+        stale = true;
+        break;
+      default: // fall out
+    }
+  }
+
+  /** Re-indexes the text of {@code source}, adding or removing it from the cache as needed. */
+  private void updateNode(@Nullable AccessibilityNodeInfoCompat source) {
+    if (source == null || !source.refresh()) {
+      stale = true;
+      return;
+    }
+    AccessibilityNode node = AccessibilityNode.takeOwnership(source);
+    Integer slot = nodeToSlot.remove(node);
+    if (slot != null) {
+      textIndex.remove(slot);
+      cachedNodes.set(slot, null);
+    }
+    if (!cachedFilter.accept(source)) {
+      return;
+    }
+    if (slot == null) {
+      // The node is newly searchable, so it goes after the nodes found in traversal order.
+      slot = cachedNodes.size();
+      cachedNodes.add(node);
+    } else {
+      cachedNodes.set(slot, node);
+    }
+    addToIndex(node, slot);
+  }
+
+  private void reloadIfStale() {
+    if (stale) {
+      clearIndex();
+      loadWindow();
+    }
+  }
+
+  private void loadWindow() {
     // Caches nodes matched filter in current window.
-    AccessibilityNode root = currentWindow.getRoot();
+    AccessibilityNode root = cachedWindow.getRoot();
     if (root != null) {
-      cachedNodes.addAll(root.getMatchingDescendantsOrRoot(filter));
+      for (AccessibilityNode node : root.getMatchingDescendantsOrRoot(cachedFilter)) {
+        int slot = cachedNodes.size();
+        cachedNodes.add(node);
+        addToIndex(node, slot);
+      }
+    }
+  }
+
+  private void addToIndex(AccessibilityNode node, int slot) {
+    nodeToSlot.put(node, slot);
+    CharSequence nodeText = node.getNodeText();
+    if (!TextUtils.isEmpty(nodeText)) {
+      textIndex.put(slot, nodeText);
     }
   }
+
+  private void clearIndex() {
+    cachedNodes.clear();
+    nodeToSlot.clear();
+    textIndex.clear();
+    stale = false;
+  }
 }
@@ -24,11 +24,13 @@ import com.google.android.accessibility.talkback.actor.DirectionNavigationActor;
 import com.google.android.accessibility.talkback.actor.search.SearchState.MatchedNodeInfo;
 import com.google.android.accessibility.talkback.actor.search.StringMatcher.MatchResult;
 import com.google.android.accessibility.talkback.labeling.CustomLabelManager;
+import com.google.android.accessibility.utils.AccessibilityEventListener;
 import com.google.android.accessibility.utils.AccessibilityNode;
 import com.google.android.accessibility.utils.AccessibilityNodeInfoUtils;
 import com.google.android.accessibility.utils.AccessibilityWindow;
 import com.google.android.accessibility.utils.Filter;
 import java.util.List;
+import java.util.regex.Pattern;
 
 /** Searches keyword in screen nodes. */
 public final class SearchScreenNodeStrategy {
@@ -98,9 +100,11 @@ public final class SearchScreenNodeStrategy {
     // Get all matched nodes per window into a list.
     SearchState state = new SearchState();
 
-    for (AccessibilityNode node : nodesCache.getCachedNodes()) {
+    // Only match against the nodes whose indexed text contains every n-gram of the keyword.
+    Pattern keywordPattern = StringMatcher.convertKeywordToPattern(trimmedUserInput);
+    for (AccessibilityNode node : nodesCache.findCandidates(trimmedUserInput)) {
       List<MatchResult> matchResults =
-          StringMatcher.findMatches(node.getNodeText().toString(), trimmedUserInput);
+          StringMatcher.findMatches(node.getNodeText().toString(), keywordPattern);
 
       if (matchResults.size() > 0) {
         state.addResult(new MatchedNodeInfo(node, matchResults));
@@ -135,6 +139,11 @@ public final class SearchScreenNodeStrategy {
     nodesCache.clearCachedNodes();
   }
 
+  /** Returns the listener which keeps the cached nodes up to date with content changes. */
+  AccessibilityEventListener getNodesCacheUpdater() {
+    return nodesCache;
+  }
+
   /**
    * Moves focus to next node after current focused-node, which matches target-keyword. Returns
    * success flag.
@@ -154,6 +163,7 @@ public final class SearchScreenNodeStrategy {
     }
 
     lastKeyword = trimmedUserInput;
+    Pattern keywordPattern = StringMatcher.convertKeywordToPattern(trimmedUserInput);
 
     // Find node matching target keyword, and focus that node.
     return directionNavigator.searchAndFocus(
@@ -177,7 +187,7 @@ public final class SearchScreenNodeStrategy {
 
             // Check for target-text match.
             List<MatchResult> matches =
-                StringMatcher.findMatches(nodeText.toString(), trimmedUserInput);
+                StringMatcher.findMatches(nodeText.toString(), keywordPattern);
             return (matches != null) && (matches.size() > 0);
           }
         });
@@ -60,6 +60,7 @@ import com.google.android.accessibility.talkback.actor.search.SearchState.Matche
 import com.google.android.accessibility.talkback.actor.search.StringMatcher.MatchResult;
 import com.google.android.accessibility.talkback.focusmanagement.NavigationTarget;
 import com.google.android.accessibility.talkback.labeling.CustomLabelManager;
+import com.google.android.accessibility.utils.AccessibilityEventListener;
 import com.google.android.accessibility.utils.AccessibilityNode;
 import com.google.android.accessibility.utils.AccessibilityNodeInfoUtils;
 import com.google.android.accessibility.utils.AccessibilityServiceCompatUtils;
@@ -185,6 +186,11 @@ public class SearchScreenOverlay implements SearchObserver {
     // Create search strategy object.
     searchStrategy = new SearchScreenNodeStrategy(this, labelManager);
   }
+  /** Returns the listener which keeps the searched nodes up to date with content changes. */
+  public AccessibilityEventListener getNodesCacheUpdater() {
+    return searchStrategy.getNodesCacheUpdater();
+  }
+
   /** pipeline the actors which need to perform scroll event */
   public void setPipeline(Pipeline.FeedbackReturner pipeline) {
     this.pipeline = pipeline;
@@ -60,7 +60,19 @@ public class StringMatcher {
       return Collections.emptyList();
     }
 
-    Pattern keywordPattern = convertKeywordToPattern(keyword);
+    return findMatches(target, convertKeywordToPattern(keyword));
+  }
+
+  /**
+   * Finds the matches of {@code keywordPattern}, which was returned by {@link
+   * #convertKeywordToPattern(String)}, in the {@code target}. Use this to match one keyword against
+   * many targets without compiling it again for each target.
+   */
+  static List<MatchResult> findMatches(String target, Pattern keywordPattern) {
+    if (TextUtils.isEmpty(target)) {
+      return Collections.emptyList();
+    }
+
     Matcher matchResult = keywordPattern.matcher(target);
 
     List<MatchResult> result = new ArrayList<>();
@@ -78,7 +90,7 @@ public class StringMatcher {
    * The resulting pattern allows the spaces in keyword to be able to match different lengths spaces
    * in the matching target and allows case-insensitive matching.
    */
-  private static Pattern convertKeywordToPattern(String keyword) {
+  static Pattern convertKeywordToPattern(String keyword) {
     String spacePattern = "\\s+";
     String spaceString = " ";
 
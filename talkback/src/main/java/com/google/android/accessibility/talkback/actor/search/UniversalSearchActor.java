@@ -29,6 +29,7 @@ import com.google.android.accessibility.talkback.R;
 import com.google.android.accessibility.talkback.TalkBackService;
 import com.google.android.accessibility.talkback.focusmanagement.interpreter.ScreenStateMonitor;
 import com.google.android.accessibility.talkback.labeling.CustomLabelManager;
+import com.google.android.accessibility.utils.AccessibilityEventListener;
 import com.google.android.accessibility.utils.AccessibilityNode;
 import com.google.android.accessibility.utils.AccessibilityServiceCompatUtils;
 import com.google.android.accessibility.utils.FocusFinder;
@@ -81,6 +82,14 @@ public class UniversalSearchActor {
     this.searchScreenOverlay = searchScreenOverlay;
   }
 
+  /**
+   * Returns the listener which keeps the nodes cached for searching up to date. It must receive
+   * accessibility events for as long as this actor is used.
+   */
+  public AccessibilityEventListener getNodesCacheUpdater() {
+    return searchScreenOverlay.getNodesCacheUpdater();
+  }
+
   public void setPipeline(Pipeline.FeedbackReturner pipeline) {
     this.pipeline = pipeline;
     searchScreenOverlay.setPipeline(pipeline);
@@ -21,6 +21,8 @@ import static com.google.android.accessibility.utils.output.SpeechController.QUE
 import static com.google.android.accessibility.utils.output.SpeechController.QUEUE_MODE_UNINTERRUPTIBLE_BY_NEW_SPEECH;
 
 import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager.NameNotFoundException;
 import android.os.Bundle;
 import android.os.SystemClock;
 import android.text.TextUtils;
@@ -29,6 +31,7 @@ import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo.RangeInfo;
 import android.view.accessibility.AccessibilityWindowInfo;
 import androidx.annotation.IntDef;
+import androidx.core.content.pm.PackageInfoCompat;
 import androidx.core.view.accessibility.AccessibilityEventCompat;
 import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
 import androidx.core.view.accessibility.AccessibilityRecordCompat;
@@ -38,7 +41,9 @@ import com.google.android.accessibility.talkback.compositor.parsetree.ParseTree;
 import com.google.android.accessibility.utils.AccessibilityEventUtils;
 import com.google.android.accessibility.utils.AccessibilityNodeInfoUtils;
 import com.google.android.accessibility.utils.ImageContents;
+import com.google.android.accessibility.utils.ImageContents.ReadOnlyImageContents;
 import com.google.android.accessibility.utils.JsonUtils;
+import com.google.android.accessibility.utils.Performance;
 import com.google.android.accessibility.utils.Performance.EventId;
 import com.google.android.accessibility.utils.Role;
 import com.google.android.accessibility.utils.input.TextEventInterpretation;
@@ -50,6 +55,14 @@ import com.google.android.accessibility.utils.output.SpeechController.SpeakOptio
 import com.google.android.accessibility.utils.output.SpeechController.UtteranceCompleteRunnable;
 import com.google.android.accessibility.utils.output.Utterance;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.HashMap;
@@ -57,6 +70,10 @@ import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** Translates events into user visible feedback. */
@@ -114,6 +131,7 @@ public class Compositor {
     EVENT_MAGNIFICATION_CHANGED,
     EVENT_SCROLL_POSITION,
     EVENT_INPUT_DESCRIBE_NODE,
+    EVENT_PREFETCH_NODE_DESCRIPTION,
     EVENT_TYPE_VIEW_ACCESSIBILITY_FOCUSED,
     EVENT_TYPE_VIEW_FOCUSED,
     EVENT_TYPE_VIEW_HOVER_ENTER,
@@ -151,6 +169,7 @@ public class Compositor {
   public static final int EVENT_SCROLL_POSITION = BASE_EVENT_ID + 13;
   public static final int EVENT_INPUT_DESCRIBE_NODE = BASE_EVENT_ID + 14;
   public static final int EVENT_MAGNIFICATION_CHANGED = BASE_EVENT_ID + 15;
+  public static final int EVENT_PREFETCH_NODE_DESCRIPTION = BASE_EVENT_ID + 16;
 
   public static final int BASE_TEXT_EVENT_ID = BASE_EVENT_ID + 100;
   public static final int EVENT_TYPE_INPUT_TEXT_CLEAR = TextEventInterpretation.TEXT_CLEAR;
@@ -323,8 +342,15 @@ public class Compositor {
 
   private final Context mContext;
 
-  private ParseTree mParseTree;
+  /**
+   * The parse tree, which is built on a background thread while the rest of the service is
+   * constructed. Use {@link #getParseTree()}, which waits for the build.
+   */
+  private final Future<ParseTree> mParseTreeFuture;
+
+  private volatile @Nullable ParseTree mParseTree;
   private final VariablesFactory mVariablesFactory;
+  private final NodeDescriptionPrefetcher mNodeDescriptionPrefetcher;
 
   /////////////////////////////////////////////////////////////////////////////////
   // Inner classes
@@ -345,22 +371,69 @@ public class Compositor {
       @Flavor int flavor) {
     this.speechController = speechController;
     mVariablesFactory = new VariablesFactory(context, globalVariables, imageContents);
+    mNodeDescriptionPrefetcher = new NodeDescriptionPrefetcher(this);
+    mVariablesFactory.setNodeDescriptionPrefetcher(mNodeDescriptionPrefetcher);
     mContext = context;
 
-    long startTime = SystemClock.uptimeMillis();
-    mParseTree = refreshParseTree(mContext, mVariablesFactory, flavor);
-    long endTime = SystemClock.uptimeMillis();
-    LogUtils.i(
-        TAG,
-        "ParseTree built for compositor %s in %d ms",
-        getFlavorName(flavor),
-        endTime - startTime);
+    ExecutorService parseTreeExecutor = Executors.newSingleThreadExecutor();
+    mParseTreeFuture =
+        parseTreeExecutor.submit(
+            () -> {
+              long startTime = SystemClock.uptimeMillis();
+              ParseTree parseTree = refreshParseTree(mContext, mVariablesFactory, flavor);
+              long endTime = SystemClock.uptimeMillis();
+              LogUtils.i(
+                  TAG,
+                  "ParseTree built for compositor %s in %d ms",
+                  getFlavorName(flavor),
+                  endTime - startTime);
+              Performance.getInstance().onStartupStageDone(Performance.STARTUP_STAGE_PARSE_TREE);
+              return parseTree;
+            });
+    parseTreeExecutor.shutdown();
+  }
+
+  /** Returns the parse tree, waiting for it to be built if needed. */
+  private ParseTree getParseTree() {
+    @Nullable ParseTree parseTree = mParseTree;
+    if (parseTree != null) {
+      return parseTree;
+    }
+    try {
+      parseTree = mParseTreeFuture.get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Failed to build the parse tree", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while building the parse tree", e);
+    }
+    mParseTree = parseTree;
+    return parseTree;
   }
 
   public void setNodeMenuProvider(@Nullable NodeMenuProvider nodeMenuProvider) {
     mVariablesFactory.setNodeMenuProvider(nodeMenuProvider);
   }
 
+  /**
+   * Returns the resource IDs of the earcons which the compositor may play, waiting for the parse
+   * tree to be built if needed.
+   */
+  public int[] getEarcons() {
+    Set<Integer> rawResourceIds = getParseTree().getRawResourceIds();
+    int[] earcons = new int[rawResourceIds.size()];
+    int index = 0;
+    for (int resourceId : rawResourceIds) {
+      earcons[index++] = resourceId;
+    }
+    return earcons;
+  }
+
+  /** Returns the prefetcher of the descriptions of the nodes that continuous reading focuses. */
+  public NodeDescriptionPrefetcher getNodeDescriptionPrefetcher() {
+    return mNodeDescriptionPrefetcher;
+  }
+
   public void setSpeaker(Speaker speaker) {
     this.speaker = speaker;
   }
@@ -480,7 +553,7 @@ public class Compositor {
     // Refresh source node, and re-create variable delegate using fresh source node.
     if (sourceNode != null) {
       boolean refreshSource =
-          mParseTree.parseEventToBool(
+          getParseTree().parseEventToBool(
               event, OUTPUT_REFRESH_SOURCE_NODE, false /* default */, delegate);
       if (refreshSource) {
         AccessibilityNodeInfoCompat newSourceNode =
@@ -493,7 +566,7 @@ public class Compositor {
 
     // Compose earcons.
     SpeakOptions speakOptions = null;
-    int earcon = mParseTree.parseEventToInteger(event, OUTPUT_EARCON, -1, delegate);
+    int earcon = getParseTree().parseEventToInteger(event, OUTPUT_EARCON, -1, delegate);
     if (earcon != -1) {
       if (speakOptions == null) {
         speakOptions = SpeakOptions.create();
@@ -503,11 +576,11 @@ public class Compositor {
       speakOptions.setEarcons(earcons);
 
       Bundle nonSpeechParams = new Bundle();
-      double rate = mParseTree.parseEventToNumber(event, OUTPUT_EARCON_RATE, 1.0, delegate);
+      double rate = getParseTree().parseEventToNumber(event, OUTPUT_EARCON_RATE, 1.0, delegate);
       if (rate != 1.0) {
         nonSpeechParams.putFloat(Utterance.KEY_METADATA_EARCON_RATE, (float) rate);
       }
-      double volume = mParseTree.parseEventToNumber(event, OUTPUT_EARCON_RATE, 1.0, delegate);
+      double volume = getParseTree().parseEventToNumber(event, OUTPUT_EARCON_RATE, 1.0, delegate);
       if (volume != 1.0) {
         nonSpeechParams.putFloat(Utterance.KEY_METADATA_EARCON_VOLUME, (float) volume);
       }
@@ -515,7 +588,7 @@ public class Compositor {
     }
 
     // Compose haptics.
-    int haptic = mParseTree.parseEventToInteger(event, OUTPUT_HAPTIC, -1, delegate);
+    int haptic = getParseTree().parseEventToInteger(event, OUTPUT_HAPTIC, -1, delegate);
     if (haptic != -1) {
       if (speakOptions == null) {
         speakOptions = SpeakOptions.create();
@@ -536,7 +609,7 @@ public class Compositor {
     }
 
     // Compose speech, and speech parameters.
-    CharSequence ttsOutput = mParseTree.parseEventToString(event, OUTPUT_TTS_OUTPUT, delegate);
+    CharSequence ttsOutput = getParseTree().parseEventToString(event, OUTPUT_TTS_OUTPUT, delegate);
     if (!TextUtils.isEmpty(ttsOutput)) {
       // Cleans up the TTS output if it is just 1 character long. This will announce single
       // symbols correctly.
@@ -545,7 +618,7 @@ public class Compositor {
       ttsOutput = SpeechCleanupUtils.cleanUp(mContext, ttsOutput);
       // Compute queueing mode.
       int queueMode =
-          mParseTree.parseEventToEnum(
+          getParseTree().parseEventToEnum(
               event, OUTPUT_TTS_QUEUE_MODE, SpeechController.QUEUE_MODE_INTERRUPT, delegate);
       if (eventObject != null
           && (eventObject.getEventType() == AccessibilityEvent.TYPE_ANNOUNCEMENT)
@@ -568,7 +641,7 @@ public class Compositor {
 
       // Compose queue group to clear.
       int clearQueueGroup =
-          mParseTree.parseEventToEnum(
+          getParseTree().parseEventToEnum(
               event,
               OUTPUT_TTS_CLEAR_QUEUE_GROUP,
               SpeechController.UTTERANCE_GROUP_DEFAULT,
@@ -576,7 +649,8 @@ public class Compositor {
 
       // Compose other speech flags/parameters.
       int flags = getSpeechFlags(event, clearQueueGroup, delegate);
-      double speechPitch = mParseTree.parseEventToNumber(event, OUTPUT_TTS_PITCH, 1.0, delegate);
+      double speechPitch =
+          getParseTree().parseEventToNumber(event, OUTPUT_TTS_PITCH, 1.0, delegate);
       Bundle speechParams = new Bundle();
       speechParams.putFloat(SpeechParam.PITCH, (float) speechPitch);
 
@@ -608,14 +682,11 @@ public class Compositor {
       @Nullable AccessibilityNodeInfoCompat source,
       int event,
       EventInterpretation eventInterpretation) {
-    if (mParseTree == null) {
-      return null;
-    }
     ParseTree.VariableDelegate delegate =
         mVariablesFactory.createLocalVariableDelegate(
             /* event= */ null, source, eventInterpretation);
 
-    CharSequence ttsText = mParseTree.parseEventToString(event, OUTPUT_TTS_OUTPUT, delegate);
+    CharSequence ttsText = getParseTree().parseEventToString(event, OUTPUT_TTS_OUTPUT, delegate);
 
     if (ttsText == null) {
       return null;
@@ -623,6 +694,25 @@ public class Compositor {
     return ttsText.toString();
   }
 
+  /**
+   * Composes the description of {@code node} and its descendants, as spoken when it gets
+   * accessibility focus. Called by {@link NodeDescriptionPrefetcher} on its background thread.
+   *
+   * @return The description, or {@code null} if it needs state which is only available on the main
+   *     thread, such as the labels of the icon detector
+   */
+  @Nullable CharSequence composeNodeDescription(AccessibilityNodeInfoCompat node) {
+    @Nullable
+    ReadOnlyImageContents imageContents = mVariablesFactory.createReadOnlyImageContents();
+    ParseTree.VariableDelegate delegate =
+        mVariablesFactory.createBackgroundNodeDelegate(node, imageContents);
+    @Nullable
+    CharSequence description =
+        getParseTree()
+            .parseEventToString(EVENT_PREFETCH_NODE_DESCRIPTION, OUTPUT_TTS_OUTPUT, delegate);
+    return (imageContents != null && imageContents.hasSkippedLookups()) ? null : description;
+  }
+
   private static class HandleEventOptions {
     public @Nullable AccessibilityEvent eventObject;
     public @Nullable EventInterpretation eventInterpretation;
@@ -661,7 +751,8 @@ public class Compositor {
 
   private boolean hasFlagAdvancedContinuousReading(
       int event, ParseTree.VariableDelegate variables) {
-    return mParseTree.parseEventToBool(event, OUTPUT_ADVANCE_CONTINUOUS_READING, false, variables);
+    return getParseTree()
+        .parseEventToBool(event, OUTPUT_ADVANCE_CONTINUOUS_READING, false, variables);
   }
 
   /**
@@ -671,38 +762,38 @@ public class Compositor {
    */
   private int getSpeechFlags(int event, int clearQueueGroup, ParseTree.VariableDelegate variables) {
     int flags = 0;
-    if (!mParseTree.parseEventToBool(event, OUTPUT_TTS_ADD_TO_HISTORY, false, variables)) {
+    if (!getParseTree().parseEventToBool(event, OUTPUT_TTS_ADD_TO_HISTORY, false, variables)) {
       flags = flags | FeedbackItem.FLAG_NO_HISTORY;
     }
-    if (mParseTree.parseEventToBool(event, OUTPUT_TTS_FORCE_FEEDBACK, false, variables)) {
+    if (getParseTree().parseEventToBool(event, OUTPUT_TTS_FORCE_FEEDBACK, false, variables)) {
       flags = flags | FeedbackItem.FLAG_FORCE_FEEDBACK;
     }
-    if (mParseTree.parseEventToBool(
+    if (getParseTree().parseEventToBool(
         event, OUTPUT_TTS_FORCE_FEEDBACK_EVEN_IF_AUDIO_PLAYBACK_ACTIVE, false, variables)) {
       flags = flags | FeedbackItem.FLAG_FORCE_FEEDBACK_EVEN_IF_AUDIO_PLAYBACK_ACTIVE;
     }
-    if (mParseTree.parseEventToBool(
+    if (getParseTree().parseEventToBool(
         event, OUTPUT_TTS_FORCE_FEEDBACK_EVEN_IF_MICROPHONE_ACTIVE, false, variables)) {
       flags = flags | FeedbackItem.FLAG_FORCE_FEEDBACK_EVEN_IF_MICROPHONE_ACTIVE;
     }
-    if (mParseTree.parseEventToBool(
+    if (getParseTree().parseEventToBool(
         event, OUTPUT_TTS_FORCE_FEEDBACK_EVEN_IF_SSB_ACTIVE, false, variables)) {
       flags = flags | FeedbackItem.FLAG_FORCE_FEEDBACK_EVEN_IF_SSB_ACTIVE;
     }
-    if (mParseTree.parseEventToBool(
+    if (getParseTree().parseEventToBool(
         event, OUTPUT_TTS_FORCE_FEEDBACK_EVEN_IF_PHONE_CALL_ACTIVE, true, variables)) {
       flags = flags | FeedbackItem.FLAG_FORCE_FEEDBACK_EVEN_IF_PHONE_CALL_ACTIVE;
     }
-    if (mParseTree.parseEventToBool(event, OUTPUT_TTS_SKIP_DUPLICATE, false, variables)) {
+    if (getParseTree().parseEventToBool(event, OUTPUT_TTS_SKIP_DUPLICATE, false, variables)) {
       flags = flags | FeedbackItem.FLAG_SKIP_DUPLICATE;
     }
     if (clearQueueGroup != SpeechController.UTTERANCE_GROUP_DEFAULT) {
       flags = flags | FeedbackItem.FLAG_CLEAR_QUEUED_UTTERANCES_WITH_SAME_UTTERANCE_GROUP;
     }
-    if (mParseTree.parseEventToBool(event, OUTPUT_TTS_INTERRUPT_SAME_GROUP, false, variables)) {
+    if (getParseTree().parseEventToBool(event, OUTPUT_TTS_INTERRUPT_SAME_GROUP, false, variables)) {
       flags = flags | FeedbackItem.FLAG_INTERRUPT_CURRENT_UTTERANCE_WITH_SAME_UTTERANCE_GROUP;
     }
-    if (mParseTree.parseEventToBool(event, OUTPUT_PREVENT_DEVICE_SLEEP, false, variables)) {
+    if (getParseTree().parseEventToBool(event, OUTPUT_PREVENT_DEVICE_SLEEP, false, variables)) {
       flags = flags | FeedbackItem.FLAG_NO_DEVICE_SLEEP;
     }
     return flags;
@@ -716,6 +807,11 @@ public class Compositor {
     declareEvents(parseTree);
     variablesFactory.declareVariables(parseTree);
 
+    @Nullable File compiledFile = getCompiledParseTreeFile(context, flavor);
+    if (compiledFile != null && readCompiledParseTree(parseTree, compiledFile)) {
+      return parseTree;
+    }
+
     try {
       parseTree.mergeTree(JsonUtils.readFromRawFile(context, R.raw.compositor));
     } catch (Exception e) {
@@ -724,9 +820,69 @@ public class Compositor {
 
     parseTree.build();
 
+    if (compiledFile != null) {
+      writeCompiledParseTree(parseTree, compiledFile);
+    }
+
     return parseTree;
   }
 
+  /**
+   * Returns the file caching the compiled parse tree for the installed APK, or null if the APK
+   * can't be identified. The code cache is cleared by the system whenever the APK is updated, and
+   * the file name also encodes the install time, so a stale tree is never read.
+   */
+  private static @Nullable File getCompiledParseTreeFile(Context context, @Flavor int flavor) {
+    PackageInfo packageInfo;
+    try {
+      packageInfo = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+    } catch (NameNotFoundException e) {
+      LogUtils.w(TAG, "Cannot identify APK for compiled ParseTree: %s", e);
+      return null;
+    }
+    return new File(
+        context.getCodeCacheDir(),
+        String.format(
+            Locale.ROOT,
+            "compositor_%d_%d_%d.ptree",
+            flavor,
+            PackageInfoCompat.getLongVersionCode(packageInfo),
+            packageInfo.lastUpdateTime));
+  }
+
+  /** Builds {@code parseTree} from a compiled file, returning false if that wasn't possible. */
+  private static boolean readCompiledParseTree(ParseTree parseTree, File compiledFile) {
+    if (!compiledFile.exists()) {
+      return false;
+    }
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(compiledFile)))) {
+      parseTree.buildFromCompiled(in);
+      return true;
+    } catch (IOException | RuntimeException e) {
+      LogUtils.w(TAG, "Discarding compiled ParseTree %s: %s", compiledFile.getName(), e);
+      compiledFile.delete();
+      return false;
+    }
+  }
+
+  /** Writes the built {@code parseTree} to a compiled file, replacing it atomically. */
+  private static void writeCompiledParseTree(ParseTree parseTree, File compiledFile) {
+    File tempFile = new File(compiledFile.getPath() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+      parseTree.writeCompiled(out);
+    } catch (IOException | RuntimeException e) {
+      LogUtils.w(TAG, "Failed to write compiled ParseTree: %s", e);
+      tempFile.delete();
+      return;
+    }
+    if (!tempFile.renameTo(compiledFile)) {
+      LogUtils.w(TAG, "Failed to replace compiled ParseTree %s", compiledFile.getName());
+      tempFile.delete();
+    }
+  }
+
   private static void declareEnums(ParseTree parseTree) {
     Map<Integer, String> queueModes = new HashMap<>();
     queueModes.put(SpeechController.QUEUE_MODE_INTERRUPT, "interrupt");
@@ -892,6 +1048,7 @@ public class Compositor {
         EVENT_TYPE_INPUT_SELECTION_SELECT_ALL_WITH_KEYBOARD);
     parseTree.addEvent("EVENT_SCROLL_POSITION", EVENT_SCROLL_POSITION);
     parseTree.addEvent("EVENT_INPUT_DESCRIBE_NODE", EVENT_INPUT_DESCRIBE_NODE);
+    parseTree.addEvent("EVENT_PREFETCH_NODE_DESCRIPTION", EVENT_PREFETCH_NODE_DESCRIPTION);
 
     // Outputs.
     parseTree.addStringOutput("ttsOutput", OUTPUT_TTS_OUTPUT);
@@ -958,6 +1115,8 @@ public class Compositor {
         return "EVENT_INPUT_DESCRIBE_NODE";
       case EVENT_MAGNIFICATION_CHANGED:
         return "EVENT_MAGNIFICATION_CHANGED";
+      case EVENT_PREFETCH_NODE_DESCRIPTION:
+        return "EVENT_PREFETCH_NODE_DESCRIPTION";
       case EVENT_TYPE_INPUT_TEXT_CLEAR:
         return "EVENT_TYPE_INPUT_TEXT_CLEAR";
       case EVENT_TYPE_INPUT_TEXT_REMOVE:
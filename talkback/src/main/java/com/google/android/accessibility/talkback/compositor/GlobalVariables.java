@@ -20,6 +20,10 @@ import static android.accessibilityservice.MagnificationConfig.MAGNIFICATION_MOD
 import static android.accessibilityservice.MagnificationConfig.MAGNIFICATION_MODE_WINDOW;
 import static com.google.android.accessibility.talkback.compositor.Compositor.DESC_ORDER_ROLE_NAME_STATE_POSITION;
 import static com.google.android.accessibility.talkback.compositor.Compositor.ENUM_VERBOSITY_DESCRIPTION_ORDER;
+import static com.google.android.accessibility.talkback.compositor.parsetree.ParseTree.VARIABLE_BOOL;
+import static com.google.android.accessibility.talkback.compositor.parsetree.ParseTree.VARIABLE_INTEGER;
+import static com.google.android.accessibility.talkback.compositor.parsetree.ParseTree.VARIABLE_NUMBER;
+import static com.google.android.accessibility.talkback.compositor.parsetree.ParseTree.VARIABLE_STRING;
 import static com.google.android.accessibility.talkback.eventprocessor.ProcessorMagnification.STATE_OFF;
 import static com.google.android.accessibility.utils.monitor.InputModeTracker.INPUT_MODE_KEYBOARD;
 import static com.google.android.accessibility.utils.monitor.InputModeTracker.INPUT_MODE_NON_ALPHABETIC_KEYBOARD;
@@ -55,7 +59,6 @@ import com.google.android.accessibility.utils.compat.provider.SettingsCompatUtil
 import com.google.android.accessibility.utils.input.WindowsDelegate;
 import com.google.android.accessibility.utils.monitor.InputModeTracker;
 import com.google.android.accessibility.utils.output.SpeechCleanupUtils;
-import com.google.android.apps.common.proguard.UsedByReflection;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
 import com.google.common.base.Ascii;
 import java.util.ArrayList;
@@ -66,7 +69,8 @@ import java.util.Map;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** Tracks the current global state for the parse tree. */
-public class GlobalVariables extends TimedFlags implements ParseTree.VariableDelegate {
+public class GlobalVariables extends TimedFlags
+    implements ParseTree.VariableDelegate, ParseTree.FunctionDelegate {
   private static final String TAG = "GlobalVariables";
   // Parameters used in join statement.
   private static final CharSequence SEPARATOR = ", ";
@@ -154,6 +158,21 @@ public class GlobalVariables extends TimedFlags implements ParseTree.VariableDel
   private static final int VERBOSITY_SPEAK_ELEMENT_IDS = 10004;
   private static final int VERBOSITY_SPEAK_SYSTEM_WINDOW_TITLES = 10005;
 
+  // Functions
+  private static final int FUNCTION_CLEAN_UP = 11000;
+  private static final int FUNCTION_COLLAPSE_REPEATED_CHARACTERS_AND_CLEAN_UP = 11001;
+  private static final int FUNCTION_CONDITIONAL_PREPEND = 11002;
+  private static final int FUNCTION_CONDITIONAL_APPEND = 11003;
+  private static final int FUNCTION_CONDITIONAL_PREPEND_WITH_SPACE_SEPARATOR = 11004;
+  private static final int FUNCTION_GET_WINDOW_TITLE = 11005;
+  private static final int FUNCTION_ROUND = 11006;
+  private static final int FUNCTION_ROUND_FOR_PROGRESS_PERCENT = 11007;
+  private static final int FUNCTION_ROUND_FOR_PROGRESS_INT = 11008;
+  private static final int FUNCTION_SPELLING = 11009;
+  private static final int FUNCTION_EQUALS = 11010;
+  private static final int FUNCTION_DEDUP_JOIN = 11011;
+  private static final int FUNCTION_PREPEND_CAPITAL = 11012;
+
   private final Context mContext;
   private final AccessibilityService mService;
   private final InputModeTracker inputModeTracker;
@@ -329,19 +348,62 @@ public class GlobalVariables extends TimedFlags implements ParseTree.VariableDel
     parseTree.addBooleanVariable("verbosity.speakElementIds", VERBOSITY_SPEAK_ELEMENT_IDS);
 
     // Functions
-    parseTree.addFunction("cleanUp", this);
-    parseTree.addFunction("collapseRepeatedCharactersAndCleanUp", this);
-    parseTree.addFunction("conditionalPrepend", this);
-    parseTree.addFunction("conditionalAppend", this);
-    parseTree.addFunction("conditionalPrependWithSpaceSeparator", this);
-    parseTree.addFunction("getWindowTitle", this);
-    parseTree.addFunction("round", this);
-    parseTree.addFunction("roundForProgressPercent", this);
-    parseTree.addFunction("roundForProgressInt", this);
-    parseTree.addFunction("spelling", this);
-    parseTree.addFunction("equals", this);
-    parseTree.addFunction("dedupJoin", this);
-    parseTree.addFunction("prependCapital", this);
+    parseTree.addFunction("cleanUp", FUNCTION_CLEAN_UP, VARIABLE_STRING, this, VARIABLE_STRING);
+    parseTree.addFunction(
+        "collapseRepeatedCharactersAndCleanUp",
+        FUNCTION_COLLAPSE_REPEATED_CHARACTERS_AND_CLEAN_UP,
+        VARIABLE_STRING,
+        this,
+        VARIABLE_STRING);
+    parseTree.addFunction(
+        "conditionalPrepend",
+        FUNCTION_CONDITIONAL_PREPEND,
+        VARIABLE_STRING,
+        this,
+        VARIABLE_STRING,
+        VARIABLE_STRING);
+    parseTree.addFunction(
+        "conditionalAppend",
+        FUNCTION_CONDITIONAL_APPEND,
+        VARIABLE_STRING,
+        this,
+        VARIABLE_STRING,
+        VARIABLE_STRING);
+    parseTree.addFunction(
+        "conditionalPrependWithSpaceSeparator",
+        FUNCTION_CONDITIONAL_PREPEND_WITH_SPACE_SEPARATOR,
+        VARIABLE_STRING,
+        this,
+        VARIABLE_STRING,
+        VARIABLE_STRING);
+    parseTree.addFunction(
+        "getWindowTitle", FUNCTION_GET_WINDOW_TITLE, VARIABLE_STRING, this, VARIABLE_INTEGER);
+    parseTree.addFunction("round", FUNCTION_ROUND, VARIABLE_INTEGER, this, VARIABLE_NUMBER);
+    parseTree.addFunction(
+        "roundForProgressPercent",
+        FUNCTION_ROUND_FOR_PROGRESS_PERCENT,
+        VARIABLE_INTEGER,
+        this,
+        VARIABLE_NUMBER);
+    parseTree.addFunction(
+        "roundForProgressInt",
+        FUNCTION_ROUND_FOR_PROGRESS_INT,
+        VARIABLE_INTEGER,
+        this,
+        VARIABLE_NUMBER);
+    parseTree.addFunction("spelling", FUNCTION_SPELLING, VARIABLE_STRING, this, VARIABLE_STRING);
+    parseTree.addFunction(
+        "equals", FUNCTION_EQUALS, VARIABLE_BOOL, this, VARIABLE_STRING, VARIABLE_STRING);
+    parseTree.addFunction(
+        "dedupJoin",
+        FUNCTION_DEDUP_JOIN,
+        VARIABLE_STRING,
+        this,
+        VARIABLE_STRING,
+        VARIABLE_STRING,
+        VARIABLE_STRING);
+    parseTree.addFunction(
+        "prependCapital", FUNCTION_PREPEND_CAPITAL, VARIABLE_STRING, this, VARIABLE_STRING);
   }
 
   public void updateStateFromEvent(AccessibilityEvent event) {
@@ -998,18 +1060,75 @@ public class GlobalVariables extends TimedFlags implements ParseTree.VariableDel
   ///////////////////////////////////////////////////////////////////////////////////////////
   // Functions callable from compositor script.
 
-  @UsedByReflection("compositor.json")
+  @Override
+  public boolean callBooleanFunction(int functionId, ParseTree.FunctionParams params) {
+    switch (functionId) {
+      case FUNCTION_EQUALS:
+        return equals(params.getString(0), params.getString(1));
+      default:
+        LogUtils.e(TAG, "Unknown boolean function: %d", functionId);
+        return false;
+    }
+  }
+
+  @Override
+  public int callIntegerFunction(int functionId, ParseTree.FunctionParams params) {
+    switch (functionId) {
+      case FUNCTION_ROUND:
+        return round(params.getNumber(0));
+      case FUNCTION_ROUND_FOR_PROGRESS_PERCENT:
+        return roundForProgressPercent(params.getNumber(0));
+      case FUNCTION_ROUND_FOR_PROGRESS_INT:
+        return roundForProgressInt(params.getNumber(0));
+      default:
+        LogUtils.e(TAG, "Unknown integer function: %d", functionId);
+        return 0;
+    }
+  }
+
+  @Override
+  public double callNumberFunction(int functionId, ParseTree.FunctionParams params) {
+    LogUtils.e(TAG, "Unknown number function: %d", functionId);
+    return 0;
+  }
+
+  @Override
+  public @Nullable CharSequence callStringFunction(
+      int functionId, ParseTree.FunctionParams params) {
+    switch (functionId) {
+      case FUNCTION_CLEAN_UP:
+        return cleanUp(params.getString(0));
+      case FUNCTION_COLLAPSE_REPEATED_CHARACTERS_AND_CLEAN_UP:
+        return collapseRepeatedCharactersAndCleanUp(params.getString(0));
+      case FUNCTION_CONDITIONAL_PREPEND:
+        return conditionalPrepend(params.getString(0), params.getString(1));
+      case FUNCTION_CONDITIONAL_APPEND:
+        return conditionalAppend(params.getString(0), params.getString(1));
+      case FUNCTION_CONDITIONAL_PREPEND_WITH_SPACE_SEPARATOR:
+        return conditionalPrependWithSpaceSeparator(params.getString(0), params.getString(1));
+      case FUNCTION_GET_WINDOW_TITLE:
+        return getWindowTitle(params.getInteger(0));
+      case FUNCTION_SPELLING:
+        return spelling(params.getString(0));
+      case FUNCTION_DEDUP_JOIN:
+        return dedupJoin(params.getString(0), params.getString(1), params.getString(2));
+      case FUNCTION_PREPEND_CAPITAL:
+        return prependCapital(params.getString(0));
+      default:
+        LogUtils.e(TAG, "Unknown string function: %d", functionId);
+        return "";
+    }
+  }
+
   private CharSequence cleanUp(CharSequence text) {
     return SpeechCleanupUtils.cleanUp(mContext, text);
   }
 
-  @UsedByReflection("compositor.json")
   private @Nullable CharSequence collapseRepeatedCharactersAndCleanUp(CharSequence text) {
     return SpeechCleanupUtils.collapseRepeatedCharactersAndCleanUp(mContext, text);
   }
 
   // TODO: Add functionality to ParseTree to support this natively.
-  @UsedByReflection("compositor.json")
   private static CharSequence conditionalAppend(
       CharSequence conditionalText, CharSequence appendText) {
     if (TextUtils.isEmpty(conditionalText)) {
@@ -1026,7 +1145,6 @@ public class GlobalVariables extends TimedFlags implements ParseTree.VariableDel
   }
 
   // TODO: Add functionality to ParseTree to support this natively.
-  @UsedByReflection("compositor.json")
   private static CharSequence conditionalPrepend(
       CharSequence prependText, CharSequence conditionalText) {
     if (TextUtils.isEmpty(conditionalText)) {
@@ -1042,7 +1160,6 @@ public class GlobalVariables extends TimedFlags implements ParseTree.VariableDel
     return result;
   }
 
-  @UsedByReflection("compositor.json")
   private static CharSequence dedupJoin(
       CharSequence value1, CharSequence value2, CharSequence value3) {
     CharSequence[] values = {value1, value2, value3};
@@ -1074,7 +1191,6 @@ public class GlobalVariables extends TimedFlags implements ParseTree.VariableDel
   // TODO: The best way to implement this is to take the separator as an input parameter
   // of the function. However, compositor does not allow hard coded string as parameter of function.
   // Merge this function with conditionalPrepend when the feature supported.
-  @UsedByReflection("compositor.json")
   private static CharSequence conditionalPrependWithSpaceSeparator(
       CharSequence prependText, CharSequence conditionalText) {
     if (TextUtils.isEmpty(conditionalText)) {
@@ -1090,7 +1206,6 @@ public class GlobalVariables extends TimedFlags implements ParseTree.VariableDel
     return result;
   }
 
-  @UsedByReflection("compositor.json")
   private CharSequence spelling(CharSequence word) {
     if (word.length() <= 1) {
       return "";
@@ -1105,22 +1220,18 @@ public class GlobalVariables extends TimedFlags implements ParseTree.VariableDel
     return chars;
   }
 
-  @UsedByReflection("compositor.json")
   private static int round(double value) {
     return (int) Math.round(value);
   }
 
-  @UsedByReflection("compositor.json")
   private static int roundForProgressPercent(double value) {
     return AccessibilityNodeInfoUtils.roundForProgressPercent(value);
   }
 
-  @UsedByReflection("compositor.json")
   private static int roundForProgressInt(double value) {
     return (int) (value);
   }
 
-  @UsedByReflection("compositor.json")
   private CharSequence prependCapital(CharSequence s) {
     if (TextUtils.isEmpty(s) || !sayCapital) {
       return s;
@@ -1131,7 +1242,6 @@ public class GlobalVariables extends TimedFlags implements ParseTree.VariableDel
     return s;
   }
 
-  @UsedByReflection("compositor.json")
   private CharSequence getWindowTitle(int windowId) {
     if (mWindowsDelegate == null) {
       return "";
@@ -1141,7 +1251,6 @@ public class GlobalVariables extends TimedFlags implements ParseTree.VariableDel
     return title != null ? title : "";
   }
 
-  @UsedByReflection("compositor.json")
   private static boolean equals(CharSequence text1, CharSequence text2) {
     return TextUtils.equals(text1, text2);
   }
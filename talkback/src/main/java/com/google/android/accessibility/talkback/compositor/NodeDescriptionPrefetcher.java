@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.talkback.compositor;
+
+import static com.google.android.accessibility.utils.AccessibilityNodeInfoUtils.FILTER_SHOULD_FOCUS;
+import static com.google.android.accessibility.utils.traversal.TraversalStrategy.SEARCH_FOCUS_FORWARD;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+import android.view.accessibility.AccessibilityEvent;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import com.google.android.accessibility.utils.AccessibilityEventListener;
+import com.google.android.accessibility.utils.AccessibilityNodeInfoUtils;
+import com.google.android.accessibility.utils.Performance.EventId;
+import com.google.android.accessibility.utils.traversal.OrderedTraversalStrategy;
+import com.google.android.accessibility.utils.traversal.TraversalStrategyUtils;
+import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Composes the descriptions of the nodes that continuous reading will focus next, ahead of time, so
+ * that the description of a node is ready when the node gets accessibility focus. The nodes are
+ * found and their descriptions composed on a background thread. Composition there reads custom
+ * labels and image captions without loading or storing them, and a node whose description needs
+ * state that is only available on the main thread, such as the labels of the icon detector, is
+ * left to be composed when it is focused.
+ *
+ * <p>Each description is the tree description spoken for {@code TYPE_VIEW_ACCESSIBILITY_FOCUSED},
+ * and is kept with the content generation at which it was composed. Any event which may change the
+ * content of the screen starts a new generation, and so does {@link #invalidate}, which is called
+ * when image captions, custom labels or preferences change. So a description is only used while
+ * nothing has changed since it was composed. The collection and window transitions are not
+ * prefetched, because they depend on the state at the time the node is focused.
+ *
+ * <p>{@link #setEnabled}, {@link #prefetchAfter} and {@link #invalidate} must be called on the main
+ * thread, and the prefetcher must receive the events from {@link #getEventTypes()} while it is
+ * enabled.
+ */
+public class NodeDescriptionPrefetcher implements AccessibilityEventListener {
+
+  private static final String TAG = "NodeDescriptionPrefetcher";
+
+  /** The number of nodes after the focused node whose descriptions are composed ahead. */
+  private static final int PREFETCH_NODE_COUNT = 3;
+
+  /** Events which may change the descriptions of nodes, or the nodes which follow the focus. */
+  private static final int EVENT_MASK =
+      AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+          | AccessibilityEvent.TYPE_VIEW_SCROLLED
+          | AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+          | AccessibilityEvent.TYPE_WINDOWS_CHANGED
+          | AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED
+          | AccessibilityEvent.TYPE_VIEW_SELECTED;
+
+  private final Compositor compositor;
+
+  private final Map<AccessibilityNodeInfoCompat, PrefetchedDescription> descriptions =
+      new ConcurrentHashMap<>();
+
+  private volatile int contentGeneration = 0;
+
+  private @Nullable HandlerThread prefetchThread;
+  private @Nullable Handler prefetchHandler;
+
+  NodeDescriptionPrefetcher(Compositor compositor) {
+    this.compositor = compositor;
+  }
+
+  /**
+   * Starts or stops prefetching. The background thread only runs while prefetching is enabled, and
+   * the prefetched descriptions are dropped when it is disabled.
+   */
+  public void setEnabled(boolean enabled) {
+    if (enabled == (prefetchThread != null)) {
+      return;
+    }
+    // Makes the descriptions of any prefetch which is still running stale.
+    invalidate();
+    if (enabled) {
+      prefetchThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+      prefetchThread.start();
+      prefetchHandler = new Handler(prefetchThread.getLooper());
+    } else {
+      prefetchThread.quit();
+      prefetchThread = null;
+      prefetchHandler = null;
+    }
+  }
+
+  /**
+   * Composes the descriptions of the nodes which follow {@code focusedNode} in traversal order, in
+   * the background. Replaces any pending prefetch.
+   */
+  public void prefetchAfter(AccessibilityNodeInfoCompat focusedNode) {
+    if (prefetchHandler == null) {
+      return;
+    }
+    final int generation = contentGeneration;
+    prefetchHandler.removeCallbacksAndMessages(null);
+    prefetchHandler.post(() -> prefetch(focusedNode, generation));
+  }
+
+  /**
+   * Drops the prefetched descriptions, and any prefetch in progress, after a change which the
+   * accessibility events don't report, such as new image captions, custom labels or preferences.
+   */
+  public void invalidate() {
+    contentGeneration++;
+    descriptions.clear();
+  }
+
+  /**
+   * Returns the prefetched description of {@code node}, or {@code null} if there is none or the
+   * content may have changed since it was composed. May be called on any thread.
+   */
+  public @Nullable CharSequence getDescription(AccessibilityNodeInfoCompat node) {
+    if (descriptions.isEmpty()) {
+      return null;
+    }
+    @Nullable PrefetchedDescription description = descriptions.get(node);
+    if ((description == null) || (description.generation != contentGeneration)) {
+      return null;
+    }
+    return description.text;
+  }
+
+  @Override
+  public int getEventTypes() {
+    return EVENT_MASK;
+  }
+
+  @Override
+  public void onAccessibilityEvent(AccessibilityEvent event, EventId eventId) {
+    if (prefetchThread != null) {
+      contentGeneration++;
+    }
+  }
+
+  /** Runs on the prefetch thread. */
+  private void prefetch(AccessibilityNodeInfoCompat focusedNode, int generation) {
+    @Nullable AccessibilityNodeInfoCompat root = AccessibilityNodeInfoUtils.getRoot(focusedNode);
+    if (root == null) {
+      return;
+    }
+    OrderedTraversalStrategy traversal = new OrderedTraversalStrategy(root);
+
+    // The focused node is kept, because its focus event may not have been composed yet.
+    Set<AccessibilityNodeInfoCompat> keptNodes = new HashSet<>();
+    keptNodes.add(focusedNode);
+    @Nullable AccessibilityNodeInfoCompat node = focusedNode;
+    for (int i = 0; i < PREFETCH_NODE_COUNT; i++) {
+      if (generation != contentGeneration) {
+        return;
+      }
+      node =
+          TraversalStrategyUtils.searchFocus(
+              traversal, node, SEARCH_FOCUS_FORWARD, FILTER_SHOULD_FOCUS);
+      if (node == null) {
+        break;
+      }
+      keptNodes.add(node);
+      composeDescription(node, generation);
+    }
+    if (generation == contentGeneration) {
+      // Drops the descriptions of the nodes which the reader has passed.
+      descriptions.keySet().retainAll(keptNodes);
+    }
+  }
+
+  /** Runs on the prefetch thread. */
+  private void composeDescription(AccessibilityNodeInfoCompat node, int generation) {
+    @Nullable PrefetchedDescription description = descriptions.get(node);
+    if ((description != null) && (description.generation == generation)) {
+      return;
+    }
+    @Nullable CharSequence text = compositor.composeNodeDescription(node);
+    if (text == null) {
+      return;
+    }
+    // A description composed while the content changed is stale once it is stored.
+    descriptions.put(node, new PrefetchedDescription(text, generation));
+    if (LogUtils.shouldLog(Log.VERBOSE)) {
+      LogUtils.v(TAG, "Prefetched description %s for node %s", text, node);
+    }
+  }
+
+  /** A composed description, and the content generation at which it was composed. */
+  private static class PrefetchedDescription {
+    private final @Nullable CharSequence text;
+    private final int generation;
+
+    PrefetchedDescription(@Nullable CharSequence text, int generation) {
+      this.text = text;
+      this.generation = generation;
+    }
+  }
+}
@@ -116,6 +116,7 @@ class NodeVariables implements ParseTree.VariableDelegate {
 
   private static final int NODE_ANNOUNCE_DISABLED = 7057;
   private static final int NODE_WINDOW_IS_IME = 7059;
+  private static final int NODE_PREFETCHED_DESCRIPTION = 7060;
 
   private final Context mContext;
   private final @Nullable ImageContents imageContents;
@@ -131,6 +132,8 @@ class NodeVariables implements ParseTree.VariableDelegate {
   // Stores the user preferred locale changed using language switcher.
   private final @Nullable Locale mUserPreferredLocale;
   private final @Nullable NodeMenuProvider nodeMenuProvider;
+  // The description of mNode composed ahead of focus, which is only set for the source node.
+  private @Nullable CharSequence mPrefetchedDescription;
 
   /**
    * Constructs a NodeVariables, which contains context variables to help generate feedback for an
@@ -197,6 +200,11 @@ class NodeVariables implements ParseTree.VariableDelegate {
     return false;
   }
 
+  /** Sets the description of the node and its descendants, composed before it was focused. */
+  void setPrefetchedDescription(@Nullable CharSequence prefetchedDescription) {
+    mPrefetchedDescription = prefetchedDescription;
+  }
+
   private void setVisitedNodes(Set<AccessibilityNodeInfoCompat> visitedNodes) {
     mVisitedNodes = visitedNodes;
     if (mVisitedNodes != null && !mVisitedNodes.contains(mNode)) {
@@ -343,6 +351,8 @@ class NodeVariables implements ParseTree.VariableDelegate {
         return prepareSpans(mNode.getContentDescription());
       case NODE_ROLE_DESCRIPTION:
         return mNode.getRoleDescription();
+      case NODE_PREFETCHED_DESCRIPTION:
+        return mPrefetchedDescription;
       case NODE_LABEL_TEXT:
         return imageContents == null ? "" : imageContents.getLabel(mNode);
       case NODE_VIEW_ID_TEXT:
@@ -671,5 +681,6 @@ class NodeVariables implements ParseTree.VariableDelegate {
     parseTree.addBooleanVariable("node.isKeyboardWindow", NODE_IS_KEYBOARD_WINDOW);
     parseTree.addStringVariable("node.captionText", NODE_CAPTION_TEXT);
     parseTree.addBooleanVariable("node.announceDisabled", NODE_ANNOUNCE_DISABLED);
+    parseTree.addStringVariable("node.prefetchedDescription", NODE_PREFETCHED_DESCRIPTION);
   }
 }
@@ -23,6 +23,7 @@ import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
 import com.google.android.accessibility.talkback.compositor.parsetree.ParseTree;
 import com.google.android.accessibility.talkback.compositor.parsetree.ParseTree.VariableDelegate;
 import com.google.android.accessibility.utils.ImageContents;
+import com.google.android.accessibility.utils.ImageContents.ReadOnlyImageContents;
 import java.util.Locale;
 
 /** Provides an interface for creating VariableDelegates for the Compositor. */
@@ -31,6 +32,7 @@ class VariablesFactory {
   private final GlobalVariables mGlobalVariables;
   @Nullable private final ImageContents imageContents;
   @Nullable private NodeMenuProvider nodeMenuProvider;
+  @Nullable private NodeDescriptionPrefetcher nodeDescriptionPrefetcher;
   // Stores the user preferred locale changed using language switcher.
   @Nullable private Locale mUserPreferredLocale;
 
@@ -61,6 +63,10 @@ class VariablesFactory {
     this.nodeMenuProvider = nodeMenuProvider;
   }
 
+  void setNodeDescriptionPrefetcher(@Nullable NodeDescriptionPrefetcher nodeDescriptionPrefetcher) {
+    this.nodeDescriptionPrefetcher = nodeDescriptionPrefetcher;
+  }
+
   // Copies node.
   VariableDelegate createLocalVariableDelegate(
       @Nullable AccessibilityEvent event,
@@ -80,13 +86,38 @@ class VariablesFactory {
     // Node variables is constructed last. This ensures that child nodes it creates have access to
     // top level global variables.
     if (node != null) {
-      delegate =
+      NodeVariables nodeVariables =
           new NodeVariables(
               mContext, imageContents, nodeMenuProvider, delegate, node, mUserPreferredLocale);
+      if (nodeDescriptionPrefetcher != null) {
+        nodeVariables.setPrefetchedDescription(nodeDescriptionPrefetcher.getDescription(node));
+      }
+      delegate = nodeVariables;
     }
     return delegate;
   }
 
+  /** Creates a view of the image contents for composing one description off the main thread. */
+  @Nullable
+  ReadOnlyImageContents createReadOnlyImageContents() {
+    return (imageContents == null) ? null : imageContents.createReadOnlyView();
+  }
+
+  /**
+   * Creates a delegate for composing the description of {@code node} off the main thread. The node
+   * menu provider is left out, since it is only used for usage hints.
+   */
+  VariableDelegate createBackgroundNodeDelegate(
+      AccessibilityNodeInfoCompat node, @Nullable ReadOnlyImageContents readOnlyImageContents) {
+    return new NodeVariables(
+        mContext,
+        readOnlyImageContents,
+        /* nodeMenuProvider= */ null,
+        mGlobalVariables,
+        node,
+        mUserPreferredLocale);
+  }
+
   void declareVariables(ParseTree parseTree) {
     if (mGlobalVariables != null) {
       // Allow mGlobalVariables to be null for tests.
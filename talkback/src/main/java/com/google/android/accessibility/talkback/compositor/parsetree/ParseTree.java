@@ -18,10 +18,14 @@ package com.google.android.accessibility.talkback.compositor.parsetree;
 
 import android.content.res.Resources;
 import android.text.TextUtils;
+import android.util.LongSparseArray;
 import android.util.Pair;
 import androidx.annotation.IntDef;
 import androidx.annotation.Nullable;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.reflect.Method;
@@ -310,6 +314,39 @@ public class ParseTree {
     VariableDelegate getArrayChildElement(int variableId, int index);
   }
 
+  /**
+   * An interface for supplying functions to the ParseTree. Unlike functions registered through
+   * {@link #addFunction(String, Object)}, these are called directly instead of through reflection,
+   * and their parameters are read without boxing. Only the method matching the return type the
+   * function was declared with will be called for a given function ID.
+   */
+  public interface FunctionDelegate {
+    boolean callBooleanFunction(int functionId, FunctionParams params);
+
+    int callIntegerFunction(int functionId, FunctionParams params);
+
+    double callNumberFunction(int functionId, FunctionParams params);
+
+    @Nullable
+    CharSequence callStringFunction(int functionId, FunctionParams params);
+  }
+
+  /**
+   * The parameters of a call to a {@link FunctionDelegate}. Each parameter is evaluated when it is
+   * read, so a function should read each of its parameters at most once.
+   */
+  public interface FunctionParams {
+    boolean getBoolean(int index);
+
+    int getInteger(int index);
+
+    double getNumber(int index);
+
+    CharSequence getString(int index);
+
+    List<CharSequence> getArray(int index);
+  }
+
   /** Enum representing the variable types. */
   @IntDef({
     VARIABLE_BOOL,
@@ -324,14 +361,14 @@ public class ParseTree {
   @Retention(RetentionPolicy.SOURCE)
   public @interface VariableType {}
 
-  static final int VARIABLE_BOOL = 0;
-  static final int VARIABLE_INTEGER = 1;
-  static final int VARIABLE_NUMBER = 2;
-  static final int VARIABLE_STRING = 3;
-  static final int VARIABLE_ENUM = 4;
-  static final int VARIABLE_REFERENCE = 5;
-  static final int VARIABLE_ARRAY = 6;
-  static final int VARIABLE_CHILD_ARRAY = 7;
+  public static final int VARIABLE_BOOL = 0;
+  public static final int VARIABLE_INTEGER = 1;
+  public static final int VARIABLE_NUMBER = 2;
+  public static final int VARIABLE_STRING = 3;
+  public static final int VARIABLE_ENUM = 4;
+  public static final int VARIABLE_REFERENCE = 5;
+  public static final int VARIABLE_ARRAY = 6;
+  public static final int VARIABLE_CHILD_ARRAY = 7;
 
   @IntDef({
     OPERATOR_CLASS_NONE,
@@ -384,7 +421,7 @@ public class ParseTree {
   static final int OPERATOR_OR = 12;
   static final int OPERATOR_POW = 13;
 
-  private static class VariableInfo {
+  static class VariableInfo {
     VariableInfo(String inName, @VariableType int inVariableType) {
       name = inName;
       variableType = inVariableType;
@@ -412,6 +449,28 @@ public class ParseTree {
     final String name;
   }
 
+  /** Declaration of a function evaluated by a {@link FunctionDelegate}. */
+  static class FunctionInfo {
+    FunctionInfo(
+        String inName,
+        int inId,
+        @VariableType int inReturnType,
+        @VariableType int[] inParamTypes,
+        FunctionDelegate inDelegate) {
+      name = inName;
+      id = inId;
+      returnType = inReturnType;
+      paramTypes = inParamTypes;
+      delegate = inDelegate;
+    }
+
+    final String name;
+    final int id;
+    @VariableType final int returnType;
+    @VariableType final int[] paramTypes;
+    final FunctionDelegate delegate;
+  }
+
   private static class TreeInfo {
     private final Resources resources;
     private final String packageName;
@@ -424,7 +483,9 @@ public class ParseTree {
     private final Map<String, VariableInfo> mVariables = new HashMap<>();
     private final Map<Integer, Map<String, Integer>> mEnums = new HashMap<>();
     private final Map<String, Pair<Object, Method>> mFunctions = new HashMap<>();
+    private final Map<String, FunctionInfo> mDelegateFunctions = new HashMap<>();
     private final Set<String> mPendingNamedNodes = new HashSet<>();
+    private final Set<Integer> mRawResourceIds = new HashSet<>();
     private final List<Pair<ParseTreeForEachChildNode, JSONObject>> mDeferredForEachChildNodes =
         new ArrayList<>();
 
@@ -434,7 +495,11 @@ public class ParseTree {
     }
   }
 
-  private final Map<Pair<Integer, Integer>, ParseTreeNode> mEvents = new HashMap<>();
+  // Keyed by eventKey(eventId, outputId), so that looking up an output neither allocates nor boxes.
+  private final LongSparseArray<ParseTreeNode> mEvents = new LongSparseArray<>();
+
+  // IDs of the raw resources, such as earcons, which the tree may output.
+  private final Set<Integer> mRawResourceIds = new HashSet<>();
 
   // Data used to build the parse tree.  It's released once the tree is built.
   @Nullable private TreeInfo mTreeInfo;
@@ -664,6 +729,45 @@ public class ParseTree {
     mTreeInfo.mFunctions.put(name, Pair.create(delegate, method));
   }
 
+  /**
+   * Assigns an id to a named function that is evaluated by a {@link FunctionDelegate}.
+   *
+   * @param name Name of the function, as used in the JSON definition.
+   * @param functionId ID passed to the delegate when the function is called. Must be unique.
+   * @param returnType Type returned by the function. Must be a boolean, integer, number or string.
+   * @param delegate The delegate that evaluates the function.
+   * @param paramTypes Types of the function's parameters, in order.
+   */
+  public void addFunction(
+      String name,
+      int functionId,
+      @VariableType int returnType,
+      FunctionDelegate delegate,
+      @VariableType int... paramTypes) {
+    if (mTreeInfo == null) {
+      LogUtils.w(TAG, "Parse tree has been built and is immutable");
+      return;
+    }
+
+    if (returnType != VARIABLE_BOOL
+        && returnType != VARIABLE_INTEGER
+        && returnType != VARIABLE_NUMBER
+        && returnType != VARIABLE_STRING) {
+      throw new IllegalStateException(
+          "Unsupported return type for function " + name + ": " + variableTypeToString(returnType));
+    }
+
+    for (FunctionInfo info : mTreeInfo.mDelegateFunctions.values()) {
+      if (info.id == functionId) {
+        throw new IllegalStateException(
+            "Can't add function: " + name + ", ID " + functionId + " already in use");
+      }
+    }
+
+    mTreeInfo.mDelegateFunctions.put(
+        name, new FunctionInfo(name, functionId, returnType, paramTypes, delegate));
+  }
+
   /**
    * Merges a JSON tree into the parse tree definition. This overwrites any existing nodes or events
    * with the new one in definition.
@@ -751,7 +855,7 @@ public class ParseTree {
             case ParseTree.VARIABLE_ENUM:
             case ParseTree.VARIABLE_STRING:
               mEvents.put(
-                  Pair.create(eventId, outputInfo.id),
+                  eventKey(eventId, outputInfo.id),
                   new ParseTreeCommentNode(
                       createParseTreeFromObject(
                           treeInfo, eventDefinition.opt(outputName), outputInfo),
@@ -779,6 +883,89 @@ public class ParseTree {
               current.second.opt("evaluate"),
               new VariableInfo("function...", VARIABLE_STRING)));
     }
+    mRawResourceIds.addAll(treeInfo.mRawResourceIds);
+  }
+
+  /**
+   * Writes the built parse tree in a compact binary form, which can be loaded with {@link
+   * #buildFromCompiled(DataInputStream)} instead of parsing the JSON definition again. The nodes
+   * that only produce verbose logging are not written.
+   *
+   * <p>The compiled form contains resource IDs, so it is only valid for the APK that wrote it.
+   */
+  public void writeCompiled(DataOutputStream out) throws IOException {
+    if (mTreeInfo != null) {
+      throw new IllegalStateException("Parse tree must be built before it can be compiled");
+    }
+
+    ParseTreeCompiledWriter writer = new ParseTreeCompiledWriter(out);
+    writer.writeHeader();
+    int eventCount = mEvents.size();
+    out.writeInt(eventCount);
+    for (int i = 0; i < eventCount; i++) {
+      out.writeLong(mEvents.keyAt(i));
+      writer.writeNode(mEvents.valueAt(i));
+    }
+  }
+
+  /**
+   * Builds the parse tree from the binary form written by {@link #writeCompiled(DataOutputStream)},
+   * instead of from JSON merged with {@link #mergeTree(JSONObject)}. Enums, events, outputs,
+   * variables and functions must be declared before calling this, exactly as they were when the
+   * compiled form was written. Once this function succeeds, the parse tree can no longer be
+   * modified.
+   *
+   * @throws IOException if the compiled form could not be read.
+   * @throws IllegalStateException if the compiled form does not match the declarations. The parse
+   *     tree is left unbuilt, so it can still be built from JSON.
+   */
+  public void buildFromCompiled(DataInputStream in) throws IOException {
+    if (mTreeInfo == null) {
+      LogUtils.w(TAG, "Parse tree has been built and is immutable");
+      return;
+    }
+
+    TreeInfo treeInfo = mTreeInfo;
+    ParseTreeCompiledReader reader =
+        new ParseTreeCompiledReader(
+            in,
+            treeInfo.resources,
+            treeInfo.mVariables,
+            treeInfo.mFunctions,
+            treeInfo.mDelegateFunctions);
+    reader.readHeader();
+
+    int eventCount = in.readInt();
+    LongSparseArray<ParseTreeNode> events = new LongSparseArray<>(eventCount);
+    for (int i = 0; i < eventCount; i++) {
+      long key = in.readLong();
+      int eventId = (int) (key >> 32);
+      int outputId = (int) key;
+      if (!treeInfo.mEventNames.containsKey(eventId)
+          || !treeInfo.mOutputNames.containsKey(outputId)) {
+        throw new IllegalStateException(
+            "Unknown event " + eventId + " or output " + outputId + " in compiled tree");
+      }
+      events.put(key, reader.readNonNullNode());
+    }
+
+    mTreeInfo = null;
+    for (int i = 0; i < eventCount; i++) {
+      mEvents.put(events.keyAt(i), events.valueAt(i));
+    }
+    mRawResourceIds.addAll(reader.getRawResourceIds());
+  }
+
+  /**
+   * Returns the IDs of the raw resources, such as earcons, referenced by the tree. Only valid once
+   * the tree is built.
+   */
+  public Set<Integer> getRawResourceIds() {
+    return mRawResourceIds;
+  }
+
+  private static long eventKey(int eventId, int outputId) {
+    return ((long) eventId << 32) | (outputId & 0xFFFFFFFFL);
   }
 
   /**
@@ -792,7 +979,7 @@ public class ParseTree {
    */
   public boolean parseEventToBool(
       int eventId, int outputId, boolean defaultValue, VariableDelegate delegate) {
-    ParseTreeNode eventNode = mEvents.get(Pair.create(eventId, outputId));
+    ParseTreeNode eventNode = mEvents.get(eventKey(eventId, outputId));
     if (eventNode != null) {
       return eventNode.resolveToBoolean(delegate, "");
     }
@@ -810,7 +997,7 @@ public class ParseTree {
    */
   public int parseEventToInteger(
       int eventId, int outputId, int defaultValue, VariableDelegate delegate) {
-    ParseTreeNode eventNode = mEvents.get(Pair.create(eventId, outputId));
+    ParseTreeNode eventNode = mEvents.get(eventKey(eventId, outputId));
     if (eventNode != null) {
       return eventNode.resolveToInteger(delegate, "");
     }
@@ -828,7 +1015,7 @@ public class ParseTree {
    */
   public double parseEventToNumber(
       int eventId, int outputId, double defaultValue, VariableDelegate delegate) {
-    ParseTreeNode eventNode = mEvents.get(Pair.create(eventId, outputId));
+    ParseTreeNode eventNode = mEvents.get(eventKey(eventId, outputId));
     if (eventNode != null) {
       return eventNode.resolveToNumber(delegate, "");
     }
@@ -845,7 +1032,7 @@ public class ParseTree {
    */
   @Nullable
   public CharSequence parseEventToString(int eventId, int outputId, VariableDelegate delegate) {
-    ParseTreeNode eventNode = mEvents.get(Pair.create(eventId, outputId));
+    ParseTreeNode eventNode = mEvents.get(eventKey(eventId, outputId));
     if (eventNode != null) {
       return eventNode.resolveToString(delegate, "");
     }
@@ -864,7 +1051,7 @@ public class ParseTree {
    */
   public int parseEventToEnum(
       int eventId, int outputId, int defaultValue, VariableDelegate delegate) {
-    ParseTreeNode eventNode = mEvents.get(Pair.create(eventId, outputId));
+    ParseTreeNode eventNode = mEvents.get(eventKey(eventId, outputId));
     if (eventNode != null) {
       return eventNode.resolveToInteger(delegate, "");
     }
@@ -1066,9 +1253,7 @@ public class ParseTree {
           // Resource follows.
           int tokenEnd = findTokenEnd(value, offset);
           // Since this is handled as an integer, we ignore any parameters.
-          lvalue =
-              new ParseTreeResourceNode(
-                  treeInfo.resources, value.substring(offset, tokenEnd), treeInfo.packageName);
+          lvalue = createResourceNode(treeInfo, value.substring(offset, tokenEnd));
           offset = tokenEnd;
         } else if (current == '%') {
           int tokenEnd = findTokenEnd(value, offset);
@@ -1196,8 +1381,7 @@ public class ParseTree {
               break;
             case '@':
               ParseTreeResourceNode node =
-                  new ParseTreeResourceNode(
-                      treeInfo.resources, value.substring(offset, tokenEnd), treeInfo.packageName);
+                  createResourceNode(treeInfo, value.substring(offset, tokenEnd));
               offset = tokenEnd;
               if (offset < valueLength && value.charAt(offset) == '(') {
                 int paramEnd = findMatchingParen(value, offset);
@@ -1499,6 +1683,15 @@ public class ParseTree {
     return node;
   }
 
+  private static ParseTreeResourceNode createResourceNode(TreeInfo treeInfo, String name) {
+    ParseTreeResourceNode node =
+        new ParseTreeResourceNode(treeInfo.resources, name, treeInfo.packageName);
+    if (node.getRawResourceId() != 0) {
+      treeInfo.mRawResourceIds.add(node.getRawResourceId());
+    }
+    return node;
+  }
+
   private static ParseTreeNode createVariableNode(TreeInfo treeInfo, String name) {
     VariableInfo varInfo = treeInfo.mVariables.get(name);
     if (varInfo == null) {
@@ -1522,13 +1715,17 @@ public class ParseTree {
         throw new IllegalStateException("length() takes exactly one argument: " + value);
       }
       result = new ParseTreeLengthNode(params.get(0));
+    } else if (treeInfo.mDelegateFunctions.containsKey(name)) {
+      List<ParseTreeNode> params = createParamListFromString(treeInfo, value, paramOffset);
+      result =
+          new ParseTreeDelegateFunctionNode(treeInfo.mDelegateFunctions.get(name), params);
     } else {
       Pair<Object, Method> function = treeInfo.mFunctions.get(name);
       if (function == null) {
         throw new IllegalStateException("Unknown function: " + name);
       }
       List<ParseTreeNode> params = createParamListFromString(treeInfo, value, paramOffset);
-      result = new ParseTreeFunctionNode(function.first, function.second, params);
+      result = new ParseTreeFunctionNode(name, function.first, function.second, params);
     }
 
     return new ParseTreeCommentNode(
@@ -16,6 +16,7 @@
 
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,4 +50,10 @@ class ParseTreeArrayNode extends ParseTreeNode {
     }
     return result;
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_ARRAY);
+    writer.writeNodes(mChildren);
+  }
 }
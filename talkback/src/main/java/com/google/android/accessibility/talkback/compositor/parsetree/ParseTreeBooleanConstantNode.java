@@ -16,6 +16,8 @@
 
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
+import java.io.IOException;
+
 class ParseTreeBooleanConstantNode extends ParseTreeNode {
   private final boolean mValue;
 
@@ -32,4 +34,10 @@ class ParseTreeBooleanConstantNode extends ParseTreeNode {
   public boolean resolveToBoolean(ParseTree.VariableDelegate delegate, String logIndent) {
     return mValue;
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_BOOLEAN_CONSTANT);
+    writer.out().writeBoolean(mValue);
+  }
 }
@@ -18,6 +18,7 @@ package com.google.android.accessibility.talkback.compositor.parsetree;
 
 import androidx.annotation.Nullable;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -136,4 +137,16 @@ class ParseTreeCommentNode extends ParseTreeNode {
   private String updateIndent(String logIndent) {
     return mIndent ? logIndent += "  " : logIndent;
   }
+
+  @Override
+  @Nullable
+  ParseTreeNode getCompiledNode() {
+    // Comments only produce verbose logging, so they are replaced by their child.
+    return (mChild != null) ? mChild.getCompiledNode() : null;
+  }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    throw new IllegalStateException("Comment nodes are not written to the compiled parse tree");
+  }
 }
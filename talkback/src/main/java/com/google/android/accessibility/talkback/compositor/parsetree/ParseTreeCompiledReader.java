@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.talkback.compositor.parsetree;
+
+import static com.google.android.accessibility.talkback.compositor.parsetree.ParseTreeCompiledWriter.FORMAT_VERSION;
+import static com.google.android.accessibility.talkback.compositor.parsetree.ParseTreeCompiledWriter.MAGIC;
+
+import android.content.res.Resources;
+import android.util.Pair;
+import androidx.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads a graph of {@link ParseTreeNode}s written by {@link ParseTreeCompiledWriter}. Variables and
+ * functions are resolved against the declarations of the {@link ParseTree} being built, and any
+ * mismatch is reported with an {@link IllegalStateException}.
+ */
+class ParseTreeCompiledReader {
+
+  private final DataInputStream mIn;
+  private final Resources mResources;
+  private final Map<String, ParseTree.VariableInfo> mVariables;
+  private final Map<String, Pair<Object, Method>> mFunctions;
+  private final Map<String, ParseTree.FunctionInfo> mDelegateFunctions;
+  private final List<ParseTreeNode> mNodes = new ArrayList<>();
+  private final Set<Integer> mRawResourceIds = new HashSet<>();
+
+  ParseTreeCompiledReader(
+      DataInputStream in,
+      Resources resources,
+      Map<String, ParseTree.VariableInfo> variables,
+      Map<String, Pair<Object, Method>> functions,
+      Map<String, ParseTree.FunctionInfo> delegateFunctions) {
+    mIn = in;
+    mResources = resources;
+    mVariables = variables;
+    mFunctions = functions;
+    mDelegateFunctions = delegateFunctions;
+  }
+
+  /** Returns the IDs of the raw resources referenced by the nodes read so far. */
+  Set<Integer> getRawResourceIds() {
+    return mRawResourceIds;
+  }
+
+  void readHeader() throws IOException {
+    if (mIn.readInt() != MAGIC) {
+      throw new IllegalStateException("Not a compiled parse tree");
+    }
+    int version = mIn.readInt();
+    if (version != FORMAT_VERSION) {
+      throw new IllegalStateException("Unsupported compiled parse tree version: " + version);
+    }
+  }
+
+  /** Reads a node, replacing a missing node with an empty one. */
+  ParseTreeNode readNonNullNode() throws IOException {
+    ParseTreeNode node = readNode();
+    return (node != null) ? node : new ParseTreeCommentNode(null, "Empty Node", true);
+  }
+
+  @Nullable
+  ParseTreeNode readNode() throws IOException {
+    int tag = mIn.readByte();
+    ParseTreeNode node;
+    switch (tag) {
+      case ParseTreeCompiledWriter.TAG_NULL:
+        return null;
+      case ParseTreeCompiledWriter.TAG_REFERENCE:
+        {
+          int index = mIn.readInt();
+          if (index < 0 || index >= mNodes.size()) {
+            throw new IllegalStateException("Invalid node reference: " + index);
+          }
+          return mNodes.get(index);
+        }
+      case ParseTreeCompiledWriter.TAG_ARRAY:
+        node = new ParseTreeArrayNode(readNodes());
+        break;
+      case ParseTreeCompiledWriter.TAG_BOOLEAN_CONSTANT:
+        node = new ParseTreeBooleanConstantNode(mIn.readBoolean());
+        break;
+      case ParseTreeCompiledWriter.TAG_DELEGATE_FUNCTION:
+        {
+          String name = mIn.readUTF();
+          ParseTree.FunctionInfo function = mDelegateFunctions.get(name);
+          if (function == null) {
+            throw new IllegalStateException("Unknown function: " + name);
+          }
+          node = new ParseTreeDelegateFunctionNode(function, readNodes());
+          break;
+        }
+      case ParseTreeCompiledWriter.TAG_FALLBACK:
+        node = new ParseTreeFallbackNode(readNodes());
+        break;
+      case ParseTreeCompiledWriter.TAG_FOR_EACH_CHILD:
+        {
+          ParseTreeForEachChildNode forEachChildNode =
+              new ParseTreeForEachChildNode(readNonNullNode());
+          // Registered before its function, to match ParseTreeForEachChildNode.writeCompiled().
+          registerNode(forEachChildNode);
+          ParseTreeNode function = readNode();
+          if (function != null) {
+            forEachChildNode.setFunction(function);
+          }
+          return forEachChildNode;
+        }
+      case ParseTreeCompiledWriter.TAG_FOR_REFERENCE:
+        {
+          ParseTreeNode reference = readNonNullNode();
+          node = new ParseTreeForReferenceNode(reference, readNonNullNode());
+          break;
+        }
+      case ParseTreeCompiledWriter.TAG_FUNCTION:
+        {
+          String name = mIn.readUTF();
+          Pair<Object, Method> function = mFunctions.get(name);
+          if (function == null) {
+            throw new IllegalStateException("Unknown function: " + name);
+          }
+          node = new ParseTreeFunctionNode(name, function.first, function.second, readNodes());
+          break;
+        }
+      case ParseTreeCompiledWriter.TAG_IF:
+        {
+          ParseTreeNode condition = readNonNullNode();
+          ParseTreeNode onTrue = readNode();
+          node = new ParseTreeIfNode(condition, onTrue, readNode());
+          break;
+        }
+      case ParseTreeCompiledWriter.TAG_INTEGER_CONSTANT:
+        {
+          int value = mIn.readInt();
+          node = new ParseTreeIntegerConstantNode(value, mIn.readInt());
+          break;
+        }
+      case ParseTreeCompiledWriter.TAG_JOIN:
+        {
+          ParseTreeNode child = readNonNullNode();
+          String separator = mIn.readBoolean() ? mIn.readUTF() : null;
+          node = new ParseTreeJoinNode(child, separator, mIn.readBoolean());
+          break;
+        }
+      case ParseTreeCompiledWriter.TAG_LENGTH:
+        node = new ParseTreeLengthNode(readNonNullNode());
+        break;
+      case ParseTreeCompiledWriter.TAG_NOT:
+        node = new ParseTreeNotNode(readNonNullNode());
+        break;
+      case ParseTreeCompiledWriter.TAG_NUMBER_CONSTANT:
+        node = new ParseTreeNumberConstantNode(mIn.readDouble());
+        break;
+      case ParseTreeCompiledWriter.TAG_OPERATOR:
+        {
+          @ParseTree.Operator int operator = mIn.readInt();
+          ParseTreeNode lvalue = readNonNullNode();
+          node = new ParseTreeOperatorNode(operator, lvalue, readNonNullNode());
+          break;
+        }
+      case ParseTreeCompiledWriter.TAG_RESOURCE:
+        {
+          @ParseTreeResourceNode.Type int type = mIn.readInt();
+          int resourceId = mIn.readInt();
+          ParseTreeResourceNode resourceNode =
+              new ParseTreeResourceNode(mResources, type, resourceId);
+          if (resourceNode.getRawResourceId() != 0) {
+            mRawResourceIds.add(resourceId);
+          }
+          resourceNode.addParams(readNodes());
+          node = resourceNode;
+          break;
+        }
+      case ParseTreeCompiledWriter.TAG_STRING_CONSTANT:
+        node = new ParseTreeStringConstantNode(mIn.readUTF());
+        break;
+      case ParseTreeCompiledWriter.TAG_SWITCH:
+        {
+          ParseTreeNode condition = readNonNullNode();
+          int caseCount = mIn.readInt();
+          Map<Integer, ParseTreeNode> cases = new HashMap<>();
+          for (int i = 0; i < caseCount; i++) {
+            int value = mIn.readInt();
+            cases.put(value, readNonNullNode());
+          }
+          node = new ParseTreeSwitchNode(condition, cases, readNode());
+          break;
+        }
+      case ParseTreeCompiledWriter.TAG_VARIABLE:
+        node = readVariableNode();
+        break;
+      default:
+        throw new IllegalStateException("Unknown node tag: " + tag);
+    }
+    registerNode(node);
+    return node;
+  }
+
+  /** Mirrors {@link ParseTreeCompiledWriter#registerNode(ParseTreeNode)}. */
+  void registerNode(ParseTreeNode node) {
+    mNodes.add(node);
+  }
+
+  private List<ParseTreeNode> readNodes() throws IOException {
+    int count = mIn.readInt();
+    List<ParseTreeNode> nodes = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      nodes.add(readNonNullNode());
+    }
+    return nodes;
+  }
+
+  private ParseTreeNode readVariableNode() throws IOException {
+    String name = mIn.readUTF();
+    @ParseTree.VariableType int type = mIn.readInt();
+    int id = mIn.readInt();
+    int enumType = mIn.readInt();
+
+    ParseTree.VariableInfo info = mVariables.get(name);
+    if (info == null
+        || info.variableType != type
+        || info.id != id
+        || (type == ParseTree.VARIABLE_ENUM && info.enumType != enumType)) {
+      throw new IllegalStateException("Compiled variable doesn't match declaration: " + name);
+    }
+
+    if (type == ParseTree.VARIABLE_ENUM) {
+      return new ParseTreeVariableNode(name, type, id, enumType);
+    } else {
+      return new ParseTreeVariableNode(name, type, id);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.talkback.compositor.parsetree;
+
+import androidx.annotation.Nullable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a graph of {@link ParseTreeNode}s in the binary form read by {@link
+ * ParseTreeCompiledReader}.
+ *
+ * <p>Each node is written as a tag followed by its own data and its children. Nodes that are shared
+ * between several parents, like named nodes, are written once and then referred to by the index in
+ * which they were registered. Comment nodes are not written, since they only produce verbose
+ * logging.
+ */
+class ParseTreeCompiledWriter {
+
+  static final int MAGIC = 0x50547265; // "PTre"
+  static final int FORMAT_VERSION = 1;
+
+  static final int TAG_NULL = 0;
+  static final int TAG_REFERENCE = 1;
+  static final int TAG_ARRAY = 2;
+  static final int TAG_BOOLEAN_CONSTANT = 3;
+  static final int TAG_DELEGATE_FUNCTION = 4;
+  static final int TAG_FALLBACK = 5;
+  static final int TAG_FOR_EACH_CHILD = 6;
+  static final int TAG_FOR_REFERENCE = 7;
+  static final int TAG_FUNCTION = 8;
+  static final int TAG_IF = 9;
+  static final int TAG_INTEGER_CONSTANT = 10;
+  static final int TAG_JOIN = 11;
+  static final int TAG_LENGTH = 12;
+  static final int TAG_NOT = 13;
+  static final int TAG_NUMBER_CONSTANT = 14;
+  static final int TAG_OPERATOR = 15;
+  static final int TAG_RESOURCE = 16;
+  static final int TAG_STRING_CONSTANT = 17;
+  static final int TAG_SWITCH = 18;
+  static final int TAG_VARIABLE = 19;
+
+  private final DataOutputStream mOut;
+  private final Map<ParseTreeNode, Integer> mNodeIndices = new IdentityHashMap<>();
+
+  ParseTreeCompiledWriter(DataOutputStream out) {
+    mOut = out;
+  }
+
+  DataOutputStream out() {
+    return mOut;
+  }
+
+  void writeHeader() throws IOException {
+    mOut.writeInt(MAGIC);
+    mOut.writeInt(FORMAT_VERSION);
+  }
+
+  /** Writes a node and its children, or a reference to the node if it was already written. */
+  void writeNode(@Nullable ParseTreeNode node) throws IOException {
+    if (node != null) {
+      node = node.getCompiledNode();
+    }
+    if (node == null) {
+      mOut.writeByte(TAG_NULL);
+      return;
+    }
+
+    Integer index = mNodeIndices.get(node);
+    if (index != null) {
+      mOut.writeByte(TAG_REFERENCE);
+      mOut.writeInt(index);
+      return;
+    }
+
+    node.writeCompiled(this);
+    if (!mNodeIndices.containsKey(node)) {
+      registerNode(node);
+    }
+  }
+
+  /** Writes the number of nodes in the list, followed by each node. */
+  void writeNodes(List<ParseTreeNode> nodes) throws IOException {
+    mOut.writeInt(nodes.size());
+    for (ParseTreeNode node : nodes) {
+      writeNode(node);
+    }
+  }
+
+  /**
+   * Assigns the next index to a node. Nodes are registered once their children have been written,
+   * unless they register themselves earlier, which must be mirrored by {@link
+   * ParseTreeCompiledReader#registerNode(ParseTreeNode)}.
+   */
+  void registerNode(ParseTreeNode node) {
+    mNodeIndices.put(node, mNodeIndices.size());
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.talkback.compositor.parsetree;
+
+import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A function node evaluated by a {@link ParseTree.FunctionDelegate}. Unlike {@link
+ * ParseTreeFunctionNode}, the function is called directly, and parameters are resolved lazily as
+ * the delegate reads them, so that primitive parameters and results are never boxed.
+ */
+class ParseTreeDelegateFunctionNode extends ParseTreeNode {
+
+  private static final String TAG = "ParseTreeDelegateFunctionNode";
+
+  private final ParseTree.FunctionInfo mFunction;
+  private final List<ParseTreeNode> mParams = new ArrayList<>();
+
+  ParseTreeDelegateFunctionNode(ParseTree.FunctionInfo function, List<ParseTreeNode> params) {
+    if (params.size() != function.paramTypes.length) {
+      throw new IllegalStateException("Incorrect number of params for: " + function.name);
+    }
+    for (int i = 0; i < params.size(); i++) {
+      if (!params.get(i).canCoerceTo(function.paramTypes[i])) {
+        throw new IllegalStateException(
+            "Cannot coerce parameter " + i + " of " + function.name + " to "
+                + ParseTree.variableTypeToString(function.paramTypes[i]));
+      }
+    }
+
+    mFunction = function;
+    mParams.addAll(params);
+  }
+
+  @Override
+  public int getType() {
+    return mFunction.returnType;
+  }
+
+  @Override
+  public boolean canCoerceTo(@ParseTree.VariableType int type) {
+    if (type == mFunction.returnType) {
+      return true;
+    }
+
+    if (mFunction.returnType == ParseTree.VARIABLE_INTEGER) {
+      return type == ParseTree.VARIABLE_NUMBER;
+    }
+    return false;
+  }
+
+  @Override
+  public boolean resolveToBoolean(ParseTree.VariableDelegate delegate, String logIndent) {
+    if (mFunction.returnType != ParseTree.VARIABLE_BOOL) {
+      LogUtils.e(TAG, "Cannot coerce to Boolean");
+      return false;
+    }
+    return mFunction.delegate.callBooleanFunction(mFunction.id, new Params(delegate, logIndent));
+  }
+
+  @Override
+  public int resolveToInteger(ParseTree.VariableDelegate delegate, String logIndent) {
+    if (mFunction.returnType != ParseTree.VARIABLE_INTEGER) {
+      LogUtils.e(TAG, "Cannot coerce to Integer");
+      return 0;
+    }
+    return mFunction.delegate.callIntegerFunction(mFunction.id, new Params(delegate, logIndent));
+  }
+
+  @Override
+  public double resolveToNumber(ParseTree.VariableDelegate delegate, String logIndent) {
+    switch (mFunction.returnType) {
+      case ParseTree.VARIABLE_INTEGER:
+        return mFunction.delegate.callIntegerFunction(
+            mFunction.id, new Params(delegate, logIndent));
+      case ParseTree.VARIABLE_NUMBER:
+        return mFunction.delegate.callNumberFunction(
+            mFunction.id, new Params(delegate, logIndent));
+      default:
+        LogUtils.e(TAG, "Cannot coerce to a Number");
+        return 0;
+    }
+  }
+
+  @Override
+  public CharSequence resolveToString(ParseTree.VariableDelegate delegate, String logIndent) {
+    Params params = new Params(delegate, logIndent);
+    switch (mFunction.returnType) {
+      case ParseTree.VARIABLE_BOOL:
+        return Boolean.toString(mFunction.delegate.callBooleanFunction(mFunction.id, params));
+      case ParseTree.VARIABLE_INTEGER:
+        return Integer.toString(mFunction.delegate.callIntegerFunction(mFunction.id, params));
+      case ParseTree.VARIABLE_NUMBER:
+        return Double.toString(mFunction.delegate.callNumberFunction(mFunction.id, params));
+      case ParseTree.VARIABLE_STRING:
+        {
+          CharSequence result = mFunction.delegate.callStringFunction(mFunction.id, params);
+          return (result == null) ? "" : result;
+        }
+      default:
+        LogUtils.e(TAG, "Cannot coerce to a String");
+        return "";
+    }
+  }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_DELEGATE_FUNCTION);
+    writer.out().writeUTF(mFunction.name);
+    writer.writeNodes(mParams);
+  }
+
+  private class Params implements ParseTree.FunctionParams {
+    private final ParseTree.VariableDelegate mDelegate;
+    private final String mLogIndent;
+
+    Params(ParseTree.VariableDelegate delegate, String logIndent) {
+      mDelegate = delegate;
+      mLogIndent = logIndent;
+    }
+
+    @Override
+    public boolean getBoolean(int index) {
+      return mParams.get(index).resolveToBoolean(mDelegate, mLogIndent);
+    }
+
+    @Override
+    public int getInteger(int index) {
+      return mParams.get(index).resolveToInteger(mDelegate, mLogIndent);
+    }
+
+    @Override
+    public double getNumber(int index) {
+      return mParams.get(index).resolveToNumber(mDelegate, mLogIndent);
+    }
+
+    @Override
+    public CharSequence getString(int index) {
+      return mParams.get(index).resolveToString(mDelegate, mLogIndent);
+    }
+
+    @Override
+    public List<CharSequence> getArray(int index) {
+      return mParams.get(index).resolveToArray(mDelegate, mLogIndent);
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
 import android.text.TextUtils;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -61,4 +62,10 @@ class ParseTreeFallbackNode extends ParseTreeNode {
     }
     return "";
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_FALLBACK);
+    writer.writeNodes(mChildren);
+  }
 }
@@ -17,6 +17,7 @@
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -60,4 +61,13 @@ class ParseTreeForEachChildNode extends ParseTreeNode {
     }
     return result;
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_FOR_EACH_CHILD);
+    writer.writeNode(mChild);
+    // Registered before the function, which may refer back to this node.
+    writer.registerNode(this);
+    writer.writeNode(mFunction);
+  }
 }
@@ -17,6 +17,7 @@
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
 import androidx.annotation.Nullable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -131,4 +132,11 @@ class ParseTreeForReferenceNode extends ParseTreeNode {
       return new ArrayList<>();
     }
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_FOR_REFERENCE);
+    writer.writeNode(mReference);
+    writer.writeNode(mFunction);
+  }
 }
@@ -17,6 +17,7 @@
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
@@ -27,12 +28,14 @@ class ParseTreeFunctionNode extends ParseTreeNode {
   private static final String TAG = "ParseTreeFunctionNode";
 
   @ParseTree.VariableType private final int mType;
+  private final String mName;
   private final Object mDelegate;
   private final Method mFunction;
   private final List<ParseTreeNode> mParams = new ArrayList<>();
   private final int[] mParamTypes;
 
-  ParseTreeFunctionNode(Object delegate, Method function, List<ParseTreeNode> params) {
+  ParseTreeFunctionNode(
+      String name, Object delegate, Method function, List<ParseTreeNode> params) {
     Class<?>[] paramTypes = function.getParameterTypes();
     if (params.size() != paramTypes.length) {
       throw new IllegalStateException("Incorrect number of params for: " + function);
@@ -48,6 +51,7 @@ class ParseTreeFunctionNode extends ParseTreeNode {
     }
 
     mType = getVariableType(function.getReturnType());
+    mName = name;
     mDelegate = delegate;
     mFunction = function;
     // Make sure we can access the function, even if the visibility isn't public.
@@ -213,4 +217,11 @@ class ParseTreeFunctionNode extends ParseTreeNode {
     }
     throw new IllegalStateException("Unsupported variable type: " + clazz);
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_FUNCTION);
+    writer.out().writeUTF(mName);
+    writer.writeNodes(mParams);
+  }
 }
@@ -17,6 +17,7 @@
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
 import androidx.annotation.Nullable;
+import java.io.IOException;
 import java.util.List;
 
 class ParseTreeIfNode extends ParseTreeNode {
@@ -119,4 +120,12 @@ class ParseTreeIfNode extends ParseTreeNode {
       return mOnFalse.resolveToChildArray(delegate, logIndent);
     }
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_IF);
+    writer.writeNode(mCondition);
+    writer.writeNode(mOnTrue);
+    writer.writeNode(mOnFalse);
+  }
 }
@@ -16,6 +16,8 @@
 
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
+import java.io.IOException;
+
 class ParseTreeIntegerConstantNode extends ParseTreeNode {
   private final int mValue;
   private final int mEnumType;
@@ -78,4 +80,11 @@ class ParseTreeIntegerConstantNode extends ParseTreeNode {
   public CharSequence resolveToString(ParseTree.VariableDelegate delegate, String logIndent) {
     return Integer.toString(mValue);
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_INTEGER_CONSTANT);
+    writer.out().writeInt(mValue);
+    writer.out().writeInt(mEnumType);
+  }
 }
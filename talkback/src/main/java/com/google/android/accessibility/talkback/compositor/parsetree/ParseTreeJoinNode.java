@@ -19,6 +19,7 @@ package com.google.android.accessibility.talkback.compositor.parsetree;
 import android.text.SpannableStringBuilder;
 import android.text.TextUtils;
 import com.google.android.accessibility.utils.SpannableUtils;
+import java.io.IOException;
 import java.util.List;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -69,4 +70,15 @@ public class ParseTreeJoinNode extends ParseTreeNode {
     }
     return builder;
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_JOIN);
+    writer.writeNode(mChild);
+    writer.out().writeBoolean(mSeparator != null);
+    if (mSeparator != null) {
+      writer.out().writeUTF(mSeparator.toString());
+    }
+    writer.out().writeBoolean(mPruneEmpty);
+  }
 }
@@ -16,6 +16,8 @@
 
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
+import java.io.IOException;
+
 class ParseTreeLengthNode extends ParseTreeNode {
   private final ParseTreeNode mParam;
 
@@ -65,4 +67,10 @@ class ParseTreeLengthNode extends ParseTreeNode {
       return mParam.getArrayLength(delegate, logIndent);
     }
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_LENGTH);
+    writer.writeNode(mParam);
+  }
 }
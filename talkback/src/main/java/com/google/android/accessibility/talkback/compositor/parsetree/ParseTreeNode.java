@@ -18,6 +18,7 @@ package com.google.android.accessibility.talkback.compositor.parsetree;
 
 import androidx.annotation.Nullable;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -90,4 +91,14 @@ abstract class ParseTreeNode {
     LogUtils.e(TAG, "Cannot query array length of " + getClass());
     return 0;
   }
+
+  // Returns the node that should be written in place of this one in the compiled parse tree, or
+  // null if an empty node should be written.
+  @Nullable
+  ParseTreeNode getCompiledNode() {
+    return this;
+  }
+
+  // Writes the tag and data for this node, and its children, to the compiled parse tree.
+  abstract void writeCompiled(ParseTreeCompiledWriter writer) throws IOException;
 }
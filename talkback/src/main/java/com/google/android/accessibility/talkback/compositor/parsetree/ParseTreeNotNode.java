@@ -16,6 +16,8 @@
 
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
+import java.io.IOException;
+
 class ParseTreeNotNode extends ParseTreeNode {
   private final ParseTreeNode mChild;
 
@@ -36,4 +38,10 @@ class ParseTreeNotNode extends ParseTreeNode {
   public boolean resolveToBoolean(ParseTree.VariableDelegate delegate, String logIndent) {
     return !mChild.resolveToBoolean(delegate, logIndent);
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_NOT);
+    writer.writeNode(mChild);
+  }
 }
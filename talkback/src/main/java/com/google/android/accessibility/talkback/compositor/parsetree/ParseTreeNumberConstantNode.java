@@ -16,6 +16,8 @@
 
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
+import java.io.IOException;
+
 class ParseTreeNumberConstantNode extends ParseTreeNode {
   private final double mValue;
 
@@ -49,4 +51,10 @@ class ParseTreeNumberConstantNode extends ParseTreeNode {
   public CharSequence resolveToString(ParseTree.VariableDelegate delegate, String logIndent) {
     return Double.toString(mValue);
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_NUMBER_CONSTANT);
+    writer.out().writeDouble(mValue);
+  }
 }
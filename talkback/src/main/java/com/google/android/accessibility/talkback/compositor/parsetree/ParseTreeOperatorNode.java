@@ -17,6 +17,7 @@
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.IOException;
 
 class ParseTreeOperatorNode extends ParseTreeNode {
 
@@ -228,4 +229,12 @@ class ParseTreeOperatorNode extends ParseTreeNode {
     LogUtils.e(TAG, "Incompatible types in compare: %d, %d", ltype, rtype);
     return false;
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_OPERATOR);
+    writer.out().writeInt(mOperator);
+    writer.writeNode(mLvalue);
+    writer.writeNode(mRvalue);
+  }
 }
@@ -24,6 +24,7 @@ import android.text.TextUtils;
 import androidx.annotation.IntDef;
 import androidx.annotation.VisibleForTesting;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
@@ -49,6 +50,7 @@ class ParseTreeResourceNode extends ParseTreeNode {
   private final Resources mResources;
   private final int mResourceId;
   @Type private final int mType;
+  private final boolean mIsRaw;
   private final List<ParseTreeNode> mParams = new ArrayList<>();
 
   ParseTreeResourceNode(Resources resources, String resourceName, String packageName) {
@@ -81,12 +83,33 @@ class ParseTreeResourceNode extends ParseTreeNode {
     }
 
     mResourceId = mResources.getIdentifier(name, type, packageName);
+    mIsRaw = type.equals("raw");
 
     if (mResourceId == 0) {
       throw new IllegalStateException("Missing resource: " + resourceName);
     }
   }
 
+  ParseTreeResourceNode(Resources resources, @Type int type, int resourceId) {
+    mResources = resources;
+    mType = type;
+    mResourceId = resourceId;
+    mIsRaw = (type == TYPE_RESOURCE_ID) && isRawResource(resources, resourceId);
+  }
+
+  private static boolean isRawResource(Resources resources, int resourceId) {
+    try {
+      return resources.getResourceTypeName(resourceId).equals("raw");
+    } catch (Resources.NotFoundException e) {
+      return false;
+    }
+  }
+
+  /** Returns the ID of the raw resource, such as an earcon, of this node, or 0 if it has none. */
+  int getRawResourceId() {
+    return mIsRaw ? mResourceId : 0;
+  }
+
   void addParams(List<ParseTreeNode> params) {
     mParams.addAll(params);
   }
@@ -163,6 +186,14 @@ class ParseTreeResourceNode extends ParseTreeNode {
     return result.toArray();
   }
 
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_RESOURCE);
+    writer.out().writeInt(mType);
+    writer.out().writeInt(mResourceId);
+    writer.writeNodes(mParams);
+  }
+
   /** The utility class provide ways to keep spans in template string. */
   @VisibleForTesting(otherwise = VisibleForTesting.PRIVATE)
   protected static class SpannedStringUtils {
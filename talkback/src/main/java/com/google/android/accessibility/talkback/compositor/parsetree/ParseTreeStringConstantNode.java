@@ -16,6 +16,8 @@
 
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
+import java.io.IOException;
+
 class ParseTreeStringConstantNode extends ParseTreeNode {
   private final CharSequence mValue;
 
@@ -42,4 +44,10 @@ class ParseTreeStringConstantNode extends ParseTreeNode {
   public CharSequence resolveToString(ParseTree.VariableDelegate delegate, String logIndent) {
     return mValue;
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_STRING_CONSTANT);
+    writer.out().writeUTF(mValue.toString());
+  }
 }
@@ -17,6 +17,7 @@
 package com.google.android.accessibility.talkback.compositor.parsetree;
 
 import androidx.annotation.Nullable;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -116,4 +117,16 @@ class ParseTreeSwitchNode extends ParseTreeNode {
       return mDefault.resolveToArray(delegate, logIndent);
     }
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_SWITCH);
+    writer.writeNode(mCondition);
+    writer.out().writeInt(mCases.size());
+    for (Map.Entry<Integer, ParseTreeNode> entry : mCases.entrySet()) {
+      writer.out().writeInt(entry.getKey());
+      writer.writeNode(entry.getValue());
+    }
+    writer.writeNode(mDefault);
+  }
 }
@@ -19,6 +19,7 @@ package com.google.android.accessibility.talkback.compositor.parsetree;
 import android.text.TextUtils;
 import androidx.annotation.Nullable;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -325,4 +326,13 @@ class ParseTreeVariableNode extends ParseTreeNode {
       return super.getArrayLength(delegate, logIndent);
     }
   }
+
+  @Override
+  void writeCompiled(ParseTreeCompiledWriter writer) throws IOException {
+    writer.out().writeByte(ParseTreeCompiledWriter.TAG_VARIABLE);
+    writer.out().writeUTF(mName);
+    writer.out().writeInt(mType);
+    writer.out().writeInt(mId);
+    writer.out().writeInt(mEnumType);
+  }
 }
@@ -28,7 +28,6 @@ import android.util.Log;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityManager;
 import android.view.accessibility.AccessibilityNodeInfo;
-import android.view.accessibility.AccessibilityRecord;
 import androidx.core.view.accessibility.AccessibilityEventCompat;
 import androidx.core.view.accessibility.AccessibilityManagerCompat;
 import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
@@ -42,13 +41,13 @@ import com.google.android.accessibility.utils.AccessibilityEventListener;
 import com.google.android.accessibility.utils.AccessibilityEventUtils;
 import com.google.android.accessibility.utils.AccessibilityNodeInfoUtils;
 import com.google.android.accessibility.utils.BuildVersionUtils;
+import com.google.android.accessibility.utils.Performance;
 import com.google.android.accessibility.utils.Performance.EventId;
 import com.google.android.accessibility.utils.Performance.EventIdAnd;
 import com.google.android.accessibility.utils.Role;
 import com.google.android.accessibility.utils.SharedPreferencesUtils;
 import com.google.android.accessibility.utils.output.Utterance;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -120,8 +119,6 @@ public class AccessibilityEventProcessor {
   private RingerModeAndScreenMonitor ringerModeAndScreenMonitor;
   private DelayedEventHandler handler = new DelayedEventHandler();
 
-  private static Method getSourceNodeIdMethod;
-
   private long lastClearedSourceId = -1;
   private int lastClearedWindowId = -1;
   private long lastClearA11yFocus = System.currentTimeMillis();
@@ -131,22 +128,23 @@ public class AccessibilityEventProcessor {
   // If the same node is cleared and set inside this time we ignore the events
   private static final long CLEAR_SET_A11Y_FOCUS_WINDOW = 1000;
 
-  static {
-    try {
-      getSourceNodeIdMethod = AccessibilityRecord.class.getDeclaredMethod("getSourceNodeId");
-      getSourceNodeIdMethod.setAccessible(true);
-    } catch (NoSuchMethodException e) {
-      LogUtils.d(TAG, "Error setting up fields: " + e.toString());
-      e.printStackTrace();
-    }
-  }
-
   /**
    * List of passive event processors. All processors in the list are sent the event in the order
    * they were added.
    */
   private List<AccessibilityEventListener> accessibilityEventListeners = new ArrayList<>();
 
+  /**
+   * The listeners which handle each event type, indexed by the bit position of the type, in the
+   * order they were added. Listeners don't change their event types, so the table is only rebuilt
+   * when listeners are added or removed.
+   */
+  private final AccessibilityEventListener[][] listenersByType =
+      new AccessibilityEventListener[Integer.SIZE][];
+
+  /** The simple class names of {@link #listenersByType}, for logging and performance tracking. */
+  private final String[][] listenerNamesByType = new String[Integer.SIZE][];
+
   private long lastWindowStateChanged;
   private AccessibilityEvent lastFocusedEvent;
 
@@ -173,6 +171,7 @@ public class AccessibilityEventProcessor {
 
     this.service = service;
     initDumpEventMask();
+    rebuildListenersByType();
   }
 
   /** Read dump event configuration from preferences. */
@@ -279,56 +278,49 @@ public class AccessibilityEventProcessor {
   private boolean shouldDropRefocusEvent(AccessibilityEvent event) {
     int eventType = event.getEventType();
     if (eventType == AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUS_CLEARED) {
-      if (getSourceNodeIdMethod != null) {
+      long sourceId = AccessibilityEventUtils.getSourceNodeId(event);
+      if (sourceId != AccessibilityEventUtils.NODE_ID_NONE) {
         AccessibilityRecordCompat record = AccessibilityEventCompat.asRecord(event);
         AccessibilityNodeInfoCompat source = record.getSource();
-        try {
-          lastClearedSourceId = (long) getSourceNodeIdMethod.invoke(event);
-          lastClearedWindowId = event.getWindowId();
-          lastClearA11yFocus = System.currentTimeMillis();
-          if (lastClearedSourceId != lastPronouncedSourceId
-              || lastClearedWindowId != lastPronouncedWindowId) {
-            // something strange. not accessibility focused node sends clear focus event
-            // REFERTO
-            lastClearedSourceId = -1;
-            lastClearedWindowId = -1;
-            lastClearA11yFocus = 0;
-          }
-          // The event needs to be sent to ProcessorPermissionDialogs
-          // to clear the overlay
-          if (source != null
-              && API_REQUIRES_PERMISSION_OVERLAY
-              && TextUtils.equals(
-                  ProcessorPermissionDialogs.ALLOW_BUTTON, source.getViewIdResourceName())) {
-            return false;
-          }
-        } catch (Exception e) {
-          LogUtils.d(TAG, "Exception accessing field: " + e.toString());
+        lastClearedSourceId = sourceId;
+        lastClearedWindowId = event.getWindowId();
+        lastClearA11yFocus = System.currentTimeMillis();
+        if (lastClearedSourceId != lastPronouncedSourceId
+            || lastClearedWindowId != lastPronouncedWindowId) {
+          // something strange. not accessibility focused node sends clear focus event
+          // REFERTO
+          lastClearedSourceId = -1;
+          lastClearedWindowId = -1;
+          lastClearA11yFocus = 0;
+        }
+        // The event needs to be sent to ProcessorPermissionDialogs
+        // to clear the overlay
+        if (source != null
+            && API_REQUIRES_PERMISSION_OVERLAY
+            && TextUtils.equals(
+                ProcessorPermissionDialogs.ALLOW_BUTTON, source.getViewIdResourceName())) {
+          return false;
         }
       }
       return true;
     }
 
     if (eventType == AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED) {
-      if (getSourceNodeIdMethod != null
+      long sourceId = AccessibilityEventUtils.getSourceNodeId(event);
+      if (sourceId != AccessibilityEventUtils.NODE_ID_NONE
           && !EventState.getInstance().checkAndClearRecentFlag(EventState.EVENT_NODE_REFOCUSED)) {
-        try {
-          long sourceId = (long) getSourceNodeIdMethod.invoke(event);
-          int windowId = event.getWindowId();
-          // If this event is fired by the "clear and set a11y focus" issue of Chrome,
-          // ignore and don't speak to the user, otherwise update the node and window IDs
-          // and then process the event.
-          if (System.currentTimeMillis() - lastClearA11yFocus < CLEAR_SET_A11Y_FOCUS_WINDOW
-              && sourceId == lastClearedSourceId
-              && windowId == lastClearedWindowId
-              && !actorState.getFocusHistory().isEventFromFocusManagement(event)) {
-            return true;
-          } else {
-            lastPronouncedSourceId = sourceId;
-            lastPronouncedWindowId = windowId;
-          }
-        } catch (Exception e) {
-          LogUtils.d(TAG, "Exception accessing field: " + e.toString());
+        int windowId = event.getWindowId();
+        // If this event is fired by the "clear and set a11y focus" issue of Chrome,
+        // ignore and don't speak to the user, otherwise update the node and window IDs
+        // and then process the event.
+        if (System.currentTimeMillis() - lastClearA11yFocus < CLEAR_SET_A11Y_FOCUS_WINDOW
+            && sourceId == lastClearedSourceId
+            && windowId == lastClearedWindowId
+            && !actorState.getFocusHistory().isEventFromFocusManagement(event)) {
+          return true;
+        } else {
+          lastPronouncedSourceId = sourceId;
+          lastPronouncedWindowId = windowId;
         }
       }
     }
@@ -496,36 +488,60 @@ public class AccessibilityEventProcessor {
   }
 
   /**
-   * Passes the event to all registered {@link AccessibilityEventListener}s in the order they were
-   * added.
+   * Passes the event to the registered {@link AccessibilityEventListener}s which handle its type,
+   * in the order they were added.
    *
    * @param event The current event.
    */
   private void processEvent(AccessibilityEvent event, EventId eventId) {
+    int typeBit = Integer.numberOfTrailingZeros(event.getEventType());
+    if (typeBit >= Integer.SIZE) {
+      return;
+    }
+    AccessibilityEventListener[] listeners = listenersByType[typeBit];
+    String[] listenerNames = listenerNamesByType[typeBit];
+
     // Log the listeners for this event type.
     if (LogUtils.getLogLevel() <= Log.VERBOSE) {
-      StringBuilder handlerNames = new StringBuilder();
-      for (AccessibilityEventListener eventListener : accessibilityEventListeners) {
-        int eventTypesHandled = eventListener.getEventTypes();
-        if (AccessibilityEventUtils.eventMatchesAnyType(event, eventTypesHandled)) {
-          handlerNames.append((handlerNames.length() == 0) ? "" : ","); // Delimiter
-          handlerNames.append(eventListener.getClass().getSimpleName());
-        }
+      LogUtils.v(TAG, "Event listeners: %s", TextUtils.join(",", listenerNames));
+    }
+
+    // Send events to the only those processors which handle them, timing each processor.
+    Performance performance = Performance.getInstance();
+    boolean trackListeners = performance.getEnabled();
+    for (int i = 0; i < listeners.length; i++) {
+      long startNanos = trackListeners ? System.nanoTime() : 0;
+      listeners[i].onAccessibilityEvent(event, eventId);
+      if (trackListeners) {
+        performance.onListenerHandled(listenerNames[i], System.nanoTime() - startNanos);
       }
-      LogUtils.v(TAG, "Event listeners: %s", handlerNames);
     }
+  }
 
-    // Send events to the only those processors which handle them.
-    for (AccessibilityEventListener eventProcessor : accessibilityEventListeners) {
-      int eventTypesHandled = eventProcessor.getEventTypes();
-      if (AccessibilityEventUtils.eventMatchesAnyType(event, eventTypesHandled)) {
-        eventProcessor.onAccessibilityEvent(event, eventId);
+  /** Rebuilds {@link #listenersByType} from {@link #accessibilityEventListeners}. */
+  private void rebuildListenersByType() {
+    List<AccessibilityEventListener> typeListeners = new ArrayList<>();
+    for (int typeBit = 0; typeBit < Integer.SIZE; typeBit++) {
+      int eventType = 1 << typeBit;
+      typeListeners.clear();
+      for (AccessibilityEventListener listener : accessibilityEventListeners) {
+        if ((listener.getEventTypes() & eventType) != 0) {
+          typeListeners.add(listener);
+        }
+      }
+      String[] names = new String[typeListeners.size()];
+      for (int i = 0; i < names.length; i++) {
+        names[i] = typeListeners.get(i).getClass().getSimpleName();
       }
+      listenersByType[typeBit] =
+          typeListeners.toArray(new AccessibilityEventListener[typeListeners.size()]);
+      listenerNamesByType[typeBit] = names;
     }
   }
 
   public void addAccessibilityEventListener(AccessibilityEventListener listener) {
     accessibilityEventListeners.add(listener);
+    rebuildListenersByType();
   }
 
   public void postRemoveAccessibilityEventListener(final AccessibilityEventListener listener) {
@@ -534,7 +550,9 @@ public class AccessibilityEventProcessor {
             new Runnable() {
               @Override
               public void run() {
-                accessibilityEventListeners.remove(listener);
+                if (accessibilityEventListeners.remove(listener)) {
+                  rebuildListenersByType();
+                }
               }
             });
   }
@@ -20,15 +20,23 @@ import android.util.SparseIntArray;
 import android.view.accessibility.AccessibilityEvent;
 import androidx.core.view.accessibility.AccessibilityEventCompat;
 import com.google.android.accessibility.utils.AccessibilityEventUtils;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.HashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * This class is a queue that tracks events that TalkBack will process. This queue self-prunes
- * events that exceed a maximum threshold for certain event types.
+ * events that exceed a maximum threshold for certain event types, and coalesces repeated events
+ * from the same source.
+ *
+ * <p>Events are kept in a ring buffer. Events which are pruned or coalesced are cleared from their
+ * slot rather than removed, and skipped when dequeued, so that every operation takes constant time
+ * except pruning, which scans for the oldest event of the pruned type.
  */
 class EventQueue {
 
+  private static final int INITIAL_CAPACITY = 16;
+
   /**
    * The maximum number of events for each type included in {@code MASK_LIMITED_EVENT_TYPES} that
    * may remain in the queue.
@@ -44,8 +52,29 @@ class EventQueue {
           | AccessibilityEventCompat.TYPE_VIEW_ACCESSIBILITY_FOCUSED
           | AccessibilityEventCompat.TYPE_VIEW_SCROLLED;
 
-  /** The list responsible for maintaining events in the event queue. */
-  private final ArrayList<AccessibilityEvent> eventQueue = new ArrayList<>();
+  /**
+   * The types of events that replace a queued event of the same type from the same source node and
+   * window. Handlers of these events read the current state of the source, so only the latest
+   * event is useful.
+   */
+  private static final int MASK_COALESCED_EVENT_TYPES =
+      AccessibilityEventCompat.TYPE_VIEW_SCROLLED
+          | AccessibilityEventCompat.TYPE_WINDOW_CONTENT_CHANGED;
+
+  /**
+   * The ring buffer of queued events. Event positions increase forever, and the event at position
+   * {@code p} is stored in slot {@code p & (events.length - 1)}. Slots of removed events are null.
+   */
+  private AccessibilityEvent[] events = new AccessibilityEvent[INITIAL_CAPACITY];
+
+  /** Position of the oldest slot, which may have been cleared. */
+  private long headPosition = 0;
+
+  /** Position after the newest slot. */
+  private long tailPosition = 0;
+
+  /** The number of events in the queue, excluding cleared slots. */
+  private int eventCount = 0;
 
   /**
    * The current number of events in the queue for each event type that match a type defined in
@@ -53,10 +82,20 @@ class EventQueue {
    */
   private final SparseIntArray qualifyingEvents = new SparseIntArray();
 
+  /** The position of the latest queued event from each source, for coalesced event types. */
+  private final HashMap<SourceKey, Long> sourceToPosition = new HashMap<>();
+
+  /** The number of events pruned from the queue since it was created. */
+  private long droppedEventCount = 0;
+
+  /** The number of events replaced by a later event from the same source since creation. */
+  private long coalescedEventCount = 0;
+
   /**
    * Adds an {@link AccessibilityEvent} to the queue for processing. If this addition causes the
    * queue to exceed the maximum allowable events for an event's type, earlier events of this type
-   * will be pruned from the queue.
+   * will be pruned from the queue. If an earlier event of a coalesced type from the same source is
+   * still queued, it is removed in favor of this event.
    *
    * @param event The event to add to the queue
    */
@@ -64,12 +103,28 @@ class EventQueue {
     final AccessibilityEvent clone = AccessibilityEvent.obtain(event);
     final int eventType = clone.getEventType();
 
+    @Nullable SourceKey sourceKey = null;
+    if (AccessibilityEventUtils.eventMatchesAnyType(clone, MASK_COALESCED_EVENT_TYPES)) {
+      sourceKey = SourceKey.of(clone);
+      if (sourceKey != null) {
+        coalesce(sourceKey, clone);
+      }
+    }
+
     if (AccessibilityEventUtils.eventMatchesAnyType(clone, MASK_LIMITED_EVENT_TYPES)) {
       final int eventCountOfType = qualifyingEvents.get(eventType, 0);
       qualifyingEvents.put(eventType, (eventCountOfType + 1));
     }
 
-    eventQueue.add(clone);
+    if (tailPosition - headPosition == events.length) {
+      grow();
+    }
+    if (sourceKey != null) {
+      sourceToPosition.put(sourceKey, tailPosition);
+    }
+    events[slot(tailPosition)] = clone;
+    tailPosition++;
+    eventCount++;
     enforceEventLimits();
   }
 
@@ -79,25 +134,25 @@ class EventQueue {
    * @return The event at the front of the queue.
    */
   public AccessibilityEvent dequeue() {
-    if (eventQueue.isEmpty()) {
-      return null;
-    }
-
-    final AccessibilityEvent event = eventQueue.remove(0);
-
-    if (event != null
-        && AccessibilityEventUtils.eventMatchesAnyType(event, MASK_LIMITED_EVENT_TYPES)) {
-      final int eventType = event.getEventType();
-      final int eventCountOfType = qualifyingEvents.get(eventType, 0);
-      qualifyingEvents.put(eventType, (eventCountOfType - 1));
+    while (headPosition < tailPosition) {
+      final long position = headPosition++;
+      final AccessibilityEvent event = events[slot(position)];
+      if (event != null) {
+        removeAt(position, event);
+        return event;
+      }
     }
-    return event;
+    return null;
   }
 
   /** Clears the event queue and discards all events waiting for processing. */
   public void clear() {
-    eventQueue.clear();
+    Arrays.fill(events, null);
+    headPosition = 0;
+    tailPosition = 0;
+    eventCount = 0;
     qualifyingEvents.clear();
+    sourceToPosition.clear();
   }
 
   /**
@@ -106,7 +161,73 @@ class EventQueue {
    * @return {@code true} if the queue is empty, {@code false} otherwise
    */
   public boolean isEmpty() {
-    return eventQueue.isEmpty();
+    return eventCount == 0;
+  }
+
+  /** Returns the number of events pruned because too many events of their type were queued. */
+  public long getDroppedEventCount() {
+    return droppedEventCount;
+  }
+
+  /** Returns the number of events replaced by a later event from the same source. */
+  public long getCoalescedEventCount() {
+    return coalescedEventCount;
+  }
+
+  private int slot(long position) {
+    return (int) position & (events.length - 1);
+  }
+
+  /** Doubles the capacity of the ring buffer, keeping each event at its position. */
+  private void grow() {
+    final AccessibilityEvent[] oldEvents = events;
+    final int oldMask = oldEvents.length - 1;
+    events = new AccessibilityEvent[oldEvents.length * 2];
+    for (long position = headPosition; position < tailPosition; position++) {
+      events[slot(position)] = oldEvents[(int) position & oldMask];
+    }
+  }
+
+  /**
+   * Removes the queued event from the same source as {@code event}, if {@code event} carries all of
+   * its content change types. Queued events are sealed, so their change types can't be merged into
+   * {@code event}; an event with other change types is kept instead.
+   */
+  private void coalesce(SourceKey sourceKey, AccessibilityEvent event) {
+    @Nullable Long position = sourceToPosition.get(sourceKey);
+    if ((position == null) || (position < headPosition)) {
+      return;
+    }
+    final AccessibilityEvent queuedEvent = events[slot(position)];
+    if (queuedEvent == null) {
+      return;
+    }
+    final int queuedChangeTypes = queuedEvent.getContentChangeTypes();
+    if ((queuedChangeTypes & ~event.getContentChangeTypes()) != 0) {
+      return;
+    }
+    removeAt(position, queuedEvent);
+    coalescedEventCount++;
+  }
+
+  /** Clears the slot of {@code event} at {@code position}, and stops counting and indexing it. */
+  private void removeAt(long position, AccessibilityEvent event) {
+    events[slot(position)] = null;
+    eventCount--;
+
+    if (AccessibilityEventUtils.eventMatchesAnyType(event, MASK_LIMITED_EVENT_TYPES)) {
+      final int eventType = event.getEventType();
+      final int eventCountOfType = qualifyingEvents.get(eventType, 0);
+      qualifyingEvents.put(eventType, (eventCountOfType - 1));
+    }
+    if (AccessibilityEventUtils.eventMatchesAnyType(event, MASK_COALESCED_EVENT_TYPES)) {
+      // A later event from the same source is indexed instead, if it wasn't coalesced.
+      @Nullable SourceKey sourceKey = SourceKey.of(event);
+      @Nullable Long indexedPosition = (sourceKey == null) ? null : sourceToPosition.get(sourceKey);
+      if ((indexedPosition != null) && (indexedPosition == position)) {
+        sourceToPosition.remove(sourceKey);
+      }
+    }
   }
 
   /**
@@ -125,17 +246,17 @@ class EventQueue {
       }
     }
 
-    final Iterator<AccessibilityEvent> iterator = eventQueue.iterator();
-    while (iterator.hasNext() && (eventTypesToPrune != 0)) {
-      final AccessibilityEvent next = iterator.next();
+    for (long position = headPosition;
+        (position < tailPosition) && (eventTypesToPrune != 0);
+        position++) {
+      final AccessibilityEvent next = events[slot(position)];
 
       // Prune offending events
-      if (AccessibilityEventUtils.eventMatchesAnyType(next, eventTypesToPrune)) {
+      if ((next != null) && AccessibilityEventUtils.eventMatchesAnyType(next, eventTypesToPrune)) {
         final int eventType = next.getEventType();
-        int eventCountOfType = qualifyingEvents.get(eventType, 0);
-        eventCountOfType--;
-        qualifyingEvents.put(eventType, eventCountOfType);
-        iterator.remove();
+        removeAt(position, next);
+        droppedEventCount++;
+        final int eventCountOfType = qualifyingEvents.get(eventType, 0);
 
         // Stop pruning further events of this type if the number of
         // events is below the limit
@@ -145,4 +266,45 @@ class EventQueue {
       }
     }
   }
+
+  /** Identifies the source node and window of an event, per event type. */
+  private static class SourceKey {
+    private final int eventType;
+    private final int windowId;
+    private final long nodeId;
+
+    private SourceKey(int eventType, int windowId, long nodeId) {
+      this.eventType = eventType;
+      this.windowId = windowId;
+      this.nodeId = nodeId;
+    }
+
+    /** Returns the key of {@code event}, or {@code null} if its source is unknown. */
+    static @Nullable SourceKey of(AccessibilityEvent event) {
+      long nodeId = AccessibilityEventUtils.getSourceNodeId(event);
+      if (nodeId == AccessibilityEventUtils.NODE_ID_NONE) {
+        return null;
+      }
+      return new SourceKey(event.getEventType(), event.getWindowId(), nodeId);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object other) {
+      if (other == this) {
+        return true;
+      }
+      if (!(other instanceof SourceKey)) {
+        return false;
+      }
+      SourceKey otherKey = (SourceKey) other;
+      return (eventType == otherKey.eventType)
+          && (windowId == otherKey.windowId)
+          && (nodeId == otherKey.nodeId);
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (nodeId ^ (nodeId >>> 32)) * 31 + windowId * 7 + eventType;
+    }
+  }
 }
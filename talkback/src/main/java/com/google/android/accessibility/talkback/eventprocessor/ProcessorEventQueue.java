@@ -43,10 +43,10 @@ public class ProcessorEventQueue implements AccessibilityEventListener {
       AccessibilityEvent.TYPES_ALL_MASK;
 
   /**
-   * We keep the accessibility events to be processed. If a received event is the same type as the
-   * previous one it replaces the latter, otherwise it is added to the queue. All events in this
-   * queue are processed while we speak and this occurs after a certain timeout since the last
-   * received event.
+   * We keep the accessibility events to be processed. If a received scroll or content-change event
+   * has the same source as a queued one it replaces the latter, otherwise it is added to the queue.
+   * All events in this queue are processed while we speak and this occurs after a certain timeout
+   * since the last received event.
    */
   private final EventQueue eventQueue = new EventQueue();
 
@@ -119,6 +119,11 @@ public class ProcessorEventQueue implements AccessibilityEventListener {
 
         synchronized (parent.eventQueue) {
           if (parent.eventQueue.isEmpty()) {
+            LogUtils.v(
+                TAG,
+                "Event queue drained, dropped=%d coalesced=%d",
+                parent.eventQueue.getDroppedEventCount(),
+                parent.eventQueue.getCoalescedEventCount());
             return;
           }
 
@@ -19,8 +19,6 @@ package com.google.android.accessibility.talkback.eventprocessor;
 import static com.google.android.accessibility.talkback.Feedback.HINT;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-import android.content.SharedPreferences;
-import android.content.res.Resources;
 import android.text.Spannable;
 import android.text.SpannableString;
 import android.text.TextUtils;
@@ -32,9 +30,9 @@ import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
 import com.google.android.accessibility.talkback.Feedback;
 import com.google.android.accessibility.talkback.Pipeline;
 import com.google.android.accessibility.talkback.R;
+import com.google.android.accessibility.talkback.TalkBackConfig;
 import com.google.android.accessibility.talkback.TalkBackService;
 import com.google.android.accessibility.talkback.compositor.GlobalVariables;
-import com.google.android.accessibility.talkback.utils.VerbosityPreferences;
 import com.google.android.accessibility.utils.AccessibilityEventListener;
 import com.google.android.accessibility.utils.AccessibilityEventUtils;
 import com.google.android.accessibility.utils.AccessibilityNodeInfoUtils;
@@ -42,7 +40,6 @@ import com.google.android.accessibility.utils.LocaleUtils;
 import com.google.android.accessibility.utils.PackageManagerUtils;
 import com.google.android.accessibility.utils.Performance.EventId;
 import com.google.android.accessibility.utils.Role;
-import com.google.android.accessibility.utils.SharedPreferencesUtils;
 import com.google.android.accessibility.utils.output.FeedbackItem;
 import com.google.android.accessibility.utils.output.SpeechController;
 import com.google.android.accessibility.utils.output.SpeechController.SpeakOptions;
@@ -98,7 +95,6 @@ public class ProcessorPhoneticLetters implements AccessibilityEventListener {
           | AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED
           | AccessibilityEvent.TYPE_VIEW_TEXT_TRAVERSED_AT_MOVEMENT_GRANULARITY;
 
-  private final SharedPreferences prefs;
   private final TalkBackService service;
 
   /** Callback to return generated feedback to pipeline. */
@@ -109,7 +105,6 @@ public class ProcessorPhoneticLetters implements AccessibilityEventListener {
       new HashMap<String, Map<String, String>>();
 
   public ProcessorPhoneticLetters(TalkBackService service) {
-    prefs = SharedPreferencesUtils.getSharedPreferences(service);
     this.service = service;
   }
 
@@ -180,12 +175,7 @@ public class ProcessorPhoneticLetters implements AccessibilityEventListener {
   }
 
   private boolean arePhoneticLettersEnabled() {
-    final Resources res = service.getResources();
-    return VerbosityPreferences.getPreferenceValueBool(
-        prefs,
-        res,
-        res.getString(R.string.pref_phonetic_letters_key),
-        res.getBoolean(R.bool.pref_phonetic_letters_default));
+    return TalkBackConfig.get(service).phoneticLetters;
   }
 
   private boolean isKeyboardEvent(AccessibilityEvent event) {
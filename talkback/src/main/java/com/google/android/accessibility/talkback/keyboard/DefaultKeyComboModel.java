@@ -36,6 +36,7 @@ public class DefaultKeyComboModel implements KeyComboModel {
   private final KeyComboPersister persister;
 
   private int triggerModifier = KeyEvent.META_ALT_ON;
+  @Nullable private OnKeyComboChangedListener onKeyComboChangedListener;
 
   public DefaultKeyComboModel(Context context) {
     this.context = context;
@@ -161,6 +162,11 @@ public class DefaultKeyComboModel implements KeyComboModel {
     keyComboCodeMap.put(key, persister.getKeyComboCode(key));
   }
 
+  @Override
+  public void setOnKeyComboChangedListener(@Nullable OnKeyComboChangedListener listener) {
+    onKeyComboChangedListener = listener;
+  }
+
   @Override
   public int getTriggerModifier() {
     return triggerModifier;
@@ -187,6 +193,7 @@ public class DefaultKeyComboModel implements KeyComboModel {
   @Override
   public void notifyTriggerModifierChanged() {
     loadTriggerModifierFromPreferences();
+    notifyKeyComboChanged();
   }
 
   @Override
@@ -536,6 +543,13 @@ public class DefaultKeyComboModel implements KeyComboModel {
   public void saveKeyComboCode(String key, long keyComboCode) {
     persister.saveKeyCombo(key, keyComboCode);
     keyComboCodeMap.put(key, keyComboCode);
+    notifyKeyComboChanged();
+  }
+
+  private void notifyKeyComboChanged() {
+    if (onKeyComboChangedListener != null) {
+      onKeyComboChangedListener.onKeyComboChanged();
+    }
   }
 
   @Override
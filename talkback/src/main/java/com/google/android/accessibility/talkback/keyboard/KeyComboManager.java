@@ -199,6 +199,8 @@ public class KeyComboManager implements ServiceKeyEventListener, ServiceStateLis
   private Context context;
   private boolean matchKeyCombo = true;
   private KeyComboModel keyComboModel;
+  /** The combos of {@link #keyComboModel}, or {@code null} if the model changed since compiling. */
+  @Nullable private KeyComboTable keyComboTable;
   private int serviceState = SERVICE_STATE_INACTIVE;
   private ServiceKeyEventListener keyEventDelegate;
   private KeyComboMapper keyComboMapper;
@@ -211,7 +213,7 @@ public class KeyComboManager implements ServiceKeyEventListener, ServiceStateLis
     this.context = context;
     isArc = FeatureSupport.isArc();
     initializeDefaultPreferenceValues();
-    keyComboModel = createKeyComboModel();
+    refreshKeyComboModel();
   }
 
   // TODO: KeyComboManager would be separated into KeyComboManager
@@ -279,6 +281,28 @@ public class KeyComboManager implements ServiceKeyEventListener, ServiceStateLis
   /** Refreshes key combo model after key map changes. */
   public void refreshKeyComboModel() {
     keyComboModel = createKeyComboModel();
+    keyComboTable = null;
+    if (keyComboModel != null) {
+      // Edits of the model from the keyboard shortcut settings take effect with the next key.
+      keyComboModel.setOnKeyComboChangedListener(() -> keyComboTable = null);
+      keyComboTable = compileKeyComboTable();
+    }
+  }
+
+  /** Compiles the combos of {@link #keyComboModel}, resolving the action of each one. */
+  private KeyComboTable compileKeyComboTable() {
+    Map<String, Long> keyComboCodeMap = keyComboModel.getKeyComboCodeMap();
+    int triggerModifier = keyComboModel.getTriggerModifier();
+    KeyComboTable table = new KeyComboTable(keyComboCodeMap.size());
+    for (Map.Entry<String, Long> entry : keyComboCodeMap.entrySet()) {
+      long keyComboCode = entry.getValue();
+      int actionId = getActionIdFromKey(entry.getKey());
+      table.put(
+          getKeyComboCode(getModifier(keyComboCode) | triggerModifier, getKeyCode(keyComboCode)),
+          actionId,
+          getKeyComboStringRepresentation(actionId));
+    }
+    return table;
   }
 
   /** Returns modifier part of key combo code. */
@@ -768,15 +792,14 @@ public class KeyComboManager implements ServiceKeyEventListener, ServiceStateLis
     // If the current set of keys is a partial combo, consume the event.
     hasPartialMatch = false;
 
-    for (Map.Entry<String, Long> entry : keyComboModel.getKeyComboCodeMap().entrySet()) {
-      if (!isServiceActive) {
-        continue;
+    if (isServiceActive) {
+      if (keyComboTable == null) {
+        keyComboTable = compileKeyComboTable();
       }
-
-      final int match = matchKeyEventWith(event, triggerModifier, entry.getValue());
-      if (match == EXACT_MATCH) {
-        int comboId = getActionIdFromKey(entry.getKey());
-        String comboName = getKeyComboStringRepresentation(comboId);
+      long keyComboCode = currentKeyComboCode;
+      if (keyComboTable.contains(keyComboCode)) {
+        int comboId = keyComboTable.getActionId(keyComboCode);
+        String comboName = keyComboTable.getActionName(keyComboCode);
         EventId eventId = Performance.getInstance().onKeyComboEventReceived(comboId);
         // Checks interrupt events if matches key combos. To prevent interrupting actions generated
         // by key combos, we should send interrupt events
@@ -789,7 +812,11 @@ public class KeyComboManager implements ServiceKeyEventListener, ServiceStateLis
         return true;
       }
 
-      if (match == PARTIAL_MATCH) {
+      // Otherwise, all modifiers of some combo must be down.
+      int metaState = getModifier(keyComboCode);
+      if (metaState != 0
+          && KeyEvent.isModifierKey(getKeyCode(keyComboCode))
+          && keyComboTable.isPartialMatch(metaState)) {
         hasPartialMatch = true;
       }
     }
@@ -819,34 +846,6 @@ public class KeyComboManager implements ServiceKeyEventListener, ServiceStateLis
     return hasPartialMatch;
   }
 
-  private int matchKeyEventWith(KeyEvent event, int triggerModifier, long keyComboCode) {
-    int keyCode = getConvertedKeyCode(event);
-    int metaState = event.getModifiers() & KEY_EVENT_MODIFIER_MASK;
-
-    int targetKeyCode = getKeyCode(keyComboCode);
-    int targetMetaState = getModifier(keyComboCode) | triggerModifier;
-
-    // Handle exact matches first.
-    if (metaState == targetMetaState && keyCode == targetKeyCode) {
-      return EXACT_MATCH;
-    }
-
-    if (targetMetaState != 0 && metaState == 0) {
-      return NO_MATCH;
-    }
-
-    // Otherwise, all modifiers must be down.
-    if (KeyEvent.isModifierKey(keyCode)
-        && targetMetaState != 0
-        && (targetMetaState & metaState) != 0) {
-      // Partial match.
-      return PARTIAL_MATCH;
-    }
-
-    // No match.
-    return NO_MATCH;
-  }
-
   /**
    * Notifies the {@link KeyComboMapper} whether should interrupt or not by checking the ActionId.
    *
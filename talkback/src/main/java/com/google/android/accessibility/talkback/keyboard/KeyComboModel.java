@@ -17,6 +17,7 @@
 package com.google.android.accessibility.talkback.keyboard;
 
 import android.view.KeyEvent;
+import androidx.annotation.Nullable;
 import java.util.Map;
 
 /**
@@ -28,6 +29,14 @@ public interface KeyComboModel {
   int KEY_COMBO_CODE_INVALID = -1;
   int NO_MODIFIER = 0;
 
+  /** Listener to be notified when key combo codes or the trigger modifier change. */
+  interface OnKeyComboChangedListener {
+    void onKeyComboChanged();
+  }
+
+  /** Sets the listener for changes of this model. Sets null to remove current one. */
+  void setOnKeyComboChangedListener(@Nullable OnKeyComboChangedListener listener);
+
   /**
    * Returns modifier of this model. If this model doesn't have modifier,
    * KEY_COMBO_MODEL_NO_MODIFIER will be returned.
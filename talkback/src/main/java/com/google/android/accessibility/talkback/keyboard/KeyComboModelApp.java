@@ -34,6 +34,7 @@ public class KeyComboModelApp implements KeyComboModel {
   private final Context context;
   private final KeyComboPersister persister;
   private final Map<String, Long> keyComboCodeMap = new TreeMap<>();
+  @Nullable private OnKeyComboChangedListener onKeyComboChangedListener;
 
   /**
    * Search key (meta key) cannot be used as part of key combination since onKey method of
@@ -50,6 +51,11 @@ public class KeyComboModelApp implements KeyComboModel {
     loadCombos();
   }
 
+  @Override
+  public void setOnKeyComboChangedListener(@Nullable OnKeyComboChangedListener listener) {
+    onKeyComboChangedListener = listener;
+  }
+
   @Override
   public int getTriggerModifier() {
     return NO_MODIFIER;
@@ -241,6 +247,9 @@ public class KeyComboModelApp implements KeyComboModel {
 
     if (keyComboCodeMap.containsKey(key)) {
       keyComboCodeMap.put(key, keyComboCode);
+      if (onKeyComboChangedListener != null) {
+        onKeyComboChangedListener.onKeyComboChanged();
+      }
     }
   }
 
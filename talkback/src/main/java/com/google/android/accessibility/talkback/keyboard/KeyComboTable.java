@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.talkback.keyboard;
+
+/**
+ * The key combos of a {@link KeyComboModel}, compiled for matching key events without scanning the
+ * model.
+ *
+ * <p>Key combo codes are stored with the trigger modifier of the model, as they are produced by
+ * {@link KeyComboManager#getKeyComboCode(android.view.KeyEvent)}. Each code maps to an action id
+ * from {@link KeyComboManager}, in an open-addressing hash table with linear probing.
+ */
+final class KeyComboTable {
+
+  /** The table is kept at most half full. */
+  private static final int LOAD_FACTOR_INVERSE = 2;
+
+  private final long[] codes;
+  private final int[] actionIds;
+  private final String[] actionNames;
+  private final boolean[] occupied;
+  private final int mask;
+
+  /** The union of the modifiers of all combos, which a partial combo must share. */
+  private int partialMatchModifiers;
+
+  KeyComboTable(int capacity) {
+    int size = Integer.highestOneBit(Math.max(1, capacity * LOAD_FACTOR_INVERSE - 1)) << 1;
+    codes = new long[size];
+    actionIds = new int[size];
+    actionNames = new String[size];
+    occupied = new boolean[size];
+    mask = size - 1;
+  }
+
+  /**
+   * Adds a combo with {@code keyComboCode}, including the trigger modifier. If the code was added
+   * before, the first action is kept.
+   */
+  void put(long keyComboCode, int actionId, String actionName) {
+    int slot = findSlot(keyComboCode);
+    if (!occupied[slot]) {
+      occupied[slot] = true;
+      codes[slot] = keyComboCode;
+      actionIds[slot] = actionId;
+      actionNames[slot] = actionName;
+    }
+    partialMatchModifiers |= KeyComboManager.getModifier(keyComboCode);
+  }
+
+  /** Returns whether there is a combo with {@code keyComboCode}. */
+  boolean contains(long keyComboCode) {
+    return occupied[findSlot(keyComboCode)];
+  }
+
+  /**
+   * Returns the action of the combo with {@code keyComboCode}, or {@link
+   * KeyComboManager#ACTION_UNKNOWN} if there is none.
+   */
+  int getActionId(long keyComboCode) {
+    int slot = findSlot(keyComboCode);
+    return occupied[slot] ? actionIds[slot] : KeyComboManager.ACTION_UNKNOWN;
+  }
+
+  /** Returns the name of the action from {@link #getActionId(long)}. */
+  String getActionName(long keyComboCode) {
+    return actionNames[findSlot(keyComboCode)];
+  }
+
+  /**
+   * Returns whether a key event with {@code modifiers} down may be the start of a combo, because
+   * some combo uses one of the modifiers.
+   */
+  boolean isPartialMatch(int modifiers) {
+    return (partialMatchModifiers & modifiers) != 0;
+  }
+
+  private int findSlot(long keyComboCode) {
+    int slot = hash(keyComboCode) & mask;
+    while (occupied[slot] && codes[slot] != keyComboCode) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private static int hash(long keyComboCode) {
+    int hash = (int) (keyComboCode ^ (keyComboCode >>> 32));
+    return hash ^ (hash >>> 16);
+  }
+}
@@ -45,11 +45,12 @@ import com.google.android.accessibility.utils.labeling.LabelProviderClient;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.NavigableSet;
-import java.util.TreeSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -57,13 +58,16 @@ import org.checkerframework.checker.nullness.qual.Nullable;
  * Manages logic for prefetching, retrieval, addition, updating, and removal of custom view labels
  * and their associated resources.
  *
- * <p>This class ties together an underlying label database with a LRU label cache. It provides
- * convenience methods for accessing and changing the state of labels, both persisted and in memory.
- * Methods in this class will often return nothing, and may expose asynchronous callbacks wrapped by
- * request classes to return results from processing activities on different threads.
+ * <p>This class ties together an underlying label database with an in-memory label index. It
+ * provides convenience methods for accessing and changing the state of labels, both persisted and
+ * in memory. Methods in this class will often return nothing, and may expose asynchronous
+ * callbacks wrapped by request classes to return results from processing activities on different
+ * threads.
  *
  * <p>This class also serves as an {@link AccessibilityEventListener} for purposes of automatically
- * prefetching labels into the managed cache.
+ * prefetching labels into the managed index. The labels of a package in the current locale are
+ * fetched when one of its windows is entered, and refetched only when labels in that package
+ * change.
  */
 // TODO: Most public methods in this class should support optional callbacks.
 public class CustomLabelManager implements LabelManager, AccessibilityEventListener {
@@ -135,29 +139,36 @@ public class CustomLabelManager implements LabelManager, AccessibilityEventListe
     return null;
   }
 
-  private final NavigableSet<Label> labelCache =
-      new TreeSet<>(
-          new Comparator<Label>() {
-            // Note this comparator is not consistent with equals in Label, we should just implement
-            // compareTo there, but will wait for BrailleBack to be merged with TalkBack
-            @Override
-            public int compare(Label first, Label second) {
-              if (first == null) {
-                if (second == null) {
-                  return 0;
-                } else {
-                  return -1;
-                }
-              }
+  /**
+   * Maps each package whose labels have been fetched to its labels in the current locale, keyed by
+   * view name.
+   */
+  private final Map<String, Map<String, Label>> labelsByPackage = new HashMap<>();
+
+  /**
+   * Maps the fully-qualified resource name of each label in {@link #labelsByPackage} to the label,
+   * so that labels can be looked up for every node without parsing its resource name. It is only
+   * changed on the main thread, but may be read on any thread.
+   */
+  private final Map<String, Label> labelsByResourceName = new ConcurrentHashMap<>();
+
+  /** Packages whose labels are being fetched. */
+  private final Set<String> pendingPackages = new HashSet<>();
+
+  /**
+   * Packages whose labels have been fetched because a node was looked up, since the last refresh,
+   * so that a package whose fetch failed is not fetched again for every node.
+   */
+  private final Set<String> fetchedOnLookupPackages = new HashSet<>();
 
-              if (second == null) return 1;
+  /** Incremented when the index is cleared, to drop the results of fetches started before. */
+  private int indexGeneration;
 
-              int ret = first.getPackageName().compareTo(second.getPackageName());
-              if (ret != 0) return ret;
+  /** The package of the most recent window entered, whose labels are kept loaded. */
+  private @Nullable String activePackageName;
 
-              return first.getViewName().compareTo(second.getViewName());
-            }
-          });
+  /** Notified when the labels returned by {@link #getLabelForViewIdFromCache} may change. */
+  private @Nullable Runnable labelsChangedListener;
 
   private final CacheRefreshReceiver refreshReceiver = new CacheRefreshReceiver();
   private final LocaleChangedReceiver localeChangedReceiver = new LocaleChangedReceiver();
@@ -217,7 +228,20 @@ public class CustomLabelManager implements LabelManager, AccessibilityEventListe
     this.context.registerReceiver(refreshReceiver, REFRESH_INTENT_FILTER);
     this.context.registerReceiver(
         localeChangedReceiver, new IntentFilter(Intent.ACTION_LOCALE_CHANGED));
-    refreshCache();
+  }
+
+  /**
+   * Sets a listener which is run whenever labels are added, updated, removed or reloaded, so that
+   * descriptions composed from the previous labels can be dropped.
+   */
+  public void setLabelsChangedListener(@Nullable Runnable listener) {
+    labelsChangedListener = listener;
+  }
+
+  private void notifyLabelsChanged() {
+    if (labelsChangedListener != null) {
+      labelsChangedListener.run();
+    }
   }
 
   private void checkUiThread() {
@@ -259,28 +283,43 @@ public class CustomLabelManager implements LabelManager, AccessibilityEventListe
    */
   @Override
   public @Nullable Label getLabelForViewIdFromCache(String resourceName) {
-    if (!isInitialized()) {
+    if (!isInitialized() || resourceName == null) {
       return null;
     }
 
-    Pair<String, String> parsedId = splitResourceName(resourceName);
-    if (parsedId == null) {
-      return null;
+    @Nullable Label label = labelsByResourceName.get(resourceName);
+    if (label == null) {
+      fetchPackageOnLookup(resourceName);
     }
+    return label;
+  }
 
-    Label search = new Label(parsedId.first, null, parsedId.second, null, null, 0, null, 0);
-    Label result = labelCache.ceiling(search);
-    // TODO: This can be done much simplier with modifying equals in Label but want to wait
-    // until BrailleBack is integrate to ensure compatibility
-    if (result != null
-        && search.getViewName() != null
-        && search.getViewName().equals(result.getViewName())
-        && search.getPackageName() != null
-        && search.getPackageName().equals(result.getPackageName())) {
-      return result;
-    }
+  /**
+   * Retrieves a {@link Label} from the label cache like {@link #getLabelForViewIdFromCache}, but
+   * never fetches labels, so it may be called on any thread.
+   */
+  @Override
+  public @Nullable Label peekLabelForViewIdFromCache(String resourceName) {
+    return (resourceName == null) ? null : labelsByResourceName.get(resourceName);
+  }
 
-    return null;
+  /**
+   * Starts fetching the labels of the package of {@code resourceName}, if they are neither loaded
+   * nor being fetched, so that nodes of a package looked up before its window is entered get their
+   * labels once the fetch finishes. The lookup itself never waits for the label provider.
+   */
+  private void fetchPackageOnLookup(String resourceName) {
+    int separator = resourceName.indexOf(':');
+    if (separator <= 0) {
+      return;
+    }
+    String packageName = resourceName.substring(0, separator);
+    if (labelsByPackage.containsKey(packageName)
+        || pendingPackages.contains(packageName)
+        || !fetchedOnLookupPackages.add(packageName)) {
+      return;
+    }
+    fetchPackage(packageName);
   }
 
   /**
@@ -483,7 +522,18 @@ public class CustomLabelManager implements LabelManager, AccessibilityEventListe
             "",
             timestamp);
     LabelAddRequest request =
-        new LabelAddRequest(client, label, SOURCE_TYPE_USER, labelsInPackageChangeListener);
+        new LabelAddRequest(
+            client,
+            label,
+            SOURCE_TYPE_USER,
+            labelsInPackageChangeListener,
+            addedLabel -> {
+              // Keep the index consistent until the package is refetched after the add.
+              if (labelsByPackage.containsKey(addedLabel.getPackageName())) {
+                indexLabel(addedLabel);
+              }
+              notifyLabelsChanged();
+            });
     LabelTask<Label> task = new LabelTask<>(request, taskCallback);
     task.execute();
   }
@@ -516,10 +566,16 @@ public class CustomLabelManager implements LabelManager, AccessibilityEventListe
         throw new IllegalArgumentException("Attempted to update a label with an empty text value");
       }
 
+      // Keep the index consistent until the package is refetched after the update.
+      if (labelsByPackage.containsKey(l.getPackageName())) {
+        indexLabel(l);
+      }
+
       LabelUpdateRequest request = new LabelUpdateRequest(client, l, labelsInPackageChangeListener);
       LabelTask<Boolean> task = new LabelTask<>(request, taskCallback);
       task.execute();
     }
+    notifyLabelsChanged();
   }
 
   /**
@@ -542,10 +598,14 @@ public class CustomLabelManager implements LabelManager, AccessibilityEventListe
     }
 
     for (Label l : labels) {
+      if (l != null) {
+        unindexLabel(l);
+      }
       LabelRemoveRequest request = new LabelRemoveRequest(client, l, labelsInPackageChangeListener);
       LabelTask<Boolean> task = new LabelTask<>(request, taskCallback);
       task.execute();
     }
+    notifyLabelsChanged();
   }
 
   public void importLabels(
@@ -595,32 +655,110 @@ public class CustomLabelManager implements LabelManager, AccessibilityEventListe
     task.execute();
   }
 
-  /** Invalidates and rebuilds the cache of labels managed by this class. */
+  /**
+   * Invalidates the labels managed by this class. The labels of the active package are fetched
+   * again, and those of other packages when their windows are entered.
+   */
   private void refreshCache() {
-    getLabelsFromDatabase(
-        new LabelsFetchRequest.OnLabelsFetchedListener() {
-          @Override
-          public void onLabelsFetched(List<Label> results) {
-            labelCache.clear();
-            String currentLocale = LocaleUtils.getDefaultLocale();
-            for (Label newLabel : results) {
-              String locale = newLabel.getLocale();
-              if (locale != null && locale.startsWith(currentLocale)) {
-                labelCache.add(newLabel);
-              }
-            }
-          }
-        });
+    indexGeneration++;
+    labelsByPackage.clear();
+    labelsByResourceName.clear();
+    pendingPackages.clear();
+    fetchedOnLookupPackages.clear();
+    notifyLabelsChanged();
+    ensurePackageLoaded(activePackageName);
+  }
+
+  /** Fetches the labels of {@code packageName} again, if they have been fetched before. */
+  private void refreshPackage(String packageName) {
+    if (labelsByPackage.containsKey(packageName) || pendingPackages.contains(packageName)) {
+      fetchPackage(packageName);
+    }
   }
 
   /**
-   * If there are no cached labels (possibly because CE storage was not yet available when the
-   * CustomLabelManager instance was constructed), refreshes the labels from the label provider.
+   * If the labels of the active package are not loaded (possibly because CE storage was not yet
+   * available when they were first fetched), fetches them from the label provider.
    */
   public void ensureLabelsLoaded() {
-    if (labelCache.isEmpty()) {
-      refreshCache();
+    ensurePackageLoaded(activePackageName);
+  }
+
+  private void ensurePackageLoaded(@Nullable String packageName) {
+    if (packageName == null
+        || labelsByPackage.containsKey(packageName)
+        || pendingPackages.contains(packageName)) {
+      return;
+    }
+    fetchPackage(packageName);
+  }
+
+  private void fetchPackage(String packageName) {
+    if (!isInitialized()) {
+      return;
+    }
+
+    pendingPackages.add(packageName);
+    final int generation = indexGeneration;
+    // Label tasks run in order, so the last fetch of a package sees all earlier changes.
+    getLabelsForPackageFromDatabase(
+        packageName,
+        results -> {
+          if (generation != indexGeneration) {
+            return;
+          }
+          pendingPackages.remove(packageName);
+          if (results == null) {
+            // The provider isn't available yet, so the package is fetched on its next window.
+            return;
+          }
+          indexPackage(packageName, results);
+        });
+  }
+
+  /** Replaces the indexed labels of {@code packageName} with {@code labels}. */
+  private void indexPackage(String packageName, Map<String, Label> labels) {
+    unindexPackage(packageName);
+    labelsByPackage.put(packageName, new HashMap<>());
+    for (Label label : labels.values()) {
+      indexLabel(label);
     }
+    notifyLabelsChanged();
+  }
+
+  private void indexLabel(Label label) {
+    Map<String, Label> packageLabels = labelsByPackage.get(label.getPackageName());
+    if (packageLabels == null) {
+      return;
+    }
+    String locale = label.getLocale();
+    if (locale == null || !locale.startsWith(LocaleUtils.getDefaultLocale())) {
+      return;
+    }
+    packageLabels.put(label.getViewName(), label);
+    labelsByResourceName.put(getResourceName(label), label);
+  }
+
+  private void unindexLabel(Label label) {
+    Map<String, Label> packageLabels = labelsByPackage.get(label.getPackageName());
+    if (packageLabels != null && packageLabels.remove(label.getViewName()) != null) {
+      labelsByResourceName.remove(getResourceName(label));
+    }
+  }
+
+  private void unindexPackage(String packageName) {
+    Map<String, Label> packageLabels = labelsByPackage.remove(packageName);
+    if (packageLabels == null) {
+      return;
+    }
+    for (Label label : packageLabels.values()) {
+      labelsByResourceName.remove(getResourceName(label));
+    }
+  }
+
+  /** Returns the fully-qualified resource identifier name of the view of {@code label}. */
+  private static String getResourceName(Label label) {
+    return label.getPackageName() + ":id/" + label.getViewName();
   }
 
   /**
@@ -719,13 +857,22 @@ public class CustomLabelManager implements LabelManager, AccessibilityEventListe
 
   @Override
   public int getEventTypes() {
-    return AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED;
+    return AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED
+        | AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED;
   }
 
   @Override
   public void onAccessibilityEvent(AccessibilityEvent event, EventId eventId) {
-    hasFocusedEventText =
-        !TextUtils.isEmpty(AccessibilityEventUtils.getEventTextOrDescription(event));
+    CharSequence packageName = event.getPackageName();
+    if (packageName != null) {
+      activePackageName = packageName.toString();
+      ensurePackageLoaded(activePackageName);
+    }
+
+    if (event.getEventType() == AccessibilityEvent.TYPE_VIEW_ACCESSIBILITY_FOCUSED) {
+      hasFocusedEventText =
+          !TextUtils.isEmpty(AccessibilityEventUtils.getEventTextOrDescription(event));
+    }
   }
 
   private class LocaleChangedReceiver extends BroadcastReceiver {
@@ -739,7 +886,14 @@ public class CustomLabelManager implements LabelManager, AccessibilityEventListe
 
     @Override
     public void onReceive(Context context, Intent intent) {
-      refreshCache();
+      String[] packageNames = intent.getStringArrayExtra(EXTRA_STRING_ARRAY_PACKAGES);
+      if (packageNames == null || packageNames.length == 0) {
+        refreshCache();
+        return;
+      }
+      for (String packageName : packageNames) {
+        refreshPackage(packageName);
+      }
     }
   }
 
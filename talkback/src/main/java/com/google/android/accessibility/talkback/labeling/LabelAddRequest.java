@@ -18,22 +18,34 @@ package com.google.android.accessibility.talkback.labeling;
 
 import com.google.android.accessibility.utils.labeling.Label;
 import com.google.android.accessibility.utils.labeling.LabelProviderClient;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 public class LabelAddRequest extends LabelClientRequest<Label> {
 
   private final Label label;
   private final int sourceType;
   private final CustomLabelManager.OnLabelsInPackageChangeListener listener;
+  private final @Nullable OnLabelAddedListener onLabelAddedListener;
 
   public LabelAddRequest(
       LabelProviderClient client,
       Label label,
       int sourceType,
       CustomLabelManager.OnLabelsInPackageChangeListener listener) {
+    this(client, label, sourceType, listener, null);
+  }
+
+  public LabelAddRequest(
+      LabelProviderClient client,
+      Label label,
+      int sourceType,
+      CustomLabelManager.OnLabelsInPackageChangeListener listener,
+      @Nullable OnLabelAddedListener onLabelAddedListener) {
     super(client);
     this.label = label;
     this.listener = listener;
     this.sourceType = sourceType;
+    this.onLabelAddedListener = onLabelAddedListener;
   }
 
   @Override
@@ -43,8 +55,21 @@ public class LabelAddRequest extends LabelClientRequest<Label> {
 
   @Override
   public void onPostExecute(Label result) {
+    if (onLabelAddedListener != null && result != null) {
+      onLabelAddedListener.onLabelAdded(result);
+    }
     if (listener != null && result != null) {
       listener.onLabelsInPackageChanged(result.getPackageName());
     }
   }
+
+  public interface OnLabelAddedListener {
+
+    /**
+     * Invoked by the task performing the add request with the label as stored in the database.
+     *
+     * @param label The added {@link Label}, with its id populated
+     */
+    void onLabelAdded(Label label);
+  }
 }
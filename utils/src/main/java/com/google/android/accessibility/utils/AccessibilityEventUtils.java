@@ -24,16 +24,21 @@ import android.text.TextUtils;
 import android.view.Display;
 import android.view.accessibility.AccessibilityEvent;
 import android.view.accessibility.AccessibilityNodeInfo;
+import android.view.accessibility.AccessibilityRecord;
 import android.view.accessibility.AccessibilityWindowInfo;
 import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
 import androidx.core.view.accessibility.AccessibilityWindowInfoCompat;
+import com.google.android.libraries.accessibility.utils.log.LogUtils;
 import com.google.common.base.Function;
+import java.lang.reflect.Method;
 import java.util.List;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** This class contains utility methods. */
 public class AccessibilityEventUtils {
 
+  private static final String TAG = "AccessibilityEventUtils";
+
   private static final String SYSTEM_UI_PACKAGE_NAME = "com.android.systemui";
   private static final String VOLUME_DIALOG_CLASS_NAME = "android.app.Dialog";
   private static final String VOLUME_CONTROLS_CLASS_IN_ANDROID_P =
@@ -49,10 +54,45 @@ public class AccessibilityEventUtils {
   /** Undefined scroll delta. */
   public static final int DELTA_UNDEFINED = -1;
 
+  /**
+   * Unknown source node id. Must match private variable AccessibilityNodeInfo.UNDEFINED_NODE_ID,
+   * which combines UNDEFINED_ITEM_ID ({@link Integer#MAX_VALUE}) as both the view id and the
+   * virtual descendant id. Events without a source node have this id.
+   */
+  public static final long NODE_ID_NONE = 0x7FFFFFFF7FFFFFFFL;
+
+  private static @Nullable Method getSourceNodeIdMethod;
+
+  static {
+    try {
+      getSourceNodeIdMethod = AccessibilityRecord.class.getDeclaredMethod("getSourceNodeId");
+      getSourceNodeIdMethod.setAccessible(true);
+    } catch (NoSuchMethodException e) {
+      LogUtils.d(TAG, "Error setting up fields: " + e.toString());
+    }
+  }
+
   private AccessibilityEventUtils() {
     // This class is not instantiable.
   }
 
+  /**
+   * Returns the id of the source node of {@code event} within its window, without obtaining the
+   * source node, or {@link #NODE_ID_NONE} if the id is unavailable.
+   */
+  public static long getSourceNodeId(AccessibilityEvent event) {
+    if (getSourceNodeIdMethod == null) {
+      return NODE_ID_NONE;
+    }
+    try {
+      @Nullable Object nodeId = getSourceNodeIdMethod.invoke(event);
+      return (nodeId == null) ? NODE_ID_NONE : (long) nodeId;
+    } catch (Exception e) {
+      LogUtils.d(TAG, "Exception accessing field: " + e.toString());
+      return NODE_ID_NONE;
+    }
+  }
+
   /** Returns the source node. */
   public static @Nullable AccessibilityNodeInfoCompat sourceCompat(
       @Nullable AccessibilityEvent event) {
@@ -644,7 +644,8 @@ public class AccessibilityNodeInfoUtils {
    */
   public static boolean isAccessibilityFocusable(AccessibilityNodeInfoCompat node) {
     return isFocusableOrClickable(node)
-        || (isTopLevelScrollItem(node) && isSpeakingNode(node, null, new HashSet<>()));
+        || (isTopLevelScrollItem(node)
+            && isSpeakingNode(node, SpeakingNodesCache.getInstance().getCache(), new HashSet<>()));
   }
 
   /**
@@ -657,7 +658,7 @@ public class AccessibilityNodeInfoUtils {
    *     Map) for linear navigation
    */
   public static boolean shouldFocusNode(AccessibilityNodeInfoCompat node) {
-    return shouldFocusNode(node, null, true);
+    return shouldFocusNode(node, SpeakingNodesCache.getInstance().getCache(), true);
   }
 
   public static boolean shouldFocusNode(
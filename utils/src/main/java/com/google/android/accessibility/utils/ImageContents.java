@@ -32,7 +32,7 @@ public class ImageContents {
 
   private final LabelManager labelManager;
   private final ImageCaptionStorage imageCaptionStorage;
-  private @Nullable Locale currentSpeechLocale;
+  private volatile @Nullable Locale currentSpeechLocale;
 
   public ImageContents(LabelManager labelManager, ImageCaptionStorage imageCaptionStorage) {
     this.labelManager = labelManager;
@@ -91,4 +91,68 @@ public class ImageContents {
   public boolean needsLabel(AccessibilityNodeInfoCompat node) {
     return labelManager != null && labelManager.needsLabel(node);
   }
+
+  /**
+   * Creates a view of these contents which may be used on a background thread, for composing a
+   * single description.
+   */
+  public ReadOnlyImageContents createReadOnlyView() {
+    return new ReadOnlyImageContents(this);
+  }
+
+  /**
+   * A view of {@link ImageContents} which never loads custom labels or changes the image caption
+   * storage, and never uses the icon detector, so that it may be used on a background thread. A
+   * lookup which needs any of them returns nothing and is recorded, so that the caller can drop a
+   * description which might differ from the one composed on the main thread.
+   */
+  public static final class ReadOnlyImageContents extends ImageContents {
+    private final ImageContents source;
+    private boolean hasSkippedLookups;
+
+    private ReadOnlyImageContents(ImageContents source) {
+      super(source.labelManager, source.imageCaptionStorage);
+      this.source = source;
+    }
+
+    /** Returns whether a lookup needed state which is only available on the main thread. */
+    public boolean hasSkippedLookups() {
+      return hasSkippedLookups;
+    }
+
+    @Override
+    public @Nullable String getLabel(AccessibilityNodeInfoCompat node) {
+      if (source.labelManager == null) {
+        return null;
+      }
+      final Label label =
+          source.labelManager.peekLabelForViewIdFromCache(node.getViewIdResourceName());
+      return (label == null || label.getText() == null) ? null : label.getText();
+    }
+
+    @Override
+    public @Nullable CharSequence getDetectedIconLabel(
+        Locale locale, AccessibilityNodeInfoCompat node) {
+      if (source.imageCaptionStorage == null) {
+        return null;
+      }
+
+      // Stored labels are only used once the cache has been cleared for the locale.
+      if (locale.equals(source.currentSpeechLocale)) {
+        @Nullable ImageNode imageNode = source.imageCaptionStorage.getCaptionResults(node);
+        if (imageNode != null && imageNode.getDetectedIconLabel() != null) {
+          return imageNode.getDetectedIconLabel();
+        }
+      }
+      // The icon detector may have a label, which is only looked up on the main thread.
+      hasSkippedLookups = true;
+      return null;
+    }
+
+    @Override
+    public boolean needsLabel(AccessibilityNodeInfoCompat node) {
+      hasSkippedLookups = true;
+      return false;
+    }
+  }
 }
@@ -25,13 +25,22 @@ import androidx.annotation.IntDef;
 import androidx.annotation.NonNull;
 import androidx.annotation.VisibleForTesting;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.checkerframework.checker.nullness.qual.Nullable;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
 
 /**
  * Utility class for tracking performance statistic per various event types & processing stages.
@@ -104,26 +113,98 @@ public class Performance {
 
   public static final @Nullable EventId EVENT_ID_UNTRACKED = null;
 
+  /**
+   * Stages of service startup, recorded by {@link #onStartupStageDone(String)}. Stages after the
+   * core infrastructure may complete in any order.
+   */
+  public static final String STARTUP_STAGE_CORE_INFRASTRUCTURE = "core_infrastructure";
+
+  public static final String STARTUP_STAGE_PARSE_TREE = "parse_tree";
+  public static final String STARTUP_STAGE_FIRST_FEEDBACK = "first_feedback";
+  public static final String STARTUP_STAGE_DEFERRED_INFRASTRUCTURE = "deferred_infrastructure";
+  public static final String STARTUP_STAGE_EARCONS_PRELOADED = "earcons_preloaded";
+
   /////////////////////////////////////////////////////////////////////////////////////////////
   // Member data
 
-  protected boolean mEnabled = false;
+  protected volatile boolean mEnabled = false;
 
-  /** Recent events for which we are collecting stage latencies */
-  protected static final int MAX_RECENT_EVENTS = 100;
+  /**
+   * Recent events for which we are collecting stage latencies. Must be a power of two, since ring
+   * buffer positions are masked with {@code MAX_RECENT_EVENTS - 1}.
+   */
+  protected static final int MAX_RECENT_EVENTS = 128;
 
-  protected LinkedList<EventId> mEventQueue = new LinkedList<EventId>();
-  protected HashMap<EventId, EventData> mEventIndex = new HashMap<EventId, EventData>();
-  private HashMap<String, EventId> mUtteranceToEvent = new HashMap<String, EventId>();
-  protected final Object mLockRecentEvents = new Object();
+  private static final int RECENT_EVENTS_MASK = MAX_RECENT_EVENTS - 1;
 
-  /** Latency statistics for various event/label types */
-  protected HashMap<StatisticsKey, Statistics> mLabelToStats =
-      new HashMap<StatisticsKey, Statistics>();
+  /** Stage times for an event which has not reached that stage. */
+  private static final long TIME_NONE = -1;
+
+  /**
+   * The recent events ring buffer, stored as parallel primitive arrays so that tracking an event
+   * neither allocates nor locks. Each slot is guarded by its entry in {@link #mSlotSequence}, which
+   * holds the 1-based sequence number of the event in the slot while the slot is valid, and 0 while
+   * the slot is being written or once its event is complete. Readers check the sequence before and
+   * after reading a slot, and stage times are only set once, with compare-and-set.
+   */
+  private final AtomicLong mNextSequence = new AtomicLong();
+
+  private final AtomicLongArray mSlotSequence = new AtomicLongArray(MAX_RECENT_EVENTS);
+  private final long[] mSlotEventTime = new long[MAX_RECENT_EVENTS];
+  private final int[] mSlotEventType = new int[MAX_RECENT_EVENTS];
+  private final int[] mSlotEventSubtype = new int[MAX_RECENT_EVENTS];
+  private final int[] mSlotLabel = new int[MAX_RECENT_EVENTS];
+  private final long[] mSlotTimeReceived = new long[MAX_RECENT_EVENTS];
+  private final AtomicLongArray mSlotTimeInlineHandled = new AtomicLongArray(MAX_RECENT_EVENTS);
+  private final AtomicLongArray mSlotTimeFeedbackQueued = new AtomicLongArray(MAX_RECENT_EVENTS);
+  private final AtomicLongArray mSlotTimeFeedbackOutput = new AtomicLongArray(MAX_RECENT_EVENTS);
+  // Utterance ids are shared with the speech pipeline, so storing them doesn't allocate.
+  private final AtomicReferenceArray<String> mSlotUtteranceId =
+      new AtomicReferenceArray<>(MAX_RECENT_EVENTS);
+
+  /**
+   * Maximum number of distinct event labels. Must be a power of two. Events with labels beyond
+   * this are counted under {@link #LABEL_OVERFLOW}.
+   */
+  private static final int MAX_LABELS = 256;
+
+  private static final int LABEL_OVERFLOW = MAX_LABELS;
+  private static final int NUM_STAGES = STAGE_NAMES.length;
+
+  /**
+   * Open-addressed table of event labels. Each label is a key combining the event type with a
+   * label code, so that no label string is built while tracking. Label strings are only built for
+   * display, by {@link #getLabelName(int)}. Entries hold {@code key + 1}, so that 0 means empty.
+   */
+  private final AtomicLongArray mLabelKeys = new AtomicLongArray(MAX_LABELS);
+
+  /** Latency statistics for each label x stage, indexed by {@code label * NUM_STAGES + stage}. */
+  private final AtomicReferenceArray<Statistics> mLabelToStats =
+      new AtomicReferenceArray<>((MAX_LABELS + 1) * NUM_STAGES);
 
-  protected final Object mLockLabelToStats = new Object();
   protected Statistics mAllEventStats = new Statistics();
 
+  /**
+   * Copies of {@link #mLabelToStats} taken when the current latency window started, used to
+   * compute windowed statistics. Null until a window is started.
+   */
+  private @Nullable Statistics[] mWindowBaselines;
+
+  private long mWindowStartTime;
+  private final Object mLockWindow = new Object();
+
+  /** Uptime when the current startup began, and the time from then until each stage completed. */
+  private long mStartupUptime;
+
+  private final Map<String, Long> mStartupStageTimes = new LinkedHashMap<>();
+  private final Object mLockStartup = new Object();
+
+  /** Time spent by each event listener handling events, in microseconds, by listener name. */
+  private final ConcurrentHashMap<String, Statistics> mListenerToStats = new ConcurrentHashMap<>();
+
+  /** Time from requesting each earcon to starting it on the audio thread, in milliseconds. */
+  private final Statistics mEarconStats = new Statistics();
+
   private static Performance sInstance = new Performance();
 
   /////////////////////////////////////////////////////////////////////////////////////////////
@@ -150,6 +231,91 @@ public class Performance {
     return mAllEventStats;
   }
 
+  /////////////////////////////////////////////////////////////////////////////////////////////
+  // Methods to track startup
+
+  /** Starts a new startup timeline, replacing the timeline of the previous startup. */
+  public void onStartupBegin() {
+    synchronized (mLockStartup) {
+      mStartupUptime = getUptime();
+      mStartupStageTimes.clear();
+    }
+  }
+
+  /**
+   * Records the time from {@link #onStartupBegin()} until a startup stage completed. Startup is
+   * tracked even when performance tracking is disabled, since it only happens once per service
+   * connection.
+   *
+   * @param stage Name of the stage, such as {@link #STARTUP_STAGE_CORE_INFRASTRUCTURE}
+   */
+  public void onStartupStageDone(@NonNull String stage) {
+    long stageTime;
+    synchronized (mLockStartup) {
+      if (mStartupUptime == 0 || mStartupStageTimes.containsKey(stage)) {
+        return;
+      }
+      stageTime = getUptime() - mStartupUptime;
+      mStartupStageTimes.put(stage, stageTime);
+    }
+    LogUtils.i(TAG, "Startup stage %s done after %d ms", stage, stageTime);
+  }
+
+  /** Returns the time until each startup stage completed, in milliseconds, in completion order. */
+  public Map<String, Long> getStartupTimeline() {
+    synchronized (mLockStartup) {
+      return new LinkedHashMap<>(mStartupStageTimes);
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////////////////
+  // Methods to track event listeners
+
+  /**
+   * Records the time that an event listener spent handling one event. Listeners are segmented by
+   * name, so callers should build the name once rather than for each event.
+   *
+   * @param listenerName Name of the listener, such as its simple class name
+   * @param latencyNanos Time spent in the listener, in nanoseconds
+   */
+  public void onListenerHandled(@NonNull String listenerName, long latencyNanos) {
+    if (!mEnabled) {
+      return;
+    }
+    Statistics stats = mListenerToStats.get(listenerName);
+    if (stats == null) {
+      // Allocated once per listener, the first time it handles an event.
+      mListenerToStats.putIfAbsent(listenerName, new Statistics());
+      stats = mListenerToStats.get(listenerName);
+    }
+    stats.increment(latencyNanos / 1000);
+  }
+
+  /** Returns the time spent by each event listener, in microseconds, sorted by listener name. */
+  public Map<String, Statistics> getListenerStatistics() {
+    return new TreeMap<>(mListenerToStats);
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////////////////
+  // Methods to track earcons
+
+  /**
+   * Records the time from requesting an earcon until it started playing.
+   *
+   * @param latencyMs Time until the earcon started, in milliseconds
+   */
+  public void onEarconPlayed(long latencyMs) {
+    if (!mEnabled) {
+      return;
+    }
+    mEarconStats.increment(latencyMs);
+  }
+
+  /** Returns the time from requesting earcons until they started, in milliseconds. */
+  public Statistics getEarconStatistics() {
+    return mEarconStats;
+  }
+
   /////////////////////////////////////////////////////////////////////////////////////////////
   // Methods to track events
 
@@ -167,10 +333,7 @@ public class Performance {
     }
 
     // Segment events based on type.
-    String label = AccessibilityEventUtils.typeToString(event.getEventType());
-    String[] labels = {label};
-
-    onEventReceived(eventId, labels);
+    onEventReceived(eventId, event.getEventType());
     return eventId;
   }
 
@@ -201,19 +364,18 @@ public class Performance {
     }
 
     // Segment key events based on key groups.
-    String label = "KeyEvent-other";
+    int keyGroup = KEY_GROUP_OTHER;
     if (KeyEvent.KEYCODE_0 <= keycode && keycode <= KeyEvent.KEYCODE_9) {
-      label = "KeyEvent-numeric";
+      keyGroup = KEY_GROUP_NUMERIC;
     } else if (KeyEvent.KEYCODE_A <= keycode && keycode <= KeyEvent.KEYCODE_Z) {
-      label = "KeyEvent-alpha";
+      keyGroup = KEY_GROUP_ALPHA;
     } else if (KeyEvent.KEYCODE_DPAD_UP <= keycode && keycode <= KeyEvent.KEYCODE_DPAD_CENTER) {
-      label = "KeyEvent-dpad";
+      keyGroup = KEY_GROUP_DPAD;
     } else if (KeyEvent.KEYCODE_VOLUME_UP <= keycode && keycode <= KeyEvent.KEYCODE_VOLUME_DOWN) {
-      label = "KeyEvent-volume";
+      keyGroup = KEY_GROUP_VOLUME;
     }
-    String[] labels = {label};
 
-    onEventReceived(eventId, labels);
+    onEventReceived(eventId, keyGroup);
     return eventId;
   }
 
@@ -231,10 +393,7 @@ public class Performance {
     }
 
     // Segment events based on gesture id.
-    String label = AccessibilityServiceCompatUtils.gestureIdToString(gestureId);
-    String[] labels = {label};
-
-    onEventReceived(eventId, labels);
+    onEventReceived(eventId, gestureId);
     return eventId;
   }
 
@@ -253,11 +412,7 @@ public class Performance {
     }
 
     // Segment events based on fingerprint gesture id.
-    String[] labels = {
-      AccessibilityServiceCompatUtils.fingerprintGestureIdToString(fingerprintGestureId)
-    };
-
-    onEventReceived(eventId, labels);
+    onEventReceived(eventId, fingerprintGestureId);
     return eventId;
   }
 
@@ -268,10 +423,7 @@ public class Performance {
     }
 
     // Segment events based on key combo id.
-    String label = Integer.toString(keyComboId);
-    String[] labels = {label};
-
-    onEventReceived(eventId, labels);
+    onEventReceived(eventId, keyComboId);
     return eventId;
   }
 
@@ -282,10 +434,7 @@ public class Performance {
     }
 
     // Segment events based on key combo id.
-    String label = Integer.toString(keyComboId);
-    String[] labels = {label};
-
-    onEventReceived(eventId, labels);
+    onEventReceived(eventId, keyComboId);
     return eventId;
   }
 
@@ -296,43 +445,48 @@ public class Performance {
     }
 
     // Segment events based on orientation.
-    String label = "ORIENTATION_UNDEFINED";
-    if (orientation == Configuration.ORIENTATION_PORTRAIT) {
-      label = "ORIENTATION_PORTRAIT";
-    } else if (orientation == Configuration.ORIENTATION_LANDSCAPE) {
-      label = "ORIENTATION_LANDSCAPE";
-    }
-    String[] labels = {label};
-
-    onEventReceived(eventId, labels);
+    onEventReceived(eventId, orientation);
     return eventId;
   }
 
-  protected void onEventReceived(@NonNull EventId eventId, String[] labels) {
+  /**
+   * Starts tracking an event.
+   *
+   * @param eventId Identity of the event
+   * @param labelCode Code segmenting events of the same type, which {@link #getLabelName(int)}
+   *     turns into a label for display.
+   */
+  protected void onEventReceived(@NonNull EventId eventId, int labelCode) {
     if (!mEnabled) {
       return;
     }
 
-    // Create event data.
-    EventData eventData = new EventData(getTime(), labels, eventId);
+    int label = getOrCreateLabel(eventId.getEventType(), labelCode);
+
+    // Claim the oldest slot, collecting missing latencies for the event it held.
+    long sequence = mNextSequence.incrementAndGet();
+    int slot = (int) (sequence & RECENT_EVENTS_MASK);
+    long oldSequence = mSlotSequence.getAndSet(slot, 0);
+    if (oldSequence != 0) {
+      collectMissingLatencies(slot);
+    }
 
-    // Collect event data.
-    addRecentEvent(eventId, eventData);
-    trimRecentEvents(MAX_RECENT_EVENTS);
+    // Fill the slot, then publish it.
+    mSlotEventTime[slot] = eventId.getEventTimeMs();
+    mSlotEventType[slot] = eventId.getEventType();
+    mSlotEventSubtype[slot] = eventId.getEventSubtype();
+    mSlotLabel[slot] = label;
+    mSlotTimeReceived[slot] = getTime();
+    mSlotTimeInlineHandled.set(slot, TIME_NONE);
+    mSlotTimeFeedbackQueued.set(slot, TIME_NONE);
+    mSlotTimeFeedbackOutput.set(slot, TIME_NONE);
+    mSlotUtteranceId.set(slot, null);
+    mSlotSequence.set(slot, sequence);
 
     @StageId int prevStage = STAGE_INLINE_HANDLING - 1;
     long prevStageLatency = getUptime() - eventId.getEventTimeMs(); // Event times are uptime.
     mAllEventStats.increment(prevStageLatency);
-
-    // For each event label... increment statistics.
-    if (eventData.labels != null) {
-      int numLabels = eventData.labels.length;
-      for (int labelIndex = 0; labelIndex < numLabels; ++labelIndex) {
-        String label = eventData.labels[labelIndex];
-        Statistics stats = getOrCreateStatistics(label, prevStage);
-        stats.increment(prevStageLatency);
-      }
-    }
+    getOrCreateStatistics(label, prevStage).increment(prevStageLatency);
   }
 
   /**
@@ -346,27 +500,19 @@ public class Performance {
     }
 
     // If recent event not found... then labels are not available to increment statistics.
-    EventData eventData = getRecentEvent(eventId);
-    if (eventData == null) {
+    int slot = findRecentEvent(eventId);
+    if (slot < 0) {
       return;
     }
     // If time already collected for this event & stage... do not update.
-    if (eventData.timeInlineHandled != -1) {
+    long now = getTime();
+    if (!mSlotTimeInlineHandled.compareAndSet(slot, TIME_NONE, now)) {
       return;
     }
 
-    // Compute stage latency.
-    long now = getTime();
-    eventData.timeInlineHandled = now;
-    long stageLatency = now - eventData.timeReceivedAtTalkback;
-
-    // For each event label... increment stage latency statistics.
-    if (eventData.labels != null) {
-      for (String label : eventData.labels) {
-        Statistics stats = getOrCreateStatistics(label, STAGE_INLINE_HANDLING);
-        stats.increment(stageLatency);
-      }
-    }
+    // Increment stage latency statistics.
+    long stageLatency = now - mSlotTimeReceived[slot];
+    getOrCreateStatistics(mSlotLabel[slot], STAGE_INLINE_HANDLING).increment(stageLatency);
   }
 
   /**
@@ -381,28 +527,20 @@ public class Performance {
     }
 
     // If recent event not found... then labels are not available to increment statistics.
-    EventData eventData = getRecentEvent(eventId);
-    if (eventData == null) {
+    int slot = findRecentEvent(eventId);
+    if (slot < 0) {
       return;
     }
     // If utterance already matched with this event... do not update.
-    if (eventData.getUtteranceId() != null) {
+    if (!mSlotUtteranceId.compareAndSet(slot, null, utteranceId)) {
       return;
     }
 
     // Compute stage latency.
     long now = getTime();
-    eventData.setFeedbackQueued(now, utteranceId);
-    indexRecentUtterance(utteranceId, eventId);
-    long stageLatency = now - eventData.timeReceivedAtTalkback;
-
-    // For each event label... increment stage latency statistics.
-    if (eventData.labels != null) {
-      for (String label : eventData.labels) {
-        Statistics stats = getOrCreateStatistics(label, STAGE_FEEDBACK_QUEUED);
-        stats.increment(stageLatency);
-      }
-    }
+    mSlotTimeFeedbackQueued.set(slot, now);
+    long stageLatency = now - mSlotTimeReceived[slot];
+    getOrCreateStatistics(mSlotLabel[slot], STAGE_FEEDBACK_QUEUED).increment(stageLatency);
   }
 
   /** Track event latency between receiving event, and hearing audio feedback. */
@@ -412,67 +550,41 @@ public class Performance {
     }
 
     // If recent event not found... then labels are not available to increment statistics.
-    EventId eventId = getRecentUtterance(utteranceId);
-    if (eventId == null) {
-      return;
-    }
-    EventData eventData = getRecentEvent(eventId);
-    if (eventData == null) {
+    int slot = findRecentUtterance(utteranceId);
+    if (slot < 0) {
       return;
     }
 
-    // If speech is not already matched with this event...
-    if (eventData.getTimeFeedbackOutput() <= 0) {
-      // Compute stage latency.
-      long now = getTime();
-      eventData.setFeedbackOutput(now);
-      long stageLatency = now - eventData.timeReceivedAtTalkback;
-
-      // For each event label... increment stage latency statistics.
-      if (eventData.labels != null) {
-        for (String label : eventData.labels) {
-          Statistics stats = getOrCreateStatistics(label, STAGE_FEEDBACK_HEARD);
-          stats.increment(stageLatency);
-        }
-      }
+    // If speech is not already matched with this event... compute stage latency.
+    long now = getTime();
+    if (mSlotTimeFeedbackOutput.compareAndSet(slot, TIME_NONE, now)) {
+      long stageLatency = now - mSlotTimeReceived[slot];
+      getOrCreateStatistics(mSlotLabel[slot], STAGE_FEEDBACK_HEARD).increment(stageLatency);
     }
 
     // Clear the recent event, since we have no more use for it after tracking all stages.
-    collectMissingLatencies(eventData);
-    removeRecentEvent(eventId);
-    removeRecentUtterance(utteranceId);
-  }
-
-  /** Pop recent events off the queue, and increment their statistics as "missing" */
-  protected void trimRecentEvents(int targetSize) {
-    while (getNumRecentEvents() > targetSize) {
-      EventData eventData = popOldestRecentEvent();
-      if (eventData != null) {
-        collectMissingLatencies(eventData);
-      }
+    long sequence = mSlotSequence.get(slot);
+    if (sequence != 0 && mSlotSequence.compareAndSet(slot, sequence, 0)) {
+      collectMissingLatencies(slot);
     }
   }
 
-  /** Increment statistics for missing stages. */
-  private void collectMissingLatencies(@NonNull EventData eventData) {
-    // For each label x unreached stage... collect latency=missing.
-    if (eventData != null && eventData.labels != null) {
-      for (String label : eventData.labels) {
-        if (eventData.timeInlineHandled <= 0) {
-          incrementNumMissing(label, STAGE_INLINE_HANDLING);
-        }
-        if (eventData.getTimeFeedbackQueued() <= 0) {
-          incrementNumMissing(label, STAGE_FEEDBACK_QUEUED);
-        }
-        if (eventData.getTimeFeedbackOutput() <= 0) {
-          incrementNumMissing(label, STAGE_FEEDBACK_HEARD);
-        }
-      }
+  /** Increment statistics for missing stages of the event in a slot that is no longer valid. */
+  private void collectMissingLatencies(int slot) {
+    int label = mSlotLabel[slot];
+    if (mSlotTimeInlineHandled.get(slot) <= 0) {
+      incrementNumMissing(label, STAGE_INLINE_HANDLING);
+    }
+    if (mSlotTimeFeedbackQueued.get(slot) <= 0) {
+      incrementNumMissing(label, STAGE_FEEDBACK_QUEUED);
+    }
+    if (mSlotTimeFeedbackOutput.get(slot) <= 0) {
+      incrementNumMissing(label, STAGE_FEEDBACK_HEARD);
     }
   }
 
-  private void incrementNumMissing(@NonNull String label, @StageId int stageId) {
-    Statistics stats = getStatistics(label, stageId);
+  private void incrementNumMissing(int label, @StageId int stageId) {
+    Statistics stats = mLabelToStats.get(label * NUM_STAGES + stageId);
     if (stats != null) {
       stats.incrementNumMissing();
     }
@@ -490,69 +602,144 @@ public class Performance {
   /////////////////////////////////////////////////////////////////////////////////////////////
   // Methods to access recent event collection
 
-  protected void addRecentEvent(@NonNull EventId eventId, @NonNull EventData eventData) {
-    synchronized (mLockRecentEvents) {
-      mEventQueue.add(eventId);
-      mEventIndex.put(eventId, eventData);
+  /** Returns the slot of a valid recent event, or -1 if the event is not tracked. */
+  private int findRecentEvent(@NonNull EventId eventId) {
+    // Search from the newest event, since events are usually handled soon after being received.
+    long newest = mNextSequence.get();
+    for (long sequence = newest;
+        sequence > 0 && sequence > newest - MAX_RECENT_EVENTS;
+        --sequence) {
+      int slot = (int) (sequence & RECENT_EVENTS_MASK);
+      if (mSlotSequence.get(slot) != sequence) {
+        continue;
+      }
+      boolean matches =
+          mSlotEventTime[slot] == eventId.getEventTimeMs()
+              && mSlotEventType[slot] == eventId.getEventType()
+              && mSlotEventSubtype[slot] == eventId.getEventSubtype();
+      // Re-check the sequence, in case the slot was overwritten while being read.
+      if (matches && mSlotSequence.get(slot) == sequence) {
+        return slot;
+      }
     }
+    return -1;
   }
 
-  private void indexRecentUtterance(@NonNull String utteranceId, @NonNull EventId eventId) {
-    synchronized (mLockRecentEvents) {
-      mUtteranceToEvent.put(utteranceId, eventId);
+  /** Returns the slot of the valid recent event which queued an utterance, or -1 if none. */
+  private int findRecentUtterance(@NonNull String utteranceId) {
+    long newest = mNextSequence.get();
+    for (long sequence = newest;
+        sequence > 0 && sequence > newest - MAX_RECENT_EVENTS;
+        --sequence) {
+      int slot = (int) (sequence & RECENT_EVENTS_MASK);
+      if (mSlotSequence.get(slot) == sequence
+          && utteranceId.equals(mSlotUtteranceId.get(slot))
+          && mSlotSequence.get(slot) == sequence) {
+        return slot;
+      }
     }
+    return -1;
   }
 
-  protected EventData getRecentEvent(@NonNull EventId eventId) {
-    synchronized (mLockRecentEvents) {
-      return mEventIndex.get(eventId);
+  protected int getNumRecentEvents() {
+    int count = 0;
+    for (int slot = 0; slot < MAX_RECENT_EVENTS; ++slot) {
+      if (mSlotSequence.get(slot) != 0) {
+        ++count;
+      }
     }
+    return count;
   }
 
-  protected EventId getRecentUtterance(@NonNull String utteranceId) {
-    synchronized (mLockRecentEvents) {
-      return mUtteranceToEvent.get(utteranceId);
+  public void clearRecentEvents() {
+    for (int slot = 0; slot < MAX_RECENT_EVENTS; ++slot) {
+      mSlotSequence.set(slot, 0);
     }
   }
 
-  protected int getNumRecentEvents() {
-    synchronized (mLockRecentEvents) {
-      return mEventQueue.size();
-    }
-  }
+  /////////////////////////////////////////////////////////////////////////////////////////////
+  // Methods to access event labels
+
+  /** Key groups used as label codes for key events. */
+  private static final int KEY_GROUP_OTHER = 0;
+
+  private static final int KEY_GROUP_NUMERIC = 1;
+  private static final int KEY_GROUP_ALPHA = 2;
+  private static final int KEY_GROUP_DPAD = 3;
+  private static final int KEY_GROUP_VOLUME = 4;
+  private static final String[] KEY_GROUP_NAMES = {
+    "KeyEvent-other", "KeyEvent-numeric", "KeyEvent-alpha", "KeyEvent-dpad", "KeyEvent-volume"
+  };
 
-  protected @Nullable EventData popOldestRecentEvent() {
-    synchronized (mLockRecentEvents) {
-      if (mEventQueue.size() == 0) {
-        return null;
+  /** Returns the label for an event type and label code, adding it if needed. */
+  private int getOrCreateLabel(@EventTypeId int eventType, int labelCode) {
+    long key = toLabelKey(eventType, labelCode);
+    int index = (int) (mix(key) & (MAX_LABELS - 1));
+    for (int probe = 0; probe < MAX_LABELS; ++probe) {
+      long entry = mLabelKeys.get(index);
+      if (entry == key + 1) {
+        return index;
       }
-      EventId eventId = mEventQueue.remove();
-      EventData eventData = mEventIndex.remove(eventId);
-      String utteranceId = (eventData == null) ? null : eventData.getUtteranceId();
-      if (utteranceId != null) {
-        mUtteranceToEvent.remove(eventData.getUtteranceId());
+      if (entry == 0) {
+        if (mLabelKeys.compareAndSet(index, 0, key + 1)) {
+          return index;
+        }
+        // Another thread took this entry... check whether it added the same label.
+        if (mLabelKeys.get(index) == key + 1) {
+          return index;
+        }
       }
-      return eventData;
+      index = (index + 1) & (MAX_LABELS - 1);
     }
+    return LABEL_OVERFLOW;
   }
 
-  protected void removeRecentEvent(@NonNull EventId eventId) {
-    synchronized (mLockRecentEvents) {
-      mEventIndex.remove(eventId);
-      mEventQueue.remove(eventId);
-    }
+  private static long toLabelKey(@EventTypeId int eventType, int labelCode) {
+    return ((long) eventType << 32) | (labelCode & 0xFFFFFFFFL);
   }
 
-  public void clearRecentEvents() {
-    synchronized (mLockRecentEvents) {
-      mEventIndex.clear();
-      mEventQueue.clear();
-    }
+  private static long mix(long key) {
+    key ^= (key >>> 33);
+    key *= 0xff51afd7ed558ccdL;
+    key ^= (key >>> 33);
+    return key;
   }
 
-  protected void removeRecentUtterance(@NonNull String utteranceId) {
-    synchronized (mLockRecentEvents) {
-      mUtteranceToEvent.remove(utteranceId);
+  /** Returns the display name of a label, built the way events used to be segmented. */
+  protected String getLabelName(int label) {
+    if (label < 0 || label >= MAX_LABELS) {
+      return "other";
+    }
+    long entry = mLabelKeys.get(label);
+    if (entry == 0) {
+      return "";
+    }
+    long key = entry - 1;
+    int eventType = (int) (key >>> 32);
+    int labelCode = (int) key;
+    switch (eventType) {
+      case EVENT_TYPE_ACCESSIBILITY:
+        return AccessibilityEventUtils.typeToString(labelCode);
+      case EVENT_TYPE_KEY:
+        return KEY_GROUP_NAMES[labelCode];
+      case EVENT_TYPE_GESTURE:
+        return AccessibilityServiceCompatUtils.gestureIdToString(labelCode);
+      case EVENT_TYPE_FINGERPRINT_GESTURE:
+        return AccessibilityServiceCompatUtils.fingerprintGestureIdToString(labelCode);
+      case EVENT_TYPE_ROTATE:
+        if (labelCode == Configuration.ORIENTATION_PORTRAIT) {
+          return "ORIENTATION_PORTRAIT";
+        } else if (labelCode == Configuration.ORIENTATION_LANDSCAPE) {
+          return "ORIENTATION_LANDSCAPE";
+        }
+        return "ORIENTATION_UNDEFINED";
+      case EVENT_TYPE_KEY_COMBO:
+        // Combo ids of both combo types overlap, so the type is part of the name.
+        return "KEY_COMBO_" + labelCode;
+      case EVENT_TYPE_VOLUME_KEY_COMBO:
+        return "VOLUME_KEY_COMBO_" + labelCode;
+      default:
+        return Integer.toString(labelCode);
     }
   }
 
@@ -566,30 +753,151 @@ public class Performance {
    * @param stage The talkback processing {@code @StageId}
    * @return The statistics for requested label & stage, or null if no such label & stage found.
    */
-  public Statistics getStatistics(@NonNull String label, @StageId int stage) {
-    synchronized (mLockLabelToStats) {
-      StatisticsKey statsKey = new StatisticsKey(label, stage);
-      return mLabelToStats.get(statsKey);
+  public @Nullable Statistics getStatistics(@NonNull String label, @StageId int stage) {
+    for (int labelIndex = 0; labelIndex <= MAX_LABELS; ++labelIndex) {
+      Statistics stats = mLabelToStats.get(labelIndex * NUM_STAGES + stage);
+      if (stats != null && label.equals(getLabelName(labelIndex))) {
+        return stats;
+      }
     }
+    return null;
   }
 
   public void clearAllStats() {
-    synchronized (mLockLabelToStats) {
-      mLabelToStats.clear();
+    for (int i = 0; i < mLabelToStats.length(); ++i) {
+      mLabelToStats.set(i, null);
     }
     mAllEventStats.clear();
+    mListenerToStats.clear();
+    mEarconStats.clear();
+    synchronized (mLockWindow) {
+      mWindowBaselines = null;
+      mWindowStartTime = 0;
+    }
   }
 
-  protected Statistics getOrCreateStatistics(@NonNull String label, @StageId int stage) {
-    synchronized (mLockLabelToStats) {
-      StatisticsKey statsKey = new StatisticsKey(label, stage);
-      Statistics stats = mLabelToStats.get(statsKey);
-      if (stats == null) {
-        stats = new Statistics();
-        mLabelToStats.put(statsKey, stats);
+  protected Statistics getOrCreateStatistics(int label, @StageId int stage) {
+    int index = label * NUM_STAGES + stage;
+    Statistics stats = mLabelToStats.get(index);
+    if (stats == null) {
+      // Allocated once per label & stage, the first time the label reaches the stage.
+      mLabelToStats.compareAndSet(index, null, new Statistics());
+      stats = mLabelToStats.get(index);
+    }
+    return stats;
+  }
+
+  /** Returns the statistics of every label x stage that has been tracked, sorted by key. */
+  private TreeMap<StatisticsKey, Statistics> getLabelToStats() {
+    TreeMap<StatisticsKey, Statistics> labelToStats = new TreeMap<>();
+    for (int labelIndex = 0; labelIndex <= MAX_LABELS; ++labelIndex) {
+      for (int stage = 0; stage < NUM_STAGES; ++stage) {
+        Statistics stats = mLabelToStats.get(labelIndex * NUM_STAGES + stage);
+        if (stats != null) {
+          labelToStats.put(new StatisticsKey(getLabelName(labelIndex), stage), stats);
+        }
       }
-      return stats;
     }
+    return labelToStats;
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////////////////
+  // Methods to export results
+
+  /**
+   * Starts a new latency window. Windowed snapshots only include latencies tracked after this
+   * call. Until a window is started, windowed snapshots are the same as cumulative ones.
+   */
+  public void startLatencyWindow() {
+    Statistics[] baselines = new Statistics[mLabelToStats.length()];
+    for (int i = 0; i < baselines.length; ++i) {
+      Statistics stats = mLabelToStats.get(i);
+      baselines[i] = (stats == null) ? null : stats.copy();
+    }
+    synchronized (mLockWindow) {
+      mWindowBaselines = baselines;
+      mWindowStartTime = getTime();
+    }
+  }
+
+  /**
+   * Returns the latency percentiles of every label x stage that has been tracked.
+   *
+   * @param windowed Whether to only include latencies tracked since {@link
+   *     #startLatencyWindow()}, rather than since statistics were last cleared.
+   */
+  public LatencySnapshot getLatencySnapshot(boolean windowed) {
+    @Nullable Statistics[] baselines;
+    long startTime;
+    synchronized (mLockWindow) {
+      baselines = windowed ? mWindowBaselines : null;
+      startTime = windowed ? mWindowStartTime : 0;
+    }
+
+    List<StageLatency> latencies = new ArrayList<>();
+    for (int labelIndex = 0; labelIndex <= MAX_LABELS; ++labelIndex) {
+      for (int stage = 0; stage < NUM_STAGES; ++stage) {
+        int index = labelIndex * NUM_STAGES + stage;
+        Statistics stats = mLabelToStats.get(index);
+        if (stats == null) {
+          continue;
+        }
+        Statistics windowStats = stats.since((baselines == null) ? null : baselines[index]);
+        if (windowStats.getCount() > 0 || windowStats.getNumMissing() > 0) {
+          latencies.add(
+              new StageLatency(new StatisticsKey(getLabelName(labelIndex), stage), windowStats));
+        }
+      }
+    }
+    Collections.sort(latencies, (a, b) -> a.key.compareTo(b.key));
+    return new LatencySnapshot(windowed, startTime, getTime(), latencies);
+  }
+
+  /**
+   * Writes cumulative and windowed latency snapshots, the startup timeline, and the time spent by
+   * each event listener, as JSON, for {@code dumpsys}.
+   *
+   * @param writer Destination of the JSON
+   */
+  public void dumpLatencySnapshots(PrintWriter writer) {
+    try {
+      JSONObject json = new JSONObject();
+      json.put("enabled", mEnabled);
+      json.put("cumulative", getLatencySnapshot(/* windowed= */ false).toJson());
+      json.put("windowed", getLatencySnapshot(/* windowed= */ true).toJson());
+      json.put("startup", new JSONObject(getStartupTimeline()));
+      json.put("listeners", getListenerStatisticsJson());
+      json.put("earcons", getEarconStatisticsJson());
+      writer.println(json.toString(2));
+    } catch (JSONException e) {
+      LogUtils.e(TAG, "Failed to dump latency snapshots: %s", e);
+    }
+  }
+
+  private JSONArray getListenerStatisticsJson() throws JSONException {
+    JSONArray listenersJson = new JSONArray();
+    for (Map.Entry<String, Statistics> entry : getListenerStatistics().entrySet()) {
+      Statistics stats = entry.getValue();
+      JSONObject json = new JSONObject();
+      json.put("listener", entry.getKey());
+      json.put("count", stats.getCount());
+      json.put("mean_us", stats.getMean());
+      json.put("p50_us", stats.getPercentile(50));
+      json.put("p90_us", stats.getPercentile(90));
+      json.put("p99_us", stats.getPercentile(99));
+      listenersJson.put(json);
+    }
+    return listenersJson;
+  }
+
+  private JSONObject getEarconStatisticsJson() throws JSONException {
+    JSONObject json = new JSONObject();
+    json.put("count", mEarconStats.getCount());
+    json.put("mean_ms", mEarconStats.getMean());
+    json.put("p50_ms", mEarconStats.getPercentile(50));
+    json.put("p90_ms", mEarconStats.getPercentile(90));
+    json.put("p99_ms", mEarconStats.getPercentile(99));
+    return json;
   }
 
   /////////////////////////////////////////////////////////////////////////////////////////////
@@ -599,26 +907,23 @@ public class Performance {
   public void displayStatToLabelCompare() {
     display("displayStatToLabelCompare()");
 
-    StatisticsKey[] labelsSorted = new StatisticsKey[mLabelToStats.size()];
-    labelsSorted = mLabelToStats.keySet().toArray(labelsSorted);
-    Arrays.sort(labelsSorted);
-
-    ArrayList<BarInfo> barsMissing = new ArrayList<BarInfo>(labelsSorted.length);
-    ArrayList<BarInfo> barsCount = new ArrayList<BarInfo>(labelsSorted.length);
-    ArrayList<BarInfo> barsMean = new ArrayList<BarInfo>(labelsSorted.length);
-    ArrayList<BarInfo> barsMedian = new ArrayList<BarInfo>(labelsSorted.length);
-    ArrayList<BarInfo> barsStdDev = new ArrayList<BarInfo>(labelsSorted.length);
+    TreeMap<StatisticsKey, Statistics> labelToStats = getLabelToStats();
+    ArrayList<BarInfo> barsMissing = new ArrayList<BarInfo>(labelToStats.size());
+    ArrayList<BarInfo> barsCount = new ArrayList<BarInfo>(labelToStats.size());
+    ArrayList<BarInfo> barsMean = new ArrayList<BarInfo>(labelToStats.size());
+    ArrayList<BarInfo> barsMedian = new ArrayList<BarInfo>(labelToStats.size());
+    ArrayList<BarInfo> barsStdDev = new ArrayList<BarInfo>(labelToStats.size());
 
     // For each label... collect summary statistics.
-    for (StatisticsKey label : labelsSorted) {
-      Statistics stats = mLabelToStats.get(label);
-      barsMissing.add(new BarInfo(label.toString(), stats.getNumMissing()));
-      barsCount.add(new BarInfo(label.toString(), stats.getCount()));
-      barsMean.add(new BarInfo(label.toString(), stats.getMean()));
+    for (Map.Entry<StatisticsKey, Statistics> entry : labelToStats.entrySet()) {
+      String label = entry.getKey().toString();
+      Statistics stats = entry.getValue();
+      barsMissing.add(new BarInfo(label, stats.getNumMissing()));
+      barsCount.add(new BarInfo(label, stats.getCount()));
+      barsMean.add(new BarInfo(label, stats.getMean()));
       barsMedian.add(
-          new BarInfo(
-              label.toString(), stats.getMedianBinStart(), (2 * stats.getMedianBinStart())));
-      barsStdDev.add(new BarInfo(label.toString(), (float) stats.getStdDev()));
+          new BarInfo(label, stats.getMedianBinStart(), (2 * stats.getMedianBinStart())));
+      barsStdDev.add(new BarInfo(label, (float) stats.getStdDev()));
     }
 
     // For each summary statistic... display comparison bar graph.
@@ -634,13 +939,9 @@ public class Performance {
     display("displayLabelToStats()");
 
     // For each label...
-    StatisticsKey[] labelsSorted = new StatisticsKey[mLabelToStats.size()];
-    labelsSorted = mLabelToStats.keySet().toArray(labelsSorted);
-    Arrays.sort(labelsSorted);
-    for (StatisticsKey labelAndStage : labelsSorted) {
-      Statistics stats = mLabelToStats.get(labelAndStage);
-      display("  %s", labelAndStage);
-      displayStatistics(stats);
+    for (Map.Entry<StatisticsKey, Statistics> entry : getLabelToStats().entrySet()) {
+      display("  %s", entry.getKey());
+      displayStatistics(entry.getValue());
     }
   }
 
@@ -660,12 +961,11 @@ public class Performance {
         stats.getMedianBinStart());
 
     // Display latency distribution.
-    ArrayList<BarInfo> bars = new ArrayList<BarInfo>(stats.mHistogram.size());
-    for (int bin = 0; bin < stats.mHistogram.size(); ++bin) {
+    long[] histogram = stats.getPowerOfTwoHistogram();
+    ArrayList<BarInfo> bars = new ArrayList<BarInfo>(histogram.length);
+    for (int bin = 0; bin < histogram.length; ++bin) {
       long binStart = stats.histogramBinToStartValue(bin);
-      bars.add(
-          new BarInfo(
-              "" + binStart + "-" + (2 * binStart) + "ms", stats.mHistogram.get(bin).longValue()));
+      bars.add(new BarInfo("" + binStart + "-" + (2 * binStart) + "ms", histogram[bin]));
     }
     displayBarGraph("      ", "distribution=", bars, "count");
   }
@@ -714,13 +1014,24 @@ public class Performance {
   }
 
   public void displayRecentEvents() {
-    display("perf.mEventQueue=");
-    for (EventId i : mEventQueue) {
-      display("\t" + i);
-    }
-    display("perf.mEventIndex=");
-    for (EventId i : mEventIndex.keySet()) {
-      display("\t" + i + ":" + mEventIndex.get(i));
+    display("perf.recentEvents=");
+    for (int slot = 0; slot < MAX_RECENT_EVENTS; ++slot) {
+      long sequence = mSlotSequence.get(slot);
+      if (sequence == 0) {
+        continue;
+      }
+      EventId eventId =
+          new EventId(mSlotEventTime[slot], mSlotEventType[slot], mSlotEventSubtype[slot]);
+      display(
+          "\t%s: label=%s timeReceivedAtTalkback=%d timeInlineHandled=%d"
+              + " timeFeedbackQueued=%d timeFeedbackOutput=%d utteranceId=%s",
+          eventId,
+          getLabelName(mSlotLabel[slot]),
+          mSlotTimeReceived[slot],
+          mSlotTimeInlineHandled.get(slot),
+          mSlotTimeFeedbackQueued.get(slot),
+          mSlotTimeFeedbackOutput.get(slot),
+          mSlotUtteranceId.get(slot));
     }
   }
 
@@ -739,7 +1050,7 @@ public class Performance {
   /////////////////////////////////////////////////////////////////////////////////////////////
   // Inner classes for recent events
 
-  /** Key for looking up EventData in HashMap. */
+  /** Identifies an event tracked through processing stages. */
   public static class EventId {
     private final long mEventTimeMs;
     @EventTypeId private final int mEventType;
@@ -820,67 +1131,6 @@ public class Performance {
     }
   }
 
-  /** Tracking the stage start times for an event. */
-  protected static class EventData {
-
-    // Members set when event is received at TalkBack.
-    public final String[] labels;
-    public final EventId eventId; // This EventData's key in mEventIndex.
-    public final long timeReceivedAtTalkback;
-
-    public long timeInlineHandled = -1;
-
-    // Members set when feedback is queued.
-    private long mTimeFeedbackQueued = -1;
-    private String mUtteranceId; // Updates may come from TalkBack or TextToSpeech threads.
-
-    private long mTimeFeedbackOutput = -1;
-
-    public EventData(long timeReceivedAtTalkbackArg, String[] labelsArg, EventId eventIdArg) {
-      labels = labelsArg;
-      eventId = eventIdArg;
-      timeReceivedAtTalkback = timeReceivedAtTalkbackArg;
-    }
-
-    // Synchronized because this method may be called from a separate audio handling thread.
-    public synchronized void setFeedbackQueued(long timeFeedbackQueued, String utteranceId) {
-      mTimeFeedbackQueued = timeFeedbackQueued;
-      mUtteranceId = utteranceId;
-    }
-
-    // Synchronized because this method may be called from a separate audio handling thread.
-    public synchronized void setFeedbackOutput(long timeFeedbackOutput) {
-      mTimeFeedbackOutput = timeFeedbackOutput;
-    }
-
-    public synchronized long getTimeFeedbackQueued() {
-      return mTimeFeedbackQueued;
-    }
-
-    public synchronized String getUtteranceId() {
-      return mUtteranceId;
-    }
-
-    public synchronized long getTimeFeedbackOutput() {
-      return mTimeFeedbackOutput;
-    }
-
-    @Override
-    public String toString() {
-      return " labels="
-          + TextUtils.join(",", labels)
-          + " timeReceivedAtTalkback="
-          + timeReceivedAtTalkback
-          + " mTimeFeedbackQueued="
-          + mTimeFeedbackQueued
-          + " mTimeFeedbackOutput="
-          + mTimeFeedbackOutput
-          + " timeInlineHandled="
-          + timeInlineHandled
-          + String.format(" mUtteranceId=%s", mUtteranceId);
-    }
-  }
-
   /////////////////////////////////////////////////////////////////////////////////////////////
   // Inner classes for latency statistics
 
@@ -945,61 +1195,69 @@ public class Performance {
     }
   }
 
-  /** General-purpose summary & distribution statistics for a group of values. */
+  /**
+   * General-purpose summary & distribution statistics for a group of values.
+   *
+   * <p>Values are counted in a fixed log-linear histogram, in the style of HdrHistogram: values
+   * below {@code SUB_BUCKETS} are counted exactly, and each larger power-of-two range is split into
+   * {@code SUB_BUCKETS} equal buckets, bounding the relative error of each bucket. All updates are
+   * lock-free and don't allocate, so statistics may be incremented from any thread.
+   */
   public static class Statistics {
-    protected long mNumMissing;
-    protected long mCount;
-    protected long mSum;
-    protected long mSumSquares;
+    /** Number of buckets per power of two. Must be a power of two. */
+    private static final int SUB_BUCKET_BITS = 3;
 
-    /** Bin start value = 2^(index-1) , except index=0 holds bin start value=0. */
-    protected ArrayList<AtomicLong> mHistogram = new ArrayList<AtomicLong>();
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
 
-    public Statistics() {
-      clear();
-    }
+    /** Values at or above {@code 2^MAX_POWER} are counted in the last bucket. */
+    private static final int MAX_POWER = 31;
+
+    private static final int NUM_BUCKETS = (MAX_POWER - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    protected final AtomicLong mNumMissing = new AtomicLong();
+    protected final AtomicLong mCount = new AtomicLong();
+    protected final AtomicLong mSum = new AtomicLong();
+    protected final AtomicLong mSumSquares = new AtomicLong();
+
+    protected final AtomicLongArray mBuckets = new AtomicLongArray(NUM_BUCKETS);
 
-    public synchronized void clear() {
-      mNumMissing = 0;
-      mCount = 0;
-      mSum = 0;
-      mSumSquares = 0;
-      mHistogram.clear();
+    public Statistics() {}
+
+    public void clear() {
+      mNumMissing.set(0);
+      mCount.set(0);
+      mSum.set(0);
+      mSumSquares.set(0);
+      for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+        mBuckets.set(bucket, 0);
+      }
     }
 
-    public synchronized void incrementNumMissing() {
-      ++mNumMissing;
+    public void incrementNumMissing() {
+      mNumMissing.incrementAndGet();
     }
 
-    public synchronized void increment(long value) {
+    public void increment(long value) {
       // Increment summary statistics.
-      ++mCount;
-      mSum += value;
-      mSumSquares += value * value;
-
-      // Ensure histogram is big enough to hold this value.
-      int binIndex = valueToHistogramBin(value);
-      if (mHistogram.size() < binIndex + 1) {
-        mHistogram.ensureCapacity(binIndex + 1);
-        while (mHistogram.size() <= binIndex) {
-          mHistogram.add(new AtomicLong(0));
-        }
-      }
+      mCount.incrementAndGet();
+      mSum.addAndGet(value);
+      mSumSquares.addAndGet(value * value);
+
       // Increment histogram count.
-      AtomicLong binCount = mHistogram.get(binIndex);
-      binCount.set(binCount.longValue() + 1);
+      mBuckets.incrementAndGet(valueToBucket(value));
     }
 
     public long getNumMissing() {
-      return mNumMissing;
+      return mNumMissing.get();
     }
 
     public long getCount() {
-      return mCount;
+      return mCount.get();
     }
 
     public long getMean() {
-      return (mCount <= 0) ? 0 : (mSum / mCount);
+      long count = mCount.get();
+      return (count <= 0) ? 0 : (mSum.get() / count);
     }
 
     /**
@@ -1009,30 +1267,117 @@ public class Performance {
      * @return Standard deviation of {@code increment(value)}
      */
     public double getStdDev() {
-      if (mCount <= 0) {
+      long count = mCount.get();
+      if (count <= 0) {
         return 0;
       }
-      double mean = (double) mSum / (double) mCount;
-      double meanOfSquares = (double) mSumSquares / (double) mCount;
+      double mean = (double) mSum.get() / (double) count;
+      double meanOfSquares = (double) mSumSquares.get() / (double) count;
       double variance = meanOfSquares - (mean * mean);
       return Math.sqrt(variance);
     }
 
     public long getMedianBinStart() {
-      if (mCount <= 0) {
+      long count = mCount.get();
+      if (count <= 0) {
         return 0;
       }
       // For each histogram bin, in order...
-      long medianCount = mCount / 2;
+      long[] histogram = getPowerOfTwoHistogram();
+      long medianCount = count / 2;
       long sumBins = 0;
-      for (int binIndex = 0; binIndex < mHistogram.size(); ++binIndex) {
-        // If bin contains mCount/2... return bin start.
-        sumBins += mHistogram.get(binIndex).longValue();
+      for (int binIndex = 0; binIndex < histogram.length; ++binIndex) {
+        // If bin contains count/2... return bin start.
+        sumBins += histogram[binIndex];
         if (sumBins >= medianCount) {
           return histogramBinToStartValue(binIndex);
         }
       }
-      return histogramBinToStartValue(mHistogram.size());
+      return histogramBinToStartValue(histogram.length);
+    }
+
+    /**
+     * Returns the counts of values in power-of-two bins, where bin start value = 2^(index-1),
+     * except index=0 holds bin start value=0. Trailing empty bins are omitted.
+     */
+    public long[] getPowerOfTwoHistogram() {
+      long[] histogram = new long[valueToHistogramBin(bucketToStartValue(NUM_BUCKETS - 1)) + 1];
+      int numBins = 0;
+      for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+        long bucketCount = mBuckets.get(bucket);
+        if (bucketCount > 0) {
+          // Each bucket lies within a single power-of-two bin.
+          int bin = valueToHistogramBin(bucketToStartValue(bucket));
+          histogram[bin] += bucketCount;
+          numBins = bin + 1;
+        }
+      }
+      long[] trimmed = new long[numBins];
+      System.arraycopy(histogram, 0, trimmed, 0, numBins);
+      return trimmed;
+    }
+
+    /**
+     * Returns an estimate of the value below which a percentage of counted values fall. The
+     * estimate is the highest value counted in the same bucket, so it is never below the true
+     * percentile.
+     *
+     * @param percentile Percentage of values, from 0 to 100
+     * @return The estimated percentile, or 0 if no values were counted
+     */
+    public long getPercentile(double percentile) {
+      long count = 0;
+      long[] buckets = new long[NUM_BUCKETS];
+      for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+        buckets[bucket] = mBuckets.get(bucket);
+        count += buckets[bucket];
+      }
+      if (count <= 0) {
+        return 0;
+      }
+      long targetCount = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+      long sumBuckets = 0;
+      for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+        sumBuckets += buckets[bucket];
+        if (sumBuckets >= targetCount) {
+          return (bucket == NUM_BUCKETS - 1)
+              ? bucketToStartValue(bucket)
+              : bucketToStartValue(bucket + 1) - 1;
+        }
+      }
+      return bucketToStartValue(NUM_BUCKETS - 1);
+    }
+
+    /** Returns a detached copy of these statistics. */
+    public Statistics copy() {
+      Statistics copy = new Statistics();
+      copy.mNumMissing.set(mNumMissing.get());
+      copy.mCount.set(mCount.get());
+      copy.mSum.set(mSum.get());
+      copy.mSumSquares.set(mSumSquares.get());
+      for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+        copy.mBuckets.set(bucket, mBuckets.get(bucket));
+      }
+      return copy;
+    }
+
+    /**
+     * Returns the statistics of values counted since {@code baseline} was copied from these
+     * statistics.
+     */
+    public Statistics since(@Nullable Statistics baseline) {
+      Statistics delta = copy();
+      if (baseline == null) {
+        return delta;
+      }
+      delta.mNumMissing.addAndGet(-baseline.mNumMissing.get());
+      delta.mCount.addAndGet(-baseline.mCount.get());
+      delta.mSum.addAndGet(-baseline.mSum.get());
+      delta.mSumSquares.addAndGet(-baseline.mSumSquares.get());
+      for (int bucket = 0; bucket < NUM_BUCKETS; ++bucket) {
+        delta.mBuckets.addAndGet(bucket, -baseline.mBuckets.get(bucket));
+      }
+      return delta;
     }
 
     public int valueToHistogramBin(long value) {
@@ -1043,20 +1388,109 @@ public class Performance {
       return (index < 1) ? 0L : (1L << (index - 1));
     }
 
+    /** Returns the log-linear bucket counting a value. */
+    protected static int valueToBucket(long value) {
+      if (value < SUB_BUCKETS) {
+        return (value < 0) ? 0 : (int) value;
+      }
+      int power = valueToPower(value);
+      if (power > MAX_POWER) {
+        return NUM_BUCKETS - 1;
+      }
+      int subBucket = (int) (value >> (power - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+      return (power - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /** Returns the smallest value counted by a log-linear bucket. */
+    protected static long bucketToStartValue(int bucket) {
+      if (bucket < SUB_BUCKETS) {
+        return bucket;
+      }
+      int power = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+      long subBucket = bucket % SUB_BUCKETS;
+      return (SUB_BUCKETS + subBucket) << (power - SUB_BUCKET_BITS);
+    }
+
     /**
      * Converts a positive value to the exponent of preceding 2^P. Returns the largest integer
-     * exponent "P" such that 2^P < value. Returns -1 for value <= 0.
+     * exponent "P" such that 2^P <= value. Returns -1 for value <= 0.
      */
     public static int valueToPower(long value) {
       if (value < 1) {
         return -1;
       }
-      // For each power that leaves a remainder... increment power.
-      long power = -1;
-      for (long remainder = value; remainder > 0; remainder >>= 1) {
-        ++power;
+      return 63 - Long.numberOfLeadingZeros(value);
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////////////////
+  // Inner classes for latency export
+
+  /** Latency percentiles of one label x stage, in milliseconds. */
+  public static class StageLatency {
+    public final StatisticsKey key;
+    public final long count;
+    public final long numMissing;
+    public final long mean;
+    public final long p50;
+    public final long p90;
+    public final long p99;
+    public final long p999;
+
+    public StageLatency(StatisticsKey key, Statistics stats) {
+      this.key = key;
+      count = stats.getCount();
+      numMissing = stats.getNumMissing();
+      mean = stats.getMean();
+      p50 = stats.getPercentile(50);
+      p90 = stats.getPercentile(90);
+      p99 = stats.getPercentile(99);
+      p999 = stats.getPercentile(99.9);
+    }
+
+    public JSONObject toJson() throws JSONException {
+      JSONObject json = new JSONObject();
+      json.put("label", key.getLabel());
+      json.put("stage", STAGE_NAMES[key.getStage()]);
+      json.put("count", count);
+      json.put("missing", numMissing);
+      json.put("mean", mean);
+      json.put("p50", p50);
+      json.put("p90", p90);
+      json.put("p99", p99);
+      json.put("p99.9", p999);
+      return json;
+    }
+  }
+
+  /** Immutable latency percentiles of every label x stage, at one point in time. */
+  public static class LatencySnapshot {
+    public final boolean windowed;
+    /** Wall-clock start of the window, or 0 for cumulative snapshots. */
+    public final long startTimeMs;
+
+    public final long snapshotTimeMs;
+    public final List<StageLatency> latencies;
+
+    public LatencySnapshot(
+        boolean windowed, long startTimeMs, long snapshotTimeMs, List<StageLatency> latencies) {
+      this.windowed = windowed;
+      this.startTimeMs = startTimeMs;
+      this.snapshotTimeMs = snapshotTimeMs;
+      this.latencies = Collections.unmodifiableList(latencies);
+    }
+
+    public JSONObject toJson() throws JSONException {
+      JSONObject json = new JSONObject();
+      json.put("windowed", windowed);
+      json.put("startTimeMs", startTimeMs);
+      json.put("snapshotTimeMs", snapshotTimeMs);
+      JSONArray latenciesJson = new JSONArray();
+      for (StageLatency latency : latencies) {
+        latenciesJson.put(latency.toJson());
       }
-      return (int) power;
+      json.put("latencies", latenciesJson);
+      return json;
     }
   }
 
@@ -25,6 +25,8 @@ import androidx.core.view.accessibility.AccessibilityNodeInfoCompat.Accessibilit
 import androidx.core.view.accessibility.AccessibilityNodeInfoCompat.CollectionInfoCompat;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 /** Utility methods for managing AccessibilityNodeInfo Roles. */
@@ -119,6 +121,12 @@ public class Role {
   /** Used to identify and ignore a11y overlay windows created by Talkback. */
   public static final String TALKBACK_EDIT_TEXT_OVERLAY_CLASSNAME = "TalkbackEditTextOverlay";
 
+  /**
+   * Maps node class names to the role implied by the class alone, which never changes while the
+   * service runs. Roles are looked up from several threads.
+   */
+  private static final Map<String, Integer> classNameToRoleCache = new ConcurrentHashMap<>();
+
   /**
    * Gets the source {@link Role} from the {@link AccessibilityEvent}.
    *
@@ -237,8 +245,101 @@ public class Role {
     if (node.isTextEntryKey()) {
       return ROLE_TEXT_ENTRY_KEY;
     }
-    CharSequence className = node.getClassName();
+    @RoleName int classRole = classNameToRole(node.getClassName());
+
+    // The class roles are resolved in the same order as the checks below, which only handle the
+    // roles that also depend on node properties.
+    switch (classRole) {
+      case ROLE_TALKBACK_EDIT_TEXT_OVERLAY:
+      case ROLE_SWITCH:
+      case ROLE_TOGGLE_BUTTON:
+      case ROLE_RADIO_BUTTON:
+      case ROLE_CHECK_BOX:
+      case ROLE_BUTTON:
+      case ROLE_CHECKED_TEXT_VIEW:
+      case ROLE_EDIT_TEXT:
+      case ROLE_SEEK_CONTROL:
+        return classRole;
+      case ROLE_IMAGE:
+        return node.isClickable() ? ROLE_IMAGE_BUTTON : ROLE_IMAGE;
+      default:
+        break;
+    }
+
+    // Nodes with range info are seek controls or progress bars, whatever their class.
+    if (AccessibilityNodeInfoUtils.hasValidRangeInfo(node)) {
+      return AccessibilityNodeInfoUtils.supportsAction(
+              node, android.R.id.accessibilityActionSetProgress)
+          ? ROLE_SEEK_CONTROL
+          : ROLE_PROGRESS_BAR;
+    }
+
+    switch (classRole) {
+      case ROLE_PROGRESS_BAR:
+      case ROLE_KEYBOARD_KEY:
+      case ROLE_WEB_VIEW:
+      case ROLE_TAB_BAR:
+      case ROLE_SCROLL_VIEW:
+      case ROLE_PAGER:
+      case ROLE_DROP_DOWN_LIST:
+      case ROLE_GRID:
+      case ROLE_LIST:
+        return classRole;
+      case ROLE_HORIZONTAL_SCROLL_VIEW:
+        // If there is a CollectionInfo, fall into a ROLE_LIST/ROLE_GRID
+        if (node.getCollectionInfo() == null) {
+          return ROLE_HORIZONTAL_SCROLL_VIEW;
+        }
+        break;
+      default:
+        break;
+    }
+
+    // Inheritance: View->ViewGroup->ViewPager2
+    if (AccessibilityNodeInfoUtils.supportsAction(
+            node, AccessibilityActionCompat.ACTION_PAGE_UP.getId())
+        || AccessibilityNodeInfoUtils.supportsAction(
+            node, AccessibilityActionCompat.ACTION_PAGE_DOWN.getId())
+        || AccessibilityNodeInfoUtils.supportsAction(
+            node, AccessibilityActionCompat.ACTION_PAGE_LEFT.getId())
+        || AccessibilityNodeInfoUtils.supportsAction(
+            node, AccessibilityActionCompat.ACTION_PAGE_RIGHT.getId())) {
+      return ROLE_PAGER;
+    }
 
+    CollectionInfoCompat collection = node.getCollectionInfo();
+    if (collection != null) {
+      // RecyclerView will be classified as a list or grid.
+      if (collection.getRowCount() > 1 && collection.getColumnCount() > 1) {
+        return ROLE_GRID;
+      } else {
+        return ROLE_LIST;
+      }
+    }
+
+    return (classRole == ROLE_VIEW_GROUP) ? ROLE_VIEW_GROUP : ROLE_NONE;
+  }
+
+  /**
+   * Returns the role implied by {@code className} alone, memoized so that each class name is
+   * resolved through {@link ClassLoadingCache} only once.
+   */
+  @RoleName
+  private static int classNameToRole(@Nullable CharSequence className) {
+    if (className == null) {
+      return ROLE_NONE;
+    }
+    String name = className.toString();
+    @Nullable Integer role = classNameToRoleCache.get(name);
+    if (role == null) {
+      role = resolveClassNameToRole(name);
+      classNameToRoleCache.put(name, role);
+    }
+    return role;
+  }
+
+  @RoleName
+  private static int resolveClassNameToRole(String className) {
     // When comparing node.getClassName() to class name of standard widgets, we should take care of
     // the order of the "if" statements: check subclasses before checking superclasses.
     // e.g. RadioButton is a subclass of Button, we should check Role RadioButton first and fall
@@ -251,7 +352,7 @@ public class Role {
 
     // Inheritance: View->ImageView
     if (ClassLoadingCache.checkInstanceOf(className, android.widget.ImageView.class)) {
-      return node.isClickable() ? ROLE_IMAGE_BUTTON : ROLE_IMAGE;
+      return ROLE_IMAGE;
     }
 
     // //////////////////////////////////////////////////////////////////////////////////////////
@@ -296,18 +397,12 @@ public class Role {
     // Subclasses of ProgressBar.
 
     // Inheritance: View->ProgressBar->AbsSeekBar->SeekBar
-    if (ClassLoadingCache.checkInstanceOf(className, SeekBar.class)
-        || (AccessibilityNodeInfoUtils.hasValidRangeInfo(node)
-            && AccessibilityNodeInfoUtils.supportsAction(
-                node, android.R.id.accessibilityActionSetProgress))) {
+    if (ClassLoadingCache.checkInstanceOf(className, SeekBar.class)) {
       return ROLE_SEEK_CONTROL;
     }
 
     // Inheritance: View->ProgressBar
-    if (ClassLoadingCache.checkInstanceOf(className, ProgressBar.class)
-        || (AccessibilityNodeInfoUtils.hasValidRangeInfo(node)
-            && !AccessibilityNodeInfoUtils.supportsAction(
-                node, android.R.id.accessibilityActionSetProgress))) {
+    if (ClassLoadingCache.checkInstanceOf(className, ProgressBar.class)) {
       // ProgressBar check must come after SeekBar, because SeekBar specializes ProgressBar.
       return ROLE_PROGRESS_BAR;
     }
@@ -331,9 +426,7 @@ public class Role {
     }
 
     // Inheritance: View->ViewGroup->FrameLayout->HorizontalScrollView
-    // If there is a CollectionInfo, fall into a ROLE_LIST/ROLE_GRID
-    if (ClassLoadingCache.checkInstanceOf(className, android.widget.HorizontalScrollView.class)
-        && node.getCollectionInfo() == null) {
+    if (ClassLoadingCache.checkInstanceOf(className, android.widget.HorizontalScrollView.class)) {
       return ROLE_HORIZONTAL_SCROLL_VIEW;
     }
 
@@ -364,28 +457,6 @@ public class Role {
       return ROLE_LIST;
     }
 
-    // Inheritance: View->ViewGroup->ViewPager2
-    if (AccessibilityNodeInfoUtils.supportsAction(
-            node, AccessibilityActionCompat.ACTION_PAGE_UP.getId())
-        || AccessibilityNodeInfoUtils.supportsAction(
-            node, AccessibilityActionCompat.ACTION_PAGE_DOWN.getId())
-        || AccessibilityNodeInfoUtils.supportsAction(
-            node, AccessibilityActionCompat.ACTION_PAGE_LEFT.getId())
-        || AccessibilityNodeInfoUtils.supportsAction(
-            node, AccessibilityActionCompat.ACTION_PAGE_RIGHT.getId())) {
-      return ROLE_PAGER;
-    }
-
-    CollectionInfoCompat collection = node.getCollectionInfo();
-    if (collection != null) {
-      // RecyclerView will be classified as a list or grid.
-      if (collection.getRowCount() > 1 && collection.getColumnCount() > 1) {
-        return ROLE_GRID;
-      } else {
-        return ROLE_LIST;
-      }
-    }
-
     // Inheritance: View->ViewGroup
     if (ClassLoadingCache.checkInstanceOf(className, android.view.ViewGroup.class)) {
       return ROLE_VIEW_GROUP;
@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.utils;
+
+import android.os.Looper;
+import android.view.accessibility.AccessibilityEvent;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import com.google.android.accessibility.utils.Performance.EventId;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Shares the speaking-node results of {@link AccessibilityNodeInfoUtils#shouldFocusNode} between
+ * traversal strategies, touch exploration, navigation and screen search, with one cache per window.
+ * Nodes are keyed by {@link AccessibilityNodeInfoCompat#equals}, which compares the window and the
+ * source node id.
+ *
+ * <p>Whether a node speaks depends on its own text and state, and on the visibility and text of its
+ * descendants. So a text or state change of a node drops the node and its ancestors from the cache
+ * of its window, and any other content change or scroll drops the cache of the window. Window
+ * changes drop every cache.
+ *
+ * <p>The cache must receive the events from {@link #getEventTypes()} while it is enabled. It is
+ * only shared on the main thread; on other threads, or while the cache is disabled, each caller
+ * gets a new map, as if there were no shared cache.
+ */
+public class SpeakingNodesCache implements AccessibilityEventListener {
+
+  /** Maximum number of windows whose speaking nodes are kept. */
+  private static final int MAX_WINDOWS = 4;
+
+  /** Maximum number of nodes kept for each window. */
+  private static final int MAX_NODES_PER_WINDOW = 2048;
+
+  private static final int EVENT_MASK =
+      AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+          | AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED
+          | AccessibilityEvent.TYPE_VIEW_SCROLLED
+          | AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+          | AccessibilityEvent.TYPE_WINDOWS_CHANGED;
+
+  /** Content changes which only affect whether the source node and its ancestors speak. */
+  private static final int NODE_CHANGE_TYPES =
+      AccessibilityEvent.CONTENT_CHANGE_TYPE_TEXT
+          | AccessibilityEvent.CONTENT_CHANGE_TYPE_CONTENT_DESCRIPTION
+          | AccessibilityEvent.CONTENT_CHANGE_TYPE_STATE_DESCRIPTION;
+
+  private static final SpeakingNodesCache sInstance = new SpeakingNodesCache();
+
+  private final Map<Integer, Map<AccessibilityNodeInfoCompat, Boolean>> mWindowCaches =
+      new LinkedHashMap<Integer, Map<AccessibilityNodeInfoCompat, Boolean>>(
+          MAX_WINDOWS, 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(
+            Map.Entry<Integer, Map<AccessibilityNodeInfoCompat, Boolean>> eldest) {
+          return size() > MAX_WINDOWS;
+        }
+      };
+
+  private final Map<AccessibilityNodeInfoCompat, Boolean> mSharedCache = new WindowRoutingMap();
+
+  private boolean mEnabled;
+
+  public static SpeakingNodesCache getInstance() {
+    return sInstance;
+  }
+
+  private SpeakingNodesCache() {}
+
+  /**
+   * Enables or disables sharing of the cache. The caller enabling the cache must also deliver the
+   * events from {@link #getEventTypes()} to it.
+   */
+  public void setEnabled(boolean enabled) {
+    mEnabled = enabled;
+    if (!enabled) {
+      mWindowCaches.clear();
+    }
+  }
+
+  /**
+   * Returns the speaking nodes cache to pass to {@link AccessibilityNodeInfoUtils#shouldFocusNode}.
+   * The shared cache stores each node in the cache of its own window, so it may be used across
+   * windows.
+   */
+  public Map<AccessibilityNodeInfoCompat, Boolean> getCache() {
+    if (!mEnabled || Looper.myLooper() != Looper.getMainLooper()) {
+      return new HashMap<>();
+    }
+    return mSharedCache;
+  }
+
+  @Override
+  public int getEventTypes() {
+    return EVENT_MASK;
+  }
+
+  @Override
+  public void onAccessibilityEvent(AccessibilityEvent event, EventId eventId) {
+    if (mWindowCaches.isEmpty()) {
+      return;
+    }
+
+    switch (event.getEventType()) {
+      case AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED:
+        {
+          int changeTypes = event.getContentChangeTypes();
+          boolean nodeChange =
+              (changeTypes != AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED)
+                  && ((changeTypes & ~NODE_CHANGE_TYPES) == 0);
+          onNodeChanged(event, nodeChange);
+          break;
+        }
+      case AccessibilityEvent.TYPE_VIEW_TEXT_CHANGED:
+        onNodeChanged(event, /* nodeChange= */ true);
+        break;
+      case AccessibilityEvent.TYPE_VIEW_SCROLLED:
+        // Scrolling changes which descendants of the scrolled node are visible.
+        onNodeChanged(event, /* nodeChange= */ false);
+        break;
+      case AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED:
+      case AccessibilityEvent.TYPE_WINDOWS_CHANGED:
+        mWindowCaches.clear();
+        break;
+      default: // fall out
+    }
+  }
+
+  /**
+   * Drops the source of {@code event} and its ancestors from the cache of their window if {@code
+   * nodeChange}, or else the whole cache of the window.
+   */
+  private void onNodeChanged(AccessibilityEvent event, boolean nodeChange) {
+    int windowId = AccessibilityEventUtils.getWindowId(event);
+    if (windowId == AccessibilityEventUtils.WINDOW_ID_NONE) {
+      mWindowCaches.clear();
+      return;
+    }
+    Map<AccessibilityNodeInfoCompat, Boolean> windowCache = mWindowCaches.get(windowId);
+    if (windowCache == null) {
+      return;
+    }
+
+    AccessibilityNodeInfoCompat source =
+        nodeChange ? AccessibilityEventUtils.sourceCompat(event) : null;
+    if (source == null) {
+      mWindowCaches.remove(windowId);
+      return;
+    }
+    // Walks up to the root, since an evicted node may sit between the source and a cached ancestor.
+    Set<AccessibilityNodeInfoCompat> visitedNodes = new HashSet<>();
+    for (AccessibilityNodeInfoCompat node = source;
+        node != null && visitedNodes.add(node);
+        node = node.getParent()) {
+      windowCache.remove(node);
+    }
+  }
+
+  /** Keeps each node in the cache of its window. */
+  private class WindowRoutingMap extends AbstractMap<AccessibilityNodeInfoCompat, Boolean> {
+
+    @Override
+    public boolean containsKey(@Nullable Object key) {
+      @Nullable Map<AccessibilityNodeInfoCompat, Boolean> windowCache = getWindowCache(key, false);
+      return (windowCache != null) && windowCache.containsKey(key);
+    }
+
+    @Override
+    public @Nullable Boolean get(@Nullable Object key) {
+      @Nullable Map<AccessibilityNodeInfoCompat, Boolean> windowCache = getWindowCache(key, false);
+      return (windowCache == null) ? null : windowCache.get(key);
+    }
+
+    @Override
+    public @Nullable Boolean put(AccessibilityNodeInfoCompat key, Boolean value) {
+      @Nullable Map<AccessibilityNodeInfoCompat, Boolean> windowCache = getWindowCache(key, true);
+      return (windowCache == null) ? null : windowCache.put(key, value);
+    }
+
+    @Override
+    public @Nullable Boolean remove(@Nullable Object key) {
+      @Nullable Map<AccessibilityNodeInfoCompat, Boolean> windowCache = getWindowCache(key, false);
+      return (windowCache == null) ? null : windowCache.remove(key);
+    }
+
+    @Override
+    public void clear() {
+      mWindowCaches.clear();
+    }
+
+    /** Returns a snapshot of the entries of every window. */
+    @Override
+    public Set<Entry<AccessibilityNodeInfoCompat, Boolean>> entrySet() {
+      Set<Entry<AccessibilityNodeInfoCompat, Boolean>> entries = new HashSet<>();
+      for (Map<AccessibilityNodeInfoCompat, Boolean> windowCache : mWindowCaches.values()) {
+        for (Entry<AccessibilityNodeInfoCompat, Boolean> entry : windowCache.entrySet()) {
+          entries.add(new SimpleImmutableEntry<>(entry));
+        }
+      }
+      return entries;
+    }
+
+    private @Nullable Map<AccessibilityNodeInfoCompat, Boolean> getWindowCache(
+        @Nullable Object key, boolean create) {
+      if (!(key instanceof AccessibilityNodeInfoCompat)) {
+        return null;
+      }
+      int windowId = ((AccessibilityNodeInfoCompat) key).getWindowId();
+      @Nullable Map<AccessibilityNodeInfoCompat, Boolean> windowCache = mWindowCaches.get(windowId);
+      if (windowCache == null && create) {
+        windowCache =
+            new LinkedHashMap<AccessibilityNodeInfoCompat, Boolean>() {
+              @Override
+              protected boolean removeEldestEntry(
+                  Map.Entry<AccessibilityNodeInfoCompat, Boolean> eldest) {
+                return size() > MAX_NODES_PER_WINDOW;
+              }
+            };
+        mWindowCaches.put(windowId, windowCache);
+      }
+      return windowCache;
+    }
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.utils.caption;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.text.TextUtils;
+import androidx.annotation.Nullable;
+import androidx.core.os.UserManagerCompat;
+import com.google.android.accessibility.utils.AccessibilityNode;
+import com.google.android.accessibility.utils.AccessibilityNodeInfoUtils.ViewResourceName;
+import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Persists image caption results across service restarts, so that revisited screens need neither a
+ * screenshot nor model inference.
+ *
+ * <p>Results are keyed either by the view resource name of the captioned node, which can be looked
+ * up before taking a screenshot, or by a perceptual hash of the node's image from {@link
+ * ImageCaptionUtils#computeImageHash}, which also works for nodes without a resource name. Both
+ * keys include the package and the speech locale. The least recently used results are evicted
+ * once there are more than {@link #MAX_ENTRIES}.
+ *
+ * <p>Lookups are synchronous; writes run on a background thread.
+ */
+public class ImageCaptionDatabase extends SQLiteOpenHelper {
+
+  private static final String TAG = "ImageCaptionDatabase";
+
+  private static final String DATABASE_NAME = "imageCaptions.db";
+  private static final int DATABASE_VERSION = 1;
+  private static final int MAX_ENTRIES = 2000;
+
+  private static final String TABLE_NAME = "captions";
+  private static final String KEY_ID = "_id";
+  private static final String KEY_OCR_TEXT = "ocrText";
+  private static final String KEY_ICON_LABEL = "iconLabel";
+  private static final String KEY_LAST_ACCESS = "lastAccess";
+
+  private static final String CREATE_TABLE =
+      "CREATE TABLE "
+          + TABLE_NAME
+          + " ("
+          + KEY_ID
+          + " TEXT PRIMARY KEY, "
+          + KEY_OCR_TEXT
+          + " TEXT, "
+          + KEY_ICON_LABEL
+          + " TEXT, "
+          + KEY_LAST_ACCESS
+          + " INTEGER)";
+  private static final String CREATE_LAST_ACCESS_INDEX =
+      "CREATE INDEX " + KEY_LAST_ACCESS + "Index ON " + TABLE_NAME + "(" + KEY_LAST_ACCESS + ")";
+  private static final String EVICT_OLDEST =
+      "DELETE FROM "
+          + TABLE_NAME
+          + " WHERE "
+          + KEY_ID
+          + " IN (SELECT "
+          + KEY_ID
+          + " FROM "
+          + TABLE_NAME
+          + " ORDER BY "
+          + KEY_LAST_ACCESS
+          + " ASC LIMIT ?)";
+
+  private static final String[] QUERY_COLUMNS = {KEY_OCR_TEXT, KEY_ICON_LABEL};
+  private static final String SELECT_BY_ID = KEY_ID + " = ?";
+
+  private final Context context;
+  private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+  public ImageCaptionDatabase(Context context) {
+    super(context, DATABASE_NAME, /* factory= */ null, DATABASE_VERSION);
+    this.context = context;
+  }
+
+  @Override
+  public void onCreate(SQLiteDatabase db) {
+    db.execSQL(CREATE_TABLE);
+    db.execSQL(CREATE_LAST_ACCESS_INDEX);
+  }
+
+  @Override
+  public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    // Cached results can always be recomputed.
+    db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME);
+    onCreate(db);
+  }
+
+  /** Returns the key for the results of {@code node}, or {@code null} if it isn't storable. */
+  @Nullable
+  public static String getViewKey(AccessibilityNode node, Locale locale) {
+    if (!ImageCaptionStorage.isStorable(node)) {
+      return null;
+    }
+    @Nullable ViewResourceName viewResourceName = node.getPackageNameAndViewId();
+    if (viewResourceName == null) {
+      return null;
+    }
+    return "view/"
+        + viewResourceName.packageName()
+        + "/"
+        + viewResourceName.viewIdName()
+        + "/"
+        + locale.toLanguageTag();
+  }
+
+  /** Returns the key for the results of an image with {@code imageHash} in {@code packageName}. */
+  public static String getImageKey(CharSequence packageName, String imageHash, Locale locale) {
+    return "image/" + packageName + "/" + imageHash + "/" + locale.toLanguageTag();
+  }
+
+  /** Returns the results stored under {@code key}, or {@code null} if there are none. */
+  @Nullable
+  public CaptionEntry get(String key) {
+    @Nullable SQLiteDatabase db = getDatabase(/* writable= */ false);
+    if (db == null) {
+      return null;
+    }
+
+    @Nullable CaptionEntry entry = null;
+    try (Cursor cursor =
+        db.query(
+            TABLE_NAME,
+            QUERY_COLUMNS,
+            SELECT_BY_ID,
+            new String[] {key},
+            /* groupBy= */ null,
+            /* having= */ null,
+            /* orderBy= */ null)) {
+      if (cursor.moveToFirst()) {
+        entry = new CaptionEntry(cursor.getString(0), cursor.getString(1));
+      }
+    } catch (SQLException e) {
+      LogUtils.e(TAG, "Failed to query %s: %s", key, e);
+      return null;
+    }
+
+    if (entry != null) {
+      long accessTime = System.currentTimeMillis();
+      executeWrite(() -> touch(key, accessTime));
+    }
+    return entry;
+  }
+
+  /**
+   * Stores the non-empty results under {@code key}, keeping the stored result of the other type.
+   */
+  public void put(String key, @Nullable CharSequence ocrText, @Nullable CharSequence iconLabel) {
+    if (TextUtils.isEmpty(ocrText) && TextUtils.isEmpty(iconLabel)) {
+      return;
+    }
+    ContentValues values = new ContentValues();
+    if (!TextUtils.isEmpty(ocrText)) {
+      values.put(KEY_OCR_TEXT, ocrText.toString());
+    }
+    if (!TextUtils.isEmpty(iconLabel)) {
+      values.put(KEY_ICON_LABEL, iconLabel.toString());
+    }
+    values.put(KEY_LAST_ACCESS, System.currentTimeMillis());
+    executeWrite(() -> write(key, values));
+  }
+
+  /** Removes the results stored under {@code key}. */
+  public void remove(String key) {
+    executeWrite(
+        () -> {
+          @Nullable SQLiteDatabase db = getDatabase(/* writable= */ true);
+          if (db != null) {
+            try {
+              db.delete(TABLE_NAME, SELECT_BY_ID, new String[] {key});
+            } catch (SQLException e) {
+              LogUtils.e(TAG, "Failed to remove %s: %s", key, e);
+            }
+          }
+        });
+  }
+
+  /** Finishes the pending writes on the background thread and closes the database. */
+  public synchronized void shutdown() {
+    if (!writeExecutor.isShutdown()) {
+      writeExecutor.execute(this::close);
+      writeExecutor.shutdown();
+    }
+  }
+
+  private synchronized void executeWrite(Runnable write) {
+    // Results arriving after shutdown are dropped.
+    if (!writeExecutor.isShutdown()) {
+      writeExecutor.execute(write);
+    }
+  }
+
+  private void write(String key, ContentValues values) {
+    @Nullable SQLiteDatabase db = getDatabase(/* writable= */ true);
+    if (db == null) {
+      return;
+    }
+    try {
+      db.beginTransaction();
+      try {
+        if (db.update(TABLE_NAME, values, SELECT_BY_ID, new String[] {key}) == 0) {
+          values.put(KEY_ID, key);
+          db.insert(TABLE_NAME, /* nullColumnHack= */ null, values);
+          evictIfFull(db);
+        }
+        db.setTransactionSuccessful();
+      } finally {
+        db.endTransaction();
+      }
+    } catch (SQLException e) {
+      LogUtils.e(TAG, "Failed to store %s: %s", key, e);
+    }
+  }
+
+  private void touch(String key, long accessTime) {
+    @Nullable SQLiteDatabase db = getDatabase(/* writable= */ true);
+    if (db == null) {
+      return;
+    }
+    ContentValues values = new ContentValues();
+    values.put(KEY_LAST_ACCESS, accessTime);
+    try {
+      db.update(TABLE_NAME, values, SELECT_BY_ID, new String[] {key});
+    } catch (SQLException e) {
+      LogUtils.e(TAG, "Failed to update %s: %s", key, e);
+    }
+  }
+
+  private static void evictIfFull(SQLiteDatabase db) {
+    long overflow = DatabaseUtils.queryNumEntries(db, TABLE_NAME) - MAX_ENTRIES;
+    if (overflow > 0) {
+      db.execSQL(EVICT_OLDEST, new Object[] {overflow});
+    }
+  }
+
+  /** Returns the database, or {@code null} before the user unlocks the device or on failure. */
+  @Nullable
+  private SQLiteDatabase getDatabase(boolean writable) {
+    // The database lives in credential-encrypted storage.
+    if (!UserManagerCompat.isUserUnlocked(context)) {
+      return null;
+    }
+    try {
+      return writable ? getWritableDatabase() : getReadableDatabase();
+    } catch (SQLException e) {
+      LogUtils.e(TAG, "Failed to open database: %s", e);
+      return null;
+    }
+  }
+
+  /** The image caption results stored under one key. */
+  public static final class CaptionEntry {
+    @Nullable private final CharSequence ocrText;
+    @Nullable private final CharSequence iconLabel;
+
+    private CaptionEntry(@Nullable CharSequence ocrText, @Nullable CharSequence iconLabel) {
+      this.ocrText = ocrText;
+      this.iconLabel = iconLabel;
+    }
+
+    @Nullable
+    public CharSequence getOcrText() {
+      return ocrText;
+    }
+
+    @Nullable
+    public CharSequence getIconLabel() {
+      return iconLabel;
+    }
+  }
+}
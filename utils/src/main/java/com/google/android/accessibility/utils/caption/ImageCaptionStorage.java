@@ -81,6 +81,20 @@ public class ImageCaptionStorage {
     return imageNode;
   }
 
+  /**
+   * Checks if the cache has an entry for the specified node, including one whose results are not
+   * returned by {@link #getCaptionResults} because they are invalid or not stable.
+   */
+  public boolean hasCaptionEntry(AccessibilityNode node) {
+    return findImageNode(node) != null;
+  }
+
+  /** Checks if different icon labels have been detected for the specified node. */
+  public boolean isIconLabelUnstable(AccessibilityNode node) {
+    @Nullable ImageNode imageNode = findImageNode(node);
+    return imageNode != null && !imageNode.isIconLabelStable();
+  }
+
   /** Stores the OCR result for the specified node in the cache. */
   public void updateCharacterCaptionResult(AccessibilityNode node, CharSequence result) {
     if (!ImageCaptionStorage.isStorable(node) || TextUtils.isEmpty(result)) {
@@ -17,6 +17,8 @@
 package com.google.android.accessibility.utils.caption;
 
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
 import android.graphics.Rect;
 import android.text.TextUtils;
 import androidx.annotation.Nullable;
@@ -35,6 +37,11 @@ public class ImageCaptionUtils {
 
   private static final boolean ENABLE_CAPTION_FOR_LEAF_VIEW = true;
 
+  /** The size of the grid which {@link #computeImageHash(Bitmap)} reduces images to. */
+  private static final int HASH_GRID_WIDTH = 9;
+
+  private static final int HASH_GRID_HEIGHT = 8;
+
   private ImageCaptionUtils() {}
 
   /** Checks if the node needs image captions. */
@@ -66,4 +73,55 @@ public class ImageCaptionUtils {
 
     return false;
   }
+
+  /**
+   * Returns a perceptual hash of {@code image}, which stays the same when the image is rendered
+   * again with minor differences.
+   *
+   * <p>The hash combines the difference hash of the image reduced to an 8x8 grid, which records
+   * whether the brightness increases between horizontal neighbors, with the image size and its
+   * coarse average color, since flat images have the same difference hash.
+   */
+  public static String computeImageHash(Bitmap image) {
+    Bitmap grid =
+        Bitmap.createScaledBitmap(image, HASH_GRID_WIDTH, HASH_GRID_HEIGHT, /* filter= */ true);
+    if (grid.getConfig() == Bitmap.Config.HARDWARE) {
+      // Pixels of hardware bitmaps can't be read directly.
+      grid = grid.copy(Bitmap.Config.ARGB_8888, /* isMutable= */ false);
+    }
+
+    long differenceHash = 0;
+    int red = 0;
+    int green = 0;
+    int blue = 0;
+    for (int y = 0; y < HASH_GRID_HEIGHT; y++) {
+      int previousLuminance = 0;
+      for (int x = 0; x < HASH_GRID_WIDTH; x++) {
+        int color = grid.getPixel(x, y);
+        red += Color.red(color);
+        green += Color.green(color);
+        blue += Color.blue(color);
+        int luminance =
+            Color.red(color) * 299 + Color.green(color) * 587 + Color.blue(color) * 114;
+        if (x > 0) {
+          differenceHash = (differenceHash << 1) | (luminance > previousLuminance ? 1 : 0);
+        }
+        previousLuminance = luminance;
+      }
+    }
+
+    int pixelCount = HASH_GRID_WIDTH * HASH_GRID_HEIGHT;
+    // Keep the top 4 bits of each channel, so that slight color shifts don't change the hash.
+    int averageColor =
+        (((red / pixelCount) >> 4) << 8)
+            | (((green / pixelCount) >> 4) << 4)
+            | ((blue / pixelCount) >> 4);
+    return image.getWidth()
+        + "x"
+        + image.getHeight()
+        + "-"
+        + Integer.toHexString(averageColor)
+        + "-"
+        + Long.toHexString(differenceHash);
+  }
 }
@@ -69,6 +69,7 @@ import static com.google.android.accessibility.utils.gestures.Swipe.UP;
 import android.accessibilityservice.AccessibilityGestureEvent;
 import android.content.Context;
 import android.os.Build;
+import android.util.Log;
 import android.view.MotionEvent;
 import androidx.annotation.RequiresApi;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
@@ -85,6 +86,8 @@ public class GestureManifold implements GestureMatcher.StateChangeListener {
   private static final String LOG_TAG = "GestureManifold";
 
   private final List<GestureMatcher> gestures = new ArrayList<>();
+  // Samples one-finger strokes once for all swipes.
+  private final StrokeAnalyzer strokeAnalyzer;
   private final Context context;
   private final int displayId;
   // Listener to be notified of gesture start and end.
@@ -105,6 +108,7 @@ public class GestureManifold implements GestureMatcher.StateChangeListener {
     this.displayId = displayId;
     multiFingerGesturesEnabled = false;
     twoFingerPassthroughEnabled = false;
+    strokeAnalyzer = new StrokeAnalyzer(context);
     // Set up gestures.
     // Start with double tap.
     gestures.add(new MultiTap(context, 2, GESTURE_DOUBLE_TAP, this));
@@ -112,23 +116,27 @@ public class GestureManifold implements GestureMatcher.StateChangeListener {
     // Second-finger double tap.
     gestures.add(new SecondFingerMultiTap(context, 2, GESTURE_DOUBLE_TAP, this));
     // One-direction swipes.
-    gestures.add(new Swipe(context, RIGHT, GESTURE_SWIPE_RIGHT, this));
-    gestures.add(new Swipe(context, LEFT, GESTURE_SWIPE_LEFT, this));
-    gestures.add(new Swipe(context, UP, GESTURE_SWIPE_UP, this));
-    gestures.add(new Swipe(context, DOWN, GESTURE_SWIPE_DOWN, this));
+    gestures.add(new Swipe(context, RIGHT, GESTURE_SWIPE_RIGHT, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, LEFT, GESTURE_SWIPE_LEFT, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, UP, GESTURE_SWIPE_UP, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, DOWN, GESTURE_SWIPE_DOWN, strokeAnalyzer, this));
     // Two-direction swipes.
-    gestures.add(new Swipe(context, LEFT, RIGHT, GESTURE_SWIPE_LEFT_AND_RIGHT, this));
-    gestures.add(new Swipe(context, LEFT, UP, GESTURE_SWIPE_LEFT_AND_UP, this));
-    gestures.add(new Swipe(context, LEFT, DOWN, GESTURE_SWIPE_LEFT_AND_DOWN, this));
-    gestures.add(new Swipe(context, RIGHT, UP, GESTURE_SWIPE_RIGHT_AND_UP, this));
-    gestures.add(new Swipe(context, RIGHT, DOWN, GESTURE_SWIPE_RIGHT_AND_DOWN, this));
-    gestures.add(new Swipe(context, RIGHT, LEFT, GESTURE_SWIPE_RIGHT_AND_LEFT, this));
-    gestures.add(new Swipe(context, DOWN, UP, GESTURE_SWIPE_DOWN_AND_UP, this));
-    gestures.add(new Swipe(context, DOWN, LEFT, GESTURE_SWIPE_DOWN_AND_LEFT, this));
-    gestures.add(new Swipe(context, DOWN, RIGHT, GESTURE_SWIPE_DOWN_AND_RIGHT, this));
-    gestures.add(new Swipe(context, UP, DOWN, GESTURE_SWIPE_UP_AND_DOWN, this));
-    gestures.add(new Swipe(context, UP, LEFT, GESTURE_SWIPE_UP_AND_LEFT, this));
-    gestures.add(new Swipe(context, UP, RIGHT, GESTURE_SWIPE_UP_AND_RIGHT, this));
+    gestures.add(
+        new Swipe(context, LEFT, RIGHT, GESTURE_SWIPE_LEFT_AND_RIGHT, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, LEFT, UP, GESTURE_SWIPE_LEFT_AND_UP, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, LEFT, DOWN, GESTURE_SWIPE_LEFT_AND_DOWN, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, RIGHT, UP, GESTURE_SWIPE_RIGHT_AND_UP, strokeAnalyzer, this));
+    gestures.add(
+        new Swipe(context, RIGHT, DOWN, GESTURE_SWIPE_RIGHT_AND_DOWN, strokeAnalyzer, this));
+    gestures.add(
+        new Swipe(context, RIGHT, LEFT, GESTURE_SWIPE_RIGHT_AND_LEFT, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, DOWN, UP, GESTURE_SWIPE_DOWN_AND_UP, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, DOWN, LEFT, GESTURE_SWIPE_DOWN_AND_LEFT, strokeAnalyzer, this));
+    gestures.add(
+        new Swipe(context, DOWN, RIGHT, GESTURE_SWIPE_DOWN_AND_RIGHT, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, UP, DOWN, GESTURE_SWIPE_UP_AND_DOWN, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, UP, LEFT, GESTURE_SWIPE_UP_AND_LEFT, strokeAnalyzer, this));
+    gestures.add(new Swipe(context, UP, RIGHT, GESTURE_SWIPE_UP_AND_RIGHT, strokeAnalyzer, this));
     // Set up multi-finger gestures to be enabled later.
     // Two-finger taps.
     multiFingerGestures.add(
@@ -204,11 +212,18 @@ public class GestureManifold implements GestureMatcher.StateChangeListener {
    *     callback functions, false if it should be handled further by the calling function.
    */
   public boolean onMotionEvent(MotionEvent event) {
-    for (GestureMatcher matcher : gestures) {
+    strokeAnalyzer.onMotionEvent(event);
+    boolean verbose = LogUtils.shouldLog(Log.VERBOSE);
+    for (int i = 0; i < gestures.size(); i++) {
+      GestureMatcher matcher = gestures.get(i);
       if (matcher.getState() != GestureMatcher.STATE_GESTURE_CANCELED) {
-        LogUtils.v(LOG_TAG, matcher.toString());
+        if (verbose) {
+          LogUtils.v(LOG_TAG, matcher.toString());
+        }
         matcher.onMotionEvent(event);
-        LogUtils.v(LOG_TAG, matcher.toString());
+        if (verbose) {
+          LogUtils.v(LOG_TAG, matcher.toString());
+        }
         if (matcher.getState() == GestureMatcher.STATE_GESTURE_COMPLETED) {
           // Here we just return. The actual gesture dispatch is done in
           // onStateChanged().
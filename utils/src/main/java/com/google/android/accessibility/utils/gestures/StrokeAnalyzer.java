@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.utils.gestures;
+
+import static com.google.android.accessibility.utils.gestures.GestureUtils.MM_PER_CM;
+
+import android.content.Context;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.MotionEvent;
+import android.view.ViewConfiguration;
+import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.util.Arrays;
+
+/**
+ * Samples the stroke of a one-finger swipe once for all {@link Swipe} matchers, and splits it into
+ * direction segments when the finger is lifted.
+ *
+ * <p>The stroke is sampled the same way for every swipe which is still matching, so the manifold
+ * feeds each motion event here before the matchers see it, and the matchers only compare the
+ * resulting segment directions. Samples are kept in primitive arrays which are reused across
+ * strokes, so sampling doesn't allocate once the arrays have grown to the longest stroke.
+ */
+class StrokeAnalyzer {
+  private static final String LOG_TAG = "StrokeAnalyzer";
+
+  private static final int INITIAL_CAPACITY = 100;
+
+  // Constants for sampling motion event points.
+  // We sample based on a minimum distance between points, primarily to improve accuracy by
+  // reducing noisy minor changes in direction.
+  private static final float MIN_CM_BETWEEN_SAMPLES = 0.25f;
+
+  // Constants for separating gesture segments
+  private static final float ANGLE_THRESHOLD = 0.0f;
+
+  // This is the calculated movement threshold used track if the user is still
+  // moving their finger.
+  private final float gestureDetectionThresholdPixels;
+  private final float minPixelsBetweenSamplesX;
+  private final float minPixelsBetweenSamplesY;
+  // The minmimum distance the finger must travel before we evaluate the initial direction of the
+  // swipe.
+  // Anything less is still considered a touch.
+  private final int touchSlop;
+
+  // Buffer for storing points for gesture detection.
+  private float[] strokeX = new float[INITIAL_CAPACITY];
+  private float[] strokeY = new float[INITIAL_CAPACITY];
+  private int strokeSize;
+
+  // The delimiters of the direction segments, computed once per stroke.
+  private float[] pathX = new float[INITIAL_CAPACITY];
+  private float[] pathY = new float[INITIAL_CAPACITY];
+  private int pathSize;
+  private boolean isPathValid;
+
+  // Whether the stroke is a one-finger stroke which may still be a swipe.
+  private boolean isTracking;
+  // Whether the finger has moved beyond the gesture detection threshold.
+  private boolean isConfirmed;
+  private float baseX;
+  private float baseY;
+  private float previousGestureX;
+  private float previousGestureY;
+
+  StrokeAnalyzer(Context context) {
+    DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+    gestureDetectionThresholdPixels =
+        TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_MM, MM_PER_CM, displayMetrics)
+            * Swipe.GESTURE_CONFIRM_CM;
+    // Calculate minimum gesture velocity
+    final float pixelsPerCmX = displayMetrics.xdpi / 2.54f;
+    final float pixelsPerCmY = displayMetrics.ydpi / 2.54f;
+    minPixelsBetweenSamplesX = MIN_CM_BETWEEN_SAMPLES * pixelsPerCmX;
+    minPixelsBetweenSamplesY = MIN_CM_BETWEEN_SAMPLES * pixelsPerCmY;
+    touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+  }
+
+  float getGestureDetectionThresholdPixels() {
+    return gestureDetectionThresholdPixels;
+  }
+
+  int getTouchSlop() {
+    return touchSlop;
+  }
+
+  /** Records the sample of {@code event}, if any. Must be called before the matchers see it. */
+  void onMotionEvent(MotionEvent event) {
+    switch (event.getActionMasked()) {
+      case MotionEvent.ACTION_DOWN:
+        strokeSize = 0;
+        isPathValid = false;
+        isTracking = true;
+        isConfirmed = false;
+        baseX = event.getX();
+        baseY = event.getY();
+        previousGestureX = baseX;
+        previousGestureY = baseY;
+        break;
+      case MotionEvent.ACTION_MOVE:
+        if (isTracking) {
+          onMove(event.getX(), event.getY());
+        }
+        break;
+      case MotionEvent.ACTION_UP:
+        if (isTracking && isConfirmed) {
+          addSampleIfFarEnough(event.getX(), event.getY());
+        }
+        isTracking = false;
+        break;
+      default:
+        // Swipes are canceled by any other pointer.
+        isTracking = false;
+        break;
+    }
+  }
+
+  private void onMove(float x, float y) {
+    final double moveDelta = Math.hypot(x - baseX, y - baseY);
+    if (!isConfirmed) {
+      if (moveDelta < touchSlop) {
+        // This still counts as a touch not a swipe.
+        return;
+      } else if (strokeSize == 0) {
+        // This is confirmed to be some kind of swipe so start tracking points.
+        addSample(baseX, baseY);
+      }
+    }
+    if (moveDelta > gestureDetectionThresholdPixels) {
+      // This is a gesture, not touch exploration.
+      baseX = x;
+      baseY = y;
+      isConfirmed = true;
+    }
+    addSampleIfFarEnough(x, y);
+  }
+
+  private void addSampleIfFarEnough(float x, float y) {
+    final float dX = Math.abs(x - previousGestureX);
+    final float dY = Math.abs(y - previousGestureY);
+    if (dX >= minPixelsBetweenSamplesX || dY >= minPixelsBetweenSamplesY) {
+      // At this point gesture detection has started and we are sampling points.
+      previousGestureX = x;
+      previousGestureY = y;
+      addSample(x, y);
+    }
+  }
+
+  private void addSample(float x, float y) {
+    if (strokeSize == strokeX.length) {
+      strokeX = Arrays.copyOf(strokeX, strokeSize * 2);
+      strokeY = Arrays.copyOf(strokeY, strokeSize * 2);
+    }
+    strokeX[strokeSize] = x;
+    strokeY[strokeSize] = y;
+    strokeSize++;
+    isPathValid = false;
+  }
+
+  int getSampleCount() {
+    return strokeSize;
+  }
+
+  /**
+   * Returns the number of direction segments of the stroke, which must have at least two samples.
+   */
+  int getSegmentCount() {
+    computePath();
+    return pathSize - 1;
+  }
+
+  /**
+   * Returns the direction of the segment at {@code index}, as one of the {@link Swipe} constants.
+   */
+  int getSegmentDirection(int index) {
+    computePath();
+    return Swipe.toDirection(pathX[index + 1] - pathX[index], pathY[index + 1] - pathY[index]);
+  }
+
+  /**
+   * Extracts line segments from the stroke, delimited by near-perpendicular direction change.
+   *
+   * <p>Method: for each sampled motion event, check the angle of the most recent motion vector
+   * versus the preceding motion vector, and segment the line if the angle is about 90 degrees.
+   */
+  private void computePath() {
+    if (isPathValid) {
+      return;
+    }
+    pathSize = 0;
+
+    float lastDelimiterX = strokeX[0];
+    float lastDelimiterY = strokeY[0];
+    addPathPoint(lastDelimiterX, lastDelimiterY);
+
+    float dX = 0; // Sum of unit vectors from last delimiter to each following point
+    float dY = 0;
+    int count = 0; // Number of points since last delimiter
+    float length = 0; // Vector length from delimiter to most recent point
+
+    for (int i = 1; i < strokeSize; ++i) {
+      float nextX = strokeX[i];
+      float nextY = strokeY[i];
+      if (count > 0) {
+        // Average of unit vectors from delimiter to following points
+        float currentDX = dX / count;
+        float currentDY = dY / count;
+
+        // newDelimiter is a possible new delimiter, based on a vector with length from
+        // the last delimiter to the previous point, but in the direction of the average
+        // unit vector from delimiter to previous points.
+        // Using the averaged vector has the effect of "squaring off the curve",
+        // creating a sharper angle between the last motion and the preceding motion from
+        // the delimiter. In turn, this sharper angle achieves the splitting threshold
+        // even in a gentle curve.
+        float newDelimiterX = length * currentDX + lastDelimiterX;
+        float newDelimiterY = length * currentDY + lastDelimiterY;
+
+        // Unit vector from newDelimiter to the most recent point
+        float nextDX = nextX - newDelimiterX;
+        float nextDY = nextY - newDelimiterY;
+        float nextLength = (float) Math.hypot(nextDX, nextDY);
+        nextDX = nextDX / nextLength;
+        nextDY = nextDY / nextLength;
+
+        // Compare the initial motion direction to the most recent motion direction,
+        // and segment the line if direction has changed by about 90 degrees.
+        float dot = currentDX * nextDX + currentDY * nextDY;
+        if (dot < ANGLE_THRESHOLD) {
+          addPathPoint(newDelimiterX, newDelimiterY);
+          lastDelimiterX = newDelimiterX;
+          lastDelimiterY = newDelimiterY;
+          dX = 0;
+          dY = 0;
+          count = 0;
+        }
+      }
+
+      // Vector from last delimiter to most recent point
+      float currentDX = nextX - lastDelimiterX;
+      float currentDY = nextY - lastDelimiterY;
+      length = (float) Math.hypot(currentDX, currentDY);
+
+      // Increment sum of unit vectors from delimiter to each following point
+      count = count + 1;
+      dX = dX + currentDX / length;
+      dY = dY + currentDY / length;
+    }
+
+    addPathPoint(strokeX[strokeSize - 1], strokeY[strokeSize - 1]);
+    isPathValid = true;
+    if (LogUtils.shouldLog(Log.VERBOSE)) {
+      LogUtils.v(LOG_TAG, "path = %s", pathToString());
+    }
+  }
+
+  private void addPathPoint(float x, float y) {
+    if (pathSize == pathX.length) {
+      pathX = Arrays.copyOf(pathX, pathSize * 2);
+      pathY = Arrays.copyOf(pathY, pathSize * 2);
+    }
+    pathX[pathSize] = x;
+    pathY[pathSize] = y;
+    pathSize++;
+  }
+
+  private String pathToString() {
+    StringBuilder builder = new StringBuilder("[");
+    for (int i = 0; i < pathSize; i++) {
+      if (i > 0) {
+        builder.append(", ");
+      }
+      builder.append("PointF(").append(pathX[i]).append(", ").append(pathY[i]).append(")");
+    }
+    return builder.append("]").toString();
+  }
+}
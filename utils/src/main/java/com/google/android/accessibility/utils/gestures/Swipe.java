@@ -16,22 +16,18 @@
 
 package com.google.android.accessibility.utils.gestures;
 
-import static com.google.android.accessibility.utils.gestures.GestureUtils.MM_PER_CM;
-
 import android.content.Context;
-import android.graphics.PointF;
 import android.os.Handler;
-import android.util.DisplayMetrics;
-import android.util.TypedValue;
+import android.util.Log;
 import android.view.MotionEvent;
-import android.view.ViewConfiguration;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
-import java.util.ArrayList;
 
 /**
  * This class is responsible for matching one-finger swipe gestures. Each instance matches one swipe
  * gesture. A swipe is specified as a series of one or more directions e.g. left, left and up, etc.
  * At this time swipes with more than two directions are not supported.
+ *
+ * <p>The stroke is sampled and segmented by a {@link StrokeAnalyzer} shared by all swipes.
  */
 class Swipe extends GestureMatcher {
 
@@ -44,13 +40,8 @@ class Swipe extends GestureMatcher {
   // moving their finger.
   private final float gestureDetectionThresholdPixels;
 
-  // Buffer for storing points for gesture detection.
-  private final ArrayList<PointF> strokeBuffer = new ArrayList<>(100);
-
-  // Constants for sampling motion event points.
-  // We sample based on a minimum distance between points, primarily to improve accuracy by
-  // reducing noisy minor changes in direction.
-  private static final float MIN_CM_BETWEEN_SAMPLES = 0.25f;
+  // Records and segments the stroke, shared with the other swipes.
+  private final StrokeAnalyzer strokeAnalyzer;
 
   // Distance a finger must travel before we decide if it is a gesture or not.
   public static final int GESTURE_CONFIRM_CM = 1;
@@ -72,23 +63,24 @@ class Swipe extends GestureMatcher {
   public static final long MAX_TIME_TO_CONTINUE_SWIPE_MS = 350 * GESTURE_CONFIRM_CM;
 
   private int[] directions;
+  private final String gestureName;
   private float baseX;
   private float baseY;
   private long baseTime;
-  private float previousGestureX;
-  private float previousGestureY;
-  private final float minPixelsBetweenSamplesX;
-  private final float minPixelsBetweenSamplesY;
+  // Whether the finger has moved beyond the touch slop in the first direction of this swipe.
+  private boolean isStrokeStarted;
   // The minmimum distance the finger must travel before we evaluate the initial direction of the
   // swipe.
   // Anything less is still considered a touch.
   private int touchSlop;
 
-  // Constants for separating gesture segments
-  private static final float ANGLE_THRESHOLD = 0.0f;
-
-  Swipe(Context context, int direction, int gesture, GestureMatcher.StateChangeListener listener) {
-    this(context, new int[] {direction}, gesture, listener);
+  Swipe(
+      Context context,
+      int direction,
+      int gesture,
+      StrokeAnalyzer strokeAnalyzer,
+      GestureMatcher.StateChangeListener listener) {
+    this(context, new int[] {direction}, gesture, strokeAnalyzer, listener);
   }
 
   Swipe(
@@ -96,24 +88,23 @@ class Swipe extends GestureMatcher {
       int direction1,
       int direction2,
       int gesture,
+      StrokeAnalyzer strokeAnalyzer,
       GestureMatcher.StateChangeListener listener) {
-    this(context, new int[] {direction1, direction2}, gesture, listener);
+    this(context, new int[] {direction1, direction2}, gesture, strokeAnalyzer, listener);
   }
 
   private Swipe(
-      Context context, int[] directions, int gesture, GestureMatcher.StateChangeListener listener) {
+      Context context,
+      int[] directions,
+      int gesture,
+      StrokeAnalyzer strokeAnalyzer,
+      GestureMatcher.StateChangeListener listener) {
     super(gesture, new Handler(context.getMainLooper()), listener);
     this.directions = directions;
-    DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
-    gestureDetectionThresholdPixels =
-        TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_MM, MM_PER_CM, displayMetrics)
-            * GESTURE_CONFIRM_CM;
-    // Calculate minimum gesture velocity
-    final float pixelsPerCmX = displayMetrics.xdpi / 2.54f;
-    final float pixelsPerCmY = displayMetrics.ydpi / 2.54f;
-    minPixelsBetweenSamplesX = MIN_CM_BETWEEN_SAMPLES * pixelsPerCmX;
-    minPixelsBetweenSamplesY = MIN_CM_BETWEEN_SAMPLES * pixelsPerCmY;
-    touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+    this.strokeAnalyzer = strokeAnalyzer;
+    gestureDetectionThresholdPixels = strokeAnalyzer.getGestureDetectionThresholdPixels();
+    touchSlop = strokeAnalyzer.getTouchSlop();
+    gestureName = buildGestureName(directions);
     clear();
   }
 
@@ -122,9 +113,7 @@ class Swipe extends GestureMatcher {
     baseX = Float.NaN;
     baseY = Float.NaN;
     baseTime = 0;
-    previousGestureX = Float.NaN;
-    previousGestureY = Float.NaN;
-    strokeBuffer.clear();
+    isStrokeStarted = false;
     super.clear();
   }
 
@@ -134,8 +123,6 @@ class Swipe extends GestureMatcher {
       baseX = event.getX();
       baseY = event.getY();
       baseTime = event.getEventTime();
-      previousGestureX = baseX;
-      previousGestureY = baseY;
     }
     // Otherwise do nothing because this event doesn't make sense in the middle of a gesture.
   }
@@ -145,28 +132,28 @@ class Swipe extends GestureMatcher {
     final float x = event.getX();
     final float y = event.getY();
     final long time = event.getEventTime();
-    final float dX = Math.abs(x - previousGestureX);
-    final float dY = Math.abs(y - previousGestureY);
     final double moveDelta = Math.hypot(Math.abs(x - baseX), Math.abs(y - baseY));
     final long timeDelta = time - baseTime;
-    LogUtils.v(
-        getGestureName(),
-        "moveDelta: %g,  mGestureDetectionThreshold: %g",
-        moveDelta,
-        gestureDetectionThresholdPixels);
+    if (LogUtils.shouldLog(Log.VERBOSE)) {
+      LogUtils.v(
+          gestureName,
+          "moveDelta: %g,  mGestureDetectionThreshold: %g",
+          moveDelta,
+          gestureDetectionThresholdPixels);
+    }
     if (getState() == STATE_CLEAR) {
       if (moveDelta < touchSlop) {
         // This still counts as a touch not a swipe.
         return;
-      } else if (strokeBuffer.size() == 0) {
+      } else if (!isStrokeStarted) {
         // First, make sure the pointer is going in the right direction.
         int direction = toDirection(x - baseX, y - baseY);
         if (direction != directions[0]) {
           cancelGesture(event);
           return;
         }
-        // This is confirmed to be some kind of swipe so start tracking points.
-        strokeBuffer.add(new PointF(baseX, baseY));
+        // This is confirmed to be some kind of swipe, whose points the analyzer tracks.
+        isStrokeStarted = true;
       }
     }
     if (moveDelta > gestureDetectionThresholdPixels) {
@@ -179,20 +166,12 @@ class Swipe extends GestureMatcher {
       if (timeDelta > MAX_TIME_TO_START_SWIPE_MS) {
         // The user isn't moving fast enough.
         cancelGesture(event);
-        return;
       }
     } else if (getState() == STATE_GESTURE_STARTED) {
       if (timeDelta > MAX_TIME_TO_CONTINUE_SWIPE_MS) {
         cancelGesture(event);
-        return;
       }
     }
-    if (dX >= minPixelsBetweenSamplesX || dY >= minPixelsBetweenSamplesY) {
-      // At this point gesture detection has started and we are sampling points.
-      previousGestureX = x;
-      previousGestureY = y;
-      strokeBuffer.add(new PointF(x, y));
-    }
   }
 
   @Override
@@ -202,13 +181,6 @@ class Swipe extends GestureMatcher {
       return;
     }
 
-    final float x = event.getX();
-    final float y = event.getY();
-    final float dX = Math.abs(x - previousGestureX);
-    final float dY = Math.abs(y - previousGestureY);
-    if (dX >= minPixelsBetweenSamplesX || dY >= minPixelsBetweenSamplesY) {
-      strokeBuffer.add(new PointF(x, y));
-    }
     recognizeGesture(event);
   }
 
@@ -223,108 +195,26 @@ class Swipe extends GestureMatcher {
   }
 
   /**
-   * Looks at the sequence of motions in mStrokeBuffer, classifies the gesture, then calls Listener
-   * callbacks for success or failure.
+   * Classifies the direction segments of the stroke from the {@link StrokeAnalyzer}, then calls
+   * Listener callbacks for success or failure.
    *
    * @param event The raw motion event to pass to the listener callbacks.
    */
   private void recognizeGesture(MotionEvent event) {
-    if (strokeBuffer.size() < 2) {
+    if (strokeAnalyzer.getSampleCount() < 2) {
       cancelGesture(event);
       return;
     }
 
-    // Look at mStrokeBuffer and extract 2 line segments, delimited by near-perpendicular
-    // direction change.
-    // Method: for each sampled motion event, check the angle of the most recent motion vector
-    // versus the preceding motion vector, and segment the line if the angle is about
-    // 90 degrees.
-
-    ArrayList<PointF> path = new ArrayList<>();
-    PointF lastDelimiter = strokeBuffer.get(0);
-    path.add(lastDelimiter);
-
-    float dX = 0; // Sum of unit vectors from last delimiter to each following point
-    float dY = 0;
-    int count = 0; // Number of points since last delimiter
-    float length = 0; // Vector length from delimiter to most recent point
-
-    PointF next = null;
-    for (int i = 1; i < strokeBuffer.size(); ++i) {
-      next = strokeBuffer.get(i);
-      if (count > 0) {
-        // Average of unit vectors from delimiter to following points
-        float currentDX = dX / count;
-        float currentDY = dY / count;
-
-        // newDelimiter is a possible new delimiter, based on a vector with length from
-        // the last delimiter to the previous point, but in the direction of the average
-        // unit vector from delimiter to previous points.
-        // Using the averaged vector has the effect of "squaring off the curve",
-        // creating a sharper angle between the last motion and the preceding motion from
-        // the delimiter. In turn, this sharper angle achieves the splitting threshold
-        // even in a gentle curve.
-        PointF newDelimiter =
-            new PointF(length * currentDX + lastDelimiter.x, length * currentDY + lastDelimiter.y);
-
-        // Unit vector from newDelimiter to the most recent point
-        float nextDX = next.x - newDelimiter.x;
-        float nextDY = next.y - newDelimiter.y;
-        float nextLength = (float) Math.hypot(nextDX, nextDY);
-        nextDX = nextDX / nextLength;
-        nextDY = nextDY / nextLength;
-
-        // Compare the initial motion direction to the most recent motion direction,
-        // and segment the line if direction has changed by about 90 degrees.
-        float dot = currentDX * nextDX + currentDY * nextDY;
-        if (dot < ANGLE_THRESHOLD) {
-          path.add(newDelimiter);
-          lastDelimiter = newDelimiter;
-          dX = 0;
-          dY = 0;
-          count = 0;
-        }
-      }
-
-      // Vector from last delimiter to most recent point
-      float currentDX = next.x - lastDelimiter.x;
-      float currentDY = next.y - lastDelimiter.y;
-      length = (float) Math.hypot(currentDX, currentDY);
-
-      // Increment sum of unit vectors from delimiter to each following point
-      count = count + 1;
-      dX = dX + currentDX / length;
-      dY = dY + currentDY / length;
-    }
-
-    path.add(next);
-    LogUtils.v(getGestureName(), "path = %s", path.toString());
-    // Classify line segments, and call Listener callbacks.
-    recognizeGesturePath(event, path);
-  }
-
-  /**
-   * Classifies a pair of line segments, by direction. Calls Listener callbacks for success or
-   * failure.
-   *
-   * @param event The raw motion event to pass to the listener's onGestureCanceled method.
-   * @param path A sequence of motion line segments derived from motion points in mStrokeBuffer.
-   */
-  private void recognizeGesturePath(MotionEvent event, ArrayList<PointF> path) {
-    if (path.size() != directions.length + 1) {
+    if (strokeAnalyzer.getSegmentCount() != directions.length) {
       cancelGesture(event);
       return;
     }
-    for (int i = 0; i < path.size() - 1; ++i) {
-      PointF start = path.get(i);
-      PointF end = path.get(i + 1);
-
-      float dX = end.x - start.x;
-      float dY = end.y - start.y;
-      int direction = toDirection(dX, dY);
+    for (int i = 0; i < directions.length; ++i) {
+      int direction = strokeAnalyzer.getSegmentDirection(i);
       if (direction != directions[i]) {
         LogUtils.v(
-            getGestureName(),
+            gestureName,
             "Found direction %s  when expecting %s",
             directionToString(direction),
             directionToString(directions[i]));
@@ -332,11 +222,11 @@ class Swipe extends GestureMatcher {
         return;
       }
     }
-    LogUtils.v(getGestureName(), "Completed.");
+    LogUtils.v(gestureName, "Completed.");
     completeGesture(event);
   }
 
-  private static int toDirection(float dX, float dY) {
+  static int toDirection(float dX, float dY) {
     if (Math.abs(dX) > Math.abs(dY)) {
       // Horizontal
       return (dX < 0) ? LEFT : RIGHT;
@@ -363,6 +253,10 @@ class Swipe extends GestureMatcher {
 
   @Override
   protected String getGestureName() {
+    return gestureName;
+  }
+
+  private static String buildGestureName(int[] directions) {
     StringBuilder builder = new StringBuilder();
     builder.append("Swipe ").append(directionToString(directions[0]));
     for (int i = 1; i < directions.length; ++i) {
@@ -382,10 +276,8 @@ class Swipe extends GestureMatcher {
           .append(baseY)
           .append(", mGestureDetectionThreshold:")
           .append(gestureDetectionThresholdPixels)
-          .append(", mMinPixelsBetweenSamplesX:")
-          .append(minPixelsBetweenSamplesX)
-          .append(", mMinPixelsBetweenSamplesY:")
-          .append(minPixelsBetweenSamplesY);
+          .append(", mSampleCount:")
+          .append(strokeAnalyzer.getSampleCount());
     }
     return builder.toString();
   }
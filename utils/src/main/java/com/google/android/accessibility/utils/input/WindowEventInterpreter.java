@@ -30,6 +30,7 @@ import android.graphics.Rect;
 import android.os.Build;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.SparseArray;
 import android.view.Display;
@@ -105,6 +106,12 @@ public class WindowEventInterpreter implements WindowsDelegate {
   // TODO: Add minimum-delay-time only for split-screen on older android.
   private static final int DELAY_INCREMENT_MS = 10;
 
+  // Transition types for learning the quiet period of window transitions.
+  private static final String TRANSITION_MAIN_WINDOWS = "main";
+  private static final String TRANSITION_INPUT_METHOD = "ime";
+  private static final String TRANSITION_ACCESSIBILITY_OVERLAY = "overlay";
+  private static final String TRANSITION_ANNOUNCEMENT = "announcement";
+
   private static final int WINDOWS_CHANGE_TYPES_USED =
       AccessibilityEvent.WINDOWS_CHANGE_ADDED
           | AccessibilityEvent.WINDOWS_CHANGE_TITLE
@@ -245,6 +252,21 @@ public class WindowEventInterpreter implements WindowsDelegate {
       inputMethodWindowTitle = null;
     }
 
+    /** Returns whether both roles have the same window ids and titles. */
+    public boolean isSameAs(WindowRoles other) {
+      return (windowIdA == other.windowIdA)
+          && TextUtils.equals(windowTitleA, other.windowTitleA)
+          && (windowIdB == other.windowIdB)
+          && TextUtils.equals(windowTitleB, other.windowTitleB)
+          && (accessibilityOverlayWindowId == other.accessibilityOverlayWindowId)
+          && TextUtils.equals(
+              accessibilityOverlayWindowTitle, other.accessibilityOverlayWindowTitle)
+          && (picInPicWindowId == other.picInPicWindowId)
+          && TextUtils.equals(picInPicWindowTitle, other.picInPicWindowTitle)
+          && (inputMethodWindowId == other.inputMethodWindowId)
+          && TextUtils.equals(inputMethodWindowTitle, other.inputMethodWindowTitle);
+    }
+
     @Override
     public String toString() {
       return String.format(
@@ -281,6 +303,22 @@ public class WindowEventInterpreter implements WindowsDelegate {
 
   private long screenTransitionStartTime = 0;
 
+  /** Learned quiet periods, after which windows in transition are considered stable. */
+  private final WindowSettleEstimator settleEstimator = new WindowSettleEstimator();
+
+  // Changes of the window set and titles during the current transition, in uptime millis.
+  private CharSequence transitionPackageName = "";
+  private long transitionLastChangeTime = 0;
+  private long transitionLongestGapMs = 0;
+  private @Nullable WindowRoles lastPolledWindowRoles;
+
+  // The last transition which was considered stable after its learned quiet period. Its sample is
+  // only recorded once it is known whether its windows changed again within the maximum delay.
+  private @Nullable String settledTransitionKey;
+  private long settledLastChangeTime = 0;
+  private long settledLongestGapMs = 0;
+  private long settledMaxDelayMs = 0;
+
   /**
    * Sets to {@code true} if receiving {@link AccessibilityEvent#TYPE_WINDOWS_CHANGED} and resets it
    * after window transitions finished.
@@ -497,6 +535,16 @@ public class WindowEventInterpreter implements WindowsDelegate {
     LogDepth.log(TAG, depth, "interpret() delayMs=%s, interpretation=%s", delayMs, interpretation);
     interpretation.setEventStartTime(screenTransitionStartTime);
 
+    long now = SystemClock.uptimeMillis();
+    resolveSettledTransition(now, /* windowsChanged= */ delayMs != 0);
+    if (delayMs != 0) {
+      if (event.getPackageName() != null) {
+        transitionPackageName = event.getPackageName();
+      }
+      onTransitionWindowsChanged(now);
+      lastPolledWindowRoles = newWindowRoles;
+    }
+
     // Stop delayed interpretation efforts, since new non-empty interpretation is coming.
     windowEventDelayer.removeMessages(WindowEventDelayer.MSG_DELAY_INTERPRET);
 
@@ -633,6 +681,48 @@ public class WindowEventInterpreter implements WindowsDelegate {
         : ACCESSIBILITY_OVERLAY_DELAY_MS;
   }
 
+  private String getSettleKey(EventInterpretation interpretation) {
+    String transitionType;
+    if (interpretation.getAccessibilityOverlay().getId() != WINDOW_ID_NONE) {
+      transitionType = TRANSITION_ACCESSIBILITY_OVERLAY;
+    } else if (interpretation.getMainWindowsChanged()) {
+      transitionType = TRANSITION_MAIN_WINDOWS;
+    } else if (interpretation.getInputMethodChanged()) {
+      transitionType = TRANSITION_INPUT_METHOD;
+    } else {
+      transitionType = TRANSITION_ANNOUNCEMENT;
+    }
+    return WindowSettleEstimator.getKey(transitionPackageName, transitionType);
+  }
+
+  private void onTransitionWindowsChanged(long now) {
+    if (transitionLastChangeTime != 0) {
+      transitionLongestGapMs = Math.max(transitionLongestGapMs, now - transitionLastChangeTime);
+    }
+    transitionLastChangeTime = now;
+  }
+
+  /**
+   * Records the sample of the last transition which was considered stable after its quiet period,
+   * once a window event shows whether that was premature.
+   */
+  private void resolveSettledTransition(long now, boolean windowsChanged) {
+    if (settledTransitionKey == null) {
+      return;
+    }
+    long sinceLastChangeMs = now - settledLastChangeTime;
+    if (sinceLastChangeMs < settledMaxDelayMs) {
+      if (!windowsChanged) {
+        return;
+      }
+      // The windows were still changing, so the quiet period needs to be at least this long.
+      settleEstimator.recordQuietGap(settledTransitionKey, sinceLastChangeMs);
+    } else {
+      settleEstimator.recordQuietGap(settledTransitionKey, settledLongestGapMs);
+    }
+    settledTransitionKey = null;
+  }
+
   /** Returns the current window-transition delay in milliseconds. */
   public long getWindowTransitionDelayMs() {
     long delayMs = WINDOW_CHANGE_DELAY_MS;
@@ -693,6 +783,10 @@ public class WindowEventInterpreter implements WindowsDelegate {
     pendingWindowRoles = null;
     screenTransitionStartTime = 0;
     areWindowsChanging = false;
+    transitionPackageName = "";
+    transitionLastChangeTime = 0;
+    transitionLongestGapMs = 0;
+    lastPolledWindowRoles = null;
   }
 
   /** Step 5: After delay from "unstable" window events, re-run window interpretation. */
@@ -711,18 +805,43 @@ public class WindowEventInterpreter implements WindowsDelegate {
     detectInputMethodChanged(newWindowRoles, interpretation, /* checkDuplicate= */ true, depth + 1);
     LogUtils.v(TAG, "END delayedInterpret() interpretation=%s", interpretation);
 
-    // Assume windows are stable if they all have titles from state-change-events, or if maximum
-    // delay is reached.
-    if (interpretation.hasTitlesFromStateChange()
-        || (interpretation.getMaxDelayMs() <= interpretation.getTotalDelayMs())) {
-      interpretation.setWindowsStable(true);
-      setRoles(newWindowRoles);
-      notifyInterpretationListeners(interpretation, eventId);
+    long now = SystemClock.uptimeMillis();
+    if ((transitionLastChangeTime == 0)
+        || ((lastPolledWindowRoles != null) && !newWindowRoles.isSameAs(lastPolledWindowRoles))) {
+      onTransitionWindowsChanged(now);
+    }
+    lastPolledWindowRoles = newWindowRoles;
+    String settleKey = getSettleKey(interpretation);
+    long quietMs = now - transitionLastChangeTime;
+    long maxDelayMs = interpretation.getMaxDelayMs();
+
+    // Assume windows are stable if they all have titles from state-change-events, if maximum
+    // delay is reached, or if they have been unchanged for the quiet period learned for the
+    // package and transition type.
+    if (interpretation.hasTitlesFromStateChange()) {
+      onWindowsStable(interpretation, newWindowRoles, eventId);
+    } else if (maxDelayMs <= interpretation.getTotalDelayMs()) {
+      settleEstimator.recordQuietGap(settleKey, transitionLongestGapMs);
+      onWindowsStable(interpretation, newWindowRoles, eventId);
+    } else if (quietMs >= settleEstimator.getQuietPeriodMs(settleKey, maxDelayMs)) {
+      LogUtils.v(TAG, "Windows of %s stable after quiet period of %s ms", settleKey, quietMs);
+      settledTransitionKey = settleKey;
+      settledLastChangeTime = transitionLastChangeTime;
+      settledLongestGapMs = transitionLongestGapMs;
+      settledMaxDelayMs = maxDelayMs;
+      onWindowsStable(interpretation, newWindowRoles, eventId);
     } else {
       delayInterpret(interpretation, eventId);
     }
   }
 
+  private void onWindowsStable(
+      EventInterpretation interpretation, WindowRoles newWindowRoles, @Nullable EventId eventId) {
+    interpretation.setWindowsStable(true);
+    setRoles(newWindowRoles);
+    notifyInterpretationListeners(interpretation, eventId);
+  }
+
   private void delayInterpret(EventInterpretation interpretation, @Nullable EventId eventId) {
     long delay = DELAY_INCREMENT_MS;
     interpretation.incrementTotalDelayMs(delay);
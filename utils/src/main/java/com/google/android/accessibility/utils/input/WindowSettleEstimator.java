@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.utils.input;
+
+import com.google.android.accessibility.utils.Performance.Statistics;
+import java.util.HashMap;
+
+/**
+ * Learns how long the windows stay unchanged in the middle of a window transition, per package and
+ * transition type, so that {@link WindowEventInterpreter} can consider the windows stable once they
+ * have been quiet for longer than that.
+ *
+ * <p>Each sample is the longest time between two changes of the window set or the window titles
+ * during one transition. The quiet period is a high percentile of the samples, but never longer
+ * than the maximum delay of the transition, which still applies until enough samples are known.
+ */
+final class WindowSettleEstimator {
+
+  private static final int MIN_SAMPLES = 5;
+  private static final double QUIET_PERIOD_PERCENTILE = 90;
+  // Covers the interval between polls of the windows.
+  private static final long QUIET_PERIOD_MARGIN_MS = 20;
+  private static final long MIN_QUIET_PERIOD_MS = 50;
+  // Limits the memory used by packages which are rarely transitioned to.
+  private static final int MAX_KEYS = 128;
+
+  private final HashMap<String, Statistics> keyToStatistics = new HashMap<>();
+
+  static String getKey(CharSequence packageName, String transitionType) {
+    return packageName + "/" + transitionType;
+  }
+
+  /**
+   * Returns the time the windows must stay unchanged before a transition with {@code key} is
+   * considered finished, at most {@code maxDelayMs}.
+   */
+  long getQuietPeriodMs(String key, long maxDelayMs) {
+    Statistics statistics = keyToStatistics.get(key);
+    if ((statistics == null) || (statistics.getCount() < MIN_SAMPLES)) {
+      return maxDelayMs;
+    }
+    long quietPeriodMs =
+        statistics.getPercentile(QUIET_PERIOD_PERCENTILE) + QUIET_PERIOD_MARGIN_MS;
+    return Math.min(maxDelayMs, Math.max(MIN_QUIET_PERIOD_MS, quietPeriodMs));
+  }
+
+  /** Records the longest time that the windows were unchanged in a transition with {@code key}. */
+  void recordQuietGap(String key, long gapMs) {
+    Statistics statistics = keyToStatistics.get(key);
+    if (statistics == null) {
+      if (keyToStatistics.size() >= MAX_KEYS) {
+        return;
+      }
+      statistics = new Statistics();
+      keyToStatistics.put(key, statistics);
+    }
+    statistics.increment(Math.max(0, gapMs));
+  }
+}
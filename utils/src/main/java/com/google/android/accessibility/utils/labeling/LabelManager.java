@@ -25,6 +25,13 @@ public interface LabelManager {
   static final int SOURCE_TYPE_BACKUP = 2; // labels that were overridden by import
 
   Label getLabelForViewIdFromCache(String resourceName);
+
+  /**
+   * Returns the cached label like {@link #getLabelForViewIdFromCache}, without loading any labels,
+   * so that it may be called on any thread.
+   */
+  Label peekLabelForViewIdFromCache(String resourceName);
+
   /** Returns whether node needs a label. */
   boolean needsLabel(AccessibilityNodeInfoCompat node);
 }
@@ -292,7 +292,7 @@ public class FailoverTextToSpeech {
 
     Exception failureException = null;
     try {
-      result = trySpeak(text, locale, pitch, rate, params, stream, volume);
+      result = trySpeak(text, locale, pitch, rate, params, stream, volume, SPEECH_FLUSH_ALL);
     } catch (Exception e) {
       failureException = e;
       result = TextToSpeech.ERROR;
@@ -315,6 +315,49 @@ public class FailoverTextToSpeech {
     }
   }
 
+  /**
+   * Adds the specified text to the end of the queue of the text-to-speech engine, behind the
+   * utterances that are being spoken, so that the engine speaks it without a pause. Unlike {@link
+   * #speak}, a failure is returned rather than reported as a completed utterance, and doesn't cause
+   * a failover.
+   *
+   * @return {@code true} if the engine queued the text.
+   */
+  public boolean speakQueued(
+      CharSequence text,
+      @Nullable Locale locale,
+      float pitch,
+      float rate,
+      HashMap<String, String> params,
+      int stream,
+      float volume,
+      boolean preventDeviceSleep) {
+    if (TextUtils.isEmpty(text)) {
+      return false;
+    }
+
+    volume *= calculateVolumeAdjustment();
+
+    int result;
+    try {
+      result =
+          trySpeak(text, locale, pitch, rate, params, stream, volume, TextToSpeech.QUEUE_ADD);
+    } catch (Exception e) {
+      LogUtils.w(TAG, "Failed to queue %s due to an exception", text);
+      e.printStackTrace();
+      result = TextToSpeech.ERROR;
+    }
+    if (result != TextToSpeech.SUCCESS) {
+      return false;
+    }
+
+    addRecentUtteranceId(params.get(Engine.KEY_PARAM_UTTERANCE_ID));
+    if (preventDeviceSleep && mWakeLock != null && !mWakeLock.isHeld()) {
+      mWakeLock.acquire();
+    }
+    return true;
+  }
+
   /** Adjust volume if we are in a phone call and speaking with phone audio stream * */
   private float calculateVolumeAdjustment() {
     float multiple = 1.0f;
@@ -437,6 +480,7 @@ public class FailoverTextToSpeech {
    * @param pitch to speak text in.
    * @param rate to speak text in.
    * @param params to the TTS.
+   * @param queueMode {@link #SPEECH_FLUSH_ALL} or {@link TextToSpeech#QUEUE_ADD}.
    * @return The result of speaking the specified text.
    */
   private int trySpeak(
@@ -446,7 +490,8 @@ public class FailoverTextToSpeech {
       float rate,
       HashMap<String, String> params,
       int stream,
-      float volume) {
+      float volume,
+      int queueMode) {
     if (mTts == null) {
       return TextToSpeech.ERROR;
     }
@@ -463,7 +508,8 @@ public class FailoverTextToSpeech {
       ensureSupportedLocale();
       mLastUtteranceLocale = null;
     }
-    int result = speak(text, params, utteranceId, effectivePitch, effectiveRate, stream, volume);
+    int result =
+        speak(text, params, utteranceId, effectivePitch, effectiveRate, stream, volume, queueMode);
 
     if (result != TextToSpeech.SUCCESS) {
       ensureSupportedLocale();
@@ -480,7 +526,8 @@ public class FailoverTextToSpeech {
       float pitch,
       float rate,
       int stream,
-      float volume) {
+      float volume,
+      int queueMode) {
     Bundle bundle = new Bundle();
 
     if (params != null) {
@@ -494,8 +541,10 @@ public class FailoverTextToSpeech {
     bundle.putInt(Engine.KEY_PARAM_STREAM, stream);
     bundle.putFloat(SpeechParam.VOLUME, volume);
 
-    ensureQueueFlush();
-    return mTts.speak(text, SPEECH_FLUSH_ALL, bundle, utteranceId);
+    if (queueMode == SPEECH_FLUSH_ALL) {
+      ensureQueueFlush();
+    }
+    return mTts.speak(text, queueMode, bundle, utteranceId);
   }
 
   /**
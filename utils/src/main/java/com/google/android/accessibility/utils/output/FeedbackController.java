@@ -24,12 +24,20 @@ import android.content.res.Resources.NotFoundException;
 import android.media.AudioAttributes;
 import android.media.AudioManager;
 import android.media.SoundPool;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
 import android.os.SystemClock;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
+import android.util.Log;
+import android.util.SparseBooleanArray;
 import android.util.SparseIntArray;
 import com.google.android.accessibility.utils.BuildVersionUtils;
 import com.google.android.accessibility.utils.FeatureSupport;
+import com.google.android.accessibility.utils.Performance;
 import com.google.android.accessibility.utils.Performance.EventId;
 import com.google.android.accessibility.utils.R;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
@@ -58,6 +66,17 @@ public class FeedbackController {
 
   public static final long NO_SEPARATION = 0;
 
+  private static final int MSG_PLAY_SOUND = 1;
+
+  /**
+   * Scale of the fixed-point volume and rate packed into play messages, so that plays don't
+   * allocate. Rates up to 2.0 fit into 16 bits.
+   */
+  private static final float PLAY_PARAM_SCALE = 10000f;
+
+  private static final float MIN_RATE = 0.5f;
+  private static final float MAX_RATE = 2.0f;
+
   //////////////////////////////////////////////////////////////////////////////////////////
   // Member data
 
@@ -76,6 +95,22 @@ public class FeedbackController {
   /** Map from the resource IDs of loaded sounds to SoundPool sound IDs. */
   private final SparseIntArray mSoundIds = new SparseIntArray();
 
+  /** SoundPool sound IDs which have finished loading. */
+  private final SparseBooleanArray mLoadedSoundIds = new SparseBooleanArray();
+
+  /** Packed play parameters of sounds requested while they were still loading. */
+  private final SparseIntArray mPendingPlays = new SparseIntArray();
+
+  /** SoundPool sound IDs of preloaded sounds which haven't finished loading. */
+  private final SparseBooleanArray mPendingPreloads = new SparseBooleanArray();
+
+  private long mPreloadStartUptimeMillis;
+
+  /** Plays sounds on a dedicated audio thread, so the caller never waits for the SoundPool. */
+  private final HandlerThread mEarconThread;
+
+  private final Handler mEarconHandler;
+
   /** The volume adjustment for sound feedback. */
   private float mVolumeAdjustment = 1.0f;
 
@@ -98,6 +133,12 @@ public class FeedbackController {
     mResources = context.getResources();
     mSoundPool = soundPool;
     mVibrator = vibrator;
+    mSoundPool.setOnLoadCompleteListener(
+        (pool, sampleId, status) -> onSoundLoaded(sampleId, status == 0));
+
+    mEarconThread = new HandlerThread("EarconThread", Process.THREAD_PRIORITY_AUDIO);
+    mEarconThread.start();
+    mEarconHandler = new EarconHandler(mEarconThread.getLooper());
   }
 
   //////////////////////////////////////////////////////////////////////////////////////////
@@ -204,22 +245,109 @@ public class FeedbackController {
     }
     LogUtils.v(TAG, "playAuditory() resId=%d eventId=%s", resId, eventId);
 
-    final float adjustedVolume = volume * mVolumeAdjustment;
+    final int playParams = packPlayParams(volume * mVolumeAdjustment, rate);
     int soundId = mSoundIds.get(resId);
+    if (soundId == 0) {
+      // The sound wasn't preloaded. Start loading it into the SoundPool for future use, and play it
+      // as soon as it is loaded.
+      soundId = loadSound(resId);
+      if (soundId == 0) {
+        return;
+      }
+    }
 
+    if (mLoadedSoundIds.get(soundId)) {
+      sendPlaySound(soundId, playParams);
+    } else {
+      mPendingPlays.put(soundId, playParams);
+    }
+  }
+
+  /**
+   * Loads the sounds with the given resource IDs into the SoundPool ahead of their first play, so
+   * that the first earcons after startup are neither late nor dropped.
+   *
+   * @param resIds The auditory feedback resource identifiers.
+   */
+  public void preloadAuditory(int... resIds) {
+    if (mPendingPreloads.size() == 0) {
+      mPreloadStartUptimeMillis = SystemClock.uptimeMillis();
+    }
+    for (int resId : resIds) {
+      if (resId != 0 && mSoundIds.get(resId) == 0) {
+        int soundId = loadSound(resId);
+        if (soundId != 0) {
+          mPendingPreloads.put(soundId, true);
+        }
+      }
+    }
+  }
+
+  private int loadSound(int resId) {
+    int soundId;
+    try {
+      soundId = mSoundPool.load(mContext, resId, 1);
+    } catch (NotFoundException e) {
+      LogUtils.e(TAG, "Failed to load sound %d", resId);
+      return 0;
+    }
     if (soundId != 0) {
-      new EarconsPlayTask(mSoundPool, soundId, adjustedVolume, rate).execute();
+      mSoundIds.put(resId, soundId);
+    }
+    return soundId;
+  }
+
+  private void onSoundLoaded(int soundId, boolean success) {
+    if (success) {
+      mLoadedSoundIds.put(soundId, true);
     } else {
-      // The sound could not be played from the cache. Start loading the sound into the
-      // SoundPool for future use, and use a listener to play the sound ASAP.
-      mSoundPool.setOnLoadCompleteListener(
-          (soundPool, sampleId, status) -> {
-            if (mAuditoryEnabled && sampleId != 0) {
-              new EarconsPlayTask(mSoundPool, sampleId, adjustedVolume, rate).execute();
-            }
-          });
-      mSoundIds.put(resId, mSoundPool.load(mContext, resId, 1));
+      LogUtils.e(TAG, "Failed to load sound with sound id %d", soundId);
+      // Forget the sound so that the next play loads it again.
+      int resIdIndex = mSoundIds.indexOfValue(soundId);
+      if (resIdIndex >= 0) {
+        mSoundIds.removeAt(resIdIndex);
+      }
+    }
+
+    int pendingPlayIndex = mPendingPlays.indexOfKey(soundId);
+    if (pendingPlayIndex >= 0) {
+      int playParams = mPendingPlays.valueAt(pendingPlayIndex);
+      mPendingPlays.removeAt(pendingPlayIndex);
+      if (success && mAuditoryEnabled) {
+        sendPlaySound(soundId, playParams);
+      }
     }
+
+    int pendingPreloadIndex = mPendingPreloads.indexOfKey(soundId);
+    if (pendingPreloadIndex >= 0) {
+      mPendingPreloads.removeAt(pendingPreloadIndex);
+      if (mPendingPreloads.size() == 0) {
+        LogUtils.d(
+            TAG,
+            "Preloaded sounds in %d ms",
+            SystemClock.uptimeMillis() - mPreloadStartUptimeMillis);
+        Performance.getInstance().onStartupStageDone(Performance.STARTUP_STAGE_EARCONS_PRELOADED);
+      }
+    }
+  }
+
+  private void sendPlaySound(int soundId, int playParams) {
+    mEarconHandler.sendMessage(
+        mEarconHandler.obtainMessage(MSG_PLAY_SOUND, soundId, playParams));
+  }
+
+  private static int packPlayParams(float volume, float rate) {
+    int packedVolume = Math.round(Math.max(0, Math.min(volume, 1.0f)) * PLAY_PARAM_SCALE);
+    int packedRate = Math.round(Math.max(MIN_RATE, Math.min(rate, MAX_RATE)) * PLAY_PARAM_SCALE);
+    return (packedVolume << 16) | packedRate;
+  }
+
+  private static float unpackVolume(int playParams) {
+    return (playParams >>> 16) / PLAY_PARAM_SCALE;
+  }
+
+  private static float unpackRate(int playParams) {
+    return (playParams & 0xFFFF) / PLAY_PARAM_SCALE;
   }
 
   /** Interrupts all ongoing feedback. */
@@ -234,7 +362,9 @@ public class FeedbackController {
    */
   public void shutdown() {
     mHapticFeedbackListeners.clear();
-    mSoundPool.release();
+    // Release the SoundPool after the plays which are already queued.
+    mEarconHandler.post(mSoundPool::release);
+    mEarconThread.quitSafely();
     mVibrator.cancel();
     mAuditoryEnabled = false;
     mHapticEnabled = false;
@@ -286,6 +416,30 @@ public class FeedbackController {
     return new SoundPool.Builder().setMaxStreams(MAX_STREAMS).setAudioAttributes(aa).build();
   }
 
+  /** Plays sounds on the earcon thread. */
+  private final class EarconHandler extends Handler {
+    EarconHandler(Looper looper) {
+      super(looper);
+    }
+
+    @Override
+    public void handleMessage(Message msg) {
+      if (msg.what != MSG_PLAY_SOUND) {
+        return;
+      }
+      float volume = unpackVolume(msg.arg2);
+      if (mSoundPool.play(msg.arg1, volume, volume, 0, 0, unpackRate(msg.arg2)) == 0) {
+        LogUtils.w(TAG, "Failed to play sound with sound id %d", msg.arg1);
+        return;
+      }
+      long latency = SystemClock.uptimeMillis() - msg.getWhen();
+      Performance.getInstance().onEarconPlayed(latency);
+      if (LogUtils.shouldLog(Log.VERBOSE)) {
+        LogUtils.v(TAG, "Played sound with sound id %d after %d ms", msg.arg1, latency);
+      }
+    }
+  }
+
   /**
    * Some features, such as the tap detector, may be affected by haptic feedback and want to know
    * when we initiate it.
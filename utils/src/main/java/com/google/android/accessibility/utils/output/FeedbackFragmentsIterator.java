@@ -45,6 +45,11 @@ class FeedbackFragmentsIterator {
     return currentFeedbackFragment != null || currentFragmentIterator.hasNext();
   }
 
+  /** @return {@code true} if there are feedbackFragments after the current one. */
+  boolean hasFragmentAfterCurrent() {
+    return currentFragmentIterator.hasNext();
+  }
+
   /**
    * @return next feedbackFragment from iterator.
    * @throws NoSuchElementException if the iteration has no more elements
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.utils.output;
+
+import android.text.TextUtils;
+import android.util.SparseArray;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The queue of {@link FeedbackItem}s waiting to be spoken by {@link SpeechControllerImpl}.
+ *
+ * <p>Items are kept in a doubly linked list, so that they can be removed from any position in
+ * constant time. Each item is also indexed by the hash of its text and by its utterance group, so
+ * that finding a queued duplicate only compares the texts of items with the same hash, and
+ * clearing an utterance group only visits the items of that group. Each index bucket is kept in
+ * queue order.
+ */
+class FeedbackQueue {
+
+  private @Nullable Node head;
+  private @Nullable Node tail;
+  private int size;
+
+  private final HashMap<Integer, ArrayList<Node>> textHashToNodes = new HashMap<>();
+  private final SparseArray<ArrayList<Node>> groupToNodes = new SparseArray<>();
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Returns the item at the front of the queue, or {@code null} if the queue is empty. */
+  @Nullable FeedbackItem peekFirst() {
+    return (head == null) ? null : head.item;
+  }
+
+  /** Removes and returns the item at the front of the queue, or {@code null} if it's empty. */
+  @Nullable FeedbackItem removeFirst() {
+    if (head == null) {
+      return null;
+    }
+    Node node = head;
+    unlink(node);
+    return node.item;
+  }
+
+  void addLast(FeedbackItem item) {
+    Node node = new Node(item);
+    node.previous = tail;
+    if (tail == null) {
+      head = node;
+    } else {
+      tail.next = node;
+    }
+    tail = node;
+    size++;
+    bucket(textHashToNodes, node.textHash).add(node);
+    groupBucket(node.utteranceGroup).add(node);
+  }
+
+  void addFirst(FeedbackItem item) {
+    Node node = new Node(item);
+    node.next = head;
+    if (head == null) {
+      tail = node;
+    } else {
+      head.previous = node;
+    }
+    head = node;
+    size++;
+    bucket(textHashToNodes, node.textHash).add(0, node);
+    groupBucket(node.utteranceGroup).add(0, node);
+  }
+
+  void clear() {
+    head = null;
+    tail = null;
+    size = 0;
+    textHashToNodes.clear();
+    groupToNodes.clear();
+  }
+
+  /**
+   * Returns the position of the first queued item with the same text as {@code item}, compared by
+   * {@link #feedbackTextEquals}, or -1 if there is none.
+   */
+  int indexOfText(FeedbackItem item) {
+    @Nullable ArrayList<Node> nodes = textHashToNodes.get(textHash(item));
+    if (nodes == null) {
+      return -1;
+    }
+    for (Node node : nodes) {
+      if (feedbackTextEquals(item, node.item)) {
+        return indexOf(node);
+      }
+    }
+    return -1;
+  }
+
+  /** Removes the items of {@code utteranceGroup}, and returns them in queue order. */
+  List<FeedbackItem> removeUtteranceGroup(int utteranceGroup) {
+    @Nullable ArrayList<Node> nodes = groupToNodes.get(utteranceGroup);
+    if (nodes == null) {
+      return Collections.emptyList();
+    }
+    List<FeedbackItem> removedItems = new ArrayList<>(nodes.size());
+    for (Node node : new ArrayList<>(nodes)) {
+      unlink(node);
+      removedItems.add(node.item);
+    }
+    return removedItems;
+  }
+
+  /** Removes the items which {@code filter} accepts, and returns them in queue order. */
+  List<FeedbackItem> removeIf(Predicate<FeedbackItem> filter) {
+    List<FeedbackItem> removedItems = new ArrayList<>();
+    for (Node node = head; node != null; ) {
+      Node next = node.next;
+      if (filter.test(node.item)) {
+        unlink(node);
+        removedItems.add(node.item);
+      }
+      node = next;
+    }
+    return removedItems;
+  }
+
+  /** Returns a queue with the same items, in the same order. */
+  FeedbackQueue copy() {
+    FeedbackQueue copy = new FeedbackQueue();
+    for (Node node = head; node != null; node = node.next) {
+      copy.addLast(node.item);
+    }
+    return copy;
+  }
+
+  /**
+   * Compares feedback fragments based on their text only. Ignores other parameters such as earcons
+   * and interruptibility.
+   */
+  static boolean feedbackTextEquals(@Nullable FeedbackItem item1, @Nullable FeedbackItem item2) {
+    if (item1 == null || item2 == null) {
+      return false;
+    }
+
+    List<FeedbackFragment> fragments1 = item1.getFragments();
+    List<FeedbackFragment> fragments2 = item2.getFragments();
+
+    if (fragments1.size() != fragments2.size()) {
+      return false;
+    }
+
+    int size = fragments1.size();
+    for (int i = 0; i < size; i++) {
+      FeedbackFragment fragment1 = fragments1.get(i);
+      FeedbackFragment fragment2 = fragments2.get(i);
+
+      if (fragment1 != null
+          && fragment2 != null
+          && !TextUtils.equals(fragment1.getText(), fragment2.getText())) {
+        return false;
+      }
+
+      if ((fragment1 == null && fragment2 != null) || (fragment1 != null && fragment2 == null)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns a hash of the fragment texts of {@code item}, which is equal for items that are equal
+   * by {@link #feedbackTextEquals}. Spanned and plain texts with the same characters hash alike.
+   */
+  private static int textHash(FeedbackItem item) {
+    int hash = 1;
+    for (FeedbackFragment fragment : item.getFragments()) {
+      @Nullable CharSequence text = (fragment == null) ? null : fragment.getText();
+      int fragmentHash = 0;
+      if (text != null) {
+        for (int i = 0; i < text.length(); i++) {
+          fragmentHash = 31 * fragmentHash + text.charAt(i);
+        }
+      }
+      hash = 31 * hash + fragmentHash;
+    }
+    return hash;
+  }
+
+  /** Returns the position of {@code node}, which must be queued, by following the links. */
+  private int indexOf(Node node) {
+    int index = 0;
+    for (Node previous = node.previous; previous != null; previous = previous.previous) {
+      index++;
+    }
+    return index;
+  }
+
+  private void unlink(Node node) {
+    if (node.previous == null) {
+      head = node.next;
+    } else {
+      node.previous.next = node.next;
+    }
+    if (node.next == null) {
+      tail = node.previous;
+    } else {
+      node.next.previous = node.previous;
+    }
+    node.previous = null;
+    node.next = null;
+    size--;
+
+    @Nullable ArrayList<Node> textNodes = textHashToNodes.get(node.textHash);
+    if (removeFromBucket(textNodes, node) && textNodes.isEmpty()) {
+      textHashToNodes.remove(node.textHash);
+    }
+    @Nullable ArrayList<Node> groupNodes = groupToNodes.get(node.utteranceGroup);
+    if (removeFromBucket(groupNodes, node) && groupNodes.isEmpty()) {
+      groupToNodes.remove(node.utteranceGroup);
+    }
+  }
+
+  private ArrayList<Node> groupBucket(int utteranceGroup) {
+    @Nullable ArrayList<Node> nodes = groupToNodes.get(utteranceGroup);
+    if (nodes == null) {
+      nodes = new ArrayList<>();
+      groupToNodes.put(utteranceGroup, nodes);
+    }
+    return nodes;
+  }
+
+  private static ArrayList<Node> bucket(HashMap<Integer, ArrayList<Node>> buckets, int key) {
+    @Nullable ArrayList<Node> nodes = buckets.get(key);
+    if (nodes == null) {
+      nodes = new ArrayList<>();
+      buckets.put(key, nodes);
+    }
+    return nodes;
+  }
+
+  /**
+   * Removes {@code node} by identity, usually from the front of the bucket. Returns whether it was
+   * in the bucket.
+   */
+  private static boolean removeFromBucket(@Nullable ArrayList<Node> nodes, Node node) {
+    if (nodes == null) {
+      return false;
+    }
+    for (int i = 0; i < nodes.size(); i++) {
+      if (nodes.get(i) == node) {
+        nodes.remove(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** A queued item, with the keys under which it is indexed when it's added. */
+  private static class Node {
+    final FeedbackItem item;
+    final int textHash;
+    final int utteranceGroup;
+    @Nullable Node previous;
+    @Nullable Node next;
+
+    Node(FeedbackItem item) {
+      this.item = item;
+      textHash = textHash(item);
+      utteranceGroup = item.getUtteranceGroup();
+    }
+  }
+}
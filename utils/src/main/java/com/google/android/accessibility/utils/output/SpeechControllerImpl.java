@@ -53,6 +53,7 @@ import com.google.android.accessibility.utils.output.FailoverTextToSpeech.Speech
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -60,7 +61,6 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Locale;
 import java.util.PriorityQueue;
 import java.util.Set;
@@ -103,6 +103,12 @@ public class SpeechControllerImpl implements SpeechController {
    */
   private static final long SAVED_FEEDBACK_FOR_PAUSE_TIME = 800;
 
+  /** The most fragments an item may have to be handed to the TTS before the current item ends. */
+  private static final int MAX_PIPELINED_FRAGMENTS = 2;
+
+  /** The most utterance indexes of cancelled pipelined items whose TTS callbacks are ignored. */
+  private static final int MAX_CANCELLED_PIPELINED_UTTERANCES = 4;
+
   /** Reusable map used for passing parameters to the TextToSpeech. */
   private final HashMap<String, String> mSpeechParametersMap = new HashMap<>();
 
@@ -123,10 +129,10 @@ public class SpeechControllerImpl implements SpeechController {
   private final HashMap<Integer, UtteranceRangeStartCallback> mUtteranceRangeStartCallbacks =
       new HashMap<>();
 
-  /** The list of items to be spoken. */
-  private ArrayList<FeedbackItem> feedbackQueue = new ArrayList<>();
-  /** The list for stopping or resuming voice feedback. */
-  private ArrayList<FeedbackItem> savedFeedbackQueue;
+  /** The queue of items to be spoken. */
+  private FeedbackQueue feedbackQueue = new FeedbackQueue();
+  /** The queue for stopping or resuming voice feedback. */
+  private FeedbackQueue savedFeedbackQueue;
   /** Keep the feedbackSavedTime to correlate it to the Pause gesture */
   private long feedbackSavedTime;
 
@@ -168,6 +174,27 @@ public class SpeechControllerImpl implements SpeechController {
   /** The saved item before initializing the item current being spoken */
   private @Nullable FeedbackItem savedFeedbackItem;
 
+  /**
+   * The item after the current one, whose fragments were already added to the TTS engine queue
+   * behind the current item, or {@code null}. It is no longer in {@link #feedbackQueue}, and only
+   * becomes the current item when the current item is spoken completely.
+   */
+  private @Nullable FeedbackItem mPipelinedFeedbackItem;
+
+  /**
+   * The number of fragments that the TTS engine has queued after the fragment it is speaking. These
+   * are the fragments of {@link #mPipelinedFeedbackItem}, and the remaining fragments of the
+   * current item if it was pipelined itself.
+   */
+  private int mQueuedFragmentsAhead = 0;
+
+  /**
+   * The utterance indexes that were reserved by pipelined items before their pipelining was
+   * cancelled. The items are spoken again under new indexes, so the TTS callbacks for the flushed
+   * speech under these indexes are ignored.
+   */
+  private final ArrayDeque<Integer> mCancelledPipelinedUtterances = new ArrayDeque<>();
+
   /** Whether we should request audio focus during speech. */
   private boolean mUseAudioFocus = false;
 
@@ -331,7 +358,7 @@ public class SpeechControllerImpl implements SpeechController {
 
   /** @return {@code true} if the speech controller has feedback queued up to speak */
   private boolean isSpeechQueued() {
-    return !feedbackQueue.isEmpty();
+    return !feedbackQueue.isEmpty() || (mPipelinedFeedbackItem != null);
   }
 
   @Override
@@ -985,22 +1012,22 @@ public class SpeechControllerImpl implements SpeechController {
     if (shouldClearQueue(item, queueMode)) {
       FeedbackItemFilter filter = getFeedbackItemFilter(item, queueMode);
       // Call onUtteranceComplete on each queue item to be cleared.
-      ListIterator<FeedbackItem> iterator = feedbackQueue.listIterator(0);
-      while (iterator.hasNext()) {
-        FeedbackItem currentItem = iterator.next();
-        if (filter.accept(currentItem)) {
-          iterator.remove();
-          notifyItemInterrupted(currentItem);
-        }
+      for (FeedbackItem clearedItem : removeQueuedItems(item, queueMode, filter)) {
+        notifyItemInterrupted(clearedItem);
       }
 
       if (mCurrentFeedbackItem != null && filter.accept(mCurrentFeedbackItem)) {
         notifyItemInterrupted(mCurrentFeedbackItem);
         currentFeedbackInterrupted = true;
+        // Only items which are flushed along with the current item are pipelined.
+        if (mPipelinedFeedbackItem != null && filter.accept(mPipelinedFeedbackItem)) {
+          notifyItemInterrupted(mPipelinedFeedbackItem);
+          mPipelinedFeedbackItem = null;
+        }
       }
     }
 
-    feedbackQueue.add(item);
+    feedbackQueue.addLast(item);
     if (mSpeechListener != null) {
       mSpeechListener.onUtteranceQueued(item);
     }
@@ -1017,6 +1044,7 @@ public class SpeechControllerImpl implements SpeechController {
     } else {
       LogUtils.v(
           TAG, "Queued speech item, waiting for \"%s\"", mCurrentFeedbackItem.getUtteranceId());
+      maybePipelineNextItem();
     }
   }
 
@@ -1038,12 +1066,18 @@ public class SpeechControllerImpl implements SpeechController {
     }
   }
 
-  private boolean shouldClearQueue(FeedbackItem item, int queueMode) {
-    // QUEUE_MODE_INTERRUPT, QUEUE_MODE_FLUSH_ALL and QUEUE_MODE_CAN_IGNORE_INTERRUPTS will clear
-    // the queue.
-    if (queueMode != QUEUE_MODE_QUEUE
+  /**
+   * Returns whether {@code queueMode} clears the interruptible items. QUEUE_MODE_INTERRUPT,
+   * QUEUE_MODE_FLUSH_ALL and QUEUE_MODE_CAN_IGNORE_INTERRUPTS will clear the queue.
+   */
+  private static boolean clearsInterruptibleItems(int queueMode) {
+    return queueMode != QUEUE_MODE_QUEUE
         && queueMode != QUEUE_MODE_UNINTERRUPTIBLE_BY_NEW_SPEECH
-        && queueMode != QUEUE_MODE_UNINTERRUPTIBLE_BY_NEW_SPEECH_CAN_IGNORE_INTERRUPTS) {
+        && queueMode != QUEUE_MODE_UNINTERRUPTIBLE_BY_NEW_SPEECH_CAN_IGNORE_INTERRUPTS;
+  }
+
+  private boolean shouldClearQueue(FeedbackItem item, int queueMode) {
+    if (clearsInterruptibleItems(queueMode)) {
       return true;
     }
 
@@ -1068,9 +1102,7 @@ public class SpeechControllerImpl implements SpeechController {
 
   private FeedbackItemFilter getFeedbackItemFilter(FeedbackItem item, int queueMode) {
     FeedbackItemFilter filter = new FeedbackItemFilter();
-    if (queueMode != QUEUE_MODE_QUEUE
-        && queueMode != QUEUE_MODE_UNINTERRUPTIBLE_BY_NEW_SPEECH
-        && queueMode != QUEUE_MODE_UNINTERRUPTIBLE_BY_NEW_SPEECH_CAN_IGNORE_INTERRUPTS) {
+    if (clearsInterruptibleItems(queueMode)) {
       filter.addFeedbackItemPredicate(new FeedbackItemInterruptiblePredicate());
     }
 
@@ -1101,6 +1133,24 @@ public class SpeechControllerImpl implements SpeechController {
     return filter;
   }
 
+  /**
+   * Removes the queued items which {@code filter} accepts, and returns them in queue order. Unless
+   * the queue mode clears all interruptible items, the filter only accepts queued items of the
+   * utterance group of {@code item}, which are removed through the group index.
+   */
+  private List<FeedbackItem> removeQueuedItems(
+      FeedbackItem item, int queueMode, FeedbackItemFilter filter) {
+    if (clearsInterruptibleItems(queueMode)) {
+      return feedbackQueue.removeIf(filter::accept);
+    }
+    // Interrupting the current item of the same group doesn't clear the queue.
+    if (item.getUtteranceGroup() != UTTERANCE_GROUP_DEFAULT
+        && item.hasFlag(FeedbackItem.FLAG_CLEAR_QUEUED_UTTERANCES_WITH_SAME_UTTERANCE_GROUP)) {
+      return feedbackQueue.removeUtteranceGroup(item.getUtteranceGroup());
+    }
+    return Collections.emptyList();
+  }
+
   private void notifyItemInterrupted(FeedbackItem item) {
     final UtteranceCompleteRunnable queuedItemCompletedAction = item.getCompletedAction();
     if (queuedItemCompletedAction != null) {
@@ -1125,23 +1175,31 @@ public class SpeechControllerImpl implements SpeechController {
       return false;
     }
 
-    if (feedbackTextEquals(item, mCurrentFeedbackItem)) {
+    if (FeedbackQueue.feedbackTextEquals(item, mCurrentFeedbackItem)) {
       expectedUtteranceId[0] = accumulatedUtterance;
       return true;
     }
 
-    for (FeedbackItem queuedItem : feedbackQueue) {
+    // The pipelined item was the first queued item, and already has the next utterance index.
+    if (mPipelinedFeedbackItem != null) {
       accumulatedUtterance++;
-      if (feedbackTextEquals(item, queuedItem)) {
+      if (FeedbackQueue.feedbackTextEquals(item, mPipelinedFeedbackItem)) {
         expectedUtteranceId[0] = accumulatedUtterance;
         return true;
       }
     }
 
+    // Only the queued items with the same text hash are compared.
+    int queuedIndex = feedbackQueue.indexOfText(item);
+    if (queuedIndex >= 0) {
+      expectedUtteranceId[0] = accumulatedUtterance + queuedIndex + 1;
+      return true;
+    }
+
     long currentTime = item.getCreationTime();
     for (FeedbackItem recentItem : mFeedbackHistory) {
       if (currentTime - recentItem.getCreationTime() < SKIP_DUPLICATES_DELAY) {
-        if (feedbackTextEquals(item, recentItem)) {
+        if (FeedbackQueue.feedbackTextEquals(item, recentItem)) {
           return true;
         }
       }
@@ -1150,41 +1208,6 @@ public class SpeechControllerImpl implements SpeechController {
     return false;
   }
 
-  /**
-   * Compares feedback fragments based on their text only. Ignores other parameters such as earcons
-   * and interruptibility.
-   */
-  private boolean feedbackTextEquals(@Nullable FeedbackItem item1, @Nullable FeedbackItem item2) {
-    if (item1 == null || item2 == null) {
-      return false;
-    }
-
-    List<FeedbackFragment> fragments1 = item1.getFragments();
-    List<FeedbackFragment> fragments2 = item2.getFragments();
-
-    if (fragments1.size() != fragments2.size()) {
-      return false;
-    }
-
-    int size = fragments1.size();
-    for (int i = 0; i < size; i++) {
-      FeedbackFragment fragment1 = fragments1.get(i);
-      FeedbackFragment fragment2 = fragments2.get(i);
-
-      if (fragment1 != null
-          && fragment2 != null
-          && !TextUtils.equals(fragment1.getText(), fragment2.getText())) {
-        return false;
-      }
-
-      if ((fragment1 == null && fragment2 != null) || (fragment1 != null && fragment2 == null)) {
-        return false;
-      }
-    }
-
-    return true;
-  }
-
   /**
    * Add a new action that will be run before the given utterance index starts.
    *
@@ -1287,6 +1310,7 @@ public class SpeechControllerImpl implements SpeechController {
     // time between this pause method invoked and the last speech interruption is too long, we can
     // determine the saved feedback is outdated.
     if (savedFeedbackQueue != null && !requestPause && delta <= SAVED_FEEDBACK_FOR_PAUSE_TIME) {
+      cancelPipelining();
       mCurrentFeedbackItem = null;
       requestPause = true;
       mFailoverTts.stopFromTalkBack();
@@ -1415,8 +1439,19 @@ public class SpeechControllerImpl implements SpeechController {
   @SuppressLint("InlinedApi")
   private void speakNextItemInternal(FeedbackItem item) {
     final int utteranceIndex = getNextUtteranceId();
-    final String utteranceId = UTTERANCE_ID_PREFIX + utteranceIndex;
-    item.setUtteranceId(utteranceId);
+    item.setUtteranceId(UTTERANCE_ID_PREFIX + utteranceIndex);
+    onItemStarting(item, utteranceIndex);
+    processNextFragmentInternal();
+  }
+
+  /**
+   * Registers the callbacks and history of {@code item}, which becomes the current item.
+   *
+   * @param item The item to speak, whose utterance ID was assigned.
+   * @param utteranceIndex The index of the utterance ID of {@code item}.
+   */
+  private void onItemStarting(FeedbackItem item, int utteranceIndex) {
+    final String utteranceId = item.getUtteranceId();
     currentFragmentIterator.setFeedBackItemUtteranceId(utteranceId);
     // Track latency from event received to feedback queued.
     EventId eventId = item.getEventId();
@@ -1454,8 +1489,6 @@ public class SpeechControllerImpl implements SpeechController {
     if (mSpeechListener != null) {
       mSpeechListener.onUtteranceStarted(item);
     }
-
-    processNextFragmentInternal();
   }
 
   private boolean processNextFragmentInternal() {
@@ -1474,25 +1507,6 @@ public class SpeechControllerImpl implements SpeechController {
     playEarconsFromFragment(fragment, eventId);
     playHapticsFromFragment(fragment, eventId);
 
-    // Reuse the global instance of speech parameters.
-    final HashMap<String, String> params = mSpeechParametersMap;
-    params.clear();
-
-    // Add all custom speech parameters.
-    final Bundle speechParams = fragment.getSpeechParams();
-    for (String key : speechParams.keySet()) {
-      params.put(key, String.valueOf(speechParams.get(key)));
-    }
-
-    // Utterance ID, stream, and volume override item params.
-    params.put(Engine.KEY_PARAM_UTTERANCE_ID, mCurrentFeedbackItem.getUtteranceId());
-    params.put(Engine.KEY_PARAM_STREAM, String.valueOf(DEFAULT_STREAM));
-    params.put(Engine.KEY_PARAM_VOLUME, String.valueOf(mSpeechVolume));
-
-    float pitch =
-        mSpeechPitch * (mUseIntonation ? parseFloatParam(params, SpeechParam.PITCH, 1) : 1);
-    final float rate =
-        mSpeechRate * (mUseIntonation ? parseFloatParam(params, SpeechParam.RATE, 1) : 1);
     CharSequence text;
 
     final boolean shouldSilenceFragment = shouldSilenceSpeech(mCurrentFeedbackItem);
@@ -1501,27 +1515,12 @@ public class SpeechControllerImpl implements SpeechController {
     } else {
       text = fragment.getText();
     }
-    final Locale locale = fragment.getLocale();
 
-    final boolean preventDeviceSleep =
-        mCurrentFeedbackItem.hasFlag(FeedbackItem.FLAG_NO_DEVICE_SLEEP);
-
-    // for capital letter
-    if (text != null && text.length() == 1 && Character.isUpperCase(text.charAt(0))) {
-      switch (capLetterFeedback) {
-        case CAPITAL_LETTERS_TYPE_SPEAK_CAP:
-          // To resolve the limitation of [length == 1]. "Say capital" is handled by compositor
-          // variable.
-          break;
-        case CAPITAL_LETTERS_TYPE_PITCH:
-          pitch = min(pitch * CAPITAL_LETTER_PITCH_RATE, CAPITAL_LETTER_PITCH_RATE_UPPER_BOUND);
-          break;
-        case CAPITAL_LETTERS_TYPE_SOUND_FEEDBACK:
-          // TODO: The raw resource of sound feedback is required for capital letter.
-          mFeedbackController.playAuditory(R.raw.window_state, eventId);
-          break;
-        default: // fall out
-      }
+    // for capital letter. To resolve the limitation of [length == 1], "Say capital" is handled by
+    // compositor variable, and the pitch is changed by speakFragment().
+    if (isCapitalLetter(text) && (capLetterFeedback == CAPITAL_LETTERS_TYPE_SOUND_FEEDBACK)) {
+      // TODO: The raw resource of sound feedback is required for capital letter.
+      mFeedbackController.playAuditory(R.raw.window_state, eventId);
     }
 
     final String logText = (text == null) ? null : String.format("\"%s\"", text.toString());
@@ -1540,16 +1539,196 @@ public class SpeechControllerImpl implements SpeechController {
     // It's okay if the utterance is empty, the fail-over TTS will
     // immediately call the fragment completion listener. This process is
     // important for things like continuous reading.
-    mFailoverTts.speak(
-        text, locale, pitch, rate, params, DEFAULT_STREAM, mSpeechVolume, preventDeviceSleep);
+    speakFragment(mCurrentFeedbackItem, fragment, text, /* queued= */ false);
 
     if (mTtsOverlay != null) {
       mTtsOverlay.displayText(text);
     }
 
+    maybePipelineNextItem();
+    return true;
+  }
+
+  /**
+   * Hands {@code text} of {@code fragment} to the TTS engine, with the speech parameters of the
+   * fragment and of {@code item}.
+   *
+   * @param queued Whether to add the text after the speech in the engine queue, rather than to
+   *     flush the queue.
+   * @return {@code false} if the text couldn't be queued. Failures to speak with {@code queued}
+   *     unset are reported as completed fragments instead.
+   */
+  private boolean speakFragment(
+      FeedbackItem item, FeedbackFragment fragment, @Nullable CharSequence text, boolean queued) {
+    // Reuse the global instance of speech parameters.
+    final HashMap<String, String> params = mSpeechParametersMap;
+    params.clear();
+
+    // Add all custom speech parameters.
+    final Bundle speechParams = fragment.getSpeechParams();
+    for (String key : speechParams.keySet()) {
+      params.put(key, String.valueOf(speechParams.get(key)));
+    }
+
+    // Utterance ID, stream, and volume override item params.
+    params.put(Engine.KEY_PARAM_UTTERANCE_ID, item.getUtteranceId());
+    params.put(Engine.KEY_PARAM_STREAM, String.valueOf(DEFAULT_STREAM));
+    params.put(Engine.KEY_PARAM_VOLUME, String.valueOf(mSpeechVolume));
+
+    float pitch =
+        mSpeechPitch * (mUseIntonation ? parseFloatParam(params, SpeechParam.PITCH, 1) : 1);
+    final float rate =
+        mSpeechRate * (mUseIntonation ? parseFloatParam(params, SpeechParam.RATE, 1) : 1);
+    if (isCapitalLetter(text) && (capLetterFeedback == CAPITAL_LETTERS_TYPE_PITCH)) {
+      pitch = min(pitch * CAPITAL_LETTER_PITCH_RATE, CAPITAL_LETTER_PITCH_RATE_UPPER_BOUND);
+    }
+    final Locale locale = fragment.getLocale();
+
+    final boolean preventDeviceSleep = item.hasFlag(FeedbackItem.FLAG_NO_DEVICE_SLEEP);
+
+    if (queued) {
+      return mFailoverTts.speakQueued(
+          text, locale, pitch, rate, params, DEFAULT_STREAM, mSpeechVolume, preventDeviceSleep);
+    }
+    mFailoverTts.speak(
+        text, locale, pitch, rate, params, DEFAULT_STREAM, mSpeechVolume, preventDeviceSleep);
     return true;
   }
 
+  private static boolean isCapitalLetter(@Nullable CharSequence text) {
+    return text != null && text.length() == 1 && Character.isUpperCase(text.charAt(0));
+  }
+
+  /**
+   * Hands the first queued item to the TTS engine behind the current item, so that the engine
+   * speaks it without waiting for this controller to handle the completion of the current item.
+   *
+   * <p>This is only done once the engine has every fragment of the current item, and if both items
+   * are flushed by the same interruptions, so that the engine never has to drop the pipelined item
+   * alone. The pipelined item must have no feedback other than speech, because the start of its
+   * speech isn't known when it's handed to the engine.
+   *
+   * <p>Continuous reading is not pipelined: it queues the speech of the next node only from the
+   * completion action of the current node, when it moves accessibility focus, so the queue is
+   * empty while the current node is spoken.
+   */
+  private void maybePipelineNextItem() {
+    if (requestPause
+        || (mPipelinedFeedbackItem != null)
+        || (mCurrentFeedbackItem == null)
+        || (currentFragmentIterator == null)
+        || feedbackQueue.isEmpty()) {
+      return;
+    }
+    if ((mQueuedFragmentsAhead == 0) && currentFragmentIterator.hasFragmentAfterCurrent()) {
+      return;
+    }
+    if (!mCurrentFeedbackItem.isInterruptible() || mCurrentFeedbackItem.canIgnoreInterrupts()) {
+      return;
+    }
+    final FeedbackItem nextItem = feedbackQueue.peekFirst();
+    if (!canPipeline(nextItem)) {
+      return;
+    }
+
+    nextItem.setUtteranceId(UTTERANCE_ID_PREFIX + peekNextUtteranceId());
+    int queuedFragments = 0;
+    for (FeedbackFragment fragment : nextItem.getFragments()) {
+      if (!speakFragment(nextItem, fragment, fragment.getText(), /* queued= */ true)) {
+        break;
+      }
+      queuedFragments++;
+    }
+    if (queuedFragments == 0) {
+      // The item is spoken normally after the current item.
+      return;
+    }
+
+    getNextUtteranceId();
+    feedbackQueue.removeFirst();
+    mPipelinedFeedbackItem = nextItem;
+    mQueuedFragmentsAhead += queuedFragments;
+    LogUtils.v(
+        TAG,
+        "Pipelined %d fragments of \"%s\" after \"%s\"",
+        queuedFragments,
+        nextItem.getUtteranceId(),
+        mCurrentFeedbackItem.getUtteranceId());
+  }
+
+  private boolean canPipeline(FeedbackItem item) {
+    if (!item.isInterruptible()
+        || item.canIgnoreInterrupts()
+        || (item.getUtteranceGroup() != UTTERANCE_GROUP_DEFAULT)
+        || item.hasFlag(FeedbackItem.FLAG_FORCE_FEEDBACK)) {
+      return false;
+    }
+    final List<FeedbackFragment> fragments = item.getFragments();
+    if (fragments.isEmpty() || (fragments.size() > MAX_PIPELINED_FRAGMENTS)) {
+      return false;
+    }
+    for (FeedbackFragment fragment : fragments) {
+      if (TextUtils.isEmpty(fragment.getText())
+          || !fragment.getEarcons().isEmpty()
+          || !fragment.getHaptics().isEmpty()
+          || (isCapitalLetter(fragment.getText())
+              && (capLetterFeedback == CAPITAL_LETTERS_TYPE_SOUND_FEEDBACK))) {
+        return false;
+      }
+    }
+    return !shouldSilenceSpeech(item);
+  }
+
+  /**
+   * Makes the pipelined item the current item, without speaking it again. Its speech follows the
+   * current item in the TTS engine queue, so this must only be called once the current item was
+   * spoken completely.
+   *
+   * @return {@code false} if there is no pipelined item.
+   */
+  private boolean speakPipelinedItem() {
+    final FeedbackItem item = mPipelinedFeedbackItem;
+    if (item == null) {
+      return false;
+    }
+    mPipelinedFeedbackItem = null;
+    mCurrentFeedbackItem = item;
+    currentFragmentIterator = new FeedbackFragmentsIterator(item.getFragments().iterator());
+    onItemStarting(item, parseUtteranceId(item.getUtteranceId()));
+
+    // The engine is speaking the first fragment already.
+    mQueuedFragmentsAhead--;
+    final FeedbackFragment fragment = currentFragmentIterator.next();
+    LogUtils.v(
+        TAG,
+        "Speaking pipelined fragment text \"%s\" for event %s",
+        fragment.getText(),
+        item.getEventId());
+    sourceIsVolumeControl = item.hasFlag(FLAG_SOURCE_IS_VOLUME_CONTROL);
+    if (mTtsOverlay != null) {
+      mTtsOverlay.displayText(fragment.getText());
+    }
+    maybePipelineNextItem();
+    return true;
+  }
+
+  /**
+   * Puts the pipelined item back at the front of the queue, to be spoken again from its start.
+   * Speaking any item normally flushes the engine queue, and the pipelined speech with it.
+   */
+  private void cancelPipelining() {
+    mQueuedFragmentsAhead = 0;
+    if (mPipelinedFeedbackItem != null) {
+      if (mCancelledPipelinedUtterances.size() == MAX_CANCELLED_PIPELINED_UTTERANCES) {
+        mCancelledPipelinedUtterances.removeFirst();
+      }
+      mCancelledPipelinedUtterances.addLast(
+          parseUtteranceId(mPipelinedFeedbackItem.getUtteranceId()));
+      feedbackQueue.addFirst(mPipelinedFeedbackItem);
+      mPipelinedFeedbackItem = null;
+    }
+  }
+
   /**
    * Plays all earcons stored in a {@link FeedbackFragment}.
    *
@@ -1673,6 +1852,7 @@ public class SpeechControllerImpl implements SpeechController {
     // We should save some of the feedback information to provide Pause / Resume feedback.
     // Because clearCurrentAndQueuedUtterances() clears all feedback
     // before recognizing the single tap with two fingers gesture.
+    cancelPipelining();
     saveCurrentFeedbackInfo();
 
     feedbackQueue.clear();
@@ -1696,13 +1876,11 @@ public class SpeechControllerImpl implements SpeechController {
    *     speaking speech should be interrupted
    */
   private boolean clearCurrentAndQueuedUtterancesThatDontIgnoreInterrupts(boolean notifyObserver) {
-    ListIterator<FeedbackItem> iterator = feedbackQueue.listIterator(0);
-    while (iterator.hasNext()) {
-      FeedbackItem currentItem = iterator.next();
-      if (!currentItem.canIgnoreInterrupts()) {
-        iterator.remove();
-        notifyItemInterrupted(currentItem);
-      }
+    // Items are only pipelined after a current item that doesn't ignore interrupts, so the TTS is
+    // flushed below.
+    cancelPipelining();
+    for (FeedbackItem clearedItem : feedbackQueue.removeIf(item -> !item.canIgnoreInterrupts())) {
+      notifyItemInterrupted(clearedItem);
     }
 
     boolean currentFeedbackInterrupted = false;
@@ -1758,11 +1936,10 @@ public class SpeechControllerImpl implements SpeechController {
   }
 
   /** Save the current feedback and the contents of the feedback queue. */
-  @SuppressWarnings({"unchecked"})
   private void saveCurrentFeedbackInfo() {
     if (!requestPause) {
       feedbackSavedTime = SystemClock.uptimeMillis();
-      savedFeedbackQueue = (ArrayList<FeedbackItem>) feedbackQueue.clone();
+      savedFeedbackQueue = feedbackQueue.copy();
       savedFeedbackItem = mCurrentFeedbackItem;
       savedFragmentIterator =
           currentFragmentIterator != null ? currentFragmentIterator.deepCopy() : null;
@@ -1793,6 +1970,9 @@ public class SpeechControllerImpl implements SpeechController {
 
   private void onFragmentStarted(String utteranceId) {
     final int utteranceIndex = SpeechControllerImpl.parseUtteranceId(utteranceId);
+    if (mCancelledPipelinedUtterances.contains(utteranceIndex)) {
+      return;
+    }
     onUtteranceStarted(utteranceIndex);
   }
 
@@ -1820,11 +2000,17 @@ public class SpeechControllerImpl implements SpeechController {
    */
   private void onFragmentCompleted(
       String utteranceId, boolean success, boolean advance, boolean notifyObserver) {
+    final int utteranceIndex = SpeechControllerImpl.parseUtteranceId(utteranceId);
+    if (mCancelledPipelinedUtterances.contains(utteranceIndex)) {
+      // The pipelined speech was flushed, and its item is spoken again under a new index.
+      LogUtils.v(TAG, "Ignored completion of cancelled pipelined utterance %d", utteranceIndex);
+      return;
+    }
+
     if (currentFragmentIterator != null) {
       currentFragmentIterator.onFragmentCompleted(utteranceId, success);
     }
 
-    final int utteranceIndex = SpeechControllerImpl.parseUtteranceId(utteranceId);
     final boolean interrupted =
         (mCurrentFeedbackItem != null)
             && (!mCurrentFeedbackItem.getUtteranceId().equals(utteranceId));
@@ -1842,6 +2028,19 @@ public class SpeechControllerImpl implements SpeechController {
       status = STATUS_ERROR;
     }
 
+    if ((status == STATUS_SPOKEN)
+        && (mQueuedFragmentsAhead > 0)
+        && (currentFragmentIterator != null)
+        && currentFragmentIterator.hasFragmentAfterCurrent()) {
+      // The TTS is speaking the next fragment of this pipelined FeedbackItem already.
+      mQueuedFragmentsAhead--;
+      final FeedbackFragment fragment = currentFragmentIterator.next();
+      if (mTtsOverlay != null) {
+        mTtsOverlay.displayText(fragment.getText());
+      }
+      return;
+    }
+
     // Process the next fragment for this FeedbackItem if applicable.
     if ((status != STATUS_SPOKEN) || !processNextFragmentInternal()) {
       // If speaking resulted in an error, was ultimately interrupted, or
@@ -1935,7 +2134,13 @@ public class SpeechControllerImpl implements SpeechController {
       return;
     }
 
-    if (advance && !speakNextItem()) {
+    if (!advance) {
+      return;
+    }
+    if ((status == STATUS_SPOKEN) && speakPipelinedItem()) {
+      return;
+    }
+    if (!speakNextItem()) {
       handleSpeechCompleted(status);
     }
   }
@@ -1943,6 +2148,7 @@ public class SpeechControllerImpl implements SpeechController {
   private void onTtsInitialized(boolean wasSwitchingEngines) {
     // The previous engine may not have shut down correctly, so make sure to
     // clear the "current" speech item.
+    cancelPipelining();
     if (mCurrentFeedbackItem != null) {
       onFragmentCompleted(
           mCurrentFeedbackItem.getUtteranceId(),
@@ -1977,8 +2183,10 @@ public class SpeechControllerImpl implements SpeechController {
    * @return {@code false} if there are no more queued speech items.
    */
   private boolean speakNextItem() {
+    // Speaking the next item flushes the TTS queue, so it must be spoken again if it was pipelined.
+    cancelPipelining();
     final FeedbackItem previousItem = mCurrentFeedbackItem;
-    final FeedbackItem nextItem = (feedbackQueue.isEmpty() ? null : feedbackQueue.remove(0));
+    final FeedbackItem nextItem = feedbackQueue.removeFirst();
 
     mCurrentFeedbackItem = nextItem;
 
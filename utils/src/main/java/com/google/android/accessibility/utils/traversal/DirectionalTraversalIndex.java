@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.utils.traversal;
+
+import android.view.accessibility.AccessibilityEvent;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import com.google.android.accessibility.utils.AccessibilityEventListener;
+import com.google.android.accessibility.utils.AccessibilityEventUtils;
+import com.google.android.accessibility.utils.FocusFinder;
+import com.google.android.accessibility.utils.Performance.EventId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the directional traversal of each window alive across directional gestures and D-pad
+ * moves, so that {@link TraversalStrategyUtils#getTraversalStrategy} doesn't walk the whole window
+ * and sort its focusable bounds again for every move.
+ *
+ * <p>The index must receive accessibility events while it is enabled. A content change or scroll
+ * in a window drops the traversal of that window, and window changes drop the index. While the
+ * index is disabled, every strategy is built from scratch.
+ *
+ * <p>All methods must be called on the main thread.
+ */
+public class DirectionalTraversalIndex implements AccessibilityEventListener {
+
+  /** Maximum number of windows whose directional traversal is kept. */
+  private static final int MAX_WINDOWS = 4;
+
+  private static final int EVENT_MASK =
+      AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+          | AccessibilityEvent.TYPE_VIEW_SCROLLED
+          | AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+          | AccessibilityEvent.TYPE_WINDOWS_CHANGED;
+
+  private static final DirectionalTraversalIndex sInstance = new DirectionalTraversalIndex();
+
+  private final Map<Integer, DirectionalTraversalStrategy> mWindowStrategies =
+      new LinkedHashMap<Integer, DirectionalTraversalStrategy>(
+          MAX_WINDOWS, 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(
+            Map.Entry<Integer, DirectionalTraversalStrategy> eldest) {
+          return size() > MAX_WINDOWS;
+        }
+      };
+
+  private boolean mEnabled;
+
+  public static DirectionalTraversalIndex getInstance() {
+    return sInstance;
+  }
+
+  private DirectionalTraversalIndex() {}
+
+  /**
+   * Enables or disables reuse of directional traversals. The caller enabling the index must also
+   * deliver the events from {@link #getEventTypes()} to it.
+   */
+  public void setEnabled(boolean enabled) {
+    mEnabled = enabled;
+    if (!enabled) {
+      mWindowStrategies.clear();
+    }
+  }
+
+  /** Returns a strategy for the directional traversal of {@code root}, reusing an existing one. */
+  public DirectionalTraversalStrategy getTraversalStrategy(
+      AccessibilityNodeInfoCompat root, FocusFinder focusFinder) {
+    if (!mEnabled || root == null) {
+      return new DirectionalTraversalStrategy(root, focusFinder);
+    }
+
+    int windowId = root.getWindowId();
+    DirectionalTraversalStrategy strategy = mWindowStrategies.get(windowId);
+    if (strategy != null && strategy.isFor(root, focusFinder)) {
+      return strategy;
+    }
+
+    strategy = new DirectionalTraversalStrategy(root, focusFinder);
+    mWindowStrategies.put(windowId, strategy);
+    return strategy;
+  }
+
+  @Override
+  public int getEventTypes() {
+    return EVENT_MASK;
+  }
+
+  @Override
+  public void onAccessibilityEvent(AccessibilityEvent event, EventId eventId) {
+    if (mWindowStrategies.isEmpty()) {
+      return;
+    }
+
+    switch (event.getEventType()) {
+      case AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED:
+      case AccessibilityEvent.TYPE_VIEW_SCROLLED:
+        {
+          // Changes anywhere in the window may move the focusable nodes.
+          int windowId = AccessibilityEventUtils.getWindowId(event);
+          if (windowId == AccessibilityEventUtils.WINDOW_ID_NONE) {
+            mWindowStrategies.clear();
+          } else {
+            mWindowStrategies.remove(windowId);
+          }
+          break;
+        }
+      case AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED:
+      case AccessibilityEvent.TYPE_WINDOWS_CHANGED:
+        mWindowStrategies.clear();
+        break;
+      default: // fall out
+    }
+  }
+}
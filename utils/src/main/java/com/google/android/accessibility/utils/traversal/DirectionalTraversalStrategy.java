@@ -24,9 +24,9 @@ import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
 import com.google.android.accessibility.utils.AccessibilityNodeInfoUtils;
 import com.google.android.accessibility.utils.Filter;
 import com.google.android.accessibility.utils.FocusFinder;
+import com.google.android.accessibility.utils.SpeakingNodesCache;
 import com.google.android.accessibility.utils.WebInterfaceUtils;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -57,7 +57,11 @@ public class DirectionalTraversalStrategy implements TraversalStrategy {
   private final Set<AccessibilityNodeInfoCompat> mContainers = new HashSet<>();
 
   /** Cache of nodes that have speech for use by AccessibilityNodeInfoUtils. */
-  private final Map<AccessibilityNodeInfoCompat, Boolean> mSpeakingNodesCache = new HashMap<>();
+  private final Map<AccessibilityNodeInfoCompat, Boolean> mSpeakingNodesCache =
+      SpeakingNodesCache.getInstance().getCache();
+
+  /** The assumed bounds of mFocusables, sorted along each direction. */
+  private final FocusableBoundsIndex mFocusableBounds;
 
   public DirectionalTraversalStrategy(AccessibilityNodeInfoCompat root, FocusFinder focusFinder) {
     mRoot = AccessibilityNodeInfoCompat.obtain(root);
@@ -71,6 +75,19 @@ public class DirectionalTraversalStrategy implements TraversalStrategy {
     mRootRectPadded.inset(fudge, fudge);
 
     processNodes(mRoot, false /* forceRefresh */);
+
+    List<Rect> focusableRects = new ArrayList<>(mFocusables.size());
+    for (AccessibilityNodeInfoCompat focusable : mFocusables) {
+      Rect focusableRect = new Rect();
+      getAssumedRectInScreen(focusable, focusableRect);
+      focusableRects.add(focusableRect);
+    }
+    mFocusableBounds = new FocusableBoundsIndex(mFocusables, focusableRects);
+  }
+
+  /** Returns whether the strategy was built for {@code root} and {@code focusFinder}. */
+  boolean isFor(AccessibilityNodeInfoCompat root, FocusFinder focusFinder) {
+    return (this.focusFinder == focusFinder) && mRoot.equals(root);
   }
 
   /**
@@ -166,19 +183,35 @@ public class DirectionalTraversalStrategy implements TraversalStrategy {
       default: // fall out
     }
 
+    // Visits the candidates in order of their major axis distance, which only grows, and stops
+    // once the best candidate is in the beam and no further candidate can be closer than it.
     AccessibilityNodeInfoCompat closest = null;
-    for (AccessibilityNodeInfoCompat focusable : mFocusables) {
+    boolean closestInBeam = false;
+    int closestWeightedDistance = Integer.MAX_VALUE;
+    int size = mFocusableBounds.size();
+    for (int i = mFocusableBounds.getSweepStart(direction, focusedRect); i < size; i++) {
+      Rect otherRect = mFocusableBounds.getRect(direction, i);
+      if (closestInBeam) {
+        long majorAxisDistance = majorAxisDistance(direction, focusedRect, otherRect);
+        if (13 * majorAxisDistance * majorAxisDistance >= closestWeightedDistance) {
+          break;
+        }
+      }
+
+      AccessibilityNodeInfoCompat focusable = mFocusableBounds.getNode(direction, i);
       // Skip the currently-focused view.
       if (focusable.equals(focused) || focusable.equals(mRoot)) {
         continue;
       }
 
-      Rect otherRect = new Rect();
-      getAssumedRectInScreen(focusable, otherRect);
-
       if (isBetterCandidate(direction, focusedRect, otherRect, bestCandidateRect)) {
         bestCandidateRect.set(otherRect);
         closest = focusable;
+        closestInBeam = beamsOverlap(direction, focusedRect, otherRect);
+        closestWeightedDistance =
+            getWeightedDistanceFor(
+                majorAxisDistance(direction, focusedRect, otherRect),
+                minorAxisDistance(direction, focusedRect, otherRect));
       }
     }
 
@@ -252,7 +285,7 @@ public class DirectionalTraversalStrategy implements TraversalStrategy {
 
   @Override
   public Map<AccessibilityNodeInfoCompat, Boolean> getSpeakingNodesCache() {
-    return null;
+    return mSpeakingNodesCache;
   }
 
   /**
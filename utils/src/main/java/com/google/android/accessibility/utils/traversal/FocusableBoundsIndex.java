@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.utils.traversal;
+
+import android.graphics.Rect;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The bounds of the focusable nodes of a {@link DirectionalTraversalStrategy}, sorted along each
+ * search direction.
+ *
+ * <p>For each direction, the nodes are sorted by the edge which faces the search, e.g. by top edge
+ * for {@link TraversalStrategy#SEARCH_FOCUS_DOWN}, so that a search visits the candidates in order
+ * of their distance along the direction, and can stop once no further node can be closer. Nodes
+ * with the same edge keep their traversal order.
+ */
+final class FocusableBoundsIndex {
+
+  private static final int DIRECTION_COUNT = 4;
+
+  private final AccessibilityNodeInfoCompat[] nodes;
+  private final Rect[] rects;
+
+  /** For each direction, the positions of the nodes in sweep order. */
+  private final int[][] sweepOrder = new int[DIRECTION_COUNT][];
+
+  /** For each direction, the sweep key of the node at each position of the sweep order. */
+  private final int[][] sweepKeys = new int[DIRECTION_COUNT][];
+
+  /**
+   * @param nodes The focusable nodes, in traversal order
+   * @param rects The bounds that directional search assumes for each node
+   */
+  FocusableBoundsIndex(List<AccessibilityNodeInfoCompat> nodes, List<Rect> rects) {
+    this.nodes = nodes.toArray(new AccessibilityNodeInfoCompat[0]);
+    this.rects = rects.toArray(new Rect[0]);
+
+    long[] packed = new long[this.nodes.length];
+    for (int direction = 0; direction < DIRECTION_COUNT; direction++) {
+      for (int i = 0; i < packed.length; i++) {
+        // Sorts by key, then by traversal order.
+        int key = getSweepKey(TraversalStrategy.SEARCH_FOCUS_LEFT + direction, this.rects[i]);
+        packed[i] = ((long) key << 32) | i;
+      }
+      Arrays.sort(packed);
+      int[] order = new int[packed.length];
+      int[] keys = new int[packed.length];
+      for (int i = 0; i < packed.length; i++) {
+        order[i] = (int) packed[i];
+        keys[i] = (int) (packed[i] >> 32);
+      }
+      sweepOrder[direction] = order;
+      sweepKeys[direction] = keys;
+    }
+  }
+
+  int size() {
+    return nodes.length;
+  }
+
+  /**
+   * Returns the first position in the sweep order of {@code direction} which may hold a candidate
+   * for a search from {@code source}. Nodes before it are never candidates, because the key of a
+   * candidate is at least the key of the source, as follows from {@link
+   * DirectionalTraversalStrategy#isCandidate}.
+   */
+  int getSweepStart(@TraversalStrategy.SearchDirection int direction, Rect source) {
+    int[] keys = sweepKeys[getDirectionIndex(direction)];
+    int sourceKey = getSweepKey(direction, source);
+    int index = Arrays.binarySearch(keys, sourceKey);
+    if (index < 0) {
+      return -(index + 1);
+    }
+    // Finds the first of equal keys.
+    while (index > 0 && keys[index - 1] == sourceKey) {
+      index--;
+    }
+    return index;
+  }
+
+  /** Returns the node at {@code position} in the sweep order of {@code direction}. */
+  AccessibilityNodeInfoCompat getNode(
+      @TraversalStrategy.SearchDirection int direction, int position) {
+    return nodes[sweepOrder[getDirectionIndex(direction)][position]];
+  }
+
+  /** Returns the assumed bounds of the node at {@code position} in the sweep order. */
+  Rect getRect(@TraversalStrategy.SearchDirection int direction, int position) {
+    return rects[sweepOrder[getDirectionIndex(direction)][position]];
+  }
+
+  private static int getDirectionIndex(int direction) {
+    switch (direction) {
+      case TraversalStrategy.SEARCH_FOCUS_LEFT:
+      case TraversalStrategy.SEARCH_FOCUS_RIGHT:
+      case TraversalStrategy.SEARCH_FOCUS_UP:
+      case TraversalStrategy.SEARCH_FOCUS_DOWN:
+        return direction - TraversalStrategy.SEARCH_FOCUS_LEFT;
+      default: // fall out
+    }
+    throw new IllegalArgumentException("direction must be a SearchDirection");
+  }
+
+  /**
+   * Returns the key of {@code rect} in the sweep of {@code direction}. The major axis distance from
+   * any source grows with the key.
+   */
+  private static int getSweepKey(int direction, Rect rect) {
+    switch (direction) {
+      case TraversalStrategy.SEARCH_FOCUS_LEFT:
+        return -rect.right;
+      case TraversalStrategy.SEARCH_FOCUS_RIGHT:
+        return rect.left;
+      case TraversalStrategy.SEARCH_FOCUS_UP:
+        return -rect.bottom;
+      case TraversalStrategy.SEARCH_FOCUS_DOWN:
+        return rect.top;
+      default: // fall out
+    }
+    throw new IllegalArgumentException("direction must be a SearchDirection");
+  }
+}
@@ -21,7 +21,9 @@ import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
 import com.google.android.accessibility.utils.TreeDebug;
 import com.google.android.accessibility.utils.WebInterfaceUtils;
 import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -32,6 +34,11 @@ public class OrderedTraversalController {
   private @Nullable WorkingTree mTree;
   private Map<AccessibilityNodeInfoCompat, WorkingTree> mNodeTreeMap;
   private Map<AccessibilityNodeInfoCompat, Boolean> mSpeakNodesCache;
+  // Whether any node in the tree has a custom traversal order, which may move nodes between
+  // subtrees, so that a subtree can't be rebuilt on its own.
+  private boolean mHasCustomTraversalOrder;
+  private boolean mIncludeChildrenOfNodesWithWebActions;
+  private boolean mRefreshFoundNodes;
 
   public OrderedTraversalController() {
     mNodeTreeMap = new LinkedHashMap<>();
@@ -41,6 +48,14 @@ public class OrderedTraversalController {
     mSpeakNodesCache = speakNodeCache;
   }
 
+  /**
+   * Sets whether nodes returned by the find methods are refreshed. This is needed when the order
+   * outlives the event that it was built for, since the tree holds snapshots of the nodes.
+   */
+  public void setRefreshFoundNodes(boolean refreshFoundNodes) {
+    mRefreshFoundNodes = refreshFoundNodes;
+  }
+
   /**
    * before start next traversal node search the controller must be initialized. The initialisation
    * step includes traversal through all accessibility nodes hierarchy to collect information about
@@ -59,6 +74,7 @@ public class OrderedTraversalController {
       return;
     }
 
+    mIncludeChildrenOfNodesWithWebActions = includeChildrenOfNodesWithWebActions;
     NodeCachedBoundsCalculator boundsCalculator = new NodeCachedBoundsCalculator();
     boundsCalculator.setSpeakNodesCache(mSpeakNodesCache);
     mTree =
@@ -121,11 +137,13 @@ public class OrderedTraversalController {
       AccessibilityNodeInfoCompat node = subtree.getNode();
       AccessibilityNodeInfoCompat beforeNode = node.getTraversalBefore();
       if (beforeNode != null) {
+        mHasCustomTraversalOrder = true;
         WorkingTree targetTree = mNodeTreeMap.get(beforeNode);
         moveNodeBefore(subtree, targetTree);
       } else {
         AccessibilityNodeInfoCompat afterNode = node.getTraversalAfter();
         if (afterNode != null) {
+          mHasCustomTraversalOrder = true;
           WorkingTree targetTree = mNodeTreeMap.get(afterNode);
           moveNodeAfter(subtree, targetTree);
         }
@@ -219,6 +237,112 @@ public class OrderedTraversalController {
     movingTree.setParent(targetTree);
   }
 
+  /**
+   * Rebuilds the part of the tree below a node whose descendants have changed, keeping the order of
+   * the rest of the tree. Cached speaking state is dropped for the node, its ancestors and its old
+   * descendants, since it may depend on the changed descendants. If the node isn't part of the
+   * order, for example because it was just added, the subtree of its nearest ancestor in the order
+   * is rebuilt instead.
+   *
+   * @param node the fresh root of the changed subtree
+   * @return {@code false} if the subtree can't be rebuilt on its own, because the tree or the new
+   *     subtree uses a custom traversal order, or because no ancestor of the node is part of the
+   *     order. The whole order must be rebuilt with {@link
+   *     #initOrder(AccessibilityNodeInfoCompat, boolean)} in that case.
+   */
+  public boolean refreshSubtree(AccessibilityNodeInfoCompat node) {
+    if (mHasCustomTraversalOrder) {
+      return false;
+    }
+
+    WorkingTree tree = mNodeTreeMap.get(node);
+    while (tree == null) {
+      node = node.getParent();
+      if (node == null) {
+        // The node isn't below the root of the order.
+        return false;
+      }
+      tree = mNodeTreeMap.get(node);
+    }
+
+    for (WorkingTree ancestor = tree; ancestor != null; ancestor = ancestor.getParent()) {
+      removeFromSpeakNodesCache(ancestor.getNode());
+    }
+    for (WorkingTree child : tree.getChildren()) {
+      removeSubtreeFromMaps(child);
+    }
+    tree.clearChildren();
+
+    if (!mIncludeChildrenOfNodesWithWebActions && WebInterfaceUtils.supportsWebActions(node)) {
+      return true;
+    }
+
+    NodeCachedBoundsCalculator boundsCalculator = new NodeCachedBoundsCalculator();
+    boundsCalculator.setSpeakNodesCache(mSpeakNodesCache);
+    List<WorkingTree> newSubtrees = new ArrayList<>();
+    ReorderedChildrenIterator iterator =
+        ReorderedChildrenIterator.createAscendingIterator(node, boundsCalculator);
+    while (iterator != null && iterator.hasNext()) {
+      WorkingTree childSubTree =
+          createWorkingTree(
+              iterator.next(), tree, boundsCalculator, mIncludeChildrenOfNodesWithWebActions);
+      if (childSubTree != null) {
+        tree.addChild(childSubTree);
+        newSubtrees.add(childSubTree);
+      }
+    }
+
+    for (WorkingTree newSubtree : newSubtrees) {
+      if (hasCustomTraversalOrder(newSubtree)) {
+        mHasCustomTraversalOrder = true;
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Drops cached speaking state for a node whose own content has changed, and for its ancestors,
+   * whose speaking state may depend on it.
+   */
+  public void invalidateNode(AccessibilityNodeInfoCompat node) {
+    WorkingTree tree = mNodeTreeMap.get(node);
+    if (tree == null) {
+      removeFromSpeakNodesCache(node);
+      return;
+    }
+    for (WorkingTree ancestor = tree; ancestor != null; ancestor = ancestor.getParent()) {
+      removeFromSpeakNodesCache(ancestor.getNode());
+    }
+  }
+
+  private void removeSubtreeFromMaps(WorkingTree tree) {
+    mNodeTreeMap.remove(tree.getNode());
+    removeFromSpeakNodesCache(tree.getNode());
+    for (WorkingTree child : tree.getChildren()) {
+      removeSubtreeFromMaps(child);
+    }
+  }
+
+  private void removeFromSpeakNodesCache(AccessibilityNodeInfoCompat node) {
+    if (mSpeakNodesCache != null) {
+      mSpeakNodesCache.remove(node);
+    }
+  }
+
+  private static boolean hasCustomTraversalOrder(WorkingTree tree) {
+    AccessibilityNodeInfoCompat node = tree.getNode();
+    if (node.getTraversalBefore() != null || node.getTraversalAfter() != null) {
+      return true;
+    }
+    for (WorkingTree child : tree.getChildren()) {
+      if (hasCustomTraversalOrder(child)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   public @Nullable AccessibilityNodeInfoCompat findNext(AccessibilityNodeInfoCompat node) {
     WorkingTree tree = mNodeTreeMap.get(node);
     if (tree == null) {
@@ -228,7 +352,7 @@ public class OrderedTraversalController {
 
     WorkingTree nextTree = tree.getNext();
     if (nextTree != null) {
-      return AccessibilityNodeInfoCompat.obtain(nextTree.getNode());
+      return obtainFoundNode(nextTree.getNode());
     }
 
     return null;
@@ -243,7 +367,7 @@ public class OrderedTraversalController {
 
     WorkingTree prevTree = tree.getPrevious();
     if (prevTree != null) {
-      return AccessibilityNodeInfoCompat.obtain(prevTree.getNode());
+      return obtainFoundNode(prevTree.getNode());
     }
 
     return null;
@@ -255,7 +379,7 @@ public class OrderedTraversalController {
       return null;
     }
 
-    return AccessibilityNodeInfoCompat.obtain(mTree.getRoot().getNode());
+    return obtainFoundNode(mTree.getRoot().getNode());
   }
 
   public @Nullable AccessibilityNodeInfoCompat findFirst(AccessibilityNodeInfoCompat rootNode) {
@@ -268,7 +392,7 @@ public class OrderedTraversalController {
       return null;
     }
 
-    return AccessibilityNodeInfoCompat.obtain(tree.getNode());
+    return obtainFoundNode(tree.getNode());
   }
 
   /** Searches last node to be focused */
@@ -277,7 +401,7 @@ public class OrderedTraversalController {
       return null;
     }
 
-    return AccessibilityNodeInfoCompat.obtain(mTree.getRoot().getLastNode().getNode());
+    return obtainFoundNode(mTree.getRoot().getLastNode().getNode());
   }
 
   public @Nullable AccessibilityNodeInfoCompat findLast(AccessibilityNodeInfoCompat rootNode) {
@@ -290,7 +414,15 @@ public class OrderedTraversalController {
       return null;
     }
 
-    return AccessibilityNodeInfoCompat.obtain(tree.getLastNode().getNode());
+    return obtainFoundNode(tree.getLastNode().getNode());
+  }
+
+  private AccessibilityNodeInfoCompat obtainFoundNode(AccessibilityNodeInfoCompat node) {
+    AccessibilityNodeInfoCompat result = AccessibilityNodeInfoCompat.obtain(node);
+    if (mRefreshFoundNodes) {
+      result.refresh();
+    }
+    return result;
   }
 
   /** Dumps the traversal order tree. */
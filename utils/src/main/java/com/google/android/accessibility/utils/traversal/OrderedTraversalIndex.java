@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.google.android.accessibility.utils.traversal;
+
+import android.view.accessibility.AccessibilityEvent;
+import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
+import com.google.android.accessibility.utils.AccessibilityEventListener;
+import com.google.android.accessibility.utils.AccessibilityEventUtils;
+import com.google.android.accessibility.utils.Performance.EventId;
+import com.google.android.libraries.accessibility.utils.log.LogUtils;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Keeps the ordered traversal of each window alive across navigation gestures, so that {@link
+ * TraversalStrategyUtils#getTraversalStrategy} doesn't rebuild the whole order for every swipe.
+ *
+ * <p>The index must receive accessibility events while it is enabled. Content changes and scrolls
+ * only rebuild the changed subtrees, the next time the window is traversed. Window changes drop the
+ * index. While the index is disabled, every strategy is built from scratch.
+ *
+ * <p>All methods must be called on the main thread.
+ */
+public class OrderedTraversalIndex implements AccessibilityEventListener {
+
+  private static final String TAG = "OrderedTraversalIndex";
+
+  /** Maximum number of windows whose traversal order is kept. */
+  private static final int MAX_WINDOWS = 4;
+
+  /** Maximum number of changed subtrees after which the whole order is rebuilt instead. */
+  private static final int MAX_PENDING_CHANGES = 16;
+
+  private static final int EVENT_MASK =
+      AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED
+          | AccessibilityEvent.TYPE_VIEW_SCROLLED
+          | AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED
+          | AccessibilityEvent.TYPE_WINDOWS_CHANGED;
+
+  private static final OrderedTraversalIndex sInstance = new OrderedTraversalIndex();
+
+  private final Map<Integer, WindowOrder> mWindowOrders =
+      new LinkedHashMap<Integer, WindowOrder>(MAX_WINDOWS, 0.75f, /* accessOrder= */ true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, WindowOrder> eldest) {
+          return size() > MAX_WINDOWS;
+        }
+      };
+
+  private boolean mEnabled;
+
+  public static OrderedTraversalIndex getInstance() {
+    return sInstance;
+  }
+
+  private OrderedTraversalIndex() {}
+
+  /**
+   * Enables or disables reuse of traversal orders. The caller enabling the index must also deliver
+   * the events from {@link #getEventTypes()} to it.
+   */
+  public void setEnabled(boolean enabled) {
+    mEnabled = enabled;
+    if (!enabled) {
+      mWindowOrders.clear();
+    }
+  }
+
+  /** Returns a strategy for the ordered traversal of {@code root}, reusing an existing order. */
+  public OrderedTraversalStrategy getTraversalStrategy(AccessibilityNodeInfoCompat root) {
+    if (!mEnabled || root == null) {
+      return new OrderedTraversalStrategy(root);
+    }
+
+    int windowId = root.getWindowId();
+    WindowOrder windowOrder = mWindowOrders.get(windowId);
+    if (windowOrder != null && windowOrder.root.equals(root) && windowOrder.applyPendingChanges()) {
+      return new OrderedTraversalStrategy(
+          root, windowOrder.strategy.getController(), windowOrder.strategy.getSpeakingNodesCache());
+    }
+
+    OrderedTraversalStrategy strategy = new OrderedTraversalStrategy(root);
+    strategy.getController().setRefreshFoundNodes(true);
+    mWindowOrders.put(windowId, new WindowOrder(root, strategy));
+    return strategy;
+  }
+
+  @Override
+  public int getEventTypes() {
+    return EVENT_MASK;
+  }
+
+  @Override
+  public void onAccessibilityEvent(AccessibilityEvent event, EventId eventId) {
+    if (mWindowOrders.isEmpty()) {
+      return;
+    }
+
+    switch (event.getEventType()) {
+      case AccessibilityEvent.TYPE_WINDOW_CONTENT_CHANGED:
+        {
+          int changeTypes = event.getContentChangeTypes();
+          boolean structural =
+              (changeTypes == AccessibilityEvent.CONTENT_CHANGE_TYPE_UNDEFINED)
+                  || ((changeTypes & AccessibilityEvent.CONTENT_CHANGE_TYPE_SUBTREE) != 0);
+          onNodeChanged(event, structural);
+          break;
+        }
+      case AccessibilityEvent.TYPE_VIEW_SCROLLED:
+        // Scrolling changes the bounds, and often the set, of the scrolled node's descendants.
+        onNodeChanged(event, /* structural= */ true);
+        break;
+      case AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED:
+      case AccessibilityEvent.TYPE_WINDOWS_CHANGED:
+        mWindowOrders.clear();
+        break;
+      default: // fall out
+    }
+  }
+
+  private void onNodeChanged(AccessibilityEvent event, boolean structural) {
+    int windowId = AccessibilityEventUtils.getWindowId(event);
+    WindowOrder windowOrder = mWindowOrders.get(windowId);
+    if (windowOrder == null) {
+      return;
+    }
+
+    AccessibilityNodeInfoCompat source = AccessibilityEventUtils.sourceCompat(event);
+    if (source == null
+        || source.equals(windowOrder.root)
+        || windowOrder.pendingChanges.size() >= MAX_PENDING_CHANGES) {
+      mWindowOrders.remove(windowId);
+      return;
+    }
+
+    // A structural change of the node supersedes a change to its own content.
+    Boolean pendingStructural = windowOrder.pendingChanges.get(source);
+    windowOrder.pendingChanges.put(
+        source, structural || (pendingStructural != null && pendingStructural));
+  }
+
+  /** The traversal order of one window, with the changes that haven't been applied yet. */
+  private static class WindowOrder {
+    final AccessibilityNodeInfoCompat root;
+    final OrderedTraversalStrategy strategy;
+    // Maps each changed node to whether its subtree changed, rather than only its own content.
+    final Map<AccessibilityNodeInfoCompat, Boolean> pendingChanges = new HashMap<>();
+
+    WindowOrder(AccessibilityNodeInfoCompat root, OrderedTraversalStrategy strategy) {
+      this.root = AccessibilityNodeInfoCompat.obtain(root);
+      this.strategy = strategy;
+    }
+
+    /** Returns {@code false} if the changes can't be applied and the order must be rebuilt. */
+    boolean applyPendingChanges() {
+      if (pendingChanges.isEmpty()) {
+        return true;
+      }
+
+      OrderedTraversalController controller = strategy.getController();
+      List<AccessibilityNodeInfoCompat> changedSubtrees = new ArrayList<>();
+      for (Map.Entry<AccessibilityNodeInfoCompat, Boolean> change : pendingChanges.entrySet()) {
+        if (change.getValue()) {
+          changedSubtrees.add(change.getKey());
+        } else {
+          controller.invalidateNode(change.getKey());
+        }
+      }
+      pendingChanges.clear();
+
+      for (AccessibilityNodeInfoCompat node : changedSubtrees) {
+        // The node in the event is a snapshot, so fetch its current children.
+        if (!node.refresh() || !controller.refreshSubtree(node)) {
+          LogUtils.v(TAG, "Rebuilding traversal order of window %d", node.getWindowId());
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
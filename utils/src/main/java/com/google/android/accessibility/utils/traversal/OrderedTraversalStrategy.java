@@ -17,7 +17,7 @@
 package com.google.android.accessibility.utils.traversal;
 
 import androidx.core.view.accessibility.AccessibilityNodeInfoCompat;
-import java.util.HashMap;
+import com.google.android.accessibility.utils.SpeakingNodesCache;
 import java.util.Map;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -41,12 +41,29 @@ public class OrderedTraversalStrategy implements TraversalStrategy {
       mRootNode = AccessibilityNodeInfoCompat.obtain(rootNode);
     }
 
-    mSpeakingNodesCache = new HashMap<>();
+    mSpeakingNodesCache = SpeakingNodesCache.getInstance().getCache();
     mController = new OrderedTraversalController();
     mController.setSpeakNodesCache(mSpeakingNodesCache);
     mController.initOrder(mRootNode, false);
   }
 
+  /**
+   * Creates a strategy that uses an order that was already initialized for {@code rootNode}, and
+   * the speaking nodes cache that order was built with.
+   */
+  OrderedTraversalStrategy(
+      AccessibilityNodeInfoCompat rootNode,
+      OrderedTraversalController controller,
+      Map<AccessibilityNodeInfoCompat, Boolean> speakingNodesCache) {
+    mRootNode = AccessibilityNodeInfoCompat.obtain(rootNode);
+    mSpeakingNodesCache = speakingNodesCache;
+    mController = controller;
+  }
+
+  OrderedTraversalController getController() {
+    return mController;
+  }
+
   @Override
   public Map<AccessibilityNodeInfoCompat, Boolean> getSpeakingNodesCache() {
     return mSpeakingNodesCache;
@@ -58,6 +58,19 @@ public class WorkingTree {
     return mChildren.remove(child);
   }
 
+  /** Returns the children of this node, in traversal order. The list must not be modified. */
+  public List<WorkingTree> getChildren() {
+    return mChildren;
+  }
+
+  /** Detaches all children from this node. */
+  public void clearChildren() {
+    for (WorkingTree child : mChildren) {
+      child.setParent(null);
+    }
+    mChildren.clear();
+  }
+
   /** Checks whether subTree is a descendant of this WorkingTree node. */
   public boolean hasDescendant(@Nullable WorkingTree tree) {
 